@@ -0,0 +1,86 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.openjdk.jmh.annotations.*;
+import pl.polsl.lab.szymonbotor.notemanager.enums.BlockMode;
+import pl.polsl.lab.szymonbotor.notemanager.enums.CryptMode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a benchmark of AES encryption and decryption for several payload sizes in both block modes.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AESBenchmark {
+
+    /**
+     * Block mode of the measured AES object.
+     */
+    @Param({"CBC", "GCM"})
+    public BlockMode blockMode;
+
+    /**
+     * Number of characters of the plaintext.
+     */
+    @Param({"16", "1024", "65536", "1048576"})
+    public int size;
+
+    /**
+     * The measured AES object.
+     */
+    private AES aes;
+
+    /**
+     * Initialisation vector restored before every encryption, as the GCM mode refuses to reuse it.
+     */
+    private byte[] iv;
+
+    /**
+     * Encrypted text.
+     */
+    private String plainText;
+
+    /**
+     * Decrypted data.
+     */
+    private byte[] cipherText;
+
+    /**
+     * This method is used to prepare the AES object and data.
+     * @throws Exception Thrown when the key cannot be derived or the data cannot be encrypted.
+     */
+    @Setup
+    public void prepare() throws Exception {
+        iv = AES.generateIV(blockMode);
+        aes = new AES("!paSswOrd_123", AES.generateSalt(), iv, blockMode, CryptMode.BOTH);
+        plainText = "a".repeat(size);
+        cipherText = aes.encrypt(plainText);
+    }
+
+    /**
+     * This method is used to measure encryption.
+     * @return ciphertext.
+     * @throws Exception Thrown when the encryption fails.
+     */
+    @Benchmark
+    public byte[] encrypt() throws Exception {
+        aes.setIV(iv);
+        return aes.encrypt(plainText);
+    }
+
+    /**
+     * This method is used to measure decryption.
+     * @return plaintext.
+     * @throws Exception Thrown when the decryption fails.
+     */
+    @Benchmark
+    public String decrypt() throws Exception {
+        return aes.decrypt(cipherText);
+    }
+}
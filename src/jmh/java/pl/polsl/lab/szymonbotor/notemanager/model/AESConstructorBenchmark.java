@@ -0,0 +1,80 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a benchmark of the AES constructor, which derives the key from the password,
+ * with and without the key in the KeyCache.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AESConstructorBenchmark {
+
+    /**
+     * Password of the created objects.
+     */
+    private static final String password = "!paSswOrd_123";
+
+    /**
+     * Salt of the created objects.
+     */
+    private byte[] salt;
+
+    /**
+     * Initialisation vector of the created objects.
+     */
+    private byte[] iv;
+
+    /**
+     * State clearing the key cache before every invocation, so the key is always derived.
+     */
+    @State(Scope.Thread)
+    public static class EmptyCache {
+
+        /**
+         * This method is used to clear the key cache.
+         */
+        @Setup(Level.Invocation)
+        public void clear() {
+            KeyCache.getDefault().clear();
+        }
+    }
+
+    /**
+     * This method is used to prepare the salt and initialisation vector.
+     */
+    @Setup
+    public void prepare() {
+        salt = AES.generateSalt();
+        iv = AES.generateIV();
+    }
+
+    /**
+     * This method is used to measure the constructor when the key has to be derived.
+     * @param cache state clearing the key cache.
+     * @return created object.
+     * @throws Exception Thrown when the key cannot be derived.
+     */
+    @Benchmark
+    public AES constructWhenKeyDerived(EmptyCache cache) throws Exception {
+        return new AES(password, salt, iv);
+    }
+
+    /**
+     * This method is used to measure the constructor when the key is cached.
+     * @return created object.
+     * @throws Exception Thrown when the key cannot be derived.
+     */
+    @Benchmark
+    public AES constructWhenKeyCached() throws Exception {
+        return new AES(password, salt, iv);
+    }
+}
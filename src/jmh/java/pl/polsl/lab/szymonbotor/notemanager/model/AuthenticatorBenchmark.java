@@ -0,0 +1,48 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a benchmark of the password check of legacy notes.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AuthenticatorBenchmark {
+
+    /**
+     * Checked password.
+     */
+    private static final String password = "!paSswOrd_123";
+
+    /**
+     * The measured authenticator.
+     */
+    private Authenticator authenticator;
+
+    /**
+     * This method is used to prepare the authenticator.
+     * @throws Exception Thrown when the password cannot be hashed.
+     */
+    @Setup
+    public void prepare() throws Exception {
+        authenticator = new Authenticator(Authenticator.hashPassword(password));
+    }
+
+    /**
+     * This method is used to measure the password check.
+     * @return result of the check.
+     * @throws Exception Thrown when the password cannot be hashed.
+     */
+    @Benchmark
+    public boolean authenticate() throws Exception {
+        return authenticator.authenticate(password);
+    }
+}
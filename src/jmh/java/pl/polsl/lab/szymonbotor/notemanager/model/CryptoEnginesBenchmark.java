@@ -0,0 +1,74 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.openjdk.jmh.annotations.*;
+import pl.polsl.lab.szymonbotor.notemanager.enums.BlockMode;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a benchmark comparing the cost of encryption with a new Cipher per call and with the per-thread
+ * Cipher from CryptoEngines. Run it with "-prof gc" to see the allocation per operation.
+ * @author Szymon Botor
+ * @version 2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CryptoEnginesBenchmark {
+
+    /**
+     * Key used for encryption.
+     */
+    private SecretKey key;
+
+    /**
+     * Initialisation vector used for encryption.
+     */
+    private IvParameterSpec iv;
+
+    /**
+     * Encrypted data.
+     */
+    private byte[] data;
+
+    /**
+     * This method is used to prepare the key and data.
+     * @throws Exception Thrown when the key cannot be derived.
+     */
+    @Setup
+    public void prepare() throws Exception {
+        key = KeyCache.getDefault().getKey("!paSswOrd_123", AES.generateSalt());
+        iv = new IvParameterSpec(AES.generateIV());
+        data = new byte[256];
+    }
+
+    /**
+     * This method is used to measure encryption with a new Cipher.
+     * @return ciphertext.
+     * @throws Exception Thrown when the encryption fails.
+     */
+    @Benchmark
+    public byte[] newCipherPerCall() throws Exception {
+        Cipher cipher = Cipher.getInstance(BlockMode.CBC.transformation);
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        return cipher.doFinal(data);
+    }
+
+    /**
+     * This method is used to measure encryption with the per-thread Cipher.
+     * @return ciphertext.
+     * @throws Exception Thrown when the encryption fails.
+     */
+    @Benchmark
+    public byte[] perThreadCipher() throws Exception {
+        Cipher cipher = CryptoEngines.getCipher(BlockMode.CBC.transformation);
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        return cipher.doFinal(data);
+    }
+}
@@ -0,0 +1,126 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.openjdk.jmh.annotations.*;
+import pl.polsl.lab.szymonbotor.notemanager.enums.ReadMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * This is a benchmark of saving, reading and overwriting a note of the maximum size in a temporary directory.
+ * The key of the password is cached after the first save, so the results show the cost of the file IO
+ * and encryption rather than the key derivation.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NoteBenchmark {
+
+    /**
+     * Password of the note.
+     */
+    private static final String password = "!paSswOrd_123";
+
+    /**
+     * Read mode used by the read benchmark.
+     */
+    @Param({"BUFFERED", "MAPPED"})
+    public ReadMode readMode;
+
+    /**
+     * Length of the note in characters.
+     */
+    @Param({"1000", "1048576"})
+    public int size;
+
+    /**
+     * Temporary directory of the note.
+     */
+    private Path directory;
+
+    /**
+     * Path of the note file.
+     */
+    private String notePath;
+
+    /**
+     * The measured note.
+     */
+    private Note note;
+
+    /**
+     * This method is used to create the note and its file.
+     * @throws Exception Thrown when the note cannot be saved.
+     */
+    @Setup
+    public void prepare() throws Exception {
+        directory = Files.createTempDirectory("note-benchmark");
+        notePath = directory.resolve("benchmark" + Note.FILE_EXTENSION).toString();
+        note = new Note();
+        note.change("a".repeat(size));
+        note.save(notePath, password);
+    }
+
+    /**
+     * This method is used to delete the temporary directory.
+     * @throws IOException Thrown when an error occurs during file IO.
+     */
+    @TearDown
+    public void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * This method is used to measure saving the note with a password.
+     * @throws Exception Thrown when the note cannot be saved.
+     */
+    @Benchmark
+    public void save() throws Exception {
+        note.save(notePath, password);
+    }
+
+    /**
+     * This method is used to measure reading the note.
+     * @return the read note.
+     * @throws Exception Thrown when the note cannot be read.
+     */
+    @Benchmark
+    public Note read() throws Exception {
+        Note readNote = new Note();
+        readNote.setReadMode(readMode);
+        readNote.read(notePath, password);
+        return readNote;
+    }
+
+    /**
+     * This method is used to measure overwriting the opened note.
+     * @throws Exception Thrown when the note cannot be saved.
+     */
+    @Benchmark
+    public void overwrite() throws Exception {
+        note.overwrite();
+    }
+
+    /**
+     * This method is used to measure typing and deleting a character in the middle of the note.
+     * @throws Exception Thrown when the note is too long.
+     */
+    @Benchmark
+    public void edit() throws Exception {
+        int middle = note.getLength() / 2;
+        note.insert(middle, "b");
+        note.delete(middle, 1);
+    }
+}
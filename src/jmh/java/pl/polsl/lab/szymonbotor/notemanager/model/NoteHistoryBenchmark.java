@@ -0,0 +1,93 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a benchmark of adding to and saving a note history at full capacity. Half of the added files
+ * are already in the history and half of them evict the oldest entry.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NoteHistoryBenchmark {
+
+    /**
+     * The measured history.
+     */
+    private NoteHistory history;
+
+    /**
+     * Temporary history file.
+     */
+    private Path historyFile;
+
+    /**
+     * Files added to the history.
+     */
+    private File[] files;
+
+    /**
+     * Index of the next added file.
+     */
+    private int next;
+
+    /**
+     * This method is used to fill the history.
+     * @throws IOException Thrown when the temporary file cannot be created.
+     */
+    @Setup
+    public void prepare() throws IOException {
+        historyFile = Files.createTempFile("history-benchmark", ".txt");
+        history = new NoteHistory();
+        history.setItemLimit(NoteHistory.MAX_ITEMS);
+
+        files = new File[2 * NoteHistory.MAX_ITEMS];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File("notes", "note" + i + Note.FILE_EXTENSION);
+        }
+        for (int i = 0; i < NoteHistory.MAX_ITEMS; i++) {
+            history.add(files[i]);
+        }
+        next = 0;
+    }
+
+    /**
+     * This method is used to delete the temporary file.
+     * @throws IOException Thrown when an error occurs during file IO.
+     */
+    @TearDown
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(historyFile);
+    }
+
+    /**
+     * This method is used to measure adding a file to the full history.
+     * @return size of the history.
+     */
+    @Benchmark
+    public int add() {
+        history.add(files[next]);
+        next = (next + 1) % files.length;
+        return history.size();
+    }
+
+    /**
+     * This method is used to measure saving the full history.
+     * @throws IOException Thrown when an error occurs during file IO.
+     */
+    @Benchmark
+    public void save() throws IOException {
+        history.save(historyFile.toString());
+    }
+}
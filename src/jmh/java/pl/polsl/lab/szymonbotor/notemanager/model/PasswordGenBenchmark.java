@@ -0,0 +1,54 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a benchmark of password generation for alphabets of various sizes.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PasswordGenBenchmark {
+
+    /**
+     * Additional symbols of the alphabet. An empty string means lowercase letters only.
+     */
+    @Param({"", "d", "du", "duo"})
+    public String symbols;
+
+    /**
+     * Length of the generated passwords.
+     */
+    @Param({"16", "64"})
+    public int length;
+
+    /**
+     * The measured generator.
+     */
+    private PasswordGen passwordGen;
+
+    /**
+     * This method is used to prepare the generator.
+     * @throws Exception Thrown when the parameters are invalid.
+     */
+    @Setup
+    public void prepare() throws Exception {
+        passwordGen = new PasswordGen(length, symbols);
+    }
+
+    /**
+     * This method is used to measure password generation.
+     * @return generated password.
+     */
+    @Benchmark
+    public String generate() {
+        return passwordGen.generate();
+    }
+}
@@ -4,18 +4,26 @@ import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCharacterException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidPasswordLengthException;
+import pl.polsl.lab.szymonbotor.notemanager.model.KdfCalibrator;
+import pl.polsl.lab.szymonbotor.notemanager.model.KdfParams;
+import pl.polsl.lab.szymonbotor.notemanager.model.LazyNote;
 import pl.polsl.lab.szymonbotor.notemanager.model.Note;
+import pl.polsl.lab.szymonbotor.notemanager.model.NoteGrep;
 import pl.polsl.lab.szymonbotor.notemanager.model.NoteHistory;
+import pl.polsl.lab.szymonbotor.notemanager.model.NoteRekeyer;
 import pl.polsl.lab.szymonbotor.notemanager.model.PasswordGen;
 import pl.polsl.lab.szymonbotor.notemanager.view.ConsoleView;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.InvalidPathException;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * The main controller class of the whole program in the console.
  * @author Szymon Botor
- * @version 1.2
+ * @version 1.4
  */
 public class ConsoleController {
 
@@ -45,8 +53,12 @@ public class ConsoleController {
      * The main method of the controller. The arguments can be provided by the command line, otherwise the user is asked to input them in the console.<br>
      * Three modes of operation can be specified by using appropriate switches and arguments:<br>
      * - Open encrypted note: -o directory<br>
-     * - Create a note: -c<br>
+     * - Create a note: -c [iterations]<br>
      * - Generate a password: -g length [symbols]<br>
+     * - Calibrate the key derivation: -k [target milliseconds]<br>
+     * - Change the password of all notes in a directory: -r directory<br>
+     * - List the notes in a directory without decrypting them: -l directory<br>
+     * - Search the notes in a directory with a regular expression: -s directory pattern [maximum matches]<br>
      * The parameters will be fetched via console if a required argument is not provided. Any additional parameters are ignored.<br>
      * The symbols should be provided without spaces in any order. If none are present only lowercase letters are used for generation. Available symbols:<br>
      * - Digits: d<br>
@@ -80,6 +92,22 @@ public class ConsoleController {
             case "-g":
                 generatePassword(args);
                 break;
+            // Calibrate the key derivation.
+            case "-k":
+                calibrateKdf(args);
+                break;
+            // Change the password of a directory of notes.
+            case "-r":
+                rekeyDirectory(args);
+                break;
+            // List the notes in a directory.
+            case "-l":
+                listDirectory(args);
+                break;
+            // Search the notes in a directory.
+            case "-s":
+                searchDirectory(args);
+                break;
             default:
                 ConsoleView.display("Unrecognised parameters. Try again.");
         }
@@ -140,6 +168,18 @@ public class ConsoleController {
      */
     private static void createNote(String[] args) {
         Note note = new Note();
+        if (args.length > 1) {
+            try {
+                note.setKdfParams(new KdfParams(KdfParams.DEFAULT.getAlgorithm(), Integer.parseInt(args[1])));
+            }
+            catch (NumberFormatException ex) {
+                ConsoleView.display("Invalid iteration count format. The default is used.");
+            }
+            catch (IllegalArgumentException ex) {
+                ConsoleView.display(ex.getMessage() + " The default is used.");
+            }
+        }
+
         try {
             if (view.editNote(note)) {
                 try {
@@ -197,4 +237,110 @@ public class ConsoleController {
             ConsoleView.display(ex.getMessage());
         }
     }
+
+    /**
+     * This is a static method used to choose the key derivation iteration count for the current machine.
+     * The result can be used when creating a note.
+     * @param args arguments such as command line parameters from main().
+     * @see ConsoleController#main(String[])
+     */
+    private static void calibrateKdf(String[] args) {
+        try {
+            long targetMillis = KdfCalibrator.DEFAULT_TARGET_MILLIS;
+            if (args.length > 1) {
+                targetMillis = Long.parseLong(args[1]);
+            }
+
+            KdfParams params = new KdfCalibrator(KdfParams.DEFAULT.getAlgorithm()).calibrate(targetMillis);
+            view.display(params, KdfCalibrator.measureMillis(params));
+        }
+        catch (NumberFormatException ex) {
+            ConsoleView.display("Invalid target time format during calibration.");
+        }
+        catch (CryptException ex) {
+            ConsoleView.display("Error during calibration. " + ex.getMessage());
+        }
+    }
+
+    /**
+     * This is a static method used to change the password of all notes in a directory.
+     * The notes are processed in parallel and the progress is displayed.
+     * @param args arguments such as command line parameters from main().
+     * @see ConsoleController#main(String[])
+     */
+    private static void rekeyDirectory(String[] args) {
+        if (args.length < 2) {
+            args = new String[] {"-r", view.fetchDirectory()};
+        }
+
+        String[] passwords = view.fetchPasswordChange();
+        try {
+            NoteRekeyer.Result result = new NoteRekeyer().rekey(new File(args[1]), passwords[0], passwords[1],
+                    view::displayRekeyProgress);
+            view.display(result);
+        }
+        catch (IOException | InvalidPathException ex) {
+            ConsoleView.display("Cannot read directory \"" + args[1] + "\".");
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            ConsoleView.display("The password change was interrupted.");
+        }
+    }
+
+    /**
+     * This is a static method used to list the notes in a directory. Only the headers of the notes are read,
+     * so no password is needed.
+     * @param args arguments such as command line parameters from main().
+     * @see ConsoleController#main(String[])
+     */
+    private static void listDirectory(String[] args) {
+        if (args.length < 2) {
+            args = new String[] {"-l", view.fetchDirectory()};
+        }
+
+        try {
+            view.displayNoteList(LazyNote.list(new File(args[1])));
+        }
+        catch (IOException | InvalidPathException ex) {
+            ConsoleView.display("Cannot read directory \"" + args[1] + "\".");
+        }
+    }
+
+    /**
+     * This is a static method used to search the notes in a directory with a regular expression.
+     * The notes are decrypted in parallel in memory and the matching lines are displayed as soon as they are found.
+     * @param args arguments such as command line parameters from main().
+     * @see ConsoleController#main(String[])
+     */
+    private static void searchDirectory(String[] args) {
+        if (args.length < 3) {
+            args = new String[] {"-s", args.length > 1 ? args[1] : view.fetchDirectory(), view.fetchPattern()};
+        }
+
+        try {
+            int maxMatches = Integer.MAX_VALUE;
+            if (args.length > 3) {
+                maxMatches = Integer.parseInt(args[3]);
+            }
+
+            Pattern pattern = Pattern.compile(args[2]);
+            NoteGrep grep = new NoteGrep(Runtime.getRuntime().availableProcessors(), maxMatches);
+            NoteGrep.Result result = grep.search(new File(args[1]), view.fetchPassword(), pattern, view::displayMatch);
+            view.display(result);
+        }
+        catch (NumberFormatException ex) {
+            ConsoleView.display("Invalid maximum match count format.");
+        }
+        catch (PatternSyntaxException ex) {
+            ConsoleView.display("Invalid pattern. " + ex.getDescription());
+        }
+        catch (IOException | InvalidPathException ex) {
+            ConsoleView.display("Cannot read directory \"" + args[1] + "\".");
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            ConsoleView.display("The search was interrupted.");
+        }
+    }
 }
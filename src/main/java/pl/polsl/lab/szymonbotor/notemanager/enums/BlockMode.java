@@ -0,0 +1,38 @@
+package pl.polsl.lab.szymonbotor.notemanager.enums;
+
+/**
+ * This enum is used to specify the block cipher mode of operation used by an AES object.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public enum BlockMode {
+    /**
+     * Cipher block chaining with PKCS#5 padding. Used by the legacy note files.
+     */
+    CBC("AES/CBC/PKCS5Padding", 16),
+
+    /**
+     * Galois/counter mode. The authentication tag proves that the key and the data are correct.
+     */
+    GCM("AES/GCM/NoPadding", 12);
+
+    /**
+     * Name of the cipher transformation.
+     */
+    public final String transformation;
+
+    /**
+     * Length of the initialisation vector in bytes.
+     */
+    public final int ivLength;
+
+    /**
+     * Constructor of the enum.
+     * @param transformation name of the cipher transformation.
+     * @param ivLength length of the initialisation vector in bytes.
+     */
+    BlockMode(String transformation, int ivLength) {
+        this.transformation = transformation;
+        this.ivLength = ivLength;
+    }
+}
@@ -0,0 +1,52 @@
+package pl.polsl.lab.szymonbotor.notemanager.enums;
+
+/**
+ * This enum is used to specify the algorithm used to derive a secret key from a password.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public enum KdfAlgorithm {
+    /**
+     * PBKDF2 with HMAC-SHA-256.
+     */
+    PBKDF2_SHA256(1, "PBKDF2WithHmacSHA256"),
+
+    /**
+     * PBKDF2 with HMAC-SHA-512.
+     */
+    PBKDF2_SHA512(2, "PBKDF2WithHmacSHA512");
+
+    /**
+     * Identifier of the algorithm stored in the note files.
+     */
+    public final int id;
+
+    /**
+     * Name of the algorithm used by the secret key factory.
+     */
+    public final String algorithmName;
+
+    /**
+     * Constructor of the enum.
+     * @param id identifier of the algorithm stored in the note files.
+     * @param algorithmName name of the algorithm used by the secret key factory.
+     */
+    KdfAlgorithm(int id, String algorithmName) {
+        this.id = id;
+        this.algorithmName = algorithmName;
+    }
+
+    /**
+     * This method is used to get the algorithm with the specified identifier.
+     * @param id identifier of the algorithm.
+     * @return the algorithm or null if the identifier is unknown.
+     */
+    public static KdfAlgorithm fromId(int id) {
+        for (KdfAlgorithm algorithm : values()) {
+            if (algorithm.id == id) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+}
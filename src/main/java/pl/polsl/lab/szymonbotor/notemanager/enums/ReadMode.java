@@ -0,0 +1,19 @@
+package pl.polsl.lab.szymonbotor.notemanager.enums;
+
+/**
+ * This enum is used to specify how a note file is loaded before decryption.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public enum ReadMode {
+    /**
+     * The file is read into a heap buffer with a single channel read.
+     */
+    BUFFERED,
+    /**
+     * The file is mapped into memory and decrypted straight from the mapping. The mapping is released
+     * by the garbage collector, and until then some systems, for example Windows, do not allow
+     * the file to be overwritten or replaced, so this mode is meant for reading many notes without modifying them.
+     */
+    MAPPED
+}
@@ -0,0 +1,19 @@
+package pl.polsl.lab.szymonbotor.notemanager.enums;
+
+/**
+ * This enum is used to specify how a note file is written.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public enum SaveMode {
+    /**
+     * The file is truncated and written in place without synchronising it with the disk.
+     * A crash during the write can destroy the note.
+     */
+    IN_PLACE,
+    /**
+     * The note is written to a temporary file, which is synchronised with the disk and atomically renamed
+     * over the target. A crash leaves either the old or the new version of the note.
+     */
+    ATOMIC
+}
@@ -0,0 +1,24 @@
+package pl.polsl.lab.szymonbotor.notemanager.exceptions;
+
+/**
+ * Exception class thrown when authenticated decryption fails. It means that the password is wrong or the data was modified.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public class AuthenticationException extends CryptException {
+
+    /**
+     * Default constructor of the exception.
+     */
+    public AuthenticationException() {
+
+    }
+
+    /**
+     * Constructor accepting a custom message.
+     * @param message text to display as the exception message.
+     */
+    public AuthenticationException(String message) {
+        super(message);
+    }
+}
@@ -1,38 +1,51 @@
 package pl.polsl.lab.szymonbotor.notemanager.model;
 
+import pl.polsl.lab.szymonbotor.notemanager.enums.BlockMode;
 import pl.polsl.lab.szymonbotor.notemanager.enums.CryptMode;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.AuthenticationException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
 
 import javax.crypto.*;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Class implementing the Advanced Encryption Standard algorithm. It is used to encrypt and decrypt notes.
  * @author Szymon Botor
- * @version 1.1
+ * @version 1.7
  */
 public class AES {
     /**
-     * Constant value representing the number of iterations in the AES algorithm.
+     * Constant value representing the default number of iterations of the key derivation.
+     * @see KdfParams#DEFAULT
      */
     public static final int ITER_COUNT = 65536;
-    
+
     /**
      * Constant value representing the length of the encryption key in bits.
      */
     public static final int KEY_LENGTH = 256;
 
     /**
-     * Constant value representing size of the initialisation vector.
+     * Constant value representing size of the initialisation vector in the CBC mode.
      */
     public static final int IV_LENGTH = 16;
 
@@ -41,28 +54,70 @@ public class AES {
      */
     public static final int SALT_LENGTH = 8;
 
+    /**
+     * Constant value representing size of the authentication tag in the GCM mode in bits.
+     */
+    public static final int TAG_LENGTH = 128;
+
+    /**
+     * Constant value representing size of the chunks processed at once by the streaming methods in bytes.
+     */
+    public static final int STREAM_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Constant value representing the number of bytes that the segment index and the final segment marker
+     * take in the associated data of a segment.
+     */
+    private static final int SEGMENT_INFO_LENGTH = Integer.BYTES + 1;
+
+    /**
+     * Pool used to encrypt and decrypt segments in parallel.
+     */
+    private static ForkJoinPool segmentPool = ForkJoinPool.commonPool();
+
     /**
      * This is an enum used to determine whether the object is used to encrypt, decrypt or both.
      */
     public final CryptMode cryptMode;
 
+    /**
+     * Block cipher mode of operation used in encryption and decryption.
+     */
+    private BlockMode blockMode;
+
+    /**
+     * Parameters of the derivation of the secret key from the password.
+     */
+    private final KdfParams kdfParams;
+
     /**
      * Secret key used in encryption and decryption.
      */
     private SecretKey key;
-    
+
     /**
      * Initialisation vector used in encryption and decryption. Either randomly generated (encryption)
      * or provided (decryption).
      */
-    private IvParameterSpec iv;
-    
+    private byte[] iv;
+
     /**
      * Value of 8 bytes used during secret key generation. Either randomly generated during (encryption)
      * or provided (decryption).
      */
     private byte[] salt;
-    
+
+    /**
+     * Additional data authenticated, but not encrypted in the GCM mode. Can be null.
+     */
+    private byte[] associatedData;
+
+    /**
+     * This value is used to determine if the current initialisation vector was already used for encryption.
+     * Reusing it in the GCM mode would reveal the key stream, so it is forbidden.
+     */
+    private boolean ivUsed;
+
     /**
      * Constructor used during encryption. It generates a new random initialisation vector and salt.
      * @param password password to be used as a base for the secret key. Can be empty.
@@ -70,13 +125,13 @@ public class AES {
      */
     public AES(String password)
             throws CryptException {
-        
+
         this(password, CryptMode.ENCRYPTION);
     }
 
     /**
      * Constructor used to create an object using the specified mode (encryption, decryption or both).
-     * It generates a new random initialisation vector and salt.
+     * It generates a new random initialisation vector and salt. The CBC block mode is used.
      * @param password password to be used as a base for the secret key. Can be empty.
      * @param mode enum representing the type of operation available for the object.
      * @throws CryptException This exception is thrown when a cryptographic error occurs.
@@ -84,25 +139,38 @@ public class AES {
     public AES(String password, CryptMode mode)
             throws CryptException {
 
-        cryptMode = mode;
+        this(password, BlockMode.CBC, mode);
+    }
 
-        SecretKeyFactory factory = null;
-        try {
-            factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-            salt = new byte[SALT_LENGTH];
-            new SecureRandom().nextBytes(salt);
+    /**
+     * Constructor used to create an object using the specified block mode and mode (encryption, decryption or both).
+     * It generates a new random initialisation vector and salt.
+     * @param password password to be used as a base for the secret key. Can be empty.
+     * @param blockMode block cipher mode of operation.
+     * @param mode enum representing the type of operation available for the object.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public AES(String password, BlockMode blockMode, CryptMode mode)
+            throws CryptException {
 
-            KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITER_COUNT, KEY_LENGTH);
-            key = new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
+        this(password, KdfParams.DEFAULT, blockMode, mode);
+    }
 
-            byte[] ivArray = new byte[IV_LENGTH];
-            new SecureRandom().nextBytes(ivArray);
-            iv = new IvParameterSpec(ivArray);
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-            throw new CryptException(e.getMessage());
-        }
+    /**
+     * Constructor used to create an object using the specified key derivation parameters, block mode and
+     * mode (encryption, decryption or both). It generates a new random initialisation vector and salt.
+     * @param password password to be used as a base for the secret key. Can be empty.
+     * @param kdfParams parameters of the key derivation.
+     * @param blockMode block cipher mode of operation.
+     * @param mode enum representing the type of operation available for the object.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public AES(String password, KdfParams kdfParams, BlockMode blockMode, CryptMode mode)
+            throws CryptException {
+
+        this(password, generateSalt(), generateIV(blockMode), kdfParams, blockMode, mode);
     }
-    
+
     /**
      * Constructor used during decryption. It needs to be supplied with salt and initialisation vector
      * generated during the encryption process.
@@ -118,7 +186,7 @@ public class AES {
 
     /**
      * Constructor used to create an object with the provided salt and initialisation vector using the specified
-     * mode (encryption, decryption or both).
+     * mode (encryption, decryption or both). The CBC block mode is used.
      * @param password password to be used as a base for the secret key. Can be empty.
      * @param salt previously generated cryptographic salt.
      * @param ivArray previously generated initialisation vector.
@@ -128,26 +196,136 @@ public class AES {
     public AES(String password, byte[] salt, byte[] ivArray, CryptMode mode)
             throws CryptException {
 
-        SecretKeyFactory factory = null;
+        this(password, salt, ivArray, BlockMode.CBC, mode);
+    }
+
+    /**
+     * Constructor used to create an object with the provided salt and initialisation vector using the specified
+     * block mode and mode (encryption, decryption or both).
+     * @param password password to be used as a base for the secret key. Can be empty.
+     * @param salt previously generated cryptographic salt.
+     * @param ivArray previously generated initialisation vector.
+     * @param blockMode block cipher mode of operation.
+     * @param mode enum representing the type of operation available for the object.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public AES(String password, byte[] salt, byte[] ivArray, BlockMode blockMode, CryptMode mode)
+            throws CryptException {
+
+        this(password, salt, ivArray, KdfParams.DEFAULT, blockMode, mode);
+    }
+
+    /**
+     * Constructor used to create an object with the provided salt, initialisation vector and key derivation
+     * parameters using the specified block mode and mode (encryption, decryption or both).
+     * @param password password to be used as a base for the secret key. Can be empty.
+     * @param salt previously generated cryptographic salt.
+     * @param ivArray previously generated initialisation vector.
+     * @param kdfParams parameters of the key derivation.
+     * @param blockMode block cipher mode of operation.
+     * @param mode enum representing the type of operation available for the object.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public AES(String password, byte[] salt, byte[] ivArray, KdfParams kdfParams, BlockMode blockMode, CryptMode mode)
+            throws CryptException {
+
+        key = KeyCache.getDefault().getKey(password, salt, kdfParams);
+        this.kdfParams = kdfParams;
+        iv = ivArray;
+        this.salt = salt;
+        this.blockMode = blockMode;
+        cryptMode = mode;
+        associatedData = null;
+        ivUsed = false;
+    }
+
+    /**
+     * Constructor used to create an object with a ready secret key instead of a password, for example a data key
+     * unwrapped with a master key. The object has no salt and no key derivation parameters.
+     * @param key secret AES key.
+     * @param ivArray previously generated initialisation vector.
+     * @param blockMode block cipher mode of operation.
+     * @param mode enum representing the type of operation available for the object.
+     * @see MasterKey
+     */
+    public AES(SecretKey key, byte[] ivArray, BlockMode blockMode, CryptMode mode) {
+        this.key = key;
+        kdfParams = null;
+        iv = ivArray;
+        salt = null;
+        this.blockMode = blockMode;
+        cryptMode = mode;
+        associatedData = null;
+        ivUsed = false;
+    }
+
+    /**
+     * This method is used to derive the raw bytes of a secret key from a password using PBKDF2.
+     * It is expensive by design, so the keys should be obtained through the KeyCache.
+     * @param password password to be used as a base for the secret key. Can be empty.
+     * @param salt cryptographic salt used in the derivation.
+     * @param kdfParams parameters of the key derivation.
+     * @return raw bytes of the derived key.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     * @see KeyCache#getKey(String, byte[], KdfParams)
+     */
+    static byte[] deriveKey(String password, byte[] salt, KdfParams kdfParams)
+            throws CryptException {
+
         try {
-            factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-            KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITER_COUNT, KEY_LENGTH);
-
-            key = new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
-            iv = new IvParameterSpec(ivArray);
-            this.salt = salt;
-            cryptMode = mode;
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            SecretKeyFactory factory = CryptoEngines.getKeyFactory(kdfParams.getAlgorithm().algorithmName);
+            KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, kdfParams.getIterations(), KEY_LENGTH);
+            return factory.generateSecret(spec).getEncoded();
+        } catch (InvalidKeySpecException e) {
             throw new CryptException(e.getMessage());
         }
     }
-    
+
+    /**
+     * This method is used to generate a new random cryptographic salt.
+     * @return generated salt of SALT_LENGTH bytes.
+     */
+    public static byte[] generateSalt() {
+        byte[] newSalt = new byte[SALT_LENGTH];
+        new SecureRandom().nextBytes(newSalt);
+        return newSalt;
+    }
+
+    /**
+     * This method is used to generate a new random secret key of KEY_LENGTH bits.
+     * @return generated AES key.
+     */
+    public static SecretKey generateKey() {
+        byte[] keyBytes = new byte[KEY_LENGTH / 8];
+        new SecureRandom().nextBytes(keyBytes);
+        return new SecretKeySpec(keyBytes, "AES");
+    }
+
+    /**
+     * This method is used to generate a new random initialisation vector for the CBC mode.
+     * @return generated initialisation vector of IV_LENGTH bytes.
+     */
+    public static byte[] generateIV() {
+        return generateIV(BlockMode.CBC);
+    }
+
+    /**
+     * This method is used to generate a new random initialisation vector for the specified block mode.
+     * @param blockMode block cipher mode of operation.
+     * @return generated initialisation vector of the length required by the block mode.
+     */
+    public static byte[] generateIV(BlockMode blockMode) {
+        byte[] newIV = new byte[blockMode.ivLength];
+        new SecureRandom().nextBytes(newIV);
+        return newIV;
+    }
+
     /**
      * This method is used to get the initialisation vector.
      * @return current initialisation vector of the AES instance.
      */
     public byte[] getIV() {
-        return iv.getIV();
+        return iv.clone();
     }
 
     /**
@@ -155,12 +333,13 @@ public class AES {
      * @param newIV new initialisation vector.
      */
     public void setIV(byte[] newIV) {
-        iv = new IvParameterSpec(newIV);
+        iv = newIV.clone();
+        ivUsed = false;
     }
-    
+
     /**
      * This method is used to get the cryptographic salt.
-     * @return current cryptographic salt of the AES instance.
+     * @return current cryptographic salt of the AES instance or null if it was created with a ready key.
      */
     public byte[] getSalt() {
         return salt;
@@ -173,9 +352,45 @@ public class AES {
     public void setSalt(byte[] newSalt) {
         salt = newSalt;
     }
-    
+
+    /**
+     * This method is used to get the parameters of the key derivation.
+     * @return key derivation parameters of the AES instance or null if it was created with a ready key.
+     */
+    public KdfParams getKdfParams() {
+        return kdfParams;
+    }
+
+    /**
+     * This method is used to get the block cipher mode of operation.
+     * @return current block mode of the AES instance.
+     */
+    public BlockMode getBlockMode() {
+        return blockMode;
+    }
+
+    /**
+     * This method is used to change the block cipher mode of operation. The key is kept
+     * and a new random initialisation vector of the required length is generated.
+     * @param newBlockMode new block mode.
+     */
+    public void setBlockMode(BlockMode newBlockMode) {
+        blockMode = newBlockMode;
+        setIV(generateIV(newBlockMode));
+    }
+
+    /**
+     * This method is used to set the additional data that is authenticated, but not encrypted.
+     * It is only used in the GCM mode and has to be the same during encryption and decryption.
+     * @param data associated data or null if there is none.
+     */
+    public void setAssociatedData(byte[] data) {
+        associatedData = data == null ? null : data.clone();
+    }
+
     /**
      * This method is used to encrypt text provided as the argument using AES.
+     * In the GCM mode every encryption needs a new initialisation vector.
      * @param data string of data to encrypt (plaintext).
      * @return encrypted array of bytes (ciphertext).
      * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to decrypt.
@@ -188,25 +403,22 @@ public class AES {
             throw new InvalidCryptModeException("Encrypt called on a decryption only AES object.");
         } else {
             try {
-                Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-                cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+                Cipher cipher = CryptoEngines.getCipher(blockMode.transformation);
+                init(cipher, Cipher.ENCRYPT_MODE);
                 return cipher.doFinal(data.getBytes());
-            } catch (InvalidKeyException |
-                    InvalidAlgorithmParameterException |
-                    IllegalBlockSizeException |
-                    BadPaddingException |
-                    NoSuchAlgorithmException |
-                    NoSuchPaddingException e) {
+            } catch (IllegalBlockSizeException |
+                    BadPaddingException e) {
                 throw new CryptException(e.getMessage());
             }
         }
     }
-    
+
     /**
      * This method is used to decrypt data provided as the argument using AES.
      * @param data array of bytes do decrypt (ciphertext).
      * @return decrypted text (plaintext).
      * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to encrypt.
+     * @throws AuthenticationException This exception is thrown when the authentication tag does not match in the GCM mode.
      * @throws CryptException This exception is thrown when a cryptographic error occurs.
      */
     public String decrypt(byte[] data)
@@ -215,20 +427,701 @@ public class AES {
         if (cryptMode == CryptMode.ENCRYPTION) {
             throw new InvalidCryptModeException("Decrypt called on an encryption only AES object.");
         } else {
-            Cipher cipher = null;
             try {
-                cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-                cipher.init(Cipher.DECRYPT_MODE, key, iv);
+                Cipher cipher = CryptoEngines.getCipher(blockMode.transformation);
+                init(cipher, Cipher.DECRYPT_MODE);
                 byte[] plainText = cipher.doFinal(data);
                 return new String(plainText);
-            } catch (NoSuchAlgorithmException |
-                    NoSuchPaddingException |
-                    InvalidKeyException |
-                    InvalidAlgorithmParameterException |
-                    IllegalBlockSizeException |
+            } catch (AEADBadTagException e) {
+                throw new AuthenticationException("Invalid password or corrupted data.");
+            } catch (IllegalBlockSizeException |
                     BadPaddingException e) {
                 throw new CryptException(e.getMessage());
             }
         }
     }
+
+    /**
+     * This method is used to encrypt the remaining bytes of a buffer and put the ciphertext into another buffer.
+     * Direct buffers are processed without copying them into intermediate arrays.
+     * The positions of both buffers are advanced. In the GCM mode every encryption needs a new initialisation vector.
+     * @param input buffer with the plaintext between its position and limit.
+     * @param output buffer for the ciphertext. It must have at least getEncryptedLength() bytes remaining.
+     * @return number of bytes put into the output buffer.
+     * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to decrypt.
+     * @throws CryptException Thrown when a cryptographic error occurs or the output buffer is too small.
+     * @see AES#getEncryptedLength(int)
+     */
+    public int encrypt(ByteBuffer input, ByteBuffer output)
+            throws InvalidCryptModeException, CryptException {
+
+        if (cryptMode == CryptMode.DECRYPTION) {
+            throw new InvalidCryptModeException("Encrypt called on a decryption only AES object.");
+        }
+
+        try {
+            Cipher cipher = CryptoEngines.getCipher(blockMode.transformation);
+            init(cipher, Cipher.ENCRYPT_MODE);
+            return cipher.doFinal(input, output);
+        } catch (ShortBufferException |
+                IllegalBlockSizeException |
+                BadPaddingException e) {
+            throw new CryptException(e.getMessage());
+        }
+    }
+
+    /**
+     * This method is used to decrypt the remaining bytes of a buffer and put the plaintext into another buffer.
+     * The positions of both buffers are advanced.
+     * @param input buffer with the ciphertext between its position and limit.
+     * @param output buffer for the plaintext. It must have at least as many bytes remaining as the input.
+     * @return number of bytes put into the output buffer.
+     * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to encrypt.
+     * @throws AuthenticationException This exception is thrown when the authentication tag does not match in the GCM mode.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs or the output buffer is too small.
+     */
+    public int decrypt(ByteBuffer input, ByteBuffer output)
+            throws InvalidCryptModeException, CryptException {
+
+        if (cryptMode == CryptMode.ENCRYPTION) {
+            throw new InvalidCryptModeException("Decrypt called on an encryption only AES object.");
+        }
+
+        try {
+            Cipher cipher = CryptoEngines.getCipher(blockMode.transformation);
+            init(cipher, Cipher.DECRYPT_MODE);
+            return cipher.doFinal(input, output);
+        } catch (AEADBadTagException e) {
+            throw new AuthenticationException("Invalid password or corrupted data.");
+        } catch (ShortBufferException |
+                IllegalBlockSizeException |
+                BadPaddingException e) {
+            throw new CryptException(e.getMessage());
+        }
+    }
+
+    /**
+     * This method is used to calculate the length of the ciphertext of plaintext with the given length.
+     * @param plainLength length of the plaintext in bytes.
+     * @return length of the ciphertext in bytes.
+     */
+    public int getEncryptedLength(int plainLength) {
+        if (blockMode == BlockMode.GCM) {
+            return plainLength + TAG_LENGTH / 8;
+        }
+        return (plainLength / 16 + 1) * 16;
+    }
+
+    /**
+     * This method is used to encrypt data read from a stream and write the ciphertext to another stream.
+     * The data is processed in chunks of STREAM_CHUNK_SIZE bytes, so the memory usage does not depend on its size.
+     * The streams are not closed.
+     * @param in stream to read the plaintext from.
+     * @param out stream to write the ciphertext to.
+     * @return number of bytes written to the output stream.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to decrypt.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    public long encrypt(InputStream in, OutputStream out)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        if (cryptMode == CryptMode.DECRYPTION) {
+            throw new InvalidCryptModeException("Encrypt called on a decryption only AES object.");
+        }
+        return transform(Cipher.ENCRYPT_MODE, in, out);
+    }
+
+    /**
+     * This method is used to decrypt data read from a stream and write the plaintext to another stream.
+     * The data is processed in chunks of STREAM_CHUNK_SIZE bytes, so the memory usage does not depend on its size.
+     * In the GCM mode the plaintext is only released after the authentication tag is verified,
+     * so the whole plaintext is buffered by the cipher. The streams are not closed.
+     * @param in stream to read the ciphertext from.
+     * @param out stream to write the plaintext to.
+     * @return number of bytes written to the output stream.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to encrypt.
+     * @throws AuthenticationException This exception is thrown when the authentication tag does not match in the GCM mode.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public long decrypt(InputStream in, OutputStream out)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        if (cryptMode == CryptMode.ENCRYPTION) {
+            throw new InvalidCryptModeException("Decrypt called on an encryption only AES object.");
+        }
+        return transform(Cipher.DECRYPT_MODE, in, out);
+    }
+
+    /**
+     * This method is used to encrypt data read from a channel and write the ciphertext to another channel.
+     * The data is processed in chunks of STREAM_CHUNK_SIZE bytes, so the memory usage does not depend on its size.
+     * The channels are not closed.
+     * @param in channel to read the plaintext from.
+     * @param out channel to write the ciphertext to.
+     * @return number of bytes written to the output channel.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to decrypt.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    public long encrypt(ReadableByteChannel in, WritableByteChannel out)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        if (cryptMode == CryptMode.DECRYPTION) {
+            throw new InvalidCryptModeException("Encrypt called on a decryption only AES object.");
+        }
+        return transform(Cipher.ENCRYPT_MODE, in, out);
+    }
+
+    /**
+     * This method is used to decrypt data read from a channel and write the plaintext to another channel.
+     * The data is processed in chunks of STREAM_CHUNK_SIZE bytes, so the memory usage does not depend on its size.
+     * In the GCM mode the plaintext is only released after the authentication tag is verified,
+     * so the whole plaintext is buffered by the cipher. The channels are not closed.
+     * @param in channel to read the ciphertext from.
+     * @param out channel to write the plaintext to.
+     * @return number of bytes written to the output channel.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to encrypt.
+     * @throws AuthenticationException This exception is thrown when the authentication tag does not match in the GCM mode.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    public long decrypt(ReadableByteChannel in, WritableByteChannel out)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        if (cryptMode == CryptMode.ENCRYPTION) {
+            throw new InvalidCryptModeException("Decrypt called on an encryption only AES object.");
+        }
+        return transform(Cipher.DECRYPT_MODE, in, out);
+    }
+
+    /**
+     * This method is used to initialise a cipher with the key, initialisation vector and associated data of the object.
+     * In the GCM mode an initialisation vector can be used for encryption only once.
+     * @param cipher cipher to initialise.
+     * @param opMode operation mode of the cipher (Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE).
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    private void init(Cipher cipher, int opMode) throws CryptException {
+        AlgorithmParameterSpec paramSpec;
+        if (blockMode == BlockMode.GCM) {
+            if (opMode == Cipher.ENCRYPT_MODE && ivUsed) {
+                throw new CryptException("The initialisation vector was already used for encryption.");
+            }
+            paramSpec = new GCMParameterSpec(TAG_LENGTH, iv);
+        } else {
+            paramSpec = new IvParameterSpec(iv);
+        }
+
+        try {
+            cipher.init(opMode, key, paramSpec);
+            if (blockMode == BlockMode.GCM && associatedData != null) {
+                cipher.updateAAD(associatedData);
+            }
+        } catch (InvalidKeyException |
+                InvalidAlgorithmParameterException e) {
+            throw new CryptException(e.getMessage());
+        }
+
+        if (opMode == Cipher.ENCRYPT_MODE) {
+            ivUsed = true;
+        }
+    }
+
+    /**
+     * This method is used to initialise a new cipher with the key and initialisation vector of the object.
+     * The streaming methods hold the cipher while calling the streams, so they do not use the per-thread ciphers.
+     * @param opMode operation mode of the cipher (Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE).
+     * @return initialised cipher.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    private Cipher initCipher(int opMode) throws CryptException {
+        try {
+            Cipher cipher = Cipher.getInstance(blockMode.transformation);
+            init(cipher, opMode);
+            return cipher;
+        } catch (NoSuchAlgorithmException |
+                NoSuchPaddingException e) {
+            throw new CryptException(e.getMessage());
+        }
+    }
+
+    /**
+     * This method is used to pass all bytes of a stream through a cipher chunk by chunk.
+     * The same cipher and buffers are used for every chunk.
+     * @param opMode operation mode of the cipher (Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE).
+     * @param in stream to read the input from.
+     * @param out stream to write the output to.
+     * @return number of bytes written to the output stream.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    private long transform(int opMode, InputStream in, OutputStream out)
+            throws IOException, CryptException {
+
+        Cipher cipher = initCipher(opMode);
+        byte[] inBuffer = new byte[STREAM_CHUNK_SIZE];
+        byte[] outBuffer = new byte[cipher.getOutputSize(STREAM_CHUNK_SIZE + cipher.getBlockSize())];
+        long written = 0;
+
+        try {
+            int read = in.read(inBuffer);
+            while (read != -1) {
+                int length = cipher.update(inBuffer, 0, read, outBuffer);
+                out.write(outBuffer, 0, length);
+                written += length;
+                read = in.read(inBuffer);
+            }
+
+            if (outBuffer.length < cipher.getOutputSize(0)) {
+                outBuffer = new byte[cipher.getOutputSize(0)];
+            }
+            int length = cipher.doFinal(outBuffer, 0);
+            out.write(outBuffer, 0, length);
+            written += length;
+        } catch (AEADBadTagException e) {
+            throw new AuthenticationException("Invalid password or corrupted data.");
+        } catch (ShortBufferException |
+                IllegalBlockSizeException |
+                BadPaddingException e) {
+            throw new CryptException(e.getMessage());
+        }
+
+        return written;
+    }
+
+    /**
+     * This method is used to pass all bytes of a channel through a cipher chunk by chunk.
+     * The same cipher and buffers are used for every chunk.
+     * @param opMode operation mode of the cipher (Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE).
+     * @param in channel to read the input from.
+     * @param out channel to write the output to.
+     * @return number of bytes written to the output channel.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    private long transform(int opMode, ReadableByteChannel in, WritableByteChannel out)
+            throws IOException, CryptException {
+
+        Cipher cipher = initCipher(opMode);
+        ByteBuffer inBuffer = ByteBuffer.allocate(STREAM_CHUNK_SIZE);
+        ByteBuffer outBuffer = ByteBuffer.allocate(cipher.getOutputSize(STREAM_CHUNK_SIZE + cipher.getBlockSize()));
+        long written = 0;
+
+        try {
+            while (in.read(inBuffer) != -1) {
+                inBuffer.flip();
+                cipher.update(inBuffer, outBuffer);
+                written += drain(outBuffer, out);
+                inBuffer.clear();
+            }
+
+            inBuffer.flip();
+            if (outBuffer.capacity() < cipher.getOutputSize(inBuffer.remaining())) {
+                outBuffer = ByteBuffer.allocate(cipher.getOutputSize(inBuffer.remaining()));
+            }
+            cipher.doFinal(inBuffer, outBuffer);
+            written += drain(outBuffer, out);
+        } catch (AEADBadTagException e) {
+            throw new AuthenticationException("Invalid password or corrupted data.");
+        } catch (ShortBufferException |
+                IllegalBlockSizeException |
+                BadPaddingException e) {
+            throw new CryptException(e.getMessage());
+        }
+
+        return written;
+    }
+
+    /**
+     * This method is used to write all remaining bytes of a buffer to a channel and clear the buffer.
+     * @param buffer buffer to write in write mode.
+     * @param out channel to write to.
+     * @return number of bytes written.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     */
+    private static int drain(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+        buffer.flip();
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+        return length;
+    }
+
+    /**
+     * This method is used to set the pool used to encrypt and decrypt segments in parallel.
+     * The common pool is used by default.
+     * @param pool new pool.
+     */
+    public static void setSegmentPool(ForkJoinPool pool) {
+        segmentPool = pool;
+    }
+
+    /**
+     * This method is used to encrypt data divided into segments of a fixed size using AES-GCM. The segments are
+     * encrypted independently in parallel. Each one has its own nonce derived from the initialisation vector
+     * and the segment index, and its own authentication tag, which also covers the associated data, the index
+     * and whether the segment is the last one. Because of that the segments cannot be reordered, removed or truncated.
+     * Every segment except the last one has exactly segmentSize bytes of plaintext.
+     * @param data plaintext to encrypt.
+     * @param segmentSize number of plaintext bytes in a segment.
+     * @return concatenated encrypted segments.
+     * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to decrypt.
+     * @throws CryptException Thrown when a cryptographic error occurs or the object does not use the GCM mode.
+     */
+    public byte[] encryptSegmented(byte[] data, int segmentSize)
+            throws InvalidCryptModeException, CryptException {
+
+        checkSegmented(segmentSize);
+        byte[] cipherText = new byte[getSegmentedLength(data.length, segmentSize)];
+        encryptSegmented(ByteBuffer.wrap(data), ByteBuffer.wrap(cipherText), segmentSize);
+
+        return cipherText;
+    }
+
+    /**
+     * This method is used to encrypt the remaining bytes of a buffer in segments and put the concatenated
+     * encrypted segments into another buffer. The positions of both buffers are advanced.
+     * @param input buffer with the plaintext between its position and limit.
+     * @param output buffer for the ciphertext. It must have at least getSegmentedLength() bytes remaining.
+     * @param segmentSize number of plaintext bytes in a segment.
+     * @return number of bytes put into the output buffer.
+     * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to decrypt.
+     * @throws CryptException Thrown when a cryptographic error occurs, the object does not use the GCM mode
+     * or the output buffer is too small.
+     * @see AES#encryptSegmented(byte[], int)
+     */
+    public int encryptSegmented(ByteBuffer input, ByteBuffer output, int segmentSize)
+            throws InvalidCryptModeException, CryptException {
+
+        if (cryptMode == CryptMode.DECRYPTION) {
+            throw new InvalidCryptModeException("Encrypt called on a decryption only AES object.");
+        }
+        checkSegmented(segmentSize);
+        if (ivUsed) {
+            throw new CryptException("The initialisation vector was already used for encryption.");
+        }
+
+        int segmentCount = Math.max(1, (input.remaining() + segmentSize - 1) / segmentSize);
+        int cipherLength = getSegmentedLength(input.remaining(), segmentSize);
+        if (output.remaining() < cipherLength) {
+            throw new CryptException("Output buffer is too small.");
+        }
+
+        runSegments(new SegmentTask(Cipher.ENCRYPT_MODE, input.slice(), output.slice(),
+                segmentSize, 0, segmentCount, segmentCount));
+        ivUsed = true;
+
+        input.position(input.limit());
+        output.position(output.position() + cipherLength);
+        return cipherLength;
+    }
+
+    /**
+     * This method is used to decrypt data encrypted with encryptSegmented(). The segments are decrypted in parallel.
+     * @param data concatenated encrypted segments.
+     * @param segmentSize number of plaintext bytes in a segment. It has to be the same as during encryption.
+     * @return decrypted plaintext.
+     * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to encrypt.
+     * @throws AuthenticationException This exception is thrown when the authentication tag of any segment does not match.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs or the object does not use the GCM mode.
+     * @see AES#encryptSegmented(byte[], int)
+     */
+    public byte[] decryptSegmented(byte[] data, int segmentSize)
+            throws InvalidCryptModeException, CryptException {
+
+        checkSegmented(segmentSize);
+        byte[] plainText = new byte[getSegmentedPlainLength(data.length, segmentSize)];
+        decryptSegmented(ByteBuffer.wrap(data), ByteBuffer.wrap(plainText), segmentSize);
+
+        return plainText;
+    }
+
+    /**
+     * This method is used to decrypt the remaining bytes of a buffer encrypted with encryptSegmented() and put
+     * the plaintext into another buffer. The positions of both buffers are advanced.
+     * @param input buffer with the concatenated encrypted segments between its position and limit.
+     * @param output buffer for the plaintext. It must have at least as many bytes remaining as the input.
+     * @param segmentSize number of plaintext bytes in a segment. It has to be the same as during encryption.
+     * @return number of bytes put into the output buffer.
+     * @throws InvalidCryptModeException This exception is thrown when the method is called on an object set up to encrypt.
+     * @throws AuthenticationException This exception is thrown when the authentication tag of any segment does not match.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs, the object does not use
+     * the GCM mode or the output buffer is too small.
+     * @see AES#encryptSegmented(ByteBuffer, ByteBuffer, int)
+     */
+    public int decryptSegmented(ByteBuffer input, ByteBuffer output, int segmentSize)
+            throws InvalidCryptModeException, CryptException {
+
+        if (cryptMode == CryptMode.ENCRYPTION) {
+            throw new InvalidCryptModeException("Decrypt called on an encryption only AES object.");
+        }
+        checkSegmented(segmentSize);
+
+        int encryptedSize = segmentSize + TAG_LENGTH / 8;
+        int segmentCount = Math.max(1, (input.remaining() + encryptedSize - 1) / encryptedSize);
+        int plainLength = getSegmentedPlainLength(input.remaining(), segmentSize);
+        if (output.remaining() < plainLength) {
+            throw new CryptException("Output buffer is too small.");
+        }
+
+        runSegments(new SegmentTask(Cipher.DECRYPT_MODE, input.slice(), output.slice(),
+                segmentSize, 0, segmentCount, segmentCount));
+
+        input.position(input.limit());
+        output.position(output.position() + plainLength);
+        return plainLength;
+    }
+
+    /**
+     * This method is used to decrypt a single segment of data encrypted with encryptSegmented(), without
+     * decrypting the other segments. The position of the output buffer is advanced.
+     * @param input buffer with the encrypted segment between its position and limit, including its tag.
+     * @param output buffer for the plaintext. It must have at least as many bytes remaining as the segment without its tag.
+     * @param index index of the segment.
+     * @param last true if the segment is the last one.
+     * @return number of plaintext bytes put into the output buffer.
+     * @throws InvalidCryptModeException This exception is thrown when this object is not used for decryption.
+     * @throws AuthenticationException This exception is thrown when the authentication tag of the segment does not match.
+     * @throws CryptException This exception is thrown when the object does not use the GCM mode or another cryptographic error occurs.
+     * @see AES#encryptSegmented(ByteBuffer, ByteBuffer, int)
+     */
+    public int decryptSegment(ByteBuffer input, ByteBuffer output, int index, boolean last)
+            throws InvalidCryptModeException, CryptException {
+        if (cryptMode == CryptMode.ENCRYPTION) {
+            throw new InvalidCryptModeException("Decrypt called on an encryption only AES object.");
+        }
+        checkSegmented(1);
+
+        int start = output.position();
+        cryptSegment(Cipher.DECRYPT_MODE, input, output, index, last);
+        return output.position() - start;
+    }
+
+    /**
+     * This method is used to encrypt or decrypt a single segment with the nonce and associated data of its index.
+     * @param opMode operation mode of the cipher (Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE).
+     * @param in buffer with the input of the segment between its position and limit.
+     * @param out buffer for the output of the segment, starting at its position.
+     * @param index index of the segment.
+     * @param last true if the segment is the last one.
+     * @throws AuthenticationException This exception is thrown when the authentication tag does not match.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    private void cryptSegment(int opMode, ByteBuffer in, ByteBuffer out, int index, boolean last) throws CryptException {
+        byte[] nonce = iv.clone();
+        for (int i = 0; i < Integer.BYTES; i++) {
+            nonce[nonce.length - 1 - i] ^= (byte) (index >>> (8 * i));
+        }
+        byte[] segmentInfo = ByteBuffer.allocate(SEGMENT_INFO_LENGTH)
+                .putInt(index)
+                .put((byte) (last ? 1 : 0))
+                .array();
+
+        try {
+            Cipher cipher = CryptoEngines.getCipher(BlockMode.GCM.transformation);
+            cipher.init(opMode, key, new GCMParameterSpec(TAG_LENGTH, nonce));
+            if (associatedData != null) {
+                cipher.updateAAD(associatedData);
+            }
+            cipher.updateAAD(segmentInfo);
+            cipher.doFinal(in, out);
+        } catch (AEADBadTagException e) {
+            throw new AuthenticationException("Invalid password or corrupted data.");
+        } catch (InvalidKeyException |
+                InvalidAlgorithmParameterException |
+                ShortBufferException |
+                IllegalBlockSizeException |
+                BadPaddingException e) {
+            throw new CryptException(e.getMessage());
+        }
+    }
+
+    /**
+     * This method is used to calculate the length of the ciphertext of segmented plaintext with the given length.
+     * @param plainLength length of the plaintext in bytes.
+     * @param segmentSize number of plaintext bytes in a segment.
+     * @return length of the concatenated encrypted segments in bytes.
+     */
+    public static int getSegmentedLength(int plainLength, int segmentSize) {
+        int segmentCount = Math.max(1, (plainLength + segmentSize - 1) / segmentSize);
+        return plainLength + segmentCount * (TAG_LENGTH / 8);
+    }
+
+    /**
+     * This method is used to calculate the length of the plaintext of concatenated encrypted segments.
+     * @param cipherLength length of the concatenated encrypted segments in bytes.
+     * @param segmentSize number of plaintext bytes in a segment.
+     * @return length of the plaintext in bytes.
+     * @throws AuthenticationException This exception is thrown when the last segment is shorter than a tag.
+     */
+    private static int getSegmentedPlainLength(int cipherLength, int segmentSize) throws AuthenticationException {
+        int tagLength = TAG_LENGTH / 8;
+        int encryptedSize = segmentSize + tagLength;
+        int segmentCount = Math.max(1, (cipherLength + encryptedSize - 1) / encryptedSize);
+        if (cipherLength - (segmentCount - 1) * encryptedSize < tagLength) {
+            throw new AuthenticationException("Invalid password or corrupted data.");
+        }
+        return cipherLength - segmentCount * tagLength;
+    }
+
+    /**
+     * This method is used to check if the object can process segmented data.
+     * @param segmentSize number of plaintext bytes in a segment.
+     * @throws CryptException This exception is thrown when the object does not use the GCM mode or the size is invalid.
+     */
+    private void checkSegmented(int segmentSize) throws CryptException {
+        if (blockMode != BlockMode.GCM) {
+            throw new CryptException("Segmented encryption requires the GCM mode.");
+        }
+        if (segmentSize <= 0) {
+            throw new CryptException(String.format("Segment size of %d is invalid.", segmentSize));
+        }
+    }
+
+    /**
+     * This method is used to run a segment task in the segment pool and unwrap its exceptions.
+     * @param task task to run.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs in any of the segments.
+     */
+    private static void runSegments(SegmentTask task) throws CryptException {
+        try {
+            segmentPool.invoke(task);
+        } catch (SegmentException ex) {
+            throw ex.wrapped;
+        }
+    }
+
+    /**
+     * Unchecked exception used to pass a cryptographic exception out of a segment task.
+     */
+    private static class SegmentException extends RuntimeException {
+
+        /**
+         * The wrapped exception.
+         */
+        private final CryptException wrapped;
+
+        /**
+         * Constructor of the exception.
+         * @param wrapped the wrapped exception.
+         */
+        private SegmentException(CryptException wrapped) {
+            super(wrapped);
+            this.wrapped = wrapped;
+        }
+    }
+
+    /**
+     * Task encrypting or decrypting a range of segments. Ranges longer than one segment are split in half and
+     * processed in parallel. Each segment uses the cipher of the worker thread that processes it.
+     */
+    private class SegmentTask extends RecursiveAction {
+
+        /**
+         * Operation mode of the cipher (Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE).
+         */
+        private final int opMode;
+
+        /**
+         * Input of the whole operation starting at index 0.
+         */
+        private final ByteBuffer input;
+
+        /**
+         * Output of the whole operation starting at index 0. Every task writes to a separate region.
+         */
+        private final ByteBuffer output;
+
+        /**
+         * Number of plaintext bytes in a segment.
+         */
+        private final int segmentSize;
+
+        /**
+         * Index of the first segment of the range. Inclusive.
+         */
+        private final int from;
+
+        /**
+         * Index of the last segment of the range. Exclusive.
+         */
+        private final int to;
+
+        /**
+         * Total number of segments.
+         */
+        private final int segmentCount;
+
+        /**
+         * Constructor of the task.
+         * @param opMode operation mode of the cipher (Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE).
+         * @param input input of the whole operation.
+         * @param output output of the whole operation.
+         * @param segmentSize number of plaintext bytes in a segment.
+         * @param from index of the first segment of the range. Inclusive.
+         * @param to index of the last segment of the range. Exclusive.
+         * @param segmentCount total number of segments.
+         */
+        private SegmentTask(int opMode, ByteBuffer input, ByteBuffer output, int segmentSize, int from, int to, int segmentCount) {
+            this.opMode = opMode;
+            this.input = input;
+            this.output = output;
+            this.segmentSize = segmentSize;
+            this.from = from;
+            this.to = to;
+            this.segmentCount = segmentCount;
+        }
+
+        /**
+         * This method is used to process the range of segments.
+         */
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SegmentTask(opMode, input, output, segmentSize, from, middle, segmentCount),
+                        new SegmentTask(opMode, input, output, segmentSize, middle, to, segmentCount));
+                return;
+            }
+
+            try {
+                processSegment(from);
+            } catch (CryptException ex) {
+                throw new SegmentException(ex);
+            }
+        }
+
+        /**
+         * This method is used to encrypt or decrypt a single segment.
+         * @param index index of the segment.
+         * @throws CryptException This exception is thrown when a cryptographic error occurs.
+         */
+        private void processSegment(int index) throws CryptException {
+            int tagLength = TAG_LENGTH / 8;
+            int plainOffset = index * segmentSize;
+            int cipherOffset = index * (segmentSize + tagLength);
+            boolean last = index == segmentCount - 1;
+
+            int inOffset, inLength, outOffset;
+            if (opMode == Cipher.ENCRYPT_MODE) {
+                inOffset = plainOffset;
+                inLength = last ? input.limit() - plainOffset : segmentSize;
+                outOffset = cipherOffset;
+            } else {
+                inOffset = cipherOffset;
+                inLength = last ? input.limit() - cipherOffset : segmentSize + tagLength;
+                outOffset = plainOffset;
+            }
+
+            ByteBuffer in = input.duplicate();
+            in.limit(inOffset + inLength).position(inOffset);
+            ByteBuffer out = output.duplicate();
+            out.position(outOffset);
+            cryptSegment(opMode, in, out, index, last);
+        }
+    }
 }
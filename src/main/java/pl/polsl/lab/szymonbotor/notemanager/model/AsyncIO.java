@@ -0,0 +1,289 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class providing the executors and the file operations used by the asynchronous methods of notes.
+ * Key derivation and encryption run on a CPU executor with one thread per processor. Files are read and written
+ * with asynchronous file channels bound to a small I/O executor, so many operations can run at once
+ * without a thread for each of them. An operation stops at the next step after its result future is cancelled.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public final class AsyncIO {
+
+    /**
+     * Number of threads of the default I/O executor.
+     */
+    public static final int IO_THREADS = 4;
+
+    /**
+     * Executor used for key derivation and encryption.
+     */
+    private static ExecutorService cryptoExecutor = newExecutor(Runtime.getRuntime().availableProcessors(), "note-crypto-");
+
+    /**
+     * Executor used by the asynchronous file channels.
+     */
+    private static ExecutorService ioExecutor = newExecutor(IO_THREADS, "note-io-");
+
+    /**
+     * Private constructor, as the class only has static methods.
+     */
+    private AsyncIO() {
+
+    }
+
+    /**
+     * This method is used to get the executor used for key derivation and encryption.
+     * @return the CPU executor.
+     */
+    public static ExecutorService getCryptoExecutor() {
+        return cryptoExecutor;
+    }
+
+    /**
+     * This method is used to set the executor used for key derivation and encryption.
+     * @param executor new CPU executor.
+     */
+    public static void setCryptoExecutor(ExecutorService executor) {
+        cryptoExecutor = executor;
+    }
+
+    /**
+     * This method is used to get the executor used by the asynchronous file channels.
+     * @return the I/O executor.
+     */
+    public static ExecutorService getIoExecutor() {
+        return ioExecutor;
+    }
+
+    /**
+     * This method is used to set the executor used by the asynchronous file channels.
+     * @param executor new I/O executor.
+     */
+    public static void setIoExecutor(ExecutorService executor) {
+        ioExecutor = executor;
+    }
+
+    /**
+     * This method is used to read a whole file asynchronously.
+     * @param path path of the file.
+     * @param operation future of the whole operation. The read stops when it is completed or cancelled.
+     * @return future of a heap buffer with the file between its position and limit.
+     */
+    public static CompletableFuture<ByteBuffer> readAll(Path path, Future<?> operation) {
+        CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+
+        AsynchronousFileChannel channel;
+        ByteBuffer buffer;
+        try {
+            channel = AsynchronousFileChannel.open(path, Set.of(StandardOpenOption.READ), ioExecutor);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IOException("The note file is too large.");
+            }
+            buffer = ByteBuffer.allocate((int) size);
+        }
+        catch (IOException ex) {
+            result.completeExceptionally(ex);
+            return result;
+        }
+
+        channel.read(buffer, 0, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer count, Void attachment) {
+                if (operation.isDone()) {
+                    close(channel, result, new CancellationException("The read was cancelled."));
+                } else if (count < 0 || !buffer.hasRemaining()) {
+                    buffer.flip();
+                    close(channel, result, null);
+                    result.complete(buffer);
+                } else {
+                    channel.read(buffer, buffer.position(), null, this);
+                }
+            }
+
+            @Override
+            public void failed(Throwable ex, Void attachment) {
+                close(channel, result, ex);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * This method is used to write buffers to a file asynchronously. The file is created or truncated.
+     * @param path path of the file.
+     * @param force true if the content should be synchronised with the disk before the file is closed.
+     * @param operation future of the whole operation. The write stops when it is completed or cancelled.
+     * @param buffers data to write to the file.
+     * @return future completed when the file is written and closed.
+     */
+    public static CompletableFuture<Void> writeAll(Path path, boolean force, Future<?> operation, ByteBuffer... buffers) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(path, Set.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING), ioExecutor);
+        }
+        catch (IOException ex) {
+            result.completeExceptionally(ex);
+            return result;
+        }
+
+        new CompletionHandler<Integer, Long>() {
+
+            /**
+             * Index of the buffer being written.
+             */
+            private int index = 0;
+
+            /**
+             * This method is used to write the next part of the data or finish the write.
+             * @param position position in the file at which the next part is written.
+             */
+            private void next(long position) {
+                while (index < buffers.length && !buffers[index].hasRemaining()) {
+                    index++;
+                }
+
+                if (operation.isDone()) {
+                    close(channel, result, new CancellationException("The write was cancelled."));
+                } else if (index < buffers.length) {
+                    channel.write(buffers[index], position, position, this);
+                } else {
+                    try {
+                        if (force) {
+                            channel.force(false);
+                        }
+                        close(channel, result, null);
+                        result.complete(null);
+                    }
+                    catch (IOException ex) {
+                        close(channel, result, ex);
+                    }
+                }
+            }
+
+            @Override
+            public void completed(Integer count, Long position) {
+                next(position + count);
+            }
+
+            @Override
+            public void failed(Throwable ex, Long position) {
+                close(channel, result, ex);
+            }
+        }.completed(0, 0L);
+
+        return result;
+    }
+
+    /**
+     * This method is used to run a step of an asynchronous operation. Checked exceptions are wrapped in a CompletionException.
+     * @param operation future of the whole operation.
+     * @param step the step.
+     * @param <T> type of the result of the step.
+     * @return result of the step.
+     * @throws CancellationException Thrown when the operation was completed or cancelled before the step started.
+     * @throws CompletionException Thrown when the step threw a checked exception.
+     */
+    public static <T> T call(Future<?> operation, Callable<T> step) {
+        if (operation.isDone()) {
+            throw new CancellationException("The operation was cancelled.");
+        }
+
+        try {
+            return step.call();
+        }
+        catch (RuntimeException ex) {
+            throw ex;
+        }
+        catch (Exception ex) {
+            throw new CompletionException(ex);
+        }
+    }
+
+    /**
+     * This method is used to complete the future of an operation with the outcome of its last stage.
+     * Exceptions are passed without the CompletionException wrapping them. A cancelled operation is not changed.
+     * @param stage last stage of the operation.
+     * @param operation future of the whole operation.
+     * @param <T> type of the result.
+     */
+    public static <T> void forward(CompletableFuture<? extends T> stage, CompletableFuture<T> operation) {
+        stage.whenComplete((value, ex) -> {
+            if (ex != null) {
+                operation.completeExceptionally(unwrap(ex));
+            } else {
+                operation.complete(value);
+            }
+        });
+    }
+
+    /**
+     * This method is used to extract the cause of an exception thrown by a stage of a future.
+     * @param ex exception passed to a stage.
+     * @return the exception thrown by the operation.
+     */
+    public static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    /**
+     * This method is used to close a channel and complete a future exceptionally if an error occurred.
+     * @param channel closed channel.
+     * @param result future of the operation on the channel.
+     * @param error error of the operation or null.
+     */
+    private static void close(AsynchronousFileChannel channel, CompletableFuture<?> result, Throwable error) {
+        try {
+            channel.close();
+        }
+        catch (IOException ex) {
+            if (error == null) {
+                error = ex;
+            } else {
+                error.addSuppressed(ex);
+            }
+        }
+        if (error != null) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * This method is used to create a fixed executor of daemon threads.
+     * @param threads number of threads.
+     * @param prefix prefix of the names of the threads.
+     * @return the executor.
+     */
+    private static ExecutorService newExecutor(int threads, String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, factory);
+    }
+}
@@ -0,0 +1,299 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Class used to save edited notes in the background. A watched note is overwritten when it was not changed
+ * for the autosave delay, so a burst of changes, such as typing, is saved with a single write instead of one per change.
+ * The notes are overwritten with Note.overwriteAsync(), so the editing thread is not blocked, and the number of writes
+ * running at once is limited. Only notes that have a file are saved. A failed write is retried after the delay.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+public class Autosave implements AutoCloseable {
+
+    /**
+     * Default time in milliseconds without changes after which a note is saved.
+     */
+    public static final long DEFAULT_DELAY = 1000;
+
+    /**
+     * Default maximum number of notes written at once.
+     */
+    public static final int DEFAULT_MAX_WRITES = 4;
+
+    /**
+     * Time without changes after which a note is saved in nanoseconds.
+     */
+    private final long delay;
+
+    /**
+     * Permits of the writes that may be started.
+     */
+    private final Semaphore writePermits;
+
+    /**
+     * Thread waiting for the notes to stop changing.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Listener registered in the watched notes.
+     */
+    private final Consumer<Note> listener;
+
+    /**
+     * Notes with the listener of the autosave.
+     */
+    private final Set<Note> watched;
+
+    /**
+     * Changed notes that are not saved yet with the time of their last change from System.nanoTime().
+     */
+    private final Map<Note, Long> dirty;
+
+    /**
+     * Notes being written with futures completed when their writes finish. An entry is added before the write starts
+     * and removed before its future is completed.
+     */
+    private final Map<Note, CompletableFuture<Void>> writing;
+
+    /**
+     * Number of completed writes.
+     */
+    private final AtomicLong saveCount;
+
+    /**
+     * Exception thrown by the last failed write or null.
+     */
+    private volatile Throwable lastError;
+
+    /**
+     * Default constructor of the Autosave class using the default delay and limit of writes.
+     */
+    public Autosave() {
+        this(DEFAULT_DELAY, DEFAULT_MAX_WRITES);
+    }
+
+    /**
+     * Constructor of the Autosave class.
+     * @param delayMillis time in milliseconds without changes after which a note is saved.
+     * @param maxWrites maximum number of notes written at once.
+     * @throws IllegalArgumentException Thrown when the delay is negative or the limit of writes is not positive.
+     */
+    public Autosave(long delayMillis, int maxWrites) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException(String.format("Autosave delay of %d ms is invalid.", delayMillis));
+        }
+        if (maxWrites < 1) {
+            throw new IllegalArgumentException(String.format("Maximum number of writes of %d is invalid.", maxWrites));
+        }
+
+        delay = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        writePermits = new Semaphore(maxWrites);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "note-autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+        listener = this::changed;
+        watched = ConcurrentHashMap.newKeySet();
+        dirty = new ConcurrentHashMap<>();
+        writing = new ConcurrentHashMap<>();
+        saveCount = new AtomicLong();
+        lastError = null;
+    }
+
+    /**
+     * This method is used to start saving a note automatically after it is changed. A note that is already
+     * not saved is scheduled at once.
+     * @param note watched note.
+     */
+    public void watch(Note note) {
+        if (!watched.add(note)) {
+            return;
+        }
+        note.addChangeListener(listener);
+        if (!note.isSaved()) {
+            changed(note);
+        }
+    }
+
+    /**
+     * This method is used to stop saving a note automatically. A scheduled save of the note is dropped,
+     * but a write that already started is finished.
+     * @param note note that is no longer watched.
+     */
+    public void unwatch(Note note) {
+        watched.remove(note);
+        note.removeChangeListener(listener);
+        dirty.remove(note);
+    }
+
+    /**
+     * This method is used to record a change of a note. It is called on the editing thread, so it only stores
+     * the time of the change and schedules a check when the note was not waiting for a save yet.
+     * @param note changed note.
+     */
+    private void changed(Note note) {
+        if (dirty.put(note, System.nanoTime()) == null) {
+            schedule(note, delay);
+        }
+    }
+
+    /**
+     * This method is used to schedule a check of a changed note.
+     * @param note changed note.
+     * @param wait time to wait in nanoseconds.
+     */
+    private void schedule(Note note, long wait) {
+        try {
+            scheduler.schedule(() -> check(note), wait, TimeUnit.NANOSECONDS);
+        }
+        catch (RejectedExecutionException ex) {
+            // The autosave is closed and close() saves the remaining notes.
+        }
+    }
+
+    /**
+     * This method is used to save a changed note if it was not changed for the delay. Otherwise the check is
+     * scheduled again for the moment the delay passes. It runs on the scheduler thread.
+     * @param note changed note.
+     */
+    private void check(Note note) {
+        Long lastChange = dirty.get(note);
+        if (lastChange == null) {
+            return;
+        }
+
+        long wait = lastChange + delay - System.nanoTime();
+        if (wait > 0) {
+            schedule(note, wait);
+            return;
+        }
+
+        if (writing.containsKey(note) || !writePermits.tryAcquire()) {
+            schedule(note, Math.max(delay, TimeUnit.MILLISECONDS.toNanos(1)));
+            return;
+        }
+        if (!dirty.remove(note, lastChange)) {
+            writePermits.release();
+            schedule(note, delay);
+            return;
+        }
+
+        if (!note.hasFile() || note.isSaved()) {
+            writePermits.release();
+            return;
+        }
+        write(note);
+    }
+
+    /**
+     * This method is used to start the write of a note. A permit of the writes must be acquired before.
+     * @param note written note.
+     */
+    private void write(Note note) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        writing.put(note, done);
+
+        CompletableFuture<Void> write;
+        try {
+            write = note.overwriteAsync();
+        }
+        catch (RuntimeException ex) {
+            writing.remove(note, done);
+            writePermits.release();
+            failed(note, ex);
+            done.complete(null);
+            return;
+        }
+
+        write.whenComplete((ignored, ex) -> {
+            writing.remove(note, done);
+            writePermits.release();
+            if (ex != null) {
+                failed(note, AsyncIO.unwrap(ex));
+            } else {
+                saveCount.incrementAndGet();
+            }
+            done.complete(null);
+        });
+    }
+
+    /**
+     * This method is used to record a failed write and retry it after the delay.
+     * @param note note that was not written.
+     * @param ex exception thrown by the write.
+     */
+    private void failed(Note note, Throwable ex) {
+        lastError = ex;
+        if (dirty.putIfAbsent(note, System.nanoTime()) == null) {
+            schedule(note, delay);
+        }
+    }
+
+    /**
+     * This method is used to get the number of notes waiting for a save.
+     * @return number of changed notes that are not being written.
+     */
+    public int getPendingCount() {
+        return dirty.size();
+    }
+
+    /**
+     * This method is used to get the number of writes completed by the autosave.
+     * @return number of successful writes.
+     */
+    public long getSaveCount() {
+        return saveCount.get();
+    }
+
+    /**
+     * This method is used to get the exception thrown by the last failed write.
+     * @return the exception or null if no write failed.
+     */
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    /**
+     * This method is used to stop the autosave. The writes that already started are finished and the notes waiting
+     * for a save are saved at once on the calling thread.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+
+        for (CompletableFuture<Void> write : writing.values()) {
+            write.exceptionally(ex -> null).join();
+        }
+
+        for (Note note : watched) {
+            note.removeChangeListener(listener);
+        }
+        watched.clear();
+
+        for (Note note : dirty.keySet()) {
+            if (dirty.remove(note) != null && note.hasFile() && !note.isSaved()) {
+                try {
+                    note.overwriteAsync().join();
+                    saveCount.incrementAndGet();
+                }
+                catch (RuntimeException ex) {
+                    lastError = AsyncIO.unwrap(ex);
+                }
+            }
+        }
+    }
+}
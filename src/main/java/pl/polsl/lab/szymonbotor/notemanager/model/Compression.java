@@ -0,0 +1,161 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Class used to compress the content of notes before encryption with the DEFLATE algorithm. Ciphertext cannot
+ * be compressed, but the text of notes is highly redundant, so compressing it first makes the files smaller.
+ * The data is processed as a stream of chunks of STREAM_CHUNK_SIZE bytes, so the output grows with the data
+ * instead of being allocated for the worst case. Every thread keeps its own Deflater and Inflater, as creating
+ * them allocates native memory.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public final class Compression {
+
+    /**
+     * Number of bytes processed by a single call to the Deflater or the Inflater.
+     */
+    public static final int STREAM_CHUNK_SIZE = AES.STREAM_CHUNK_SIZE;
+
+    /**
+     * Lowest accepted compression level. Level 0 only stores the data.
+     */
+    public static final int MIN_LEVEL = Deflater.NO_COMPRESSION;
+
+    /**
+     * Highest accepted compression level.
+     */
+    public static final int MAX_LEVEL = Deflater.BEST_COMPRESSION;
+
+    /**
+     * Compression level used by default, which is a good trade-off between speed and size.
+     */
+    public static final int DEFAULT_LEVEL = 6;
+
+    /**
+     * Deflaters of the threads.
+     */
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(Deflater::new);
+
+    /**
+     * Inflaters of the threads.
+     */
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    /**
+     * Private constructor, as the class only has static methods.
+     */
+    private Compression() {
+
+    }
+
+    /**
+     * This method is used to check if a compression level is accepted.
+     * @param level compression level.
+     * @throws IllegalArgumentException Thrown when the level is outside of the range from MIN_LEVEL to MAX_LEVEL.
+     */
+    public static void checkLevel(int level) {
+        if (level < MIN_LEVEL || level > MAX_LEVEL) {
+            throw new IllegalArgumentException(String.format("Compression level %d is not between %d and %d.",
+                    level, MIN_LEVEL, MAX_LEVEL));
+        }
+    }
+
+    /**
+     * This method is used to compress the remaining bytes of a buffer. The position of the buffer is advanced to its limit.
+     * @param input buffer with the data between its position and limit.
+     * @param level compression level between MIN_LEVEL and MAX_LEVEL.
+     * @return heap buffer with the compressed data between its position and limit.
+     * @throws IllegalArgumentException Thrown when the level is not accepted.
+     */
+    public static ByteBuffer deflate(ByteBuffer input, int level) {
+        checkLevel(level);
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setLevel(level);
+
+        ByteBuffer output = ByteBuffer.allocate(Math.min(STREAM_CHUNK_SIZE, input.remaining() / 2 + 64));
+        int end = input.limit();
+        while (input.position() < end) {
+            input.limit(Math.min(end, input.position() + STREAM_CHUNK_SIZE));
+            deflater.setInput(input);
+            while (!deflater.needsInput()) {
+                output = ensureRemaining(output);
+                deflater.deflate(output);
+            }
+        }
+        input.limit(end);
+
+        deflater.finish();
+        while (!deflater.finished()) {
+            output = ensureRemaining(output);
+            deflater.deflate(output);
+        }
+
+        output.flip();
+        return output;
+    }
+
+    /**
+     * This method is used to decompress the remaining bytes of a buffer compressed with deflate().
+     * The position of the buffer is advanced to its limit.
+     * @param input buffer with the compressed data between its position and limit.
+     * @return heap buffer with the decompressed data between its position and limit.
+     * @throws ZipException Signals that the data is not a complete compressed stream.
+     */
+    public static ByteBuffer inflate(ByteBuffer input) throws ZipException {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+
+        ByteBuffer output = ByteBuffer.allocate(Math.min(STREAM_CHUNK_SIZE, Math.max(64, 3 * input.remaining())));
+        int end = input.limit();
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (input.position() == end) {
+                        throw new ZipException("The compressed data is incomplete.");
+                    }
+                    input.limit(Math.min(end, input.position() + STREAM_CHUNK_SIZE));
+                    inflater.setInput(input);
+                }
+                output = ensureRemaining(output);
+                if (inflater.inflate(output) == 0 && inflater.needsDictionary()) {
+                    throw new ZipException("The compressed data requires a dictionary.");
+                }
+            }
+        }
+        catch (DataFormatException ex) {
+            throw new ZipException(ex.getMessage());
+        }
+        finally {
+            input.limit(end);
+        }
+
+        input.position(end);
+        output.flip();
+        return output;
+    }
+
+    /**
+     * This method is used to make sure an output buffer has free space. A full buffer is replaced with
+     * one of twice its capacity holding the same data, and the old buffer is wiped.
+     * @param output output buffer in write mode.
+     * @return buffer with free space.
+     */
+    private static ByteBuffer ensureRemaining(ByteBuffer output) {
+        if (output.hasRemaining()) {
+            return output;
+        }
+
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(64, output.capacity() * 2));
+        output.flip();
+        larger.put(output);
+        DirectBuffers.wipe(output);
+        return larger;
+    }
+}
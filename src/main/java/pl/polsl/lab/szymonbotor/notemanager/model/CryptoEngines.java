@@ -0,0 +1,110 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class providing reusable cryptographic engines. Looking up a provider and constructing a Cipher,
+ * SecretKeyFactory or Mac is expensive, so every thread keeps its own instances and reuses them between calls.
+ * An engine obtained from this class must be used only by the calling thread, it must be initialised before use
+ * and it must not be held across a call that can obtain the same engine again.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public final class CryptoEngines {
+
+    /**
+     * Ciphers of the current thread by their transformation.
+     */
+    private static final ThreadLocal<Map<String, Cipher>> ciphers = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Secret key factories of the current thread by their algorithm.
+     */
+    private static final ThreadLocal<Map<String, SecretKeyFactory>> keyFactories = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Message authentication code engines of the current thread by their algorithm.
+     */
+    private static final ThreadLocal<Map<String, Mac>> macs = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Private constructor, as the class only has static methods.
+     */
+    private CryptoEngines() {
+
+    }
+
+    /**
+     * This method is used to get the cipher of the current thread for the specified transformation.
+     * @param transformation name of the transformation, e.g. "AES/CBC/PKCS5Padding".
+     * @return cipher that has to be initialised before use.
+     * @throws CryptException This exception is thrown when the transformation is not available.
+     */
+    public static Cipher getCipher(String transformation) throws CryptException {
+        Map<String, Cipher> threadCiphers = ciphers.get();
+        Cipher cipher = threadCiphers.get(transformation);
+
+        if (cipher == null) {
+            try {
+                cipher = Cipher.getInstance(transformation);
+            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+                throw new CryptException(e.getMessage());
+            }
+            threadCiphers.put(transformation, cipher);
+        }
+
+        return cipher;
+    }
+
+    /**
+     * This method is used to get the secret key factory of the current thread for the specified algorithm.
+     * @param algorithm name of the algorithm, e.g. "PBKDF2WithHmacSHA256".
+     * @return secret key factory.
+     * @throws CryptException This exception is thrown when the algorithm is not available.
+     */
+    public static SecretKeyFactory getKeyFactory(String algorithm) throws CryptException {
+        Map<String, SecretKeyFactory> threadFactories = keyFactories.get();
+        SecretKeyFactory factory = threadFactories.get(algorithm);
+
+        if (factory == null) {
+            try {
+                factory = SecretKeyFactory.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new CryptException(e.getMessage());
+            }
+            threadFactories.put(algorithm, factory);
+        }
+
+        return factory;
+    }
+
+    /**
+     * This method is used to get the message authentication code engine of the current thread for the specified algorithm.
+     * @param algorithm name of the algorithm, e.g. "HmacSHA256".
+     * @return engine that has to be initialised before use.
+     * @throws CryptException This exception is thrown when the algorithm is not available.
+     */
+    public static Mac getMac(String algorithm) throws CryptException {
+        Map<String, Mac> threadMacs = macs.get();
+        Mac mac = threadMacs.get(algorithm);
+
+        if (mac == null) {
+            try {
+                mac = Mac.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new CryptException(e.getMessage());
+            }
+            threadMacs.put(algorithm, mac);
+        }
+
+        return mac;
+    }
+}
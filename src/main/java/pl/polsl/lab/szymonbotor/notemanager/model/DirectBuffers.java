@@ -0,0 +1,106 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Class providing reusable direct buffers used when notes are encrypted and written to files. Allocating a direct
+ * buffer is expensive, so every thread keeps its own plaintext and ciphertext buffers and reuses them between calls.
+ * A buffer obtained from this class must be used only by the calling thread and it must not be held across a call
+ * that can obtain the same buffer again.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public final class DirectBuffers {
+
+    /**
+     * Maximum capacity of a kept buffer in bytes. Larger requests get a new heap buffer, so a single large note
+     * does not pin native memory for the lifetime of the thread.
+     */
+    public static final int MAX_CAPACITY = 4 * 1024 * 1024;
+
+    /**
+     * Capacity of the smallest buffer in bytes.
+     */
+    private static final int MIN_CAPACITY = 4 * 1024;
+
+    /**
+     * Length of the array used to zero buffers.
+     */
+    private static final int ZEROS_LENGTH = 4 * 1024;
+
+    /**
+     * Array of zeros used to wipe buffers.
+     */
+    private static final byte[] zeros = new byte[ZEROS_LENGTH];
+
+    /**
+     * Plaintext buffer of the current thread.
+     */
+    private static final ThreadLocal<ByteBuffer> plainBuffers = new ThreadLocal<>();
+
+    /**
+     * Ciphertext buffer of the current thread.
+     */
+    private static final ThreadLocal<ByteBuffer> cipherBuffers = new ThreadLocal<>();
+
+    /**
+     * Private constructor, as the class only has static methods.
+     */
+    private DirectBuffers() {
+    }
+
+    /**
+     * This method is used to get the plaintext buffer of the current thread. The buffer should be wiped after use.
+     * @param capacity minimum number of bytes the buffer has to hold.
+     * @return cleared buffer with its limit set to the requested capacity.
+     * @see DirectBuffers#wipe(ByteBuffer)
+     */
+    public static ByteBuffer getPlainBuffer(int capacity) {
+        return get(plainBuffers, capacity);
+    }
+
+    /**
+     * This method is used to get the ciphertext buffer of the current thread.
+     * @param capacity minimum number of bytes the buffer has to hold.
+     * @return cleared buffer with its limit set to the requested capacity.
+     */
+    public static ByteBuffer getCipherBuffer(int capacity) {
+        return get(cipherBuffers, capacity);
+    }
+
+    /**
+     * This method is used to zero the bytes of a buffer between index 0 and its limit. The position is set to 0.
+     * @param buffer buffer to wipe.
+     */
+    public static void wipe(ByteBuffer buffer) {
+        buffer.position(0);
+        while (buffer.hasRemaining()) {
+            buffer.put(zeros, 0, Math.min(zeros.length, buffer.remaining()));
+        }
+        buffer.position(0);
+    }
+
+    /**
+     * This method is used to get a buffer of the current thread. A kept buffer that is too small is replaced
+     * with one of twice the requested capacity.
+     * @param buffers buffers of the threads.
+     * @param capacity minimum number of bytes the buffer has to hold.
+     * @return cleared buffer with its limit set to the requested capacity.
+     */
+    private static ByteBuffer get(ThreadLocal<ByteBuffer> buffers, int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            return ByteBuffer.allocate(capacity);
+        }
+
+        ByteBuffer buffer = buffers.get();
+        if (buffer == null || buffer.capacity() < capacity) {
+            int newCapacity = Math.min(MAX_CAPACITY, Math.max(MIN_CAPACITY, capacity * 2));
+            buffer = ByteBuffer.allocateDirect(newCapacity);
+            buffers.set(buffer);
+        }
+
+        buffer.clear();
+        buffer.limit(capacity);
+        return buffer;
+    }
+}
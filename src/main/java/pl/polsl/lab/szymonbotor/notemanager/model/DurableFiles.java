@@ -0,0 +1,88 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class providing the file operations needed to replace files atomically and durably.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public final class DurableFiles {
+
+    /**
+     * Suffix of the temporary files. It is different from the note file extension, so leftovers of an interrupted
+     * save are not treated as notes.
+     */
+    public static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Private constructor, as the class only has static methods.
+     */
+    private DurableFiles() {
+    }
+
+    /**
+     * This method is used to create an empty temporary file next to the target, so it can be renamed over it.
+     * The name starts with a dot and the name of the target and ends with TEMP_SUFFIX.
+     * @param target file that will be replaced.
+     * @return path of the created temporary file.
+     * @throws IOException Signals that the file could not be created.
+     */
+    public static Path createTempFile(Path target) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        return Files.createTempFile(absolute.getParent(), "." + absolute.getFileName(), TEMP_SUFFIX);
+    }
+
+    /**
+     * This method is used to synchronise the content of a file with the disk.
+     * @param file file to synchronise.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     */
+    public static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * This method is used to synchronise a directory with the disk, so renames inside it survive a crash.
+     * Some systems, for example Windows, do not allow opening directories. There the rename is already durable
+     * and the call does nothing.
+     * @param directory directory to synchronise.
+     */
+    public static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // Directories cannot be opened or synchronised on this system.
+        }
+    }
+
+    /**
+     * This method is used to atomically rename a synchronised temporary file over the target.
+     * The directory is not synchronised.
+     * @param temp synchronised temporary file.
+     * @param target replaced file.
+     * @throws IOException Signals that the file could not be renamed.
+     */
+    public static void move(Path temp, Path target) throws IOException {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * This method is used to atomically rename a synchronised temporary file over the target
+     * and synchronise the directory.
+     * @param temp synchronised temporary file.
+     * @param target replaced file.
+     * @throws IOException Signals that the file could not be renamed.
+     */
+    public static void replace(Path temp, Path target) throws IOException {
+        move(temp, target);
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+}
@@ -0,0 +1,228 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class used to commit atomic saves of many notes in batches. Saving threads write unsynchronised temporary files
+ * and hand them to a single committer thread. The committer takes all saves waiting at the moment, synchronises
+ * their data, renames them over their targets and then synchronises every affected directory once for the whole batch.
+ * Saves that arrive while a batch is being committed form the next batch, so under load the directory barriers
+ * and the waiting are shared by many saves, while a single save is committed without delay.
+ * Closing puts a stop marker behind the accepted saves, so the committer finishes them before it exits.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+public class GroupCommit implements AutoCloseable {
+
+    /**
+     * Default maximum number of saves in a batch.
+     */
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    /**
+     * Class representing a save waiting for the commit.
+     */
+    private static class Pending {
+
+        /**
+         * Unsynchronised temporary file.
+         */
+        private final Path temp;
+
+        /**
+         * Replaced file.
+         */
+        private final Path target;
+
+        /**
+         * Future completed when the save is committed.
+         */
+        private final CompletableFuture<Void> done;
+
+        /**
+         * Constructor of the pending save.
+         * @param temp unsynchronised temporary file.
+         * @param target replaced file.
+         */
+        private Pending(Path temp, Path target) {
+            this.temp = temp;
+            this.target = target;
+            done = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * Marker put in the queue to stop the committer thread.
+     */
+    private static final Pending STOP = new Pending(null, null);
+
+    /**
+     * Saves waiting for the commit.
+     */
+    private final BlockingQueue<Pending> queue;
+
+    /**
+     * Maximum number of saves in a batch.
+     */
+    private final int maxBatch;
+
+    /**
+     * The committer thread.
+     */
+    private final Thread committer;
+
+    /**
+     * Number of committed batches.
+     */
+    private final AtomicLong batchCount;
+
+    /**
+     * This value is set when the object is closed. It is guarded by the object's monitor
+     * together with adding to the queue, so no save is queued behind the stop marker.
+     */
+    private boolean closed;
+
+    /**
+     * Constructor creating a group commit with the default maximum batch size.
+     */
+    public GroupCommit() {
+        this(DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Constructor of the GroupCommit class. It starts the committer thread.
+     * @param maxBatch maximum number of saves in a batch. If it is lower than 1 it is set to 1.
+     */
+    public GroupCommit(int maxBatch) {
+        this.maxBatch = Math.max(maxBatch, 1);
+        queue = new LinkedBlockingQueue<>();
+        batchCount = new AtomicLong();
+        closed = false;
+
+        committer = new Thread(this::run, "note-group-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * This method is used to commit a save. It blocks until the batch containing the save is committed.
+     * @param temp temporary file with the new content. It does not have to be synchronised.
+     * @param target file replaced by the temporary file.
+     * @throws IOException Signals that the file could not be synchronised or renamed, or the object is closed.
+     * The temporary file is left in place.
+     */
+    public void commit(Path temp, Path target) throws IOException {
+        Pending pending = new Pending(temp, target);
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("The group commit is closed.");
+            }
+            queue.add(pending);
+        }
+
+        try {
+            pending.done.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the commit.");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * This method is used to get the number of committed batches.
+     * @return number of batches.
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * This method is used to stop the committer thread. Saves accepted before closing are committed first
+     * and saves arriving after it fail. The method waits until the committer thread exits.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!closed) {
+                closed = true;
+                queue.add(STOP);
+            }
+        }
+
+        try {
+            committer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The main loop of the committer thread.
+     */
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
+                continue;
+            }
+
+            queue.drainTo(batch, maxBatch - 1);
+            stopped = batch.remove(STOP);
+            if (!batch.isEmpty()) {
+                commitBatch(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * This method is used to commit a batch of saves. A save that fails does not affect the others.
+     * @param batch saves to commit.
+     */
+    private void commitBatch(List<Pending> batch) {
+        List<Pending> synced = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            try {
+                DurableFiles.sync(pending.temp);
+                synced.add(pending);
+            } catch (IOException ex) {
+                pending.done.completeExceptionally(ex);
+            }
+        }
+
+        Set<Path> directories = new LinkedHashSet<>();
+        List<Pending> moved = new ArrayList<>(synced.size());
+        for (Pending pending : synced) {
+            try {
+                DurableFiles.move(pending.temp, pending.target);
+                directories.add(pending.target.toAbsolutePath().getParent());
+                moved.add(pending);
+            } catch (IOException ex) {
+                pending.done.completeExceptionally(ex);
+            }
+        }
+
+        directories.forEach(DurableFiles::syncDirectory);
+        batchCount.incrementAndGet();
+        moved.forEach(pending -> pending.done.complete(null));
+    }
+}
@@ -0,0 +1,96 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.enums.KdfAlgorithm;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+
+/**
+ * Class used to choose the key derivation iteration count for the current machine. It measures the speed of
+ * the key derivation and calculates the iteration count that makes opening a note take the target time.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public class KdfCalibrator {
+
+    /**
+     * Default target time of the key derivation in milliseconds.
+     */
+    public static final long DEFAULT_TARGET_MILLIS = 250;
+
+    /**
+     * Iteration count used during the measurement.
+     */
+    private static final int SAMPLE_ITERATIONS = 20_000;
+
+    /**
+     * Number of measured derivations. The fastest one is used, as the slower ones are disturbed by other work.
+     */
+    private static final int SAMPLE_COUNT = 5;
+
+    /**
+     * The calculated iteration count is rounded to a multiple of this value.
+     */
+    private static final int ROUNDING = 1000;
+
+    /**
+     * Algorithm that is calibrated.
+     */
+    private final KdfAlgorithm algorithm;
+
+    /**
+     * Constructor of the KdfCalibrator class.
+     * @param algorithm algorithm that is calibrated.
+     */
+    public KdfCalibrator(KdfAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * This method is used to choose the parameters, so that a single key derivation takes about the target time.
+     * The result is limited to the range accepted by KdfParams.
+     * @param targetMillis target time of the key derivation in milliseconds.
+     * @return calibrated key derivation parameters.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs during the measurement.
+     */
+    public KdfParams calibrate(long targetMillis) throws CryptException {
+        double nanosPerIteration = (double) measureNanos(SAMPLE_ITERATIONS) / SAMPLE_ITERATIONS;
+        double iterations = targetMillis * 1_000_000.0 / nanosPerIteration;
+
+        long rounded = Math.round(iterations / ROUNDING) * ROUNDING;
+        rounded = Math.max(KdfParams.MIN_ITERATIONS, Math.min(KdfParams.MAX_ITERATIONS, rounded));
+
+        return new KdfParams(algorithm, (int) rounded);
+    }
+
+    /**
+     * This method is used to measure the time of a single key derivation with the specified parameters.
+     * The key cache is not used.
+     * @param kdfParams measured parameters.
+     * @return time of the derivation in milliseconds.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs during the measurement.
+     */
+    public static long measureMillis(KdfParams kdfParams) throws CryptException {
+        long start = System.nanoTime();
+        AES.deriveKey("", AES.generateSalt(), kdfParams);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * This method is used to measure the fastest of several key derivations with the specified iteration count.
+     * @param iterations iteration count of the measured derivations.
+     * @return time of the fastest derivation in nanoseconds.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs during the measurement.
+     */
+    private long measureNanos(int iterations) throws CryptException {
+        KdfParams sample = new KdfParams(algorithm, iterations);
+        byte[] salt = AES.generateSalt();
+        long best = Long.MAX_VALUE;
+
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            long start = System.nanoTime();
+            AES.deriveKey("", salt, sample);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return Math.max(best, 1);
+    }
+}
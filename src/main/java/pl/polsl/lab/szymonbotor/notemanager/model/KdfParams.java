@@ -0,0 +1,109 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.enums.KdfAlgorithm;
+
+import java.util.Objects;
+
+/**
+ * Class representing the parameters of the derivation of a secret key from a password. The parameters are stored
+ * in every note file, so they can be changed without breaking the existing notes.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public final class KdfParams {
+
+    /**
+     * Minimum accepted number of iterations.
+     */
+    public static final int MIN_ITERATIONS = 1000;
+
+    /**
+     * Maximum accepted number of iterations. It protects from files that would take hours to open.
+     */
+    public static final int MAX_ITERATIONS = 100_000_000;
+
+    /**
+     * Default parameters, used by notes that do not store any.
+     */
+    public static final KdfParams DEFAULT = new KdfParams(KdfAlgorithm.PBKDF2_SHA256, AES.ITER_COUNT);
+
+    /**
+     * Algorithm used to derive the key.
+     */
+    private final KdfAlgorithm algorithm;
+
+    /**
+     * Number of iterations of the algorithm.
+     */
+    private final int iterations;
+
+    /**
+     * Constructor of the KdfParams class.
+     * @param algorithm algorithm used to derive the key.
+     * @param iterations number of iterations of the algorithm.
+     * @throws IllegalArgumentException Thrown when the algorithm is null or the number of iterations is out of range.
+     */
+    public KdfParams(KdfAlgorithm algorithm, int iterations) throws IllegalArgumentException {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("The key derivation algorithm is unknown.");
+        }
+        if (iterations < MIN_ITERATIONS || iterations > MAX_ITERATIONS) {
+            throw new IllegalArgumentException(String.format("Iteration count of %d is invalid. Should be <%d, %d>.",
+                    iterations, MIN_ITERATIONS, MAX_ITERATIONS));
+        }
+
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+    }
+
+    /**
+     * This method is used to get the algorithm used to derive the key.
+     * @return key derivation algorithm.
+     */
+    public KdfAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * This method is used to get the number of iterations of the algorithm.
+     * @return iteration count.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * This method is used to compare the parameters with another object.
+     * @param o object to compare with.
+     * @return true if the object is a KdfParams object with the same algorithm and iteration count.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof KdfParams)) {
+            return false;
+        }
+        KdfParams other = (KdfParams) o;
+        return algorithm == other.algorithm && iterations == other.iterations;
+    }
+
+    /**
+     * This method is used to get the hash code of the parameters.
+     * @return hash code consistent with equals().
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(algorithm, iterations);
+    }
+
+    /**
+     * This method is used to get a readable description of the parameters.
+     * @return algorithm name and iteration count.
+     */
+    @Override
+    public String toString() {
+        return algorithm.algorithmName + ", " + iterations + " iterations";
+    }
+}
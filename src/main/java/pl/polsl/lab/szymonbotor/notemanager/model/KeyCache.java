@@ -0,0 +1,279 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class used to cache secret keys derived from passwords, so that the expensive key derivation is not repeated
+ * for the same password and salt. The cache is bounded: the least recently used key is evicted when the capacity
+ * is exceeded and every key expires after a set time. The bytes of evicted keys are zeroed.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public class KeyCache {
+
+    /**
+     * Default maximum number of keys held by the cache.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Default time after which a cached key expires, in milliseconds.
+     */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Length of the random secret used to compute password verifiers in bytes.
+     */
+    private static final int SECRET_LENGTH = 32;
+
+    /**
+     * The cache shared by all AES objects.
+     */
+    private static final KeyCache defaultCache = new KeyCache(DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS);
+
+    /**
+     * Class representing a single cached key.
+     */
+    private static class Entry {
+
+        /**
+         * Raw bytes of the derived key.
+         */
+        private final byte[] key;
+
+        /**
+         * Time of the derivation obtained from System.nanoTime().
+         */
+        private final long created;
+
+        /**
+         * Constructor of the entry.
+         * @param key raw bytes of the derived key.
+         * @param created time of the derivation obtained from System.nanoTime().
+         */
+        private Entry(byte[] key, long created) {
+            this.key = key;
+            this.created = created;
+        }
+
+        /**
+         * This method is used to zero the key bytes.
+         */
+        private void destroy() {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    /**
+     * Map of cached keys in access order. The map keys are password verifiers concatenated with the salt.
+     */
+    private final LinkedHashMap<ByteBuffer, Entry> entries;
+
+    /**
+     * Maximum number of keys held by the cache.
+     */
+    private final int capacity;
+
+    /**
+     * Time after which a cached key expires, in nanoseconds.
+     */
+    private final long ttlNanos;
+
+    /**
+     * Random secret used to compute password verifiers. The passwords themselves are never stored.
+     */
+    private final SecretKey secret;
+
+    /**
+     * Number of lookups that found a valid key.
+     */
+    private final AtomicLong hits;
+
+    /**
+     * Number of lookups that had to derive the key.
+     */
+    private final AtomicLong misses;
+
+    /**
+     * Constructor of the KeyCache class.
+     * @param capacity maximum number of keys held by the cache. If it is lower than 0 it is set to 0.
+     * @param ttlMillis time after which a cached key expires, in milliseconds.
+     */
+    public KeyCache(int capacity, long ttlMillis) {
+        this.capacity = Math.max(capacity, 0);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+
+        byte[] secretBytes = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(secretBytes);
+        secret = new SecretKeySpec(secretBytes, "HmacSHA256");
+    }
+
+    /**
+     * This method is used to get the cache shared by all AES objects.
+     * @return the default cache.
+     */
+    public static KeyCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * This method is used to get the key derived from the password and salt. If the key is not cached
+     * it is derived and put into the cache.
+     * @param password password used as a base for the key.
+     * @param salt cryptographic salt used in the derivation.
+     * @return the derived AES key.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public SecretKey getKey(String password, byte[] salt) throws CryptException {
+        return getKey(password, salt, KdfParams.DEFAULT);
+    }
+
+    /**
+     * This method is used to get the key derived from the password and salt with the specified parameters.
+     * If the key is not cached it is derived and put into the cache.
+     * @param password password used as a base for the key.
+     * @param salt cryptographic salt used in the derivation.
+     * @param kdfParams parameters of the key derivation.
+     * @return the derived AES key.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public SecretKey getKey(String password, byte[] salt, KdfParams kdfParams) throws CryptException {
+        ByteBuffer id = createId(password, salt, kdfParams);
+
+        synchronized (this) {
+            Entry entry = entries.get(id);
+            if (entry != null && !isExpired(entry, System.nanoTime())) {
+                hits.incrementAndGet();
+                return new SecretKeySpec(entry.key, "AES");
+            }
+        }
+
+        misses.incrementAndGet();
+        byte[] key = AES.deriveKey(password, salt, kdfParams);
+        SecretKey secretKey = new SecretKeySpec(key, "AES");
+
+        synchronized (this) {
+            Entry old = entries.put(id, new Entry(key, System.nanoTime()));
+            if (old != null) {
+                old.destroy();
+            }
+            evict();
+        }
+
+        return secretKey;
+    }
+
+    /**
+     * This method is used to remove all keys from the cache. The key bytes are zeroed.
+     */
+    public synchronized void clear() {
+        entries.values().forEach(Entry::destroy);
+        entries.clear();
+    }
+
+    /**
+     * This method is used to get the number of keys currently held by the cache. Expired keys are removed first.
+     * @return number of cached keys.
+     */
+    public synchronized int size() {
+        evict();
+        return entries.size();
+    }
+
+    /**
+     * This method is used to get the number of lookups that found a valid key.
+     * @return number of cache hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * This method is used to get the number of lookups that had to derive the key.
+     * @return number of cache misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * This method is used to get the maximum number of keys held by the cache.
+     * @return capacity of the cache.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * This method is used to remove expired keys and the least recently used keys over the capacity.
+     * It must be called while holding the lock of the cache.
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<ByteBuffer, Entry>> it = entries.entrySet().iterator();
+        int excess = entries.size() - capacity;
+
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (excess > 0 || isExpired(entry, now)) {
+                entry.destroy();
+                it.remove();
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * This method is used to check if an entry has expired.
+     * @param entry checked entry.
+     * @param now current time obtained from System.nanoTime().
+     * @return true if the entry is older than the time to live.
+     */
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.created >= ttlNanos;
+    }
+
+    /**
+     * This method is used to create the identifier of a key. It consists of a keyed hash of the password
+     * followed by the salt and the key derivation parameters.
+     * @param password password used as a base for the key.
+     * @param salt cryptographic salt used in the derivation.
+     * @param kdfParams parameters of the key derivation.
+     * @return identifier of the key.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    private ByteBuffer createId(String password, byte[] salt, KdfParams kdfParams) throws CryptException {
+        try {
+            Mac mac = CryptoEngines.getMac("HmacSHA256");
+            mac.init(secret);
+            byte[] verifier = mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+
+            ByteBuffer id = ByteBuffer.allocate(verifier.length + salt.length + 1 + Integer.BYTES);
+            id.put(verifier)
+                    .put(salt)
+                    .put((byte) kdfParams.getAlgorithm().id)
+                    .putInt(kdfParams.getIterations())
+                    .flip();
+            return id;
+        } catch (InvalidKeyException e) {
+            throw new CryptException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Class representing a note file that was opened without decrypting it. Only the header and the file metadata
+ * are read when the object is created, which takes a single small read and no cryptographic operations,
+ * so listing many notes is cheap. The note is read and decrypted on the first call to getContent().
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public class LazyNote {
+
+    /**
+     * The note file.
+     */
+    private final File file;
+
+    /**
+     * Header of the note file.
+     */
+    private final NoteHeader header;
+
+    /**
+     * Size of the note file in bytes.
+     */
+    private final long size;
+
+    /**
+     * Time of the last modification of the note file in milliseconds since the epoch.
+     */
+    private final long lastModified;
+
+    /**
+     * The decrypted note or null if it was not read yet.
+     */
+    private Note note;
+
+    /**
+     * Constructor of the LazyNote class reading the header and the metadata of a note file.
+     * @param file note file.
+     * @throws IOException Signals that the file could not be read or its header is malformed.
+     */
+    public LazyNote(File file) throws IOException {
+        this.file = file;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, NoteHeader.MAX_LENGTH));
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until the buffer is full or the file ends.
+            }
+            buffer.flip();
+            header = NoteHeader.read(buffer);
+        }
+
+        lastModified = file.lastModified();
+        note = null;
+    }
+
+    /**
+     * This method is used to open all note files in a directory without decrypting them.
+     * Files with a malformed or unsupported header are skipped.
+     * @param directory directory with the notes.
+     * @return notes sorted by their file names.
+     * @throws IOException Signals that the directory could not be listed.
+     */
+    public static List<LazyNote> list(File directory) throws IOException {
+        List<LazyNote> notes = new ArrayList<>();
+
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory.toPath(), "*" + Note.FILE_EXTENSION)) {
+            for (Path path : paths) {
+                if (!Files.isRegularFile(path)) {
+                    continue;
+                }
+                try {
+                    notes.add(new LazyNote(path.toFile()));
+                }
+                catch (IOException ex) {
+                    // Not a supported note file.
+                }
+            }
+        }
+
+        notes.sort(Comparator.comparing(lazyNote -> lazyNote.getFile().getName()));
+        return notes;
+    }
+
+    /**
+     * This method is used to get the content of the note. The note is read and decrypted on the first call
+     * and the result is kept for the following calls.
+     * @param password password used to encrypt the note.
+     * @return content of the note or null if the password is incorrect.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is in a vault.
+     */
+    public String getContent(String password) throws IOException, InvalidCryptModeException, CryptException {
+        if (note == null) {
+            Note read = new Note();
+            if (!read.read(file.getPath(), password)) {
+                return null;
+            }
+            note = read;
+        }
+        return note.getContent();
+    }
+
+    /**
+     * This method is used to get the content of a note of a vault. The note is read and decrypted on the first call
+     * and the result is kept for the following calls.
+     * @param masterKey unlocked master key of the vault of the note.
+     * @return content of the note or null if the key could not be unwrapped.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is not in a vault.
+     */
+    public String getContent(MasterKey masterKey) throws IOException, InvalidCryptModeException, CryptException {
+        if (note == null) {
+            Note read = new Note();
+            if (!read.read(file.getPath(), masterKey)) {
+                return null;
+            }
+            note = read;
+        }
+        return note.getContent();
+    }
+
+    /**
+     * This method is used to check if the note was already decrypted.
+     * @return true if getContent() succeeded.
+     */
+    public boolean isLoaded() {
+        return note != null;
+    }
+
+    /**
+     * This method is used to get the decrypted note, which can be edited and saved.
+     * @return the note or null if it was not decrypted yet.
+     */
+    public Note getNote() {
+        return note;
+    }
+
+    /**
+     * This method is used to get the note file.
+     * @return the note file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Used to get the note filename without the file extension.
+     * @return note filename.
+     */
+    public String getName() {
+        return file.getName().split("\\.")[0];
+    }
+
+    /**
+     * This method is used to get the header of the note file.
+     * @return the header.
+     */
+    public NoteHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * This method is used to get the size of the note file.
+     * @return size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * This method is used to get the time of the last modification of the note file.
+     * @return time in milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * This method is used to check if the note is encrypted with the master key of a vault.
+     * @return true if the data key of the note is wrapped with a master key.
+     */
+    public boolean isInVault() {
+        return header.isKeyWrapped();
+    }
+}
@@ -0,0 +1,258 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.enums.KdfAlgorithm;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.AuthenticationException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Class representing the master key of a vault, which is a directory of notes sharing one password.
+ * The master key is random. It is stored in a keyfile wrapped with a key derived from the password, so the password
+ * is derived only once to unlock the whole vault. Every note is encrypted with its own random data key,
+ * which is wrapped with the master key and stored in the note header. Changing the password only rewrites the keyfile.<br>
+ * Keyfile format:<br>
+ * - Bytes 0-3: magic bytes "NKEY"<br>
+ * - Byte 4: version<br>
+ * - Byte 5: key derivation algorithm identifier<br>
+ * - Bytes 6-9: key derivation iteration count<br>
+ * - Bytes 10-17: salt<br>
+ * - Bytes 18-57: master key wrapped with the password key using AES key wrap (RFC 3394)<br>
+ * @author Szymon Botor
+ * @version 1.1
+ */
+public class MasterKey {
+
+    /**
+     * Default name of the keyfile in a vault directory.
+     */
+    public static final String FILE_NAME = "vault.key";
+
+    /**
+     * Magic bytes at the start of every keyfile.
+     */
+    public static final byte[] MAGIC = {'N', 'K', 'E', 'Y'};
+
+    /**
+     * Version of the keyfile written by this class.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Length of a wrapped AES key in bytes. The key wrap adds 8 bytes of integrity check value.
+     */
+    public static final int WRAPPED_KEY_LENGTH = AES.KEY_LENGTH / 8 + 8;
+
+    /**
+     * Length of the keyfile in bytes.
+     */
+    private static final int FILE_LENGTH = MAGIC.length + 1 + 1 + Integer.BYTES + AES.SALT_LENGTH + WRAPPED_KEY_LENGTH;
+
+    /**
+     * Transformation used to wrap keys.
+     */
+    private static final String WRAP_TRANSFORMATION = "AESWrap";
+
+    /**
+     * Raw bytes of the master key.
+     */
+    private final byte[] keyBytes;
+
+    /**
+     * Constructor of the MasterKey class.
+     * @param keyBytes raw bytes of the master key.
+     */
+    private MasterKey(byte[] keyBytes) {
+        this.keyBytes = keyBytes;
+    }
+
+    /**
+     * This method is used to generate a new random master key. It has to be saved to be used again.
+     * @return generated master key.
+     */
+    public static MasterKey generate() {
+        return new MasterKey(AES.generateKey().getEncoded());
+    }
+
+    /**
+     * This method is used to get the keyfile of a vault directory.
+     * @param directory directory of the vault.
+     * @return keyfile with the default name in the directory.
+     */
+    public static File getKeyFile(File directory) {
+        return new File(directory, FILE_NAME);
+    }
+
+    /**
+     * This method is used to read a keyfile and unwrap the master key with a key derived from the password.
+     * @param keyFile keyfile of the vault.
+     * @param password password of the vault.
+     * @return the unlocked master key.
+     * @throws IOException Signals that the keyfile could not be read or is malformed.
+     * @throws AuthenticationException This exception is thrown when the password is incorrect or the keyfile was modified.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public static MasterKey unlock(File keyFile, String password) throws IOException, CryptException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(keyFile.toPath()));
+        KdfParams kdfParams;
+        byte[] salt = new byte[AES.SALT_LENGTH];
+        byte[] wrapped = new byte[WRAPPED_KEY_LENGTH];
+
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            int version = Byte.toUnsignedInt(buffer.get());
+            if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+                throw new IOException("Unsupported vault keyfile.");
+            }
+
+            int algorithmId = Byte.toUnsignedInt(buffer.get());
+            int iterations = buffer.getInt();
+            try {
+                kdfParams = new KdfParams(KdfAlgorithm.fromId(algorithmId), iterations);
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Unsupported key derivation parameters. " + ex.getMessage());
+            }
+            buffer.get(salt);
+            buffer.get(wrapped);
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("The vault keyfile is malformed.");
+        }
+
+        SecretKey passwordKey = KeyCache.getDefault().getKey(password, salt, kdfParams);
+        return new MasterKey(unwrap(passwordKey, wrapped).getEncoded());
+    }
+
+    /**
+     * This method is used to write the master key to a keyfile wrapped with a key derived from the password.
+     * An existing keyfile is replaced, which is how the password of a vault is changed. The new keyfile is written
+     * to a synchronised temporary file and renamed over the old one, so a failed or interrupted save
+     * leaves the old keyfile intact.
+     * @param keyFile keyfile of the vault.
+     * @param password password of the vault.
+     * @param kdfParams parameters of the derivation of the key from the password.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public void save(File keyFile, String password, KdfParams kdfParams) throws IOException, CryptException {
+        byte[] salt = AES.generateSalt();
+        SecretKey passwordKey = KeyCache.getDefault().getKey(password, salt, kdfParams);
+
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_LENGTH);
+        buffer.put(MAGIC)
+                .put((byte) VERSION)
+                .put((byte) kdfParams.getAlgorithm().id)
+                .putInt(kdfParams.getIterations())
+                .put(salt)
+                .put(wrap(passwordKey, getKey()));
+
+        Path target = keyFile.toPath();
+        Path temp = DurableFiles.createTempFile(target);
+        try {
+            Files.write(temp, buffer.array());
+            DurableFiles.sync(temp);
+            DurableFiles.replace(temp, target);
+        }
+        catch (IOException ex) {
+            try {
+                Files.deleteIfExists(temp);
+            }
+            catch (IOException suppressed) {
+                ex.addSuppressed(suppressed);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * This method is used to wrap a data key of a note with the master key.
+     * @param dataKey key to wrap.
+     * @return wrapped key of WRAPPED_KEY_LENGTH bytes.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public byte[] wrap(SecretKey dataKey) throws CryptException {
+        return wrap(getKey(), dataKey);
+    }
+
+    /**
+     * This method is used to unwrap a data key of a note with the master key.
+     * @param wrappedKey wrapped key from the note header.
+     * @return the data key.
+     * @throws AuthenticationException This exception is thrown when the key was wrapped with a different master key or modified.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public SecretKey unwrap(byte[] wrappedKey) throws CryptException {
+        return unwrap(getKey(), wrappedKey);
+    }
+
+    /**
+     * This method is used to zero the bytes of the master key. The object cannot be used afterwards.
+     */
+    public void destroy() {
+        Arrays.fill(keyBytes, (byte) 0);
+    }
+
+    /**
+     * This method is used to get the master key as a secret key.
+     * @return the master key.
+     */
+    private SecretKey getKey() {
+        return new SecretKeySpec(keyBytes, "AES");
+    }
+
+    /**
+     * This method is used to wrap a key with another key.
+     * @param wrappingKey key used to wrap.
+     * @param key key to wrap.
+     * @return wrapped key.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    private static byte[] wrap(SecretKey wrappingKey, SecretKey key) throws CryptException {
+        try {
+            Cipher cipher = CryptoEngines.getCipher(WRAP_TRANSFORMATION);
+            cipher.init(Cipher.WRAP_MODE, wrappingKey);
+            return cipher.wrap(key);
+        } catch (InvalidKeyException |
+                IllegalBlockSizeException e) {
+            throw new CryptException(e.getMessage());
+        }
+    }
+
+    /**
+     * This method is used to unwrap a key with another key. The integrity check of the key wrap detects
+     * a wrong wrapping key.
+     * @param wrappingKey key used to unwrap.
+     * @param wrappedKey wrapped key.
+     * @return unwrapped AES key.
+     * @throws AuthenticationException This exception is thrown when the wrapping key is incorrect or the data was modified.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    private static SecretKey unwrap(SecretKey wrappingKey, byte[] wrappedKey) throws CryptException {
+        Cipher cipher = CryptoEngines.getCipher(WRAP_TRANSFORMATION);
+        try {
+            cipher.init(Cipher.UNWRAP_MODE, wrappingKey);
+        } catch (InvalidKeyException e) {
+            throw new CryptException(e.getMessage());
+        }
+
+        try {
+            return (SecretKey) cipher.unwrap(wrappedKey, "AES", Cipher.SECRET_KEY);
+        } catch (InvalidKeyException e) {
+            throw new AuthenticationException("Invalid password or corrupted key.");
+        } catch (NoSuchAlgorithmException e) {
+            throw new CryptException(e.getMessage());
+        }
+    }
+}
@@ -1,26 +1,52 @@
 package pl.polsl.lab.szymonbotor.notemanager.model;
 
+import pl.polsl.lab.szymonbotor.notemanager.enums.BlockMode;
 import pl.polsl.lab.szymonbotor.notemanager.enums.CryptMode;
+import pl.polsl.lab.szymonbotor.notemanager.enums.ReadMode;
+import pl.polsl.lab.szymonbotor.notemanager.enums.SaveMode;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.AuthenticationException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.NoteTooLongException;
 
+import javax.crypto.SecretKey;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Class representing a text note. The contents can be encrypted and saved to a file, or a file can be decrypted and read into a Note object.
+ * Saves of a note, synchronous or not, are written one at a time in the order they were started.
  * @author Szymon Botor
- * @version 2.2
+ * @version 4.3
  */
 public class Note {
     
     /**
-     * Constant value representing the maximum size of a note in characters.
+     * Constant value representing the default maximum size of a note in characters.
+     * @see Note#setMaxSize(int)
      */
-    public static final int MAX_NOTE_SIZE = 1000;
+    public static final int MAX_NOTE_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Number of plaintext bytes in a segment of large notes. Notes longer than one segment are encrypted
+     * in segments, which are processed in parallel.
+     * @see AES#encryptSegmented(byte[], int)
+     */
+    public static final int SEGMENT_SIZE = 256 * 1024;
 
     /**
      * This is the file extension of the note files.
@@ -28,24 +54,87 @@ public class Note {
     public static final String FILE_EXTENSION = ".note";
 
     /**
-     * This is the total header length of the note files.
+     * This is the total header length of the legacy note files.
+     * @see NoteHeader#LEGACY_LENGTH
      */
-    public static final int HEADER_LENGTH = 32 + AES.IV_LENGTH + AES.SALT_LENGTH;
+    public static final int HEADER_LENGTH = NoteHeader.LEGACY_LENGTH;
 
     /**
-     * The content of the note.
+     * Minimal length of the edit journal in bytes that triggers compaction. A longer journal is compacted
+     * when it grows longer than the content of the note.
+     * @see NoteJournal
      */
-    private String content;
+    public static final int MIN_COMPACTION_LENGTH = 16 * 1024;
 
     /**
-     * The file that the note was created from or saved into.
+     * Class representing a save of the note waiting for its turn. The text, the version and the edits are taken
+     * together when the save is started, so saves store the versions in the order they were started.
      */
-    private File file;
+    private static final class PendingWrite {
+
+        /**
+         * Saved text.
+         */
+        private final PieceTable.Snapshot text;
+
+        /**
+         * Version of the saved text.
+         */
+        private final long version;
+
+        /**
+         * Edits since the text of the previous save or null if the whole note file is rewritten.
+         */
+        private final List<NoteJournal.Edit> appended;
+
+        /**
+         * Future completed when the previous save finishes. It is never completed exceptionally.
+         */
+        private final CompletableFuture<Void> previous;
+
+        /**
+         * Future completed when this save finishes.
+         */
+        private final CompletableFuture<Void> done;
+
+        /**
+         * Constructor of the pending write.
+         * @param text saved text.
+         * @param version version of the saved text.
+         * @param appended edits since the text of the previous save or null.
+         * @param previous future completed when the previous save finishes.
+         */
+        private PendingWrite(PieceTable.Snapshot text, long version, List<NoteJournal.Edit> appended,
+                             CompletableFuture<Void> previous) {
+            this.text = text;
+            this.version = version;
+            this.appended = appended;
+            this.previous = previous;
+            done = new CompletableFuture<>();
+        }
+
+        /**
+         * This method is used to wait on the calling thread until the previous save finishes.
+         */
+        private void awaitPrevious() {
+            previous.join();
+        }
+    }
 
     /**
-     * This is the hashed password used during encryption and decryption.
+     * The content of the note. Null if the note could not be read.
      */
-    private byte[] passHash;
+    private PieceTable content;
+
+    /**
+     * Maximum size of the note in characters.
+     */
+    private int maxSize;
+
+    /**
+     * The file that the note was created from or saved into.
+     */
+    private File file;
 
     /**
      * this is the AES object used during encryption and decryption of the note.
@@ -53,18 +142,109 @@ public class Note {
     private AES aes;
 
     /**
-     * This value is used to determine if the note was saved since the last change.
+     * Number of changes of the content. It is only modified by the thread editing the note.
+     */
+    private volatile long version;
+
+    /**
+     * Value of version when the content was last read or saved. The note was saved since the last change if they are equal.
+     */
+    private volatile long savedVersion;
+
+    /**
+     * Parameters of the derivation of the key from the password used when the note is saved.
+     */
+    private KdfParams kdfParams;
+
+    /**
+     * Data key of the note wrapped with a vault master key. Null if the key is derived from the password.
+     */
+    private byte[] wrappedKey;
+
+    /**
+     * The way the note file is loaded when the note is read.
+     */
+    private ReadMode readMode;
+
+    /**
+     * The way the note file is written when the note is saved.
+     */
+    private SaveMode saveMode;
+
+    /**
+     * Group commit used to synchronise atomic saves in batches or null if every save is synchronised on its own.
+     */
+    private GroupCommit groupCommit;
+
+    /**
+     * True if the content is compressed before encryption when the note is saved.
+     */
+    private boolean compressed;
+
+    /**
+     * Compression level used when the note is saved compressed.
+     */
+    private int compressionLevel;
+
+    /**
+     * True if overwriting the note appends the edit to its journal instead of rewriting the whole file.
+     */
+    private boolean journalEnabled;
+
+    /**
+     * Edit journal of the current version of the note file or null if the file is in the legacy format or not known.
+     */
+    private volatile NoteJournal journal;
+
+    /**
+     * Content of the note as stored in the note file and its journal. Null if the note was not read or saved.
+     */
+    private CharSequence savedContent;
+
+    /**
+     * Edits of the content since it was last read or saved, appended to the journal when the note is overwritten.
+     */
+    private NoteJournal.EditList edits;
+
+    /**
+     * Future completed when the last started save finishes. The next save starts after it.
+     */
+    private CompletableFuture<Void> lastWrite;
+
+    /**
+     * Listeners notified after every change of the content.
      */
-    private boolean saved;
+    private final List<Consumer<Note>> changeListeners;
+
+    /**
+     * Listeners notified after every save of the note to its file.
+     */
+    private final List<Consumer<Note>> saveListeners;
     
     /**
      * Default constructor of the Note class.
      */
     public Note() {
-        content = "";
+        content = new PieceTable();
+        maxSize = MAX_NOTE_SIZE;
         file = null;
-        saved = true;
+        version = 0;
+        savedVersion = 0;
         aes = null;
+        kdfParams = KdfParams.DEFAULT;
+        wrappedKey = null;
+        readMode = ReadMode.BUFFERED;
+        saveMode = SaveMode.ATOMIC;
+        groupCommit = null;
+        compressed = false;
+        compressionLevel = Compression.DEFAULT_LEVEL;
+        journalEnabled = false;
+        journal = null;
+        savedContent = null;
+        edits = new NoteJournal.EditList();
+        lastWrite = CompletableFuture.completedFuture(null);
+        changeListeners = new CopyOnWriteArrayList<>();
+        saveListeners = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -83,43 +263,243 @@ public class Note {
         }
     }
 
+    /**
+     * Constructor creating a note by opening an encrypted note from a file and decrypting it with the master key of its vault.
+     * @param fileName directory to the encrypted note file. It should have a .note extension. If not then it will be appended.
+     * @param masterKey unlocked master key of the vault of the note.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is not in a vault.
+     */
+    public Note(String fileName, MasterKey masterKey)
+            throws IOException, InvalidCryptModeException, CryptException {
+        this();
+        if (!read(fileName, masterKey)) {
+            content = null;
+        }
+    }
+
     /**
      * This method is used to get the content of the note.
      * @return string representing the content of the note.
      */
     public String getContent() {
-        return content;
+        return content == null ? null : content.toString();
     }
 
     /**
-     * This method is used to read an encrypted note from an input stream.
-     * @param inpStream the stream to read data from.
+     * This method is used to get the length of the content of the note without building the content.
+     * @return number of characters of the content.
+     */
+    public int getLength() {
+        return content == null ? 0 : content.length();
+    }
+
+    /**
+     * This method is used to read an encrypted note file. Both the legacy AES-CBC files
+     * and the AES-GCM files are supported. After reading, the note is kept in the AES-GCM mode,
+     * so legacy notes are upgraded on the next save.
+     * @param inFile note file.
      * @param password password used to encrypt the note.
      * @return true if the operation was successful and the user was authenticated, false otherwise.
-     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws IOException Signals that the header is malformed.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is in a vault.
+     */
+    private boolean read(File inFile, String password)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        return read(inFile, load(inFile), password);
+    }
+
+    /**
+     * This method is used to read a note file that is already loaded into a buffer.
+     * @param inFile note file or null if the note is not stored in its own file.
+     * @param data buffer with the whole note file between its position and limit.
+     * @param password password used to encrypt the note.
+     * @return true if the operation was successful and the user was authenticated, false otherwise.
+     * @throws IOException Signals that the header is malformed.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is in a vault.
+     * @see Note#read(File, String)
+     */
+    boolean read(File inFile, ByteBuffer data, String password)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        NoteHeader header = NoteHeader.read(data);
+        if (header.isKeyWrapped()) {
+            throw new CryptException("The note is encrypted with the master key of a vault.");
+        }
+
+        if (header.isLegacy() && !new Authenticator(header.getPassHash()).authenticate(password)) {
+            return false;
+        }
+
+        AES newAes = new AES(password, header.getSalt(), header.getIV(), header.getKdfParams(),
+                header.getBlockMode(), CryptMode.BOTH);
+        if (!decrypt(inFile, data, header, newAes)) {
+            return false;
+        }
+
+        kdfParams = header.getKdfParams();
+        wrappedKey = null;
+        return true;
+    }
+
+    /**
+     * This method is used to read an encrypted note file of a vault.
+     * The data key of the note is unwrapped with the master key, so no key is derived from a password.
+     * @param inFile note file.
+     * @param masterKey unlocked master key of the vault of the note.
+     * @return true if the operation was successful and the key was unwrapped, false otherwise.
+     * @throws IOException Signals that the header is malformed.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is not in a vault.
+     */
+    private boolean read(File inFile, MasterKey masterKey)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        return read(inFile, load(inFile), masterKey);
+    }
+
+    /**
+     * This method is used to read a note file of a vault that is already loaded into a buffer.
+     * @param inFile note file or null if the note is not stored in its own file.
+     * @param data buffer with the whole note file between its position and limit.
+     * @param masterKey unlocked master key of the vault of the note.
+     * @return true if the operation was successful and the key was unwrapped, false otherwise.
+     * @throws IOException Signals that the header is malformed.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is not in a vault.
+     * @see Note#read(File, MasterKey)
+     */
+    boolean read(File inFile, ByteBuffer data, MasterKey masterKey)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        NoteHeader header = NoteHeader.read(data);
+        if (!header.isKeyWrapped()) {
+            throw new CryptException("The note is not encrypted with the master key of a vault.");
+        }
+
+        SecretKey dataKey;
+        try {
+            dataKey = masterKey.unwrap(header.getWrappedKey());
+        }
+        catch (AuthenticationException ex) {
+            return false;
+        }
+
+        if (!decrypt(inFile, data, header, new AES(dataKey, header.getIV(), BlockMode.GCM, CryptMode.BOTH))) {
+            return false;
+        }
+
+        wrappedKey = header.getWrappedKey();
+        return true;
+    }
+
+    /**
+     * This method is used to decrypt the content following a header. The ciphertext is decrypted straight from
+     * the buffer into a reusable direct buffer, which is wiped after the content is decoded.
+     * Compressed content is decompressed before it is decoded.
+     * The edits from the journal of the note file are applied to the decrypted content.
+     * On success the content and the AES object of the note are replaced.
+     * @param inFile note file or null if the note is not stored in its own file and has no journal.
+     * @param cipherText buffer with the encrypted content between its position and limit.
+     * @param header header of the note.
+     * @param newAes AES object with the key and initialisation vector of the note.
+     * @return true if the content and the journal were decrypted and authenticated, false otherwise.
+     * @throws IOException Signals that the journal could not be read.
      * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
      * @throws CryptException This exception is thrown when a cryptographic exception occurs.
      */
-    private boolean read(FileInputStream inpStream, String password)
+    private boolean decrypt(File inFile, ByteBuffer cipherText, NoteHeader header, AES newAes)
             throws IOException, InvalidCryptModeException, CryptException {
 
-        byte[] newPassHash = inpStream.readNBytes(32);
-        byte[] salt = inpStream.readNBytes(AES.SALT_LENGTH);
+        if (!header.isLegacy()) {
+            newAes.setAssociatedData(header.toBytes());
+        }
 
-        Authenticator auth = new Authenticator(newPassHash);
-        if (auth.authenticate(password)) {
-            byte[] iv = inpStream.readNBytes(AES.IV_LENGTH);
+        ByteBuffer plainText = DirectBuffers.getPlainBuffer(cipherText.remaining());
+        String newContent;
+        try {
+            if (header.isSegmented()) {
+                newAes.decryptSegmented(cipherText, plainText, header.getSegmentSize());
+            } else {
+                newAes.decrypt(cipherText, plainText);
+            }
+            plainText.flip();
 
-            AES newAes = new AES(password, salt, iv, CryptMode.BOTH);
-            String newContent = newAes.decrypt(inpStream.readAllBytes());
+            ByteBuffer encoded = header.isCompressed() ? Compression.inflate(plainText) : plainText;
+            try {
+                newContent = Charset.defaultCharset().newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                        .decode(encoded)
+                        .toString();
+            }
+            finally {
+                if (encoded != plainText) {
+                    DirectBuffers.wipe(encoded);
+                }
+            }
+        }
+        catch (AuthenticationException ex) {
+            return false;
+        }
+        catch (CharacterCodingException ex) {
+            throw new CryptException(ex.getMessage());
+        }
+        finally {
+            DirectBuffers.wipe(plainText);
+        }
 
-            passHash = newPassHash;
-            content = newContent;
-            aes = newAes;
-            return true;
+        PieceTable newTable = new PieceTable(newContent);
+        NoteJournal newJournal = null;
+        if (!header.isLegacy() && inFile != null) {
+            newJournal = new NoteJournal(inFile, header.getIV());
+            try {
+                newJournal.replay(newAes, newTable);
+            }
+            catch (AuthenticationException ex) {
+                return false;
+            }
         }
 
-        return false;
+        newAes.setBlockMode(BlockMode.GCM);
+        compressed = header.isCompressed();
+        content = newTable;
+        savedContent = newTable.snapshot();
+        edits = new NoteJournal.EditList();
+        journal = newJournal;
+        aes = newAes;
+        return true;
+    }
+
+    /**
+     * This method is used to load a whole note file into a buffer according to the read mode of the note.
+     * @param inFile note file.
+     * @return buffer with the file, either a heap buffer or a read-only mapping.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @see ReadMode
+     */
+    private ByteBuffer load(File inFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(inFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The note file is too large.");
+            }
+
+            if (readMode == ReadMode.MAPPED) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until the buffer is full or the file ends.
+            }
+            buffer.flip();
+            return buffer;
+        }
     }
 
     /**
@@ -134,18 +514,39 @@ public class Note {
     public boolean read(String filename, String password)
             throws IOException, InvalidCryptModeException, CryptException {
 
-        if (!filename.endsWith(FILE_EXTENSION)) {
-            filename = filename + FILE_EXTENSION;
+        File newFile = toFile(filename);
+
+        boolean successful = read(newFile, password);
+
+        if (successful) {
+            file = newFile;
+            savedVersion = version;
         }
-        File newFile = new File(filename);
 
-        FileInputStream inpStream = new FileInputStream(newFile);
-        boolean successful = read(inpStream, password);
-        inpStream.close();
+        return successful;
+    }
+
+    /**
+     * This method is used to open an encrypted note of a vault from a file and decrypt it with the master key of the vault.
+     * Opening many notes costs one key derivation when the vault is unlocked and a cheap key unwrap per note.
+     * @param filename directory to the encrypted note file. It should have a .note extension. If not then it will be appended.
+     * @param masterKey unlocked master key of the vault of the note.
+     * @return true if the key was unwrapped and the decryption succeeded. False otherwise.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is not in a vault.
+     * @see MasterKey#unlock(File, String)
+     */
+    public boolean read(String filename, MasterKey masterKey)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        File newFile = toFile(filename);
+
+        boolean successful = read(newFile, masterKey);
 
         if (successful) {
             file = newFile;
-            saved = true;
+            savedVersion = version;
         }
 
         return successful;
@@ -153,112 +554,904 @@ public class Note {
 
     /**
      * This method is used to save the encrypted note to a file using the provided password.
-     * The bytes of the file are divided into segments starting from 0:<br>
-     * - Bytes 0-31: password hash<br>
-     * - Bytes 32-39: salt<br>
-     * - Bytes 40-55: initialisation vector<br>
-     * - Bytes 56-end: encrypted note content
+     * If the note was already opened or saved its salt is kept, so the key of an unchanged password is not derived again.
+     * The key is derived with the key derivation parameters of the note, which are stored in the file.
+     * The file starts with a header described in NoteHeader followed by the content encrypted with AES-GCM.
+     * The header is authenticated together with the content.
      * @param filename directory to the output file
      * @param password password to use as a base in encryption. The same password must be provided during decryption to successfully decrypt the note.
      * @throws IOException Signals that an I/O exception of some sort has occurred.
      * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
      * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     * @see NoteHeader
      */
     public void save(String filename, String password)
             throws IOException, InvalidCryptModeException, CryptException {
 
-        if (!filename.endsWith(FILE_EXTENSION)) {
-            filename = filename + FILE_EXTENSION;
+        save(toFile(filename), password);
+    }
+
+    /**
+     * This method is used to save the encrypted note to the given file using the provided password.
+     * The extension of the file is not checked.
+     * @param newFile output file.
+     * @param password password to use as a base in encryption.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     * @see Note#save(String, String)
+     */
+    void save(File newFile, String password)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        PendingWrite pending = startWrite(false);
+        try {
+            pending.awaitPrevious();
+            setPasswordKey(password);
+            write(newFile, pending.text);
+
+            file = newFile;
+            setSavedVersion(pending.version);
+        }
+        finally {
+            pending.done.complete(null);
         }
-        File newFile = new File(filename);
+        saved();
+    }
+
+    /**
+     * This method is used to set the key of the note derived from a password. If the note was already opened or saved
+     * with the same key derivation parameters, its salt is kept, so the key of an unchanged password is taken from the cache.
+     * @param password password to use as a base in encryption.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    private void setPasswordKey(String password) throws InvalidCryptModeException, CryptException {
+        if (wrappedKey == null && aes != null && kdfParams.equals(aes.getKdfParams())) {
+            aes = new AES(password, aes.getSalt(), AES.generateIV(BlockMode.GCM), kdfParams, BlockMode.GCM, CryptMode.BOTH);
+        } else {
+            aes = new AES(password, kdfParams, BlockMode.GCM, CryptMode.BOTH);
+        }
+        wrappedKey = null;
+    }
+
+    /**
+     * This method is used to save the encrypted note of a vault to a file. The content is encrypted with a new random
+     * data key, which is wrapped with the master key and stored in the header, so no key is derived from a password.
+     * @param filename directory to the output file
+     * @param masterKey unlocked master key of the vault.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     * @see MasterKey
+     */
+    public void save(String filename, MasterKey masterKey)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        File newFile = toFile(filename);
+
+        PendingWrite pending = startWrite(false);
+        try {
+            pending.awaitPrevious();
+            setMasterKey(masterKey);
+            write(newFile, pending.text);
+
+            file = newFile;
+            setSavedVersion(pending.version);
+        }
+        finally {
+            pending.done.complete(null);
+        }
+        saved();
+    }
+
+    /**
+     * This method is used to set a new random data key of the note wrapped with the master key of a vault.
+     * @param masterKey unlocked master key of the vault.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    private void setMasterKey(MasterKey masterKey) throws InvalidCryptModeException, CryptException {
+        SecretKey dataKey = AES.generateKey();
+        wrappedKey = masterKey.wrap(dataKey);
+        aes = new AES(dataKey, AES.generateIV(BlockMode.GCM), BlockMode.GCM, CryptMode.BOTH);
+    }
+
+    /**
+     * This method is used to encrypt the note into the image of a note file without writing it,
+     * so it can be stored in a container. The note is marked as saved.
+     * @param password password to use as a base in encryption.
+     * @return the header and the ciphertext of the note file in heap buffers.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     * @see NoteVault
+     */
+    ByteBuffer[] encrypt(String password) throws InvalidCryptModeException, CryptException {
+        PendingWrite pending = startWrite(false);
+        try {
+            pending.awaitPrevious();
+            setPasswordKey(password);
+            return encrypt(pending);
+        }
+        finally {
+            pending.done.complete(null);
+        }
+    }
+
+    /**
+     * This method is used to encrypt the note of a vault into the image of a note file without writing it.
+     * @param masterKey unlocked master key of the vault.
+     * @return the header and the ciphertext of the note file in heap buffers.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     * @see Note#encrypt(String)
+     */
+    ByteBuffer[] encrypt(MasterKey masterKey) throws InvalidCryptModeException, CryptException {
+        PendingWrite pending = startWrite(false);
+        try {
+            pending.awaitPrevious();
+            setMasterKey(masterKey);
+            return encrypt(pending);
+        }
+        finally {
+            pending.done.complete(null);
+        }
+    }
 
-        byte[] newPassHash = Authenticator.hashPassword(password);
-        aes = new AES(password, CryptMode.BOTH);
-        byte[] salt = aes.getSalt();
-        byte[] iv = aes.getIV();
-        byte[] cipherText = aes.encrypt(content);
+    /**
+     * This method is used to encrypt the text of a save with the key of the note into the image of a note file.
+     * @param pending save whose turn came.
+     * @return the header and the ciphertext of the note file in heap buffers.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    private ByteBuffer[] encrypt(PendingWrite pending) throws InvalidCryptModeException, CryptException {
+        journal = null;
+        ByteBuffer[] buffers = seal(pending.text, false);
+        savedContent = pending.text;
+        setSavedVersion(pending.version);
+        return buffers;
+    }
 
-        byte[] buffer = createBuffer(newPassHash, salt, iv, cipherText);
-        save(newFile, buffer);
+    /**
+     * This method is used to start a save. The text, the version and the edits are taken and the save is queued after
+     * the last started one. The caller must complete the done future of the save when it finishes.
+     * @param appendIfPossible true if the edits should be appended to the journal when it is possible.
+     * @return the pending save.
+     */
+    private synchronized PendingWrite startWrite(boolean appendIfPossible) {
+        List<NoteJournal.Edit> appended = appendIfPossible && canAppend() ? edits.take() : null;
+        if (appended == null) {
+            edits = new NoteJournal.EditList();
+        }
 
-        passHash = newPassHash;
-        file = newFile;
-        saved = true;
+        PendingWrite pending = new PendingWrite(content.snapshot(), version, appended, lastWrite);
+        lastWrite = pending.done;
+        return pending;
     }
 
     /**
-     * This is the private method used to save a note to a file. The file is truncated.
+     * This method is used to record that a version of the content was saved. The saved version never moves backwards.
+     * @param saved saved version.
+     */
+    private synchronized void setSavedVersion(long saved) {
+        if (saved > savedVersion) {
+            savedVersion = saved;
+        }
+    }
+
+    /**
+     * This method is used to create the File of a note, appending the note file extension if it is missing.
+     * @param filename directory to the note file.
+     * @return the note File.
+     */
+    private static File toFile(String filename) {
+        if (!filename.endsWith(FILE_EXTENSION)) {
+            filename = filename + FILE_EXTENSION;
+        }
+        return new File(filename);
+    }
+
+    /**
+     * This method is used to encrypt a text with a new initialisation vector and write the header
+     * and the ciphertext to a file according to the save mode of the note.
+     * The journal of the previous version of the file is removed and a new empty journal is started.
+     * If the file cannot be written, the journal is dropped, so the next overwrite rewrites the file.
      * @param outFile output note file.
-     * @param buffer data to write to the file.
-     * @throws IOException This exception is thrown when the output stream could not be opened or another IO error occurs.
-     */
-    private void save(File outFile, byte[] buffer) throws IOException {
-        FileOutputStream outStream = new FileOutputStream(outFile);
-        if (outStream.getChannel().isOpen()) {
-            outStream.write(buffer);
-            outStream.close();
-        } else {
-            outStream.close();
-            throw new IOException("Cannot save the note.");
+     * @param text written text.
+     * @throws IOException This exception is thrown when the file could not be opened or another IO error occurs.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     * @see Note#seal(CharSequence, boolean)
+     */
+    private void write(File outFile, PieceTable.Snapshot text) throws IOException, InvalidCryptModeException, CryptException {
+        try {
+            store(outFile.toPath(), seal(text, true));
+        }
+        catch (IOException | InvalidCryptModeException | CryptException ex) {
+            journal = null;
+            throw ex;
         }
+        written(outFile, text);
     }
 
     /**
-     * This method is used to create the output buffer with the specified data.
-     * @param hash hashed password of the note.
-     * @param salt cryptographic salt used to encrypt the note.
-     * @param iv initialization vector of the encryption.
-     * @param cipherText encrypted text to save.
-     * @return created buffer ready for file output.
+     * This method is used to encrypt a text with a new initialisation vector. Text longer than SEGMENT_SIZE bytes is encrypted in segments.
+     * The text is encoded straight into a reusable direct buffer, which is wiped afterwards.
+     * If compression is enabled, the encoded text is compressed before encryption.
+     * @param text encrypted text.
+     * @param reuseBuffers true to encrypt into the reusable direct buffer of the thread, which is only valid until
+     *                     the thread encrypts again, false to encrypt into a new heap buffer that can be passed to other threads.
+     * @return the header and the ciphertext of the note file, which can be written with a single gathering write.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
      */
-    private byte[] createBuffer(byte[] hash, byte[] salt, byte[] iv, byte[] cipherText) {
-        byte[] buffer = new byte[HEADER_LENGTH + cipherText.length];
-        int bufferPos = 0;
+    private ByteBuffer[] seal(CharSequence text, boolean reuseBuffers) throws InvalidCryptModeException, CryptException {
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer plainText = DirectBuffers.getPlainBuffer(
+                (int) Math.ceil(text.length() * (double) encoder.maxBytesPerChar()));
+
+        ByteBuffer body = plainText;
+        try {
+            encoder.encode(CharBuffer.wrap(text), plainText, true);
+            encoder.flush(plainText);
+            plainText.flip();
+            if (compressed) {
+                body = Compression.deflate(plainText, compressionLevel);
+            }
+
+            aes.setIV(AES.generateIV(BlockMode.GCM));
+            NoteHeader noteHeader = wrappedKey != null
+                    ? NoteHeader.withWrappedKey(wrappedKey, aes.getIV())
+                    : new NoteHeader(aes.getSalt(), aes.getIV(), aes.getKdfParams());
+            noteHeader.setCompressed(compressed);
+            if (body.remaining() > SEGMENT_SIZE) {
+                noteHeader.setSegmentSize(SEGMENT_SIZE);
+            }
+            ByteBuffer header = ByteBuffer.wrap(noteHeader.toBytes());
+            aes.setAssociatedData(header.array());
 
-        System.arraycopy(hash, 0, buffer, bufferPos, hash.length);
-        bufferPos += hash.length;
-        System.arraycopy(salt, 0, buffer, bufferPos, salt.length);
-        bufferPos += salt.length;
-        System.arraycopy(iv, 0, buffer, bufferPos, iv.length);
-        bufferPos += iv.length;
-        System.arraycopy(cipherText, 0, buffer, bufferPos, cipherText.length);
+            int length = noteHeader.isSegmented()
+                    ? AES.getSegmentedLength(body.remaining(), SEGMENT_SIZE)
+                    : aes.getEncryptedLength(body.remaining());
+            ByteBuffer cipherText = reuseBuffers ? DirectBuffers.getCipherBuffer(length) : ByteBuffer.allocate(length);
+            if (noteHeader.isSegmented()) {
+                aes.encryptSegmented(body, cipherText, SEGMENT_SIZE);
+            } else {
+                aes.encrypt(body, cipherText);
+            }
+            cipherText.flip();
+
+            return new ByteBuffer[] {header, cipherText};
+        }
+        finally {
+            DirectBuffers.wipe(plainText);
+            if (body != plainText) {
+                DirectBuffers.wipe(body);
+            }
+        }
+    }
 
-        return buffer;
+    /**
+     * This method is used to update the state of the note after a text was sealed and written to a file.
+     * The journal of the previous version of the file is removed and a new empty journal is started.
+     * @param outFile written note file.
+     * @param text text written to the file.
+     * @throws IOException This exception is thrown when the journal could not be removed.
+     */
+    private void written(File outFile, CharSequence text) throws IOException {
+        NoteJournal.delete(outFile);
+        journal = new NoteJournal(outFile, aes.getIV());
+        savedContent = text;
     }
 
     /**
-     * This method is used to overwrite an opened note.
+     * This method is used to store the buffers in the target file according to the save mode of the note.
+     * In the atomic mode the temporary file is synchronised and renamed by this thread,
+     * or by the group commit if one is set.
+     * @param target output note file.
+     * @param buffers data to write to the file.
+     * @throws IOException This exception is thrown when the file could not be written or replaced.
+     * @see SaveMode
+     */
+    private void store(Path target, ByteBuffer... buffers) throws IOException {
+        if (saveMode == SaveMode.IN_PLACE) {
+            write(target, false, buffers);
+            return;
+        }
+
+        Path temp = DurableFiles.createTempFile(target);
+        try {
+            write(temp, groupCommit == null, buffers);
+            if (groupCommit != null) {
+                groupCommit.commit(temp, target);
+            } else {
+                DurableFiles.replace(temp, target);
+            }
+        }
+        catch (IOException ex) {
+            try {
+                Files.deleteIfExists(temp);
+            }
+            catch (IOException suppressed) {
+                ex.addSuppressed(suppressed);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * This is the private method used to write buffers to a file with gathering writes. The file is truncated.
+     * @param outFile output file.
+     * @param force true if the content should be synchronised with the disk before the file is closed.
+     * @param buffers data to write to the file.
+     * @throws IOException This exception is thrown when the file could not be opened or another IO error occurs.
+     */
+    private static void write(Path outFile, boolean force, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+
+        try (FileChannel channel = FileChannel.open(outFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            if (force) {
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * This method is used to overwrite an opened note. Legacy notes are written in the current format.
+     * If the journal is enabled, the edits since the last save are appended to the journal of the note file,
+     * so the cost of the save depends on the size of the edits instead of the size of the note.
+     * The journal is compacted into the note file when it grows longer than MIN_COMPACTION_LENGTH and the content.
      * @throws IOException Signals that an I/O exception of some sort has occurred.
      * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
      * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     * @see NoteJournal
      */
     public void overwrite() throws IOException, InvalidCryptModeException, CryptException {
-        FileOutputStream outStream = new FileOutputStream(file);
+        PendingWrite pending = startWrite(true);
+        try {
+            pending.awaitPrevious();
+            if (isAppendable(pending)) {
+                append(pending.appended, pending.text);
+            } else {
+                write(file, pending.text);
+            }
+            setSavedVersion(pending.version);
+        }
+        finally {
+            pending.done.complete(null);
+        }
+        saved();
+    }
 
-        byte[] cipherText = aes.encrypt(content);
+    /**
+     * This method is used to check if overwriting the note appends the change to the journal instead of rewriting the file.
+     * @return true if the journal is enabled, belongs to the note file, has all the edits since the last save
+     * and does not need compaction.
+     */
+    private boolean canAppend() {
+        NoteJournal current = journal;
+        return journalEnabled && current != null && current.isFor(file) && edits.isComplete()
+                && current.getLength() + edits.getSize() < getCompactionLength();
+    }
 
-        outStream.write(passHash);
-        outStream.write(aes.getSalt());
-        outStream.write(aes.getIV());
-        outStream.write(cipherText);
+    /**
+     * This method is used to check if the edits of a save whose turn came can be appended to the journal.
+     * If a previous save failed, the journal was dropped and the whole note file has to be rewritten.
+     * @param pending save whose turn came.
+     * @return true if the save has edits and the journal of the note file is still valid.
+     */
+    private boolean isAppendable(PendingWrite pending) {
+        NoteJournal current = journal;
+        return pending.appended != null && current != null && current.isFor(file);
+    }
 
-        outStream.close();
-        saved = true;
+    /**
+     * This method is used to get the length of the journal above which the note is compacted.
+     * @return the larger of MIN_COMPACTION_LENGTH and the length of the content.
+     */
+    private long getCompactionLength() {
+        return Math.max(MIN_COMPACTION_LENGTH, content.length());
+    }
+
+    /**
+     * This method is used to append edits to the journal. If they cannot be appended, the journal is dropped,
+     * so the next overwrite rewrites the whole note file.
+     * @param appended edits since the last save in order.
+     * @param text text after the edits.
+     * @throws IOException Signals that the journal could not be written.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    private void append(List<NoteJournal.Edit> appended, CharSequence text)
+            throws IOException, InvalidCryptModeException, CryptException {
+        try {
+            journal.append(aes, appended);
+        }
+        catch (IOException | InvalidCryptModeException | CryptException ex) {
+            journal = null;
+            throw ex;
+        }
+        savedContent = text;
+    }
+
+    /**
+     * This method is used to rewrite the note file with the current content and remove its journal.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    public void compact() throws IOException, InvalidCryptModeException, CryptException {
+        PendingWrite pending = startWrite(false);
+        try {
+            pending.awaitPrevious();
+            write(file, pending.text);
+            setSavedVersion(pending.version);
+        }
+        finally {
+            pending.done.complete(null);
+        }
+        saved();
     }
     
+    /**
+     * This method is used to open an encrypted note from a file and decrypt it with the given password asynchronously.
+     * The file is read with an asynchronous file channel and the key is derived and the content decrypted on the CPU executor,
+     * so the calling thread is not blocked. Cancelling the future stops the operation before its next step.
+     * The note must not be used until the future is completed.
+     * @param filename directory to the encrypted note file. It should have a .note extension. If not then it will be appended.
+     * @param password password used to encrypt the note needed for decryption.
+     * @return future completed with true if the authentication and decryption succeeded, false otherwise.
+     * @see Note#read(String, String)
+     * @see AsyncIO
+     */
+    public CompletableFuture<Boolean> readAsync(String filename, String password) {
+        File newFile = toFile(filename);
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        AsyncIO.forward(AsyncIO.readAll(newFile.toPath(), result)
+                .thenApplyAsync(data -> AsyncIO.call(result, () -> {
+                    boolean successful = read(newFile, data, password);
+                    if (successful) {
+                        file = newFile;
+                        savedVersion = version;
+                    }
+                    return successful;
+                }), AsyncIO.getCryptoExecutor()), result);
+
+        return result;
+    }
+
+    /**
+     * This method is used to save the encrypted note to a file using the provided password asynchronously.
+     * The key is derived and the content encrypted on the CPU executor and the file is written with an asynchronous
+     * file channel according to the save mode of the note. Cancelling the future stops the operation before its next step,
+     * and a partially written temporary file is removed. A step that already started is finished.
+     * The content can be edited while the note is saved, also by another thread, as the saved text is taken when this
+     * method is called. The note can be saved again before the future is completed, as the saves are written one at a time
+     * in the order they were started, but it must not be read until then.
+     * @param filename directory to the output file
+     * @param password password to use as a base in encryption.
+     * @return future completed when the note is saved.
+     * @see Note#save(String, String)
+     * @see AsyncIO
+     */
+    public CompletableFuture<Void> saveAsync(String filename, String password) {
+        File newFile = toFile(filename);
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        PendingWrite pending = startWrite(false);
+
+        CompletableFuture<Void> stage = pending.previous
+                .thenCompose(ignored -> writeAsync(newFile, pending.text, password, result))
+                .thenRun(() -> {
+                    file = newFile;
+                    setSavedVersion(pending.version);
+                });
+        AsyncIO.forward(finish(pending, stage).thenRun(this::saved), result);
+
+        return result;
+    }
+
+    /**
+     * This method is used to overwrite an opened note asynchronously. If the journal is enabled, the edits are appended
+     * to the journal on the CPU executor, otherwise the note file is rewritten as in saveAsync().
+     * @return future completed when the note is overwritten.
+     * @see Note#overwrite()
+     * @see Note#saveAsync(String, String)
+     */
+    public CompletableFuture<Void> overwriteAsync() {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        PendingWrite pending = startWrite(true);
+
+        CompletableFuture<Void> stage = pending.previous
+                .thenCompose(ignored -> {
+                    if (isAppendable(pending)) {
+                        return CompletableFuture.runAsync(() -> AsyncIO.call(result, () -> {
+                            append(pending.appended, pending.text);
+                            return null;
+                        }), AsyncIO.getCryptoExecutor());
+                    }
+                    return writeAsync(file, pending.text, null, result);
+                })
+                .thenRun(() -> setSavedVersion(pending.version));
+        AsyncIO.forward(finish(pending, stage).thenRun(this::saved), result);
+
+        return result;
+    }
+
+    /**
+     * This method is used to let the next save start when an asynchronous save finishes. If the save failed
+     * or was cancelled, the journal is dropped, so the next overwrite rewrites the whole note file.
+     * @param pending finishing save.
+     * @param stage future of the save.
+     * @return future completed after the next save was allowed to start, with the result of the save.
+     */
+    private CompletableFuture<Void> finish(PendingWrite pending, CompletableFuture<Void> stage) {
+        return stage.whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                journal = null;
+            }
+            pending.done.complete(null);
+        });
+    }
+
+    /**
+     * This method is used to encrypt a text on the CPU executor and store it in a file asynchronously.
+     * @param outFile output note file.
+     * @param text text to be saved.
+     * @param password password from which a new key is derived or null to keep the key of the note.
+     * @param operation future of the whole operation.
+     * @return future completed when the file is written.
+     * @see Note#write(File, PieceTable.Snapshot)
+     */
+    private CompletableFuture<Void> writeAsync(File outFile, CharSequence text, String password, CompletableFuture<?> operation) {
+        return CompletableFuture.supplyAsync(() -> AsyncIO.call(operation, () -> {
+                    if (password != null) {
+                        setPasswordKey(password);
+                    }
+                    return seal(text, false);
+                }), AsyncIO.getCryptoExecutor())
+                .thenCompose(buffers -> storeAsync(outFile.toPath(), buffers, operation))
+                .thenRun(() -> AsyncIO.call(operation, () -> {
+                    written(outFile, text);
+                    return null;
+                }));
+    }
+
+    /**
+     * This method is used to store the buffers in the target file asynchronously according to the save mode of the note.
+     * In the atomic mode the temporary file is written with an asynchronous file channel and then synchronised and renamed
+     * on the I/O executor. The temporary file is removed if the operation fails or is cancelled.
+     * @param target output note file.
+     * @param buffers data to write to the file.
+     * @param operation future of the whole operation.
+     * @return future completed when the file is written or replaced.
+     * @see Note#store(Path, ByteBuffer...)
+     */
+    private CompletableFuture<Void> storeAsync(Path target, ByteBuffer[] buffers, CompletableFuture<?> operation) {
+        if (saveMode == SaveMode.IN_PLACE) {
+            return AsyncIO.writeAll(target, false, operation, buffers);
+        }
+
+        Path temp;
+        try {
+            temp = DurableFiles.createTempFile(target);
+        }
+        catch (IOException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        GroupCommit commit = groupCommit;
+        return AsyncIO.writeAll(temp, commit == null, operation, buffers)
+                .thenRunAsync(() -> AsyncIO.call(operation, () -> {
+                    if (commit != null) {
+                        commit.commit(temp, target);
+                    } else {
+                        DurableFiles.replace(temp, target);
+                    }
+                    return null;
+                }), AsyncIO.getIoExecutor())
+                .whenComplete((ignored, ex) -> {
+                    if (ex != null) {
+                        try {
+                            Files.deleteIfExists(temp);
+                        }
+                        catch (IOException suppressed) {
+                            AsyncIO.unwrap(ex).addSuppressed(suppressed);
+                        }
+                    }
+                });
+    }
+
     /**
      * This method is used to change the content of the note. It performs a check on the length of the new note, throwing an exception if it is too long.
      * @param str new note content.
-     * @throws NoteTooLongException If the new content is longer than MAX_NOTE_SIZE.
+     * @throws NoteTooLongException If the new content is longer than the maximum size of the note.
      */
     public void change(String str) throws NoteTooLongException {
-        if (str.length() > MAX_NOTE_SIZE) {
+        checkSize(str.length());
+
+        synchronized (this) {
+            edits.add(NoteJournal.Edit.diff(content.toString(), str));
+            content = new PieceTable(str);
+            version++;
+            recorded();
+        }
+        changed();
+    }
+
+    /**
+     * This method is used to insert text into the content of the note. Only the inserted text is copied,
+     * so the cost does not depend on the length of the note.
+     * @param offset index at which the text is inserted.
+     * @param str inserted text.
+     * @throws NoteTooLongException If the content would be longer than the maximum size of the note.
+     * @throws IndexOutOfBoundsException Thrown when the offset is outside of the content.
+     */
+    public void insert(int offset, String str) throws NoteTooLongException {
+        checkSize((long) content.length() + str.length());
+
+        synchronized (this) {
+            content.insert(offset, str);
+            edits.insert(offset, str);
+            version++;
+            recorded();
+        }
+        changed();
+    }
+
+    /**
+     * This method is used to delete a part of the content of the note without copying the rest of the content.
+     * @param offset index of the first deleted character.
+     * @param count number of deleted characters.
+     * @throws IndexOutOfBoundsException Thrown when the range is outside of the content.
+     */
+    public void delete(int offset, int count) {
+        synchronized (this) {
+            content.delete(offset, count);
+            edits.delete(offset, count);
+            version++;
+            recorded();
+        }
+        changed();
+    }
+
+    /**
+     * This method is used to forget the recorded edits when appending them would take longer than rewriting the note.
+     * It must be called with the lock of the note held.
+     */
+    private void recorded() {
+        if (edits.isComplete() && edits.getSize() > getCompactionLength()) {
+            edits.discard();
+        }
+    }
+
+    /**
+     * This method is used to notify the change listeners after the content was changed.
+     */
+    private void changed() {
+        for (Consumer<Note> listener : changeListeners) {
+            listener.accept(this);
+        }
+    }
+
+    /**
+     * This method is used to notify the save listeners after the note was saved to its file.
+     */
+    private void saved() {
+        for (Consumer<Note> listener : saveListeners) {
+            listener.accept(this);
+        }
+    }
+
+    /**
+     * This method is used to add a listener notified after the note is saved or overwritten. Listeners of asynchronous
+     * saves are notified on the thread completing the save. The saved text is returned by getSavedContent().
+     * @param listener listener receiving the saved note.
+     * @see SearchIndex
+     */
+    public void addSaveListener(Consumer<Note> listener) {
+        saveListeners.add(listener);
+    }
+
+    /**
+     * This method is used to remove a save listener.
+     * @param listener removed listener.
+     */
+    public void removeSaveListener(Consumer<Note> listener) {
+        saveListeners.remove(listener);
+    }
+
+    /**
+     * This method is used to get the content of the note as stored in its file, which can differ from the current
+     * content if the note was changed after the last save.
+     * @return the saved content or null if the note was not read or saved.
+     */
+    public String getSavedContent() {
+        return savedContent != null ? savedContent.toString() : null;
+    }
+
+    /**
+     * This method is used to add a listener notified on the editing thread after every change of the content.
+     * @param listener listener receiving the changed note.
+     * @see Autosave
+     */
+    public void addChangeListener(Consumer<Note> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * This method is used to remove a change listener.
+     * @param listener removed listener.
+     */
+    public void removeChangeListener(Consumer<Note> listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * This method is used to check if content of the given length fits in the note.
+     * @param length length of the content in characters.
+     * @throws NoteTooLongException If the length is higher than the maximum size of the note.
+     */
+    private void checkSize(long length) throws NoteTooLongException {
+        if (length > maxSize) {
             throw new NoteTooLongException(String.format("Note size of %d is too long. The limit is %d.",
-                    str.length(), MAX_NOTE_SIZE));
+                    length, maxSize));
         }
-        
-        content = str;
-        saved = false;
+    }
+
+    /**
+     * This method is used to get the maximum size of the note in characters.
+     * @return maximum size of the note.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * This method is used to set the maximum size of the note in characters. It is checked when the content
+     * is changed, not when the note is read.
+     * @param maxSize new maximum size of the note.
+     * @throws IllegalArgumentException Thrown when the size is negative.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(String.format("Maximum note size of %d is invalid.", maxSize));
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * This method is used to get the key derivation parameters used when the note is saved.
+     * After reading a note they are equal to the parameters stored in its file.
+     * @return key derivation parameters of the note.
+     */
+    public KdfParams getKdfParams() {
+        return kdfParams;
+    }
+
+    /**
+     * This method is used to set the key derivation parameters used when the note is saved with a password.
+     * @param kdfParams new key derivation parameters.
+     * @see KdfCalibrator
+     */
+    public void setKdfParams(KdfParams kdfParams) {
+        this.kdfParams = kdfParams;
+    }
+
+    /**
+     * This method is used to get the way the note file is loaded when the note is read.
+     * @return read mode of the note.
+     */
+    public ReadMode getReadMode() {
+        return readMode;
+    }
+
+    /**
+     * This method is used to set the way the note file is loaded when the note is read.
+     * The mapped mode avoids copying large files into the heap, but the file stays mapped until the garbage
+     * collector releases the mapping.
+     * @param readMode new read mode.
+     */
+    public void setReadMode(ReadMode readMode) {
+        this.readMode = readMode;
+    }
+
+    /**
+     * This method is used to get the way the note file is written when the note is saved.
+     * @return save mode of the note.
+     */
+    public SaveMode getSaveMode() {
+        return saveMode;
+    }
+
+    /**
+     * This method is used to set the way the note file is written when the note is saved.
+     * The atomic mode is the default.
+     * @param saveMode new save mode.
+     */
+    public void setSaveMode(SaveMode saveMode) {
+        this.saveMode = saveMode;
+    }
+
+    /**
+     * This method is used to set the group commit used by atomic saves. Notes saved concurrently by many threads
+     * can share one group commit, so they share the synchronisation of their directories.
+     * @param groupCommit group commit or null to synchronise every save on its own.
+     */
+    public void setGroupCommit(GroupCommit groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    /**
+     * This method is used to check if the content is compressed before encryption when the note is saved.
+     * After reading a note it is true if the note file was compressed.
+     * @return true if compression is enabled.
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * This method is used to enable or disable the compression of the content before encryption.
+     * Compression is disabled by default. Notes are read correctly regardless of this setting.
+     * @param compressed true to compress the content when the note is saved.
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * This method is used to get the compression level used when the note is saved compressed.
+     * @return compression level.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * This method is used to set the compression level used when the note is saved compressed.
+     * Higher levels produce smaller files, but take more time.
+     * @param compressionLevel compression level between Compression.MIN_LEVEL and Compression.MAX_LEVEL.
+     * @throws IllegalArgumentException Thrown when the level is not accepted.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        Compression.checkLevel(compressionLevel);
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * This method is used to check if overwriting the note appends the change to its journal.
+     * @return true if the journal is enabled.
+     */
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    /**
+     * This method is used to enable or disable the journal. The journal is disabled by default.
+     * Journals left by earlier saves are always applied when the note is read.
+     * @param journalEnabled true to append changes to the journal when the note is overwritten.
+     */
+    public void setJournalEnabled(boolean journalEnabled) {
+        this.journalEnabled = journalEnabled;
+    }
+
+    /**
+     * This method is used to check if the note is encrypted with a data key wrapped with the master key of a vault.
+     * @return true if the note was opened or saved with a master key.
+     */
+    public boolean isInVault() {
+        return wrappedKey != null;
     }
 
     /**
@@ -282,7 +1475,7 @@ public class Note {
      * @return true if the note has been saved since the last change.
      */
     public boolean isSaved() {
-        return saved;
+        return version == savedVersion;
     }
 
     /**
@@ -0,0 +1,300 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Class used to search the content of all notes in a directory with a regular expression. The notes are decrypted
+ * in memory on a fixed number of worker threads, so the key derivations of different notes run in parallel and
+ * the time of a search depends on the number of processors rather than the number of notes. Every matching line
+ * is passed to the listener as soon as it is found and the search stops after the given number of matches.
+ * The decrypted content is never written to disk.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+public class NoteGrep {
+
+    /**
+     * Interface of a listener notified about every match. It is called from the worker threads.
+     */
+    public interface Listener {
+
+        /**
+         * This method is called when a matching line is found.
+         * @param match the match.
+         */
+        void matchFound(Match match);
+    }
+
+    /**
+     * Class representing a line of a note matching the pattern.
+     */
+    public static class Match {
+
+        /**
+         * Note file with the line.
+         */
+        private final File file;
+
+        /**
+         * Number of the line starting from 1.
+         */
+        private final int lineNumber;
+
+        /**
+         * Content of the line.
+         */
+        private final String line;
+
+        /**
+         * Constructor of the match.
+         * @param file note file with the line.
+         * @param lineNumber number of the line starting from 1.
+         * @param line content of the line.
+         */
+        private Match(File file, int lineNumber, String line) {
+            this.file = file;
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+
+        /**
+         * This method is used to get the note file with the matching line.
+         * @return the note file.
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * This method is used to get the number of the matching line.
+         * @return number of the line starting from 1.
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * This method is used to get the content of the matching line.
+         * @return the line without the line separator.
+         */
+        public String getLine() {
+            return line;
+        }
+    }
+
+    /**
+     * Class representing the result of a search.
+     */
+    public static class Result {
+
+        /**
+         * Number of reported matches.
+         */
+        private final int matchCount;
+
+        /**
+         * Number of decrypted and searched notes.
+         */
+        private final int searchedCount;
+
+        /**
+         * Number of notes that could not be decrypted with the password.
+         */
+        private final int skippedCount;
+
+        /**
+         * True if the search stopped after reaching the limit of matches.
+         */
+        private final boolean limitReached;
+
+        /**
+         * Constructor of the result.
+         * @param matchCount number of reported matches.
+         * @param searchedCount number of decrypted and searched notes.
+         * @param skippedCount number of notes that could not be decrypted.
+         * @param limitReached true if the search stopped after reaching the limit of matches.
+         */
+        private Result(int matchCount, int searchedCount, int skippedCount, boolean limitReached) {
+            this.matchCount = matchCount;
+            this.searchedCount = searchedCount;
+            this.skippedCount = skippedCount;
+            this.limitReached = limitReached;
+        }
+
+        /**
+         * This method is used to get the number of reported matches.
+         * @return number of matching lines.
+         */
+        public int getMatchCount() {
+            return matchCount;
+        }
+
+        /**
+         * This method is used to get the number of searched notes.
+         * @return number of decrypted notes.
+         */
+        public int getSearchedCount() {
+            return searchedCount;
+        }
+
+        /**
+         * This method is used to get the number of notes that could not be decrypted with the password.
+         * @return number of skipped notes.
+         */
+        public int getSkippedCount() {
+            return skippedCount;
+        }
+
+        /**
+         * This method is used to check if the search stopped early after reaching the limit of matches.
+         * @return true if some notes may not have been searched.
+         */
+        public boolean isLimitReached() {
+            return limitReached;
+        }
+    }
+
+    /**
+     * Number of worker threads.
+     */
+    private final int threadCount;
+
+    /**
+     * Maximum number of reported matches.
+     */
+    private final int maxMatches;
+
+    /**
+     * Constructor creating a search with one worker thread per processor and no limit of matches.
+     */
+    public NoteGrep() {
+        this(Runtime.getRuntime().availableProcessors(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor of the NoteGrep class.
+     * @param threadCount number of worker threads. If it is lower than 1 it is set to 1.
+     * @param maxMatches maximum number of reported matches. If it is lower than 1 it is set to 1.
+     */
+    public NoteGrep(int threadCount, int maxMatches) {
+        this.threadCount = Math.max(threadCount, 1);
+        this.maxMatches = Math.max(maxMatches, 1);
+    }
+
+    /**
+     * This method is used to search all note files directly in a directory. Notes that cannot be decrypted with
+     * the password, such as notes of a vault, are skipped. The notes are searched in no particular order, but the matches
+     * of a single note are reported in the order of its lines.
+     * @param directory directory with the notes.
+     * @param password password of the notes.
+     * @param pattern pattern searched for in every line of the notes.
+     * @param listener listener notified about every match.
+     * @return result of the search.
+     * @throws IOException Signals that the directory could not be listed.
+     * @throws InterruptedException Thrown when the calling thread is interrupted while waiting for the workers.
+     */
+    public Result search(File directory, String password, Pattern pattern, Listener listener)
+            throws IOException, InterruptedException {
+
+        List<File> files;
+        try (Stream<Path> paths = Files.list(directory.toPath())) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().endsWith(Note.FILE_EXTENSION))
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+
+        AtomicInteger matches = new AtomicInteger();
+        AtomicInteger searched = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>(files.size());
+        for (File file : files) {
+            tasks.add(() -> {
+                if (matches.get() >= maxMatches) {
+                    return null;
+                }
+                if (searchFile(file, password, pattern, listener, matches)) {
+                    searched.incrementAndGet();
+                } else {
+                    skipped.incrementAndGet();
+                }
+                return null;
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threadCount, Math.max(files.size(), 1)));
+        try {
+            pool.invokeAll(tasks);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        int matchCount = Math.min(matches.get(), maxMatches);
+        return new Result(matchCount, searched.get(), skipped.get(), matchCount == maxMatches);
+    }
+
+    /**
+     * This method is used to decrypt a single note and report its matching lines. As in grep, a line separator
+     * at the end of the note does not start another line and an empty note has no lines.
+     * @param file note file.
+     * @param password password of the note.
+     * @param pattern searched pattern.
+     * @param listener listener notified about every match.
+     * @param matches number of matches found so far by all workers.
+     * @return true if the note was decrypted, false if it was skipped.
+     */
+    private boolean searchFile(File file, String password, Pattern pattern, Listener listener, AtomicInteger matches) {
+        String content;
+        try {
+            Note note = new Note();
+            if (!note.read(file.getPath(), password)) {
+                return false;
+            }
+            content = note.getContent();
+        }
+        catch (IOException | InvalidCryptModeException | CryptException ex) {
+            return false;
+        }
+
+        Matcher matcher = pattern.matcher("");
+        int lineNumber = 0;
+        int start = 0;
+        while (start < content.length()) {
+            int end = content.indexOf('\n', start);
+            if (end < 0) {
+                end = content.length();
+            }
+            lineNumber++;
+
+            if (matcher.reset(content.subSequence(start, end)).find()) {
+                if (matches.getAndIncrement() >= maxMatches) {
+                    break;
+                }
+                listener.matchFound(new Match(file, lineNumber, content.substring(start, end).stripTrailing()));
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            start = end + 1;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,534 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.enums.BlockMode;
+import pl.polsl.lab.szymonbotor.notemanager.enums.KdfAlgorithm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Class representing the header of a note file. Three versions of the header are supported.<br>
+ * Version 1 (legacy, AES-CBC):<br>
+ * - Bytes 0-31: SHA-256 password hash<br>
+ * - Bytes 32-39: salt<br>
+ * - Bytes 40-55: initialisation vector<br>
+ * Version 2 (AES-GCM):<br>
+ * - Bytes 0-3: magic bytes "NOTE"<br>
+ * - Byte 4: version<br>
+ * - Bytes 5-6: total header length<br>
+ * - Byte 7: flags<br>
+ * - Bytes 8-15: salt<br>
+ * - Bytes 16-27: initialisation vector<br>
+ * - Bytes 28-31: segment size, only if FLAG_SEGMENTED is set<br>
+ * Version 3 (AES-GCM with key derivation parameters):<br>
+ * - Bytes 0-7: the same as in version 2<br>
+ * - Byte 8: key derivation algorithm identifier<br>
+ * - Bytes 9-12: key derivation iteration count<br>
+ * - Bytes 13-20: salt<br>
+ * - Bytes 21-32: initialisation vector<br>
+ * - Bytes 33-36: segment size, only if FLAG_SEGMENTED is set<br>
+ * If FLAG_WRAPPED_KEY is set, bytes 8-47 of version 3 hold the data key of the note wrapped with the master key
+ * of its vault instead of the key derivation fields and the salt. The following fields are moved accordingly.<br>
+ * If FLAG_COMPRESSED is set in version 3, the content was compressed with DEFLATE before encryption.<br>
+ * Version 2 notes use the default key derivation parameters.
+ * Legacy files do not start with the magic bytes, unless the password hash happens to, which is negligibly unlikely.
+ * @author Szymon Botor
+ * @version 1.4
+ */
+public class NoteHeader {
+
+    /**
+     * Magic bytes at the start of every versioned note file.
+     */
+    public static final byte[] MAGIC = {'N', 'O', 'T', 'E'};
+
+    /**
+     * Version of the legacy header without the magic bytes.
+     */
+    public static final int LEGACY_VERSION = 1;
+
+    /**
+     * Version of the first header with the magic bytes, which uses the default key derivation parameters.
+     */
+    public static final int GCM_VERSION = 2;
+
+    /**
+     * Version of the header written by this class.
+     */
+    public static final int CURRENT_VERSION = 3;
+
+    /**
+     * Flag set when the content is divided into independently encrypted segments.
+     * @see AES#encryptSegmented(byte[], int)
+     */
+    public static final int FLAG_SEGMENTED = 0x01;
+
+    /**
+     * Flag set when the content is encrypted with a random data key wrapped with a master key
+     * instead of a key derived from the password.
+     * @see MasterKey
+     */
+    public static final int FLAG_WRAPPED_KEY = 0x02;
+
+    /**
+     * Flag set when the content was compressed before encryption.
+     * @see Compression
+     */
+    public static final int FLAG_COMPRESSED = 0x04;
+
+    /**
+     * All flags understood by this version of the class.
+     */
+    private static final int SUPPORTED_FLAGS = FLAG_SEGMENTED | FLAG_WRAPPED_KEY | FLAG_COMPRESSED;
+
+    /**
+     * Length of the password hash in the legacy header.
+     */
+    public static final int HASH_LENGTH = 32;
+
+    /**
+     * Length of the legacy header in bytes.
+     */
+    public static final int LEGACY_LENGTH = HASH_LENGTH + AES.SALT_LENGTH + AES.IV_LENGTH;
+
+    /**
+     * Length of the fixed part of a versioned header (magic, version and length) in bytes.
+     */
+    private static final int PREFIX_LENGTH = MAGIC.length + 1 + 2;
+
+    /**
+     * Maximum length of a header of any supported version in bytes. Reading this many bytes from the start
+     * of a note file is enough to read its header.
+     */
+    public static final int MAX_LENGTH = Math.max(LEGACY_LENGTH,
+            PREFIX_LENGTH + 1 + MasterKey.WRAPPED_KEY_LENGTH + BlockMode.GCM.ivLength + Integer.BYTES);
+
+    /**
+     * Version of the header.
+     */
+    private final int version;
+
+    /**
+     * Format flags of the note. Always 0 in the legacy header.
+     */
+    private int flags;
+
+    /**
+     * Password hash. Only present in the legacy header.
+     */
+    private final byte[] passHash;
+
+    /**
+     * Cryptographic salt used to derive the key. Null if the key is wrapped.
+     */
+    private final byte[] salt;
+
+    /**
+     * Initialisation vector of the encrypted content.
+     */
+    private final byte[] iv;
+
+    /**
+     * Parameters of the derivation of the key from the password. Null if the key is wrapped.
+     */
+    private final KdfParams kdfParams;
+
+    /**
+     * Data key wrapped with a master key. Only present if FLAG_WRAPPED_KEY is set.
+     */
+    private final byte[] wrappedKey;
+
+    /**
+     * Number of plaintext bytes in a segment of the content. Only used if FLAG_SEGMENTED is set.
+     */
+    private int segmentSize;
+
+    /**
+     * Constructor creating a header of the current version with the default key derivation parameters.
+     * @param salt cryptographic salt used to derive the key.
+     * @param iv initialisation vector of the encrypted content.
+     */
+    public NoteHeader(byte[] salt, byte[] iv) {
+        this(salt, iv, KdfParams.DEFAULT);
+    }
+
+    /**
+     * Constructor creating a header of the current version.
+     * @param salt cryptographic salt used to derive the key.
+     * @param iv initialisation vector of the encrypted content.
+     * @param kdfParams parameters of the derivation of the key from the password.
+     */
+    public NoteHeader(byte[] salt, byte[] iv, KdfParams kdfParams) {
+        this(CURRENT_VERSION, 0, null, salt, iv, kdfParams, null);
+    }
+
+    /**
+     * This method is used to create a header of the current version of a note encrypted with a wrapped data key.
+     * @param wrappedKey data key wrapped with a master key.
+     * @param iv initialisation vector of the encrypted content.
+     * @return the created header with FLAG_WRAPPED_KEY set.
+     * @see MasterKey#wrap(javax.crypto.SecretKey)
+     */
+    public static NoteHeader withWrappedKey(byte[] wrappedKey, byte[] iv) {
+        return new NoteHeader(CURRENT_VERSION, FLAG_WRAPPED_KEY, null, null, iv, null, wrappedKey);
+    }
+
+    /**
+     * Constructor creating a header with all the fields specified.
+     * @param version version of the header.
+     * @param flags format flags of the note.
+     * @param passHash password hash or null if the version does not contain it.
+     * @param salt cryptographic salt used to derive the key.
+     * @param iv initialisation vector of the encrypted content.
+     * @param kdfParams parameters of the derivation of the key from the password.
+     * @param wrappedKey data key wrapped with a master key or null if the key is derived from the password.
+     */
+    private NoteHeader(int version, int flags, byte[] passHash, byte[] salt, byte[] iv, KdfParams kdfParams,
+                       byte[] wrappedKey) {
+        this.version = version;
+        this.flags = flags;
+        this.passHash = passHash;
+        this.salt = salt;
+        this.iv = iv;
+        this.kdfParams = kdfParams;
+        this.wrappedKey = wrappedKey;
+    }
+
+    /**
+     * This method is used to read a header of any supported version from a stream.
+     * The stream is left at the first byte of the encrypted content.
+     * @param inpStream stream to read the header from.
+     * @return the read header.
+     * @throws IOException Signals that the stream ended early, the header is malformed or another I/O error occurred.
+     */
+    public static NoteHeader read(InputStream inpStream) throws IOException {
+        byte[] start = readFully(inpStream, MAGIC.length);
+
+        if (!Arrays.equals(start, MAGIC)) {
+            byte[] hash = new byte[HASH_LENGTH];
+            System.arraycopy(start, 0, hash, 0, start.length);
+            System.arraycopy(readFully(inpStream, HASH_LENGTH - start.length), 0, hash, start.length, HASH_LENGTH - start.length);
+
+            byte[] salt = readFully(inpStream, AES.SALT_LENGTH);
+            byte[] iv = readFully(inpStream, AES.IV_LENGTH);
+            return new NoteHeader(LEGACY_VERSION, 0, hash, salt, iv, KdfParams.DEFAULT, null);
+        }
+
+        ByteBuffer prefix = ByteBuffer.wrap(readFully(inpStream, PREFIX_LENGTH - MAGIC.length));
+        int version = Byte.toUnsignedInt(prefix.get());
+        int length = Short.toUnsignedInt(prefix.getShort());
+        if (version < GCM_VERSION || version > CURRENT_VERSION || length < PREFIX_LENGTH) {
+            throw new IOException(String.format("Unsupported note file version %d.", version));
+        }
+
+        return parse(version, ByteBuffer.wrap(readFully(inpStream, length - PREFIX_LENGTH)));
+    }
+
+    /**
+     * This method is used to read a header of any supported version from a buffer, for example a mapped file.
+     * The position of the buffer is left at the first byte of the encrypted content.
+     * @param buffer buffer to read the header from, starting at its position.
+     * @return the read header.
+     * @throws IOException Signals that the buffer ended early or the header is malformed.
+     */
+    public static NoteHeader read(ByteBuffer buffer) throws IOException {
+        try {
+            byte[] start = new byte[MAGIC.length];
+            buffer.get(start);
+
+            if (!Arrays.equals(start, MAGIC)) {
+                byte[] hash = new byte[HASH_LENGTH];
+                System.arraycopy(start, 0, hash, 0, start.length);
+                buffer.get(hash, start.length, HASH_LENGTH - start.length);
+
+                byte[] salt = new byte[AES.SALT_LENGTH];
+                buffer.get(salt);
+                byte[] iv = new byte[AES.IV_LENGTH];
+                buffer.get(iv);
+                return new NoteHeader(LEGACY_VERSION, 0, hash, salt, iv, KdfParams.DEFAULT, null);
+            }
+
+            int version = Byte.toUnsignedInt(buffer.get());
+            int length = Short.toUnsignedInt(buffer.getShort());
+            if (version < GCM_VERSION || version > CURRENT_VERSION || length < PREFIX_LENGTH) {
+                throw new IOException(String.format("Unsupported note file version %d.", version));
+            }
+            if (buffer.remaining() < length - PREFIX_LENGTH) {
+                throw new EOFException("The note file is too short.");
+            }
+
+            ByteBuffer rest = buffer.slice();
+            rest.limit(length - PREFIX_LENGTH);
+            buffer.position(buffer.position() + rest.limit());
+            return parse(version, rest);
+        } catch (BufferUnderflowException ex) {
+            throw new EOFException("The note file is too short.");
+        }
+    }
+
+    /**
+     * This method is used to parse the part of a versioned header following the length field.
+     * @param version version of the header.
+     * @param rest buffer with the rest of the header.
+     * @return the parsed header.
+     * @throws IOException Signals that the header is malformed or uses unsupported features.
+     */
+    private static NoteHeader parse(int version, ByteBuffer rest) throws IOException {
+        try {
+            int flags = Byte.toUnsignedInt(rest.get());
+            if ((flags & ~SUPPORTED_FLAGS) != 0
+                    || (flags & (FLAG_WRAPPED_KEY | FLAG_COMPRESSED)) != 0 && version < CURRENT_VERSION) {
+                throw new IOException(String.format("Unsupported note format flags %d.", flags));
+            }
+
+            if ((flags & FLAG_WRAPPED_KEY) != 0) {
+                byte[] wrappedKey = new byte[MasterKey.WRAPPED_KEY_LENGTH];
+                rest.get(wrappedKey);
+                byte[] iv = new byte[BlockMode.GCM.ivLength];
+                rest.get(iv);
+
+                NoteHeader header = new NoteHeader(version, flags, null, null, iv, null, wrappedKey);
+                header.readSegmentSize(rest);
+                return header;
+            }
+
+            KdfParams kdfParams = KdfParams.DEFAULT;
+            if (version >= CURRENT_VERSION) {
+                int algorithmId = Byte.toUnsignedInt(rest.get());
+                int iterations = rest.getInt();
+                try {
+                    kdfParams = new KdfParams(KdfAlgorithm.fromId(algorithmId), iterations);
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException("Unsupported key derivation parameters. " + ex.getMessage());
+                }
+            }
+
+            byte[] salt = new byte[AES.SALT_LENGTH];
+            rest.get(salt);
+            byte[] iv = new byte[BlockMode.GCM.ivLength];
+            rest.get(iv);
+
+            NoteHeader header = new NoteHeader(version, flags, null, salt, iv, kdfParams, null);
+            header.readSegmentSize(rest);
+            return header;
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("The note file header is malformed.");
+        }
+    }
+
+    /**
+     * This method is used to read the segment size from the end of a header if FLAG_SEGMENTED is set.
+     * @param rest buffer with the rest of the header.
+     */
+    private void readSegmentSize(ByteBuffer rest) {
+        if (isSegmented()) {
+            segmentSize = rest.getInt();
+        }
+    }
+
+    /**
+     * This method is used to read exactly the specified number of bytes from a stream.
+     * @param inpStream stream to read from.
+     * @param length number of bytes to read.
+     * @return array of read bytes.
+     * @throws IOException Signals that the stream ended early or another I/O error occurred.
+     */
+    private static byte[] readFully(InputStream inpStream, int length) throws IOException {
+        byte[] bytes = inpStream.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("The note file is too short.");
+        }
+        return bytes;
+    }
+
+    /**
+     * This method is used to serialise the header. Legacy headers cannot be serialised. Other headers are
+     * serialised in their own version, so a read header produces exactly the bytes it was read from.
+     * The result is also used as associated data of the encrypted content, so the header cannot be modified unnoticed.
+     * @return bytes of the header.
+     */
+    public byte[] toBytes() {
+        if (isLegacy()) {
+            throw new IllegalStateException("Legacy headers are not written anymore.");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(getLength());
+        buffer.put(MAGIC)
+                .put((byte) version)
+                .putShort((short) getLength())
+                .put((byte) flags);
+        if (isKeyWrapped()) {
+            buffer.put(wrappedKey);
+        } else {
+            if (version >= CURRENT_VERSION) {
+                buffer.put((byte) kdfParams.getAlgorithm().id)
+                        .putInt(kdfParams.getIterations());
+            }
+            buffer.put(salt);
+        }
+        buffer.put(iv);
+        if (isSegmented()) {
+            buffer.putInt(segmentSize);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * This method is used to get the length of the header in bytes.
+     * @return length of the serialised header.
+     */
+    public int getLength() {
+        if (isLegacy()) {
+            return LEGACY_LENGTH;
+        }
+
+        int length = PREFIX_LENGTH + 1 + iv.length;
+        if (isKeyWrapped()) {
+            length += wrappedKey.length;
+        } else {
+            length += salt.length;
+            if (version >= CURRENT_VERSION) {
+                length += 1 + Integer.BYTES;
+            }
+        }
+        if (isSegmented()) {
+            length += Integer.BYTES;
+        }
+        return length;
+    }
+
+    /**
+     * This method is used to check if the header is a legacy version 1 header.
+     * @return true if the note content is encrypted with AES-CBC and authenticated with the password hash.
+     */
+    public boolean isLegacy() {
+        return version == LEGACY_VERSION;
+    }
+
+    /**
+     * This method is used to get the version of the header.
+     * @return version of the header.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * This method is used to get the format flags of the note.
+     * @return format flags.
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * This method is used to get the password hash of a legacy header.
+     * @return password hash or null if the header is not a legacy one.
+     */
+    public byte[] getPassHash() {
+        return passHash;
+    }
+
+    /**
+     * This method is used to get the cryptographic salt.
+     * @return salt used to derive the key or null if the key is wrapped.
+     */
+    public byte[] getSalt() {
+        return salt;
+    }
+
+    /**
+     * This method is used to get the initialisation vector.
+     * @return initialisation vector of the encrypted content.
+     */
+    public byte[] getIV() {
+        return iv;
+    }
+
+    /**
+     * This method is used to get the parameters of the derivation of the key from the password.
+     * @return key derivation parameters or null if the key is wrapped.
+     */
+    public KdfParams getKdfParams() {
+        return kdfParams;
+    }
+
+    /**
+     * This method is used to get the block cipher mode of operation of the encrypted content.
+     * @return block mode of the note content.
+     */
+    public BlockMode getBlockMode() {
+        return isLegacy() ? BlockMode.CBC : BlockMode.GCM;
+    }
+
+    /**
+     * This method is used to check if the content is encrypted with a data key wrapped with a master key.
+     * @return true if FLAG_WRAPPED_KEY is set.
+     */
+    public boolean isKeyWrapped() {
+        return (flags & FLAG_WRAPPED_KEY) != 0;
+    }
+
+    /**
+     * This method is used to get the wrapped data key.
+     * @return data key wrapped with a master key or null if the key is derived from the password.
+     */
+    public byte[] getWrappedKey() {
+        return wrappedKey;
+    }
+
+    /**
+     * This method is used to check if the content is divided into segments.
+     * @return true if FLAG_SEGMENTED is set.
+     */
+    public boolean isSegmented() {
+        return (flags & FLAG_SEGMENTED) != 0;
+    }
+
+    /**
+     * This method is used to get the number of plaintext bytes in a segment.
+     * @return segment size or 0 if the content is not segmented.
+     */
+    public int getSegmentSize() {
+        return isSegmented() ? segmentSize : 0;
+    }
+
+    /**
+     * This method is used to set the number of plaintext bytes in a segment. A positive size sets FLAG_SEGMENTED,
+     * otherwise the flag is cleared.
+     * @param segmentSize new segment size.
+     */
+    public void setSegmentSize(int segmentSize) {
+        if (segmentSize > 0) {
+            this.segmentSize = segmentSize;
+            flags |= FLAG_SEGMENTED;
+        } else {
+            this.segmentSize = 0;
+            flags &= ~FLAG_SEGMENTED;
+        }
+    }
+
+    /**
+     * This method is used to check if the content was compressed before encryption.
+     * @return true if FLAG_COMPRESSED is set.
+     */
+    public boolean isCompressed() {
+        return (flags & FLAG_COMPRESSED) != 0;
+    }
+
+    /**
+     * This method is used to set or clear FLAG_COMPRESSED.
+     * @param compressed true if the content is compressed before encryption.
+     */
+    public void setCompressed(boolean compressed) {
+        if (compressed) {
+            flags |= FLAG_COMPRESSED;
+        } else {
+            flags &= ~FLAG_COMPRESSED;
+        }
+    }
+}
@@ -1,21 +1,263 @@
 package pl.polsl.lab.szymonbotor.notemanager.model;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Class for storing and managing note history.
+ * Class for storing and managing note history. The notes are kept in a doubly-linked list ordered from the most recent one
+ * and indexed by a hash map, so adding, moving to the front, evicting and finding a note take constant time regardless
+ * of the size of the history.<br>
+ * The history file holds a snapshot of the notes from the most recent one. Changes made after the snapshot are appended
+ * to a log next to it as lines starting with "+" for an added note and "-" for a removed one, so saving after opening
+ * a note writes a single line. The first line of every log starts with "#" followed by a random id, which tells apart
+ * a log that was only appended to from a new log created after a compaction, even if it reuses the file of the old one. The log is replayed after the snapshot when the history is read. When the log grows
+ * longer than MIN_COMPACTION_LENGTH and the snapshot, it is renamed and a new snapshot is written in the background.
+ * Replaying a log again on a snapshot that already contains it gives the same history, so a compaction interrupted
+ * at any point loses no changes.<br>
+ * Many processes can use the same history file. They coordinate with a file lock held only while the files are read
+ * or appended to. Before appending its changes, a history merges the changes appended by other processes since it last
+ * saw the log, so no process overwrites the notes opened by the others.
  * @author Szymon Botor
- * @version 2.0
+ * @version 2.5
  */
 public class NoteHistory {
     /**
      * Maximum number of items in the note history. The actual limit of a NoteHistory object can be lower, but never higher.
      */
-    public static final int MAX_ITEMS = 64;
+    public static final int MAX_ITEMS = 500_000;
+
+    /**
+     * Default number of items in the note history.
+     */
+    public static final int DEFAULT_ITEMS = 64;
+
+    /**
+     * Suffix appended to the name of the history file to get the name of its log.
+     */
+    public static final String LOG_SUFFIX = ".log";
+
+    /**
+     * Suffix appended to the name of the log while it is being compacted into a new snapshot.
+     */
+    public static final String COMPACTING_SUFFIX = ".old";
+
+    /**
+     * Suffix appended to the name of the history file to get the name of the file locked by the processes using it.
+     */
+    public static final String LOCK_SUFFIX = ".lock";
+
+    /**
+     * Minimal length of the log in bytes that triggers compaction. A longer log is compacted
+     * only when it is also longer than the snapshot.
+     */
+    public static final long MIN_COMPACTION_LENGTH = 64 * 1024;
+
+    /**
+     * Prefix of a log line recording an added note.
+     */
+    private static final char ADDED = '+';
+
+    /**
+     * Prefix of a log line recording a removed note.
+     */
+    private static final char REMOVED = '-';
+
+    /**
+     * Prefix of the first line of a log holding its id.
+     */
+    private static final char HEADER = '#';
+
+    /**
+     * Maximum length in bytes of the first line of a log.
+     */
+    private static final int MAX_HEADER_LENGTH = 64;
+
+    /**
+     * Monitors serialising the threads of this process that lock the same lock file.
+     */
+    private static final Map<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    /**
+     * Interface of an action run while a history file is locked.
+     * @param <T> type of the result of the action.
+     */
+    private interface LockedAction<T> {
+
+        /**
+         * This method is called while the history file is locked.
+         * @return result of the action.
+         * @throws IOException Thrown when the action fails.
+         */
+        T run() throws IOException;
+    }
+
+    /**
+     * Class representing the content of the files of a history read under a lock.
+     */
+    private static class Stored {
+
+        /**
+         * Content of the snapshot.
+         */
+        private final byte[] snapshot;
+
+        /**
+         * Content of the log being compacted or an empty array.
+         */
+        private final byte[] compacting;
+
+        /**
+         * Id of the log being compacted or null if it does not exist or has no id.
+         */
+        private final String compactingId;
+
+        /**
+         * Content of the log or an empty array if it was not read.
+         */
+        private final byte[] log;
+
+        /**
+         * Id of the log or null if it does not exist, has no id or was not read.
+         */
+        private final String logId;
+
+        /**
+         * Constructor of the stored content.
+         * @param snapshot content of the snapshot.
+         * @param compacting content of the log being compacted.
+         * @param log content of the log.
+         */
+        private Stored(byte[] snapshot, byte[] compacting, byte[] log) {
+            this.snapshot = snapshot;
+            this.compacting = compacting;
+            compactingId = getLogId(compacting);
+            this.log = log;
+            logId = getLogId(log);
+        }
+
+        /**
+         * This method is used to read the files of a history. It is called under a lock.
+         * @param target history file.
+         * @param withLog true to read the log, false to read only the snapshot and the log being compacted.
+         * @return content of the files.
+         * @throws IOException Thrown when the files cannot be read.
+         */
+        private static Stored load(Path target, boolean withLog) throws IOException {
+            byte[] snapshot = readIfExists(target);
+            byte[] compacting = readIfExists(getCompactingPath(target));
+            byte[] log = withLog ? readIfExists(getLogPath(target)) : new byte[0];
+            return new Stored(snapshot, compacting, log);
+        }
+
+        /**
+         * This method is used to read a whole file.
+         * @param path path of the file.
+         * @return content of the file or an empty array if it does not exist.
+         * @throws IOException Thrown when the file cannot be read.
+         */
+        private static byte[] readIfExists(Path path) throws IOException {
+            try {
+                return Files.readAllBytes(path);
+            }
+            catch (NoSuchFileException ex) {
+                return new byte[0];
+            }
+        }
+    }
+
+    /**
+     * Class representing a note in the recency list.
+     */
+    private static class Entry {
+
+        /**
+         * Directory of the note.
+         */
+        private final File file;
+
+        /**
+         * Entry of the next more recent note or null if this is the most recent one.
+         */
+        private Entry newer;
+
+        /**
+         * Entry of the next older note or null if this is the oldest one.
+         */
+        private Entry older;
+
+        /**
+         * Constructor of the entry.
+         * @param file directory of the note.
+         */
+        private Entry(File file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * Read-only view of the notes from the most recent one. Iteration follows the links of the list and indexed access
+     * uses an array of the notes, which is built again only after the history changes.
+     */
+    private class NotesView extends AbstractList<File> {
+
+        @Override
+        public File get(int index) {
+            return NoteHistory.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+        @Override
+        public Iterator<File> iterator() {
+            return new Iterator<File>() {
+
+                /**
+                 * Entry returned by the next call to next().
+                 */
+                private Entry next = newest;
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public File next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    File file = next.file;
+                    next = next.older;
+                    return file;
+                }
+            };
+        }
+    }
 
     /**
      * This method is used to get the directory of the history file.
@@ -57,10 +299,10 @@ public class NoteHistory {
 
     /**
      * This method is used to get the collection of notes in the history.
-     * @return Collection with the saved notes.
+     * @return Read-only view of the saved notes from the most recent one. It reflects later changes of the history.
      */
-    public ArrayList<File> getNotes() {
-        return notes;
+    public List<File> getNotes() {
+        return notesView;
     }
 
     /**
@@ -68,27 +310,91 @@ public class NoteHistory {
      * @return number of elements in the history.
      */
     public int size() {
-        return notes.size();
+        return entries.size();
     }
 
     /**
-     * This is the collection of saved notes.
+     * This method is used to check if a note directory is in the history.
+     * @param file note directory.
+     * @return true if the history contains the note.
+     */
+    public boolean contains(File file) {
+        return entries.containsKey(file);
+    }
+
+    /**
+     * Entries of the saved notes by their directories.
+     */
+    private final Map<File, Entry> entries;
+
+    /**
+     * Entry of the most recent note or null if the history is empty.
+     */
+    private Entry newest;
+
+    /**
+     * Entry of the oldest note or null if the history is empty.
      */
-    private ArrayList<File> notes;
+    private Entry oldest;
+
+    /**
+     * Saved notes from the most recent one used for indexed access or null if the history changed since it was built.
+     */
+    private File[] order;
+
+    /**
+     * Read-only view of the saved notes.
+     */
+    private final List<File> notesView;
 
     /**
      * This is the actual upper limit of possible items in the history.
-     * It can never be higher than MAX_ITEMS. The default limit is equal to MAX_ITEMS.
+     * It can never be higher than MAX_ITEMS. The default limit is equal to DEFAULT_ITEMS.
      */
     private int itemLimit;
 
+    /**
+     * Log lines of the changes that were not saved yet.
+     */
+    private final StringBuilder pending;
+
+    /**
+     * History file whose snapshot and log contain the history without the pending changes,
+     * or null if the next save has to write a new snapshot.
+     */
+    private Path logBase;
+
+    /**
+     * Background compaction of the log or null if none was started.
+     */
+    private CompletableFuture<Void> compaction;
+
+    /**
+     * Id of the log when it was last read or appended to, or null if it did not exist or had no id.
+     */
+    private String logId;
+
+    /**
+     * Length of the log when it was last read or appended to.
+     */
+    private long logPosition;
+
     /**
      * Constructor of the NoteHistory class creating an empty collection with no file directory attached.
      */
     public NoteHistory() {
-        notes = new ArrayList<File>();
+        entries = new HashMap<>();
+        newest = null;
+        oldest = null;
+        order = null;
+        notesView = new NotesView();
         filePath = null;
-        itemLimit = MAX_ITEMS;
+        itemLimit = DEFAULT_ITEMS;
+        pending = new StringBuilder();
+        logBase = null;
+        compaction = null;
+        logId = null;
+        logPosition = 0;
     }
 
     /**
@@ -104,12 +410,21 @@ public class NoteHistory {
     }
 
     /**
-     * This method is used to get a note directory from the note collection.
+     * This method is used to get a note directory from the note collection. The first call after a change of the history
+     * takes linear time and the following calls take constant time.
      * @param index index in the note collection.
      * @return directory to the note at the provided index.
+     * @throws IndexOutOfBoundsException Thrown when the index is negative or not lower than the size of the history.
      */
     public File get(int index) {
-        return notes.get(index);
+        if (index < 0 || index >= entries.size()) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d.", index, entries.size()));
+        }
+
+        if (order == null) {
+            order = toArray();
+        }
+        return order[index];
     }
 
     /**
@@ -124,24 +439,83 @@ public class NoteHistory {
 
     /**
      * This is the method used to read history from a file. Existing history is cleared.
-     * Previously used file directory is used.
+     * Previously used file directory is used. The log of the file is replayed after the snapshot.
+     * The files are only read under the shared lock and parsed after it is released.
      * @throws IOException Thrown when a problem occurs during file creation.
      */
     public void read() throws IOException {
-        notes = new ArrayList<File>();
+        awaitCompaction();
+        clear();
 
+        Path target = filePath.toAbsolutePath();
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(filePath.toString()));
-            String line = reader.readLine();
+            Files.createFile(target);
+        }
+        catch (FileAlreadyExistsException ex) {
+            // The history file is read below.
+        }
+
+        Stored stored = locked(target, true, () -> Stored.load(target, true));
+        apply(stored);
+        trim();
+        logBase = target;
+        logId = stored.logId;
+        logPosition = stored.log.length;
+    }
+
+    /**
+     * This method is used to replace the notes with the ones stored in the files of a history.
+     * The pending changes are kept. The whole snapshot and log are applied and the item limit is not, so notes
+     * removed by the log leave room for older notes of the snapshot. The caller trims the history once afterwards.
+     * @param stored content of the files.
+     */
+    private void apply(Stored stored) {
+        reset();
+
+        String snapshot = new String(stored.snapshot, StandardCharsets.UTF_8);
+        int start = 0;
+        while (start < snapshot.length()) {
+            int end = snapshot.indexOf('\n', start);
+            if (end < 0) {
+                end = snapshot.length();
+            }
+            String line = snapshot.substring(start, end);
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
 
-            while (line != null && notes.size() < itemLimit) {
-                notes.add(new File(line));
-                line = reader.readLine();
+            File file = new File(line);
+            if (!line.isEmpty() && !entries.containsKey(file)) {
+                Entry entry = new Entry(file);
+                entries.put(file, entry);
+                link(entry, oldest, null);
             }
-            reader.close();
+            start = end + 1;
         }
-        catch (FileNotFoundException ex) {
-            Files.createFile(filePath.toAbsolutePath());
+
+        replay(new String(stored.compacting, StandardCharsets.UTF_8));
+        replay(new String(stored.log, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This method is used to apply the changes recorded in a log. An incomplete last line left by an interrupted
+     * append is ignored. The changes are not recorded again and the item limit is not applied.
+     * @param text content of the log.
+     */
+    private void replay(String text) {
+        int start = 0;
+        int end = text.indexOf('\n');
+        while (end >= 0) {
+            if (end > start + 1) {
+                File file = new File(text.substring(start + 1, end));
+                if (text.charAt(start) == ADDED) {
+                    touch(file);
+                } else if (text.charAt(start) == REMOVED) {
+                    unlinkAndRemove(file);
+                }
+            }
+            start = end + 1;
+            end = text.indexOf('\n', start);
         }
     }
 
@@ -182,40 +556,109 @@ public class NoteHistory {
      */
     public void add(File file) throws IllegalArgumentException {
         if (!"".equals(file.getAbsolutePath())) {
-            int elementIndx = notes.indexOf(file);
-            if (elementIndx != -1) {
-                notes.remove(elementIndx);
-            }
-
-            notes.add(0, file);
-            if (notes.size() > itemLimit) {
-                notes.remove(notes.size() - 1);
-            }
+            touch(file);
+            record(ADDED, file);
+            trim();
         } else {
             throw new IllegalArgumentException("The note file dir is empty.");
         }
     }
 
+    /**
+     * This method is used to remove a note directory from the history.
+     * @param file note directory to be removed.
+     * @return true if the history contained the note.
+     */
+    public boolean remove(File file) {
+        if (unlinkAndRemove(file)) {
+            record(REMOVED, file);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * This method is used to move a note to the front of the recency list or insert it there.
+     * The item limit is not applied.
+     * @param file note directory.
+     */
+    private void touch(File file) {
+        Entry entry = entries.get(file);
+        if (entry == null) {
+            entry = new Entry(file);
+            entries.put(file, entry);
+        } else if (entry == newest) {
+            return;
+        } else {
+            unlink(entry);
+        }
+
+        link(entry, null, newest);
+    }
+
+    /**
+     * This method is used to remove a note from the recency list and the index.
+     * @param file note directory.
+     * @return true if the history contained the note.
+     */
+    private boolean unlinkAndRemove(File file) {
+        Entry entry = entries.remove(file);
+        if (entry == null) {
+            return false;
+        }
+        unlink(entry);
+        return true;
+    }
+
+    /**
+     * This method is used to record a change that is appended to the log on the next save.
+     * @param type prefix of the log line.
+     * @param file changed note directory.
+     */
+    private void record(char type, File file) {
+        if (logBase != null) {
+            pending.append(type).append(file.getAbsolutePath()).append('\n');
+        }
+    }
+
     /**
      * This method is used to save the history to the history file using the specified directory.
+     * If the history was read from or saved to the same file, the changes appended to the log by other processes since
+     * then are merged first and only the changes of this history are appended to the log, which starts a background
+     * compaction when it grows too long. Otherwise a new snapshot replaces the file and the log is removed.
      * The file is created if it does not exist.
      * @param filename directory of the output file.
      * @throws IOException Thrown when a problem occurs during file creation.
      */
     public void save(String filename) throws IOException{
         filePath = Paths.get(filename);
+        Path target = filePath.toAbsolutePath();
 
-        try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(filePath.toString(), false));
-
-            for (File note : notes) {
-                writer.write(note.getAbsolutePath() + "\n");
+        if (target.equals(logBase) && Files.exists(target)) {
+            boolean compact = locked(target, false, () -> merge(target));
+            if (compact && (compaction == null || compaction.isDone())) {
+                startCompaction(target);
             }
-            writer.close();
+            return;
         }
-        catch (FileNotFoundException ex) {
-            new File(filePath.toString()).createNewFile();
+
+        awaitCompaction();
+        Path temp = writeTemp(target, toArray());
+        try {
+            locked(target, false, () -> {
+                DurableFiles.replace(temp, target);
+                Files.deleteIfExists(getLogPath(target));
+                Files.deleteIfExists(getCompactingPath(target));
+                return null;
+            });
+        }
+        finally {
+            Files.deleteIfExists(temp);
         }
+        pending.setLength(0);
+        logBase = target;
+        logId = null;
+        logPosition = 0;
     }
 
     /**
@@ -227,6 +670,290 @@ public class NoteHistory {
         save(filePath.toString());
     }
 
+    /**
+     * This method is used to merge the changes saved by other processes and append the pending changes to the log.
+     * The changes of other processes are applied before the pending ones, as they were saved earlier. When the log has
+     * the same id and was only appended to since it was last seen, just the new part is read. Otherwise, after
+     * a compaction or a new snapshot, the whole history is read again. A new log is started with a line holding
+     * a new random id. It is called under the exclusive lock.
+     * @param target history file.
+     * @return true if the log should be compacted.
+     * @throws IOException Thrown when the files cannot be read or the log cannot be written.
+     */
+    private boolean merge(Path target) throws IOException {
+        Path log = getLogPath(target);
+        BasicFileAttributes attributes = readAttributes(log);
+        long size = attributes == null ? 0 : attributes.size();
+        String id = size == 0 ? null : getLogId(readRange(log, 0, Math.min(size, MAX_HEADER_LENGTH)));
+        String ours = pending.toString();
+
+        if (Objects.equals(id, logId) && size >= logPosition) {
+            if (size > logPosition) {
+                replay(new String(readRange(log, logPosition, size), StandardCharsets.UTF_8));
+                replay(ours);
+            }
+        } else {
+            apply(Stored.load(target, true));
+            replay(ours);
+        }
+        trim();
+
+        if (!ours.isEmpty()) {
+            String appended = ours;
+            if (size == 0) {
+                id = UUID.randomUUID().toString();
+                appended = HEADER + id + "\n" + ours;
+            } else if (readRange(log, size - 1, size)[0] != '\n') {
+                appended = "\n" + ours;
+            }
+            Files.write(log, appended.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            size = Files.size(log);
+        }
+        pending.setLength(0);
+        logId = id;
+        logPosition = size;
+
+        return size > MIN_COMPACTION_LENGTH && size > Files.size(target);
+    }
+
+    /**
+     * This method is used to compact the log of the history file into a new snapshot. The pending changes are saved first.
+     * The log is renamed at once and the snapshot is written in the background, so the history can be changed
+     * and saved again while the compaction runs. A compaction that is already running is returned instead of starting a new one.
+     * @return future completed when the new snapshot is written and the renamed log is removed.
+     * @throws IOException Thrown when the changes cannot be saved or the log cannot be renamed.
+     */
+    public CompletableFuture<Void> compact() throws IOException {
+        Path target = filePath.toAbsolutePath();
+        if (!target.equals(logBase) || !Files.exists(target)) {
+            save();
+            return CompletableFuture.completedFuture(null);
+        }
+        if (compaction != null && !compaction.isDone()) {
+            return compaction;
+        }
+
+        locked(target, false, () -> merge(target));
+        return startCompaction(target);
+    }
+
+    /**
+     * This method is used to rename the log of a history file and write a new snapshot in the background.
+     * If the log of an earlier compaction is still there, because it failed or runs in another process, the log is
+     * appended to it instead. The snapshot is built from the files rather than from this history, so the changes
+     * of other processes are kept, and it replaces the file only if the renamed log did not change in the meantime.
+     * The snapshot holds at most the item limit of this history.
+     * @param target history file.
+     * @return future of the compaction.
+     * @throws IOException Thrown when the log cannot be renamed.
+     */
+    private CompletableFuture<Void> startCompaction(Path target) throws IOException {
+        Path log = getLogPath(target);
+        Path compacting = getCompactingPath(target);
+        boolean started = locked(target, false, () -> {
+            if (!Files.exists(log)) {
+                return false;
+            }
+            if (Files.exists(compacting)) {
+                long size = Files.size(compacting);
+                if (size > 0 && readRange(compacting, size - 1, size)[0] != '\n') {
+                    Files.write(compacting, new byte[] {'\n'}, StandardOpenOption.APPEND);
+                }
+                Files.write(compacting, Files.readAllBytes(log), StandardOpenOption.APPEND);
+                Files.delete(log);
+            } else {
+                Files.move(log, compacting, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return true;
+        });
+        if (!started) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        int limit = itemLimit;
+        compaction = CompletableFuture.runAsync(() -> {
+            try {
+                Stored stored = locked(target, true, () -> Stored.load(target, false));
+                NoteHistory merged = new NoteHistory();
+                merged.setItemLimit(limit);
+                merged.apply(stored);
+                merged.trim();
+                Path temp = writeTemp(target, merged.toArray());
+                try {
+                    locked(target, false, () -> {
+                        BasicFileAttributes attributes = readAttributes(compacting);
+                        if (attributes != null && attributes.size() == stored.compacting.length
+                                && Objects.equals(getLogId(readRange(compacting, 0,
+                                        Math.min(attributes.size(), MAX_HEADER_LENGTH))), stored.compactingId)) {
+                            DurableFiles.replace(temp, target);
+                            Files.delete(compacting);
+                        }
+                        return null;
+                    });
+                }
+                finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, AsyncIO.getIoExecutor());
+        return compaction;
+    }
+
+    /**
+     * This method is used to wait for the background compaction. Its failure is ignored, as the renamed log is still
+     * replayed and it is compacted again later.
+     */
+    private void awaitCompaction() {
+        if (compaction != null) {
+            compaction.exceptionally(ex -> null).join();
+        }
+    }
+
+    /**
+     * This method is used to run an action while holding the lock of a history file. The lock is taken on a separate
+     * lock file, which is never renamed, and threads of this process using the same file are serialised first,
+     * as a file lock is held by the whole process.
+     * @param target history file.
+     * @param shared true to take a shared lock for reading, false to take an exclusive lock for writing.
+     * @param action the action.
+     * @param <T> type of the result of the action.
+     * @return result of the action.
+     * @throws IOException Thrown when the lock cannot be taken or the action fails.
+     */
+    private static <T> T locked(Path target, boolean shared, LockedAction<T> action) throws IOException {
+        Path lockPath = getLockPath(target);
+        synchronized (MONITORS.computeIfAbsent(lockPath, path -> new Object())) {
+            try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock(0, Long.MAX_VALUE, shared);
+                try {
+                    return action.run();
+                }
+                finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * This method is used to write a snapshot of notes to a synchronised temporary file next to a history file.
+     * @param target history file.
+     * @param notes notes from the most recent one.
+     * @return path of the temporary file.
+     * @throws IOException Thrown when the snapshot cannot be written.
+     */
+    private static Path writeTemp(Path target, File[] notes) throws IOException {
+        Path temp = DurableFiles.createTempFile(target);
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (File note : notes) {
+                    writer.write(note.getAbsolutePath() + "\n");
+                }
+            }
+            DurableFiles.sync(temp);
+            return temp;
+        }
+        catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+    }
+
+    /**
+     * This method is used to read the attributes of a file.
+     * @param path path of the file.
+     * @return the attributes or null if the file does not exist.
+     * @throws IOException Thrown when the attributes cannot be read.
+     */
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        }
+        catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * This method is used to get the id of a log from its first line.
+     * @param log beginning of the log.
+     * @return the id or null if the log does not start with a complete line holding an id.
+     */
+    private static String getLogId(byte[] log) {
+        if (log.length == 0 || log[0] != HEADER) {
+            return null;
+        }
+        for (int i = 1; i < Math.min(log.length, MAX_HEADER_LENGTH); i++) {
+            if (log[i] == '\n') {
+                return new String(log, 1, i - 1, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method is used to read a part of a file.
+     * @param path path of the file.
+     * @param from position of the first byte.
+     * @param to position after the last byte.
+     * @return the bytes.
+     * @throws IOException Thrown when the file cannot be read.
+     */
+    private static byte[] readRange(Path path, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) >= 0) {
+                // Read until the buffer is full or the file ends.
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * This method is used to get the path of the log of a history file.
+     * @param historyFile history file.
+     * @return path of the log.
+     */
+    public static Path getLogPath(Path historyFile) {
+        return Paths.get(historyFile.toString() + LOG_SUFFIX);
+    }
+
+    /**
+     * This method is used to get the path of the log of a history file while it is being compacted.
+     * @param historyFile history file.
+     * @return path of the renamed log.
+     */
+    static Path getCompactingPath(Path historyFile) {
+        return Paths.get(historyFile.toString() + LOG_SUFFIX + COMPACTING_SUFFIX);
+    }
+
+    /**
+     * This method is used to get the path of the file locked by the processes using a history file.
+     * @param historyFile history file.
+     * @return path of the lock file.
+     */
+    public static Path getLockPath(Path historyFile) {
+        return Paths.get(historyFile.toString() + LOCK_SUFFIX);
+    }
+
+    /**
+     * This method is used to copy the notes of the history to an array.
+     * @return notes from the most recent one.
+     */
+    private File[] toArray() {
+        File[] notes = new File[entries.size()];
+        int i = 0;
+        for (Entry entry = newest; entry != null; entry = entry.older) {
+            notes[i++] = entry.file;
+        }
+        return notes;
+    }
+
     /**
      * This method is used to get the current item limit of the history.
      * @return Maximum number of items that the history can hold.
@@ -239,6 +966,7 @@ public class NoteHistory {
      * This method is used to set the upper limit of items in the history.
      * If the argument is lower than 0 then the limit is set to 0.
      * If it is higher than MAX_ITEMS then the it is set to MAX_ITEMS.
+     * The oldest notes above the new limit are removed.
      * @param itemLimit new item limit.
      */
     public void setItemLimit(int itemLimit) {
@@ -249,6 +977,79 @@ public class NoteHistory {
         } else {
             this.itemLimit = itemLimit;
         }
+        trim();
+    }
 
+    /**
+     * This method is used to remove all notes from the history. The next save writes a new snapshot.
+     */
+    public void clear() {
+        reset();
+        pending.setLength(0);
+        logBase = null;
+    }
+
+    /**
+     * This method is used to remove all notes from the recency list and the index.
+     */
+    private void reset() {
+        entries.clear();
+        newest = null;
+        oldest = null;
+        order = null;
+    }
+
+    /**
+     * This method is used to remove the oldest notes until the history fits in the item limit. The removals are not
+     * logged, as other processes using the history file may have a higher limit.
+     */
+    private void trim() {
+        while (entries.size() > itemLimit) {
+            Entry entry = oldest;
+            unlink(entry);
+            entries.remove(entry.file);
+        }
+    }
+
+    /**
+     * This method is used to insert an entry into the recency list between two neighbouring entries.
+     * @param entry inserted entry.
+     * @param newer entry that becomes the next more recent one or null to insert the entry as the most recent one.
+     * @param older entry that becomes the next older one or null to insert the entry as the oldest one.
+     */
+    private void link(Entry entry, Entry newer, Entry older) {
+        entry.newer = newer;
+        entry.older = older;
+        if (newer == null) {
+            newest = entry;
+        } else {
+            newer.older = entry;
+        }
+        if (older == null) {
+            oldest = entry;
+        } else {
+            older.newer = entry;
+        }
+        order = null;
+    }
+
+    /**
+     * This method is used to remove an entry from the recency list. The entry stays in the index.
+     * @param entry removed entry.
+     */
+    private void unlink(Entry entry) {
+        if (entry.newer == null) {
+            newest = entry.older;
+        } else {
+            entry.newer.older = entry.older;
+        }
+        if (entry.older == null) {
+            oldest = entry.newer;
+        } else {
+            entry.older.newer = entry.newer;
+        }
+        entry.newer = null;
+        entry.older = null;
+        order = null;
     }
 }
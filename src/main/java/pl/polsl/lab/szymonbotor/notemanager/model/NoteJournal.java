@@ -0,0 +1,555 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.enums.BlockMode;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.AuthenticationException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class representing the append-only edit journal of a note file. Small edits are appended to the journal
+ * as encrypted records instead of rewriting the whole note, and the note is rewritten with all the edits
+ * applied during compaction, which also removes the journal. The journal is stored next to the note
+ * in a file with the FILE_SUFFIX appended to its name.<br>
+ * Journal format:<br>
+ * - Bytes 0-3: magic bytes "NJRN"<br>
+ * - Byte 4: version<br>
+ * - Bytes 5-16: initialisation vector of the note the journal belongs to<br>
+ * - Records, each consisting of the length of the rest of the record (4 bytes), a nonce (12 bytes)
+ * and the encrypted edit with its authentication tag<br>
+ * An edit consists of its offset (4 bytes), the number of removed characters (4 bytes) and the inserted text in UTF-8.
+ * The records are encrypted with AES-GCM with the key of the note. The associated data of a record is the
+ * initialisation vector of the note followed by the record number, so records cannot be reordered or moved
+ * to another note. A journal of another version of the note is ignored. An incomplete last record left by a crash
+ * is ignored and overwritten by the next edit. The edits are recorded by the note as they are made and replayed
+ * into a piece table, so neither saving nor reading the journal copies the whole note for every edit.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+public class NoteJournal {
+
+    /**
+     * Suffix appended to the name of the note file to get the name of its journal.
+     */
+    public static final String FILE_SUFFIX = ".journal";
+
+    /**
+     * Magic bytes at the start of every journal.
+     */
+    public static final byte[] MAGIC = {'N', 'J', 'R', 'N'};
+
+    /**
+     * Version of the journal written by this class.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Length of the journal header in bytes.
+     */
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + BlockMode.GCM.ivLength;
+
+    /**
+     * Class representing a single edit: a range of characters replaced with a text.
+     */
+    public static class Edit {
+
+        /**
+         * Index of the first replaced character.
+         */
+        private final int offset;
+
+        /**
+         * Number of removed characters.
+         */
+        private final int deleteLength;
+
+        /**
+         * Inserted text.
+         */
+        private final String insert;
+
+        /**
+         * Constructor of the edit.
+         * @param offset index of the first replaced character.
+         * @param deleteLength number of removed characters.
+         * @param insert inserted text.
+         */
+        public Edit(int offset, int deleteLength, String insert) {
+            this.offset = offset;
+            this.deleteLength = deleteLength;
+            this.insert = insert;
+        }
+
+        /**
+         * This method is used to create the smallest single edit changing one text into another.
+         * The common beginning and end of the texts are kept.
+         * @param oldText text before the edit.
+         * @param newText text after the edit.
+         * @return the edit.
+         */
+        public static Edit diff(String oldText, String newText) {
+            int maxCommon = Math.min(oldText.length(), newText.length());
+            int prefix = 0;
+            while (prefix < maxCommon && oldText.charAt(prefix) == newText.charAt(prefix)) {
+                prefix++;
+            }
+
+            int suffix = 0;
+            while (suffix < maxCommon - prefix
+                    && oldText.charAt(oldText.length() - 1 - suffix) == newText.charAt(newText.length() - 1 - suffix)) {
+                suffix++;
+            }
+
+            return new Edit(prefix, oldText.length() - prefix - suffix,
+                    newText.substring(prefix, newText.length() - suffix));
+        }
+
+        /**
+         * This method is used to apply the edit to a text. Only the inserted text is copied.
+         * @param text edited text.
+         * @throws IllegalArgumentException Thrown when the edit does not fit the text.
+         */
+        public void apply(PieceTable text) {
+            if (offset < 0 || deleteLength < 0 || (long) offset + deleteLength > text.length()) {
+                throw new IllegalArgumentException("The edit does not fit the note.");
+            }
+            text.delete(offset, deleteLength);
+            text.insert(offset, insert);
+        }
+
+        /**
+         * This method is used to get the approximate size of the edit in the journal.
+         * @return number of inserted characters and the length of the offset and the number of removed characters.
+         */
+        private int getSize() {
+            return 2 * Integer.BYTES + insert.length();
+        }
+
+        /**
+         * This method is used to check if the edit changes nothing.
+         * @return true if no characters are removed or inserted.
+         */
+        public boolean isEmpty() {
+            return deleteLength == 0 && insert.isEmpty();
+        }
+
+        /**
+         * This method is used to serialise the edit.
+         * @return bytes of the edit.
+         */
+        private byte[] toBytes() {
+            byte[] text = insert.getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(2 * Integer.BYTES + text.length)
+                    .putInt(offset)
+                    .putInt(deleteLength)
+                    .put(text)
+                    .array();
+        }
+
+        /**
+         * This method is used to deserialise an edit.
+         * @param buffer buffer with the bytes of the edit between its position and limit.
+         * @return the edit.
+         */
+        private static Edit fromBytes(ByteBuffer buffer) {
+            int offset = buffer.getInt();
+            int deleteLength = buffer.getInt();
+            return new Edit(offset, deleteLength, StandardCharsets.UTF_8.decode(buffer).toString());
+        }
+    }
+
+    /**
+     * Class representing the edits made to a text since it was last stored, in the order they were made.
+     * Consecutive insertions and deletions at the same place, as made when typing, are merged into a single edit.
+     * The edits are recorded as they are made, so the text does not have to be compared with the stored one.
+     * The list is not thread-safe.
+     */
+    public static class EditList {
+
+        /**
+         * Completed edits in order.
+         */
+        private final List<Edit> edits;
+
+        /**
+         * Index of the first replaced character of the last edit, which can still be extended.
+         */
+        private int offset;
+
+        /**
+         * Number of characters removed by the last edit.
+         */
+        private int deleteLength;
+
+        /**
+         * Text inserted by the last edit or null if there is no such edit.
+         */
+        private StringBuilder insert;
+
+        /**
+         * Approximate size of the edits in the journal.
+         */
+        private long size;
+
+        /**
+         * True if every edit since the text was stored is in the list.
+         */
+        private boolean complete;
+
+        /**
+         * Default constructor of the EditList class creating an empty, complete list.
+         */
+        public EditList() {
+            edits = new ArrayList<>();
+            insert = null;
+            size = 0;
+            complete = true;
+        }
+
+        /**
+         * This method is used to record an insertion.
+         * @param at index at which the text was inserted.
+         * @param str inserted text.
+         */
+        public void insert(int at, CharSequence str) {
+            if (str.length() == 0) {
+                return;
+            }
+            size += str.length();
+            if (insert != null && at == offset + insert.length()) {
+                insert.append(str);
+                return;
+            }
+            close();
+            offset = at;
+            deleteLength = 0;
+            insert = new StringBuilder(str);
+            size += 2 * Integer.BYTES;
+        }
+
+        /**
+         * This method is used to record a deletion.
+         * @param at index of the first deleted character.
+         * @param count number of deleted characters.
+         */
+        public void delete(int at, int count) {
+            if (count == 0) {
+                return;
+            }
+            if (insert != null) {
+                int end = offset + insert.length();
+                if (at >= offset && at + count == end) {
+                    insert.setLength(at - offset);
+                    return;
+                }
+                if (at == end) {
+                    deleteLength += count;
+                    return;
+                }
+                if (at + count == offset && insert.length() == 0) {
+                    offset = at;
+                    deleteLength += count;
+                    return;
+                }
+            }
+            close();
+            offset = at;
+            deleteLength = count;
+            insert = new StringBuilder();
+            size += 2 * Integer.BYTES;
+        }
+
+        /**
+         * This method is used to record an arbitrary edit.
+         * @param edit recorded edit.
+         */
+        public void add(Edit edit) {
+            close();
+            if (!edit.isEmpty()) {
+                edits.add(edit);
+                size += edit.getSize();
+            }
+        }
+
+        /**
+         * This method is used to forget the recorded edits when they grow too large. The list is no longer complete,
+         * so the text has to be stored as a whole.
+         */
+        public void discard() {
+            edits.clear();
+            insert = null;
+            size = 0;
+            complete = false;
+        }
+
+        /**
+         * This method is used to get the recorded edits and start a new empty list of edits.
+         * @return the edits in order.
+         */
+        public List<Edit> take() {
+            close();
+            List<Edit> taken = new ArrayList<>(edits);
+            edits.clear();
+            size = 0;
+            return taken;
+        }
+
+        /**
+         * This method is used to check if every edit since the text was stored is in the list.
+         * @return false if the edits were discarded.
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * This method is used to get the approximate size of the recorded edits in the journal.
+         * @return size in bytes, counting a character as a byte.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * This method is used to move the last edit to the completed edits, so it is no longer extended.
+         */
+        private void close() {
+            if (insert != null) {
+                Edit edit = new Edit(offset, deleteLength, insert.toString());
+                if (!edit.isEmpty()) {
+                    edits.add(edit);
+                }
+                insert = null;
+            }
+        }
+    }
+
+    /**
+     * Path of the journal file.
+     */
+    private final Path path;
+
+    /**
+     * Initialisation vector of the note the journal belongs to.
+     */
+    private final byte[] baseId;
+
+    /**
+     * Number of valid records in the journal.
+     */
+    private int recordCount;
+
+    /**
+     * Length of the valid part of the journal in bytes. 0 if the journal has not been written yet.
+     */
+    private long length;
+
+    /**
+     * Constructor of the NoteJournal class. The file is not accessed.
+     * @param noteFile file of the note.
+     * @param baseId initialisation vector of the current version of the note.
+     */
+    public NoteJournal(File noteFile, byte[] baseId) {
+        path = getPath(noteFile);
+        this.baseId = baseId.clone();
+        recordCount = 0;
+        length = 0;
+    }
+
+    /**
+     * This method is used to get the path of the journal of a note file.
+     * @param noteFile file of the note.
+     * @return path of the journal.
+     */
+    public static Path getPath(File noteFile) {
+        return Path.of(noteFile.getPath() + FILE_SUFFIX);
+    }
+
+    /**
+     * This method is used to check if the journal belongs to a note file.
+     * @param noteFile file of the note.
+     * @return true if the journal is stored next to the file.
+     */
+    public boolean isFor(File noteFile) {
+        return noteFile != null && path.equals(getPath(noteFile));
+    }
+
+    /**
+     * This method is used to apply all valid records of the journal to the content of the note.
+     * A missing journal or a journal of another version of the note leaves the content unchanged.
+     * Every edit costs time proportional to the number of pieces of the content and the length of the inserted text.
+     * @param aes AES object with the key of the note. Its initialisation vector and associated data are changed.
+     * @param content content of the note read from the note file, changed by the edits.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws AuthenticationException This exception is thrown when a complete record was modified.
+     * @throws InvalidCryptModeException This exception is thrown when the AES object cannot decrypt.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public void replay(AES aes, PieceTable content) throws IOException, InvalidCryptModeException, CryptException {
+        recordCount = 0;
+        length = 0;
+
+        ByteBuffer data;
+        try {
+            data = ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (NoSuchFileException ex) {
+            return;
+        }
+
+        if (!hasMatchingHeader(data)) {
+            return;
+        }
+        length = HEADER_LENGTH;
+
+        while (data.remaining() >= Integer.BYTES) {
+            int recordLength = data.getInt(data.position());
+            if (recordLength < BlockMode.GCM.ivLength || data.remaining() - Integer.BYTES < recordLength) {
+                break;
+            }
+            data.position(data.position() + Integer.BYTES);
+
+            byte[] nonce = new byte[BlockMode.GCM.ivLength];
+            data.get(nonce);
+            ByteBuffer cipherText = data.slice();
+            cipherText.limit(recordLength - nonce.length);
+            data.position(data.position() + cipherText.limit());
+
+            aes.setIV(nonce);
+            aes.setAssociatedData(getAssociatedData(recordCount));
+            ByteBuffer plainText = ByteBuffer.allocate(cipherText.remaining());
+            aes.decrypt(cipherText, plainText);
+            plainText.flip();
+
+            try {
+                Edit.fromBytes(plainText).apply(content);
+            } catch (IllegalArgumentException | BufferUnderflowException ex) {
+                throw new AuthenticationException("The note journal is corrupted.");
+            }
+            recordCount++;
+            length += Integer.BYTES + recordLength;
+        }
+    }
+
+    /**
+     * This method is used to append encrypted edits to the journal, one record per edit, and synchronise it with the disk once.
+     * An incomplete record at the end is overwritten and a journal of another version of the note is replaced.
+     * @param aes AES object with the key of the note. Its initialisation vector and associated data are changed.
+     * @param edits appended edits in order. Nothing is written if the list is empty.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when the AES object cannot encrypt.
+     * @throws CryptException This exception is thrown when a cryptographic error occurs.
+     */
+    public void append(AES aes, List<Edit> edits) throws IOException, InvalidCryptModeException, CryptException {
+        if (edits.isEmpty()) {
+            return;
+        }
+
+        List<ByteBuffer> plainTexts = new ArrayList<>(edits.size());
+        int recordsLength = 0;
+        for (Edit edit : edits) {
+            ByteBuffer plainText = ByteBuffer.wrap(edit.toBytes());
+            plainTexts.add(plainText);
+            recordsLength += Integer.BYTES + BlockMode.GCM.ivLength + aes.getEncryptedLength(plainText.remaining());
+        }
+        boolean newFile = length == 0;
+
+        ByteBuffer records = ByteBuffer.allocate((newFile ? HEADER_LENGTH : 0) + recordsLength);
+        if (newFile) {
+            records.put(MAGIC)
+                    .put((byte) VERSION)
+                    .put(baseId);
+        }
+        for (int i = 0; i < plainTexts.size(); i++) {
+            ByteBuffer plainText = plainTexts.get(i);
+            byte[] nonce = AES.generateIV(BlockMode.GCM);
+            aes.setIV(nonce);
+            aes.setAssociatedData(getAssociatedData(recordCount + i));
+            records.putInt(nonce.length + aes.getEncryptedLength(plainText.remaining()))
+                    .put(nonce);
+            aes.encrypt(plainText, records);
+        }
+        records.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+            channel.position(length);
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+            channel.force(false);
+        }
+
+        length += records.limit();
+        recordCount += edits.size();
+    }
+
+    /**
+     * This method is used to delete the journal file of a note, for example after compaction.
+     * @param noteFile file of the note.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     */
+    public static void delete(File noteFile) throws IOException {
+        Files.deleteIfExists(getPath(noteFile));
+    }
+
+    /**
+     * This method is used to get the number of valid records in the journal.
+     * @return number of records.
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * This method is used to get the length of the valid part of the journal.
+     * @return length in bytes.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * This method is used to check if a journal starts with a valid header belonging to the current version of the note.
+     * The position of the buffer is moved past the header.
+     * @param data buffer with the journal.
+     * @return true if the journal belongs to the note.
+     */
+    private boolean hasMatchingHeader(ByteBuffer data) {
+        if (data.remaining() < HEADER_LENGTH) {
+            return false;
+        }
+
+        byte[] magic = new byte[MAGIC.length];
+        data.get(magic);
+        int version = Byte.toUnsignedInt(data.get());
+        byte[] id = new byte[baseId.length];
+        data.get(id);
+
+        return Arrays.equals(magic, MAGIC) && version == VERSION && Arrays.equals(id, baseId);
+    }
+
+    /**
+     * This method is used to create the associated data of a record.
+     * @param index number of the record.
+     * @return initialisation vector of the note followed by the record number.
+     */
+    private byte[] getAssociatedData(int index) {
+        return ByteBuffer.allocate(baseId.length + Integer.BYTES)
+                .put(baseId)
+                .putInt(index)
+                .array();
+    }
+}
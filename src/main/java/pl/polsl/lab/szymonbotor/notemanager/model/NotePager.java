@@ -0,0 +1,373 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.enums.BlockMode;
+import pl.polsl.lab.szymonbotor.notemanager.enums.CryptMode;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.AuthenticationException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class used to read parts of a note file without decrypting the whole note. The content of large notes is stored
+ * in pages of SEGMENT_SIZE bytes, each encrypted and authenticated on its own (see AES#encryptSegmented()).
+ * The position of every page in the file follows from its index, so the page index is implicit and reading a page
+ * costs one positional read and the decryption of one page, regardless of the size of the note.
+ * Notes stored in a single piece, compressed notes and notes with an edit journal are decrypted whole
+ * when the pager is opened.
+ * Offsets and lengths are given in bytes of the encoded content. The pager is not thread safe.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+public class NotePager implements AutoCloseable {
+
+    /**
+     * Length of the authentication tag of a page in bytes.
+     */
+    private static final int TAG_BYTES = AES.TAG_LENGTH / 8;
+
+    /**
+     * Channel of the note file or null if the whole content was decrypted when the pager was opened.
+     */
+    private final FileChannel channel;
+
+    /**
+     * AES object with the key of the note or null if the whole content was decrypted when the pager was opened.
+     */
+    private final AES aes;
+
+    /**
+     * Position of the first page in the note file.
+     */
+    private final long bodyOffset;
+
+    /**
+     * Length of the encrypted pages in bytes.
+     */
+    private final long bodyLength;
+
+    /**
+     * Number of plaintext bytes in a page.
+     */
+    private final int pageSize;
+
+    /**
+     * Number of pages.
+     */
+    private final int pageCount;
+
+    /**
+     * Number of plaintext bytes of the whole content.
+     */
+    private final long length;
+
+    /**
+     * Whole encoded content of a note that is not stored in pages, otherwise null.
+     */
+    private final ByteBuffer content;
+
+    /**
+     * Index of the most recently read page or -1.
+     */
+    private int cachedIndex;
+
+    /**
+     * The most recently read page.
+     */
+    private ByteBuffer cachedPage;
+
+    /**
+     * Constructor of a pager reading the pages of a note file on demand.
+     * @param channel channel of the note file positioned after the header.
+     * @param header header of the note.
+     * @param aes AES object with the key and initialisation vector of the note.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws AuthenticationException This exception is thrown when the last page is shorter than a tag.
+     */
+    private NotePager(FileChannel channel, NoteHeader header, AES aes) throws IOException, AuthenticationException {
+        this.channel = channel;
+        this.aes = aes;
+        content = null;
+        bodyOffset = channel.position();
+        bodyLength = channel.size() - bodyOffset;
+        pageSize = header.getSegmentSize();
+
+        long encryptedSize = pageSize + TAG_BYTES;
+        long count = Math.max(1, (bodyLength + encryptedSize - 1) / encryptedSize);
+        if (count > Integer.MAX_VALUE || bodyLength - (count - 1) * encryptedSize < TAG_BYTES) {
+            throw new AuthenticationException("Invalid password or corrupted data.");
+        }
+        pageCount = (int) count;
+        length = bodyLength - count * TAG_BYTES;
+        cachedIndex = -1;
+        cachedPage = null;
+    }
+
+    /**
+     * Constructor of a pager over a content that was already decrypted.
+     * @param content encoded content of the note.
+     */
+    private NotePager(ByteBuffer content) {
+        channel = null;
+        aes = null;
+        bodyOffset = 0;
+        bodyLength = content.remaining();
+        pageSize = Note.SEGMENT_SIZE;
+        pageCount = Math.max(1, (content.remaining() + pageSize - 1) / pageSize);
+        length = content.remaining();
+        this.content = content.asReadOnlyBuffer();
+        cachedIndex = -1;
+        cachedPage = null;
+    }
+
+    /**
+     * This method is used to open a note file for reading its parts. Only the header and the first page are read,
+     * which authenticates the password and the header.
+     * @param file note file.
+     * @param password password used to encrypt the note.
+     * @return the pager or null if the password is incorrect or the note was modified.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is in a vault.
+     */
+    public static NotePager open(File file, String password)
+            throws IOException, InvalidCryptModeException, CryptException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            NoteHeader header = NoteHeader.read(Channels.newInputStream(channel));
+            if (header.isKeyWrapped()) {
+                throw new CryptException("The note is encrypted with the master key of a vault.");
+            }
+            if (!isPaged(file, header)) {
+                channel.close();
+                return fromNote(new Note(file.getPath(), password));
+            }
+
+            AES aes = new AES(password, header.getSalt(), header.getIV(), header.getKdfParams(),
+                    BlockMode.GCM, CryptMode.DECRYPTION);
+            return open(channel, header, aes);
+        }
+        catch (Exception ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * This method is used to open a note file of a vault for reading its parts. Only the header and the first page
+     * are read, which authenticates the header.
+     * @param file note file.
+     * @param masterKey unlocked master key of the vault of the note.
+     * @return the pager or null if the key could not be unwrapped or the note was modified.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is not in a vault.
+     */
+    public static NotePager open(File file, MasterKey masterKey)
+            throws IOException, InvalidCryptModeException, CryptException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            NoteHeader header = NoteHeader.read(Channels.newInputStream(channel));
+            if (!header.isKeyWrapped()) {
+                throw new CryptException("The note is not encrypted with the master key of a vault.");
+            }
+            if (!isPaged(file, header)) {
+                channel.close();
+                return fromNote(new Note(file.getPath(), masterKey));
+            }
+
+            AES aes;
+            try {
+                aes = new AES(masterKey.unwrap(header.getWrappedKey()), header.getIV(), BlockMode.GCM, CryptMode.DECRYPTION);
+            }
+            catch (AuthenticationException ex) {
+                channel.close();
+                return null;
+            }
+            return open(channel, header, aes);
+        }
+        catch (Exception ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * This method is used to get the number of bytes of the encoded content.
+     * @return length of the content in bytes.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * This method is used to get the number of plaintext bytes in a page. Only the last page can be shorter.
+     * @return size of a page in bytes.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * This method is used to get the number of pages of the note.
+     * @return number of pages.
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * This method is used to read and decrypt a single page.
+     * @param index index of the page.
+     * @return read-only buffer with the plaintext of the page.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws AuthenticationException This exception is thrown when the page was modified.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     * @throws IndexOutOfBoundsException Thrown when there is no page with the given index.
+     */
+    public ByteBuffer readPage(int index) throws IOException, InvalidCryptModeException, CryptException {
+        if (index < 0 || index >= pageCount) {
+            throw new IndexOutOfBoundsException(String.format("Page %d does not exist.", index));
+        }
+        if (index == cachedIndex) {
+            return cachedPage.duplicate();
+        }
+
+        ByteBuffer page;
+        if (content != null) {
+            page = content.duplicate();
+            page.position(index * pageSize);
+            page.limit((int) Math.min(length, (long) (index + 1) * pageSize));
+            page = page.slice();
+        } else {
+            long encryptedSize = pageSize + TAG_BYTES;
+            long position = index * encryptedSize;
+            ByteBuffer cipherText = ByteBuffer.allocate((int) Math.min(encryptedSize, bodyLength - position));
+            while (cipherText.hasRemaining()) {
+                if (channel.read(cipherText, bodyOffset + position + cipherText.position()) < 0) {
+                    throw new EOFException("The note file is too short.");
+                }
+            }
+            cipherText.flip();
+
+            page = ByteBuffer.allocate(cipherText.remaining() - TAG_BYTES);
+            aes.decryptSegment(cipherText, page, index, index == pageCount - 1);
+            page.flip();
+            page = page.asReadOnlyBuffer();
+        }
+
+        cachedIndex = index;
+        cachedPage = page;
+        return page.duplicate();
+    }
+
+    /**
+     * This method is used to read a part of the content. Only the pages overlapping the range are decrypted.
+     * A character split by the start or the end of the range is replaced with the replacement character.
+     * @param offset offset of the first byte of the range in the encoded content.
+     * @param length number of bytes to read. The range is shortened if it goes past the end of the content.
+     * @return decoded text of the range.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws AuthenticationException This exception is thrown when a page was modified.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     * @throws IndexOutOfBoundsException Thrown when the offset or the length is negative.
+     */
+    public String readRange(long offset, int length) throws IOException, InvalidCryptModeException, CryptException {
+        if (offset < 0 || length < 0) {
+            throw new IndexOutOfBoundsException(String.format("Range of %d bytes at %d is invalid.", length, offset));
+        }
+
+        long end = Math.min(this.length, offset + length);
+        ByteBuffer range = ByteBuffer.allocate((int) Math.max(0, end - offset));
+        while (range.hasRemaining()) {
+            long position = offset + range.position();
+            ByteBuffer page = readPage((int) (position / pageSize));
+            page.position((int) (position % pageSize));
+            if (page.remaining() > range.remaining()) {
+                page.limit(page.position() + range.remaining());
+            }
+            range.put(page);
+        }
+        range.flip();
+
+        try {
+            return Charset.defaultCharset().newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(range)
+                    .toString();
+        }
+        catch (CharacterCodingException ex) {
+            throw new CryptException(ex.getMessage());
+        }
+    }
+
+    /**
+     * This method is used to close the note file.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * This method is used to check if the pages of a note file can be read on their own.
+     * @param file note file.
+     * @param header header of the note.
+     * @return true if the content is stored in uncompressed pages and there is no edit journal to apply.
+     */
+    private static boolean isPaged(File file, NoteHeader header) {
+        return header.isSegmented() && !header.isCompressed() && !Files.exists(NoteJournal.getPath(file));
+    }
+
+    /**
+     * This method is used to create a pager reading pages on demand and authenticate it by reading the first page.
+     * @param channel channel of the note file positioned after the header.
+     * @param header header of the note.
+     * @param aes AES object with the key and initialisation vector of the note.
+     * @return the pager or null if the first page could not be authenticated.
+     * @throws IOException Signals that an I/O exception of some sort has occurred.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    private static NotePager open(FileChannel channel, NoteHeader header, AES aes)
+            throws IOException, InvalidCryptModeException, CryptException {
+        aes.setAssociatedData(header.toBytes());
+        try {
+            NotePager pager = new NotePager(channel, header, aes);
+            pager.readPage(0);
+            return pager;
+        }
+        catch (AuthenticationException ex) {
+            channel.close();
+            return null;
+        }
+    }
+
+    /**
+     * This method is used to create a pager over the content of a note that was read whole.
+     * @param note read note.
+     * @return the pager or null if the note could not be read.
+     */
+    private static NotePager fromNote(Note note) {
+        if (note.getContent() == null) {
+            return null;
+        }
+        return new NotePager(Charset.defaultCharset().encode(note.getContent()));
+    }
+}
@@ -0,0 +1,198 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.enums.SaveMode;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Class used to change the password of all notes in a directory. The notes are decrypted with the old password
+ * and encrypted with the new one on a fixed number of worker threads, so the key derivations of different notes
+ * run in parallel. The notes are saved atomically with a shared group commit, so a crash leaves either the old
+ * or the new version of each note, while the synchronisation of the directory is shared by concurrently saved notes.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+public class NoteRekeyer {
+
+    /**
+     * Interface of a listener notified after every processed note. It is called from the worker threads.
+     */
+    public interface Listener {
+
+        /**
+         * This method is called after a note is processed.
+         * @param file the processed note file.
+         * @param error description of the error or null if the password of the note was changed.
+         * @param done number of processed notes so far.
+         * @param total number of notes in the directory.
+         */
+        void fileProcessed(File file, String error, int done, int total);
+    }
+
+    /**
+     * Class representing the result of a password change.
+     */
+    public static class Result {
+
+        /**
+         * Number of notes with the changed password.
+         */
+        private final int rekeyedCount;
+
+        /**
+         * Descriptions of errors by the files that were left unchanged.
+         */
+        private final Map<File, String> failures;
+
+        /**
+         * Constructor of the result.
+         * @param rekeyedCount number of notes with the changed password.
+         * @param failures descriptions of errors by the files that were left unchanged.
+         */
+        private Result(int rekeyedCount, Map<File, String> failures) {
+            this.rekeyedCount = rekeyedCount;
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        /**
+         * This method is used to get the number of notes with the changed password.
+         * @return number of changed notes.
+         */
+        public int getRekeyedCount() {
+            return rekeyedCount;
+        }
+
+        /**
+         * This method is used to get the notes that were left unchanged.
+         * @return unmodifiable map of error descriptions by note files.
+         */
+        public Map<File, String> getFailures() {
+            return failures;
+        }
+    }
+
+    /**
+     * Number of worker threads.
+     */
+    private final int threadCount;
+
+    /**
+     * Key derivation parameters of the new password or null if the parameters of every note are kept.
+     */
+    private final KdfParams kdfParams;
+
+    /**
+     * Constructor creating a rekeyer with one worker thread per processor, which keeps the key derivation parameters of the notes.
+     */
+    public NoteRekeyer() {
+        this(Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Constructor of the NoteRekeyer class.
+     * @param threadCount number of worker threads. If it is lower than 1 it is set to 1.
+     * @param kdfParams key derivation parameters of the new password or null to keep the parameters of every note.
+     */
+    public NoteRekeyer(int threadCount, KdfParams kdfParams) {
+        this.threadCount = Math.max(threadCount, 1);
+        this.kdfParams = kdfParams;
+    }
+
+    /**
+     * This method is used to change the password of all note files directly in a directory. Notes that cannot be
+     * decrypted with the old password, notes of a vault and files that cannot be written are left unchanged
+     * and reported in the result.
+     * @param directory directory with the notes.
+     * @param oldPassword current password of the notes.
+     * @param newPassword new password of the notes.
+     * @param listener listener notified after every note or null.
+     * @return result of the operation.
+     * @throws IOException Signals that the directory could not be listed.
+     * @throws InterruptedException Thrown when the calling thread is interrupted while waiting for the workers.
+     */
+    public Result rekey(File directory, String oldPassword, String newPassword, Listener listener)
+            throws IOException, InterruptedException {
+
+        List<File> files;
+        try (Stream<Path> paths = Files.list(directory.toPath())) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().endsWith(Note.FILE_EXTENSION))
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+
+        Map<File, String> failures = Collections.synchronizedMap(new TreeMap<>());
+        AtomicInteger done = new AtomicInteger();
+        GroupCommit groupCommit = new GroupCommit();
+        List<Callable<Void>> tasks = new ArrayList<>(files.size());
+        for (File file : files) {
+            tasks.add(() -> {
+                String error = rekeyFile(file, oldPassword, newPassword, groupCommit);
+                if (error != null) {
+                    failures.put(file, error);
+                }
+                int count = done.incrementAndGet();
+                if (listener != null) {
+                    listener.fileProcessed(file, error, count, files.size());
+                }
+                return null;
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threadCount, Math.max(files.size(), 1)));
+        try {
+            pool.invokeAll(tasks);
+        }
+        finally {
+            pool.shutdownNow();
+            groupCommit.close();
+        }
+
+        return new Result(files.size() - failures.size(), new TreeMap<>(failures));
+    }
+
+    /**
+     * This method is used to change the password of a single note.
+     * @param file note file.
+     * @param oldPassword current password of the note.
+     * @param newPassword new password of the note.
+     * @param groupCommit group commit of the operation.
+     * @return description of the error or null if the password was changed.
+     */
+    private String rekeyFile(File file, String oldPassword, String newPassword, GroupCommit groupCommit) {
+        try {
+            Note note = new Note();
+            if (!note.read(file.getPath(), oldPassword)) {
+                return "Invalid password.";
+            }
+            if (kdfParams != null) {
+                note.setKdfParams(kdfParams);
+            }
+
+            note.setSaveMode(SaveMode.ATOMIC);
+            note.setGroupCommit(groupCommit);
+            note.save(file, newPassword);
+            return null;
+        }
+        catch (IOException | InvalidCryptModeException | CryptException ex) {
+            return ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+        }
+    }
+}
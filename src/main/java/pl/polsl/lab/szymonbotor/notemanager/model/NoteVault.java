@@ -0,0 +1,1026 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Class representing a container of many encrypted notes in a single file. Every note is stored as a record holding
+ * the image of its note file, so the notes are encrypted exactly as in separate files. Records are only appended;
+ * a changed note gets a new record and a deleted note gets a deletion record. An index from the note id to the
+ * offset of its latest record is kept in memory, so listing the notes needs no I/O and reading or saving a note
+ * takes a single positional read or append. The index is stored in a side file when the vault is closed,
+ * so opening the vault only scans the records appended after it was written. Space of the replaced records is
+ * reclaimed by compaction, which copies the live records into a new file in the background.<br>
+ * File format:<br>
+ * - Bytes 0-3: magic bytes "NVLT"<br>
+ * - Byte 4: version<br>
+ * - Bytes 5-20: random generation, changed by every compaction<br>
+ * - Records: type, id length (2 bytes), data length (4 bytes), CRC32 of the record without it (4 bytes), UTF-8 id, data<br>
+ * The id of a record is protected only by the CRC32, which detects damage but not tampering. The note image is
+ * authenticated by its own encryption, as in a separate note file, and the id is not part of it, just like the name
+ * of a note file. Whoever can write the vault file can therefore swap the notes of two ids or append a copy of a note
+ * under another id without knowing the password. Binding the id to the image would require re-encrypting
+ * imported notes, which are copied without the password.
+ * @author Szymon Botor
+ * @version 1.2
+ */
+public class NoteVault implements AutoCloseable {
+
+    /**
+     * This is the file extension of the vault files.
+     */
+    public static final String FILE_EXTENSION = ".vault";
+
+    /**
+     * Suffix appended to the vault file name to get the name of its index file.
+     */
+    public static final String INDEX_SUFFIX = ".index";
+
+    /**
+     * Magic bytes at the beginning of every vault file.
+     */
+    public static final byte[] MAGIC = {'N', 'V', 'L', 'T'};
+
+    /**
+     * Magic bytes at the beginning of every index file.
+     */
+    public static final byte[] INDEX_MAGIC = {'N', 'V', 'I', 'X'};
+
+    /**
+     * Version of the vault and index formats.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Length of the random generation of the vault file in bytes.
+     */
+    public static final int GENERATION_LENGTH = 16;
+
+    /**
+     * Length of the header of the vault file in bytes.
+     */
+    public static final int HEADER_LENGTH = MAGIC.length + 1 + GENERATION_LENGTH;
+
+    /**
+     * Length of the fixed part of a record in bytes.
+     */
+    public static final int RECORD_HEADER_LENGTH = 1 + Short.BYTES + Integer.BYTES + Integer.BYTES;
+
+    /**
+     * Maximum length of a note id in UTF-8 bytes.
+     */
+    public static final int MAX_ID_LENGTH = 0xFFFF;
+
+    /**
+     * Minimal number of bytes of replaced records that triggers automatic compaction. Above it, the vault is
+     * compacted when the replaced records take more space than the live ones.
+     */
+    public static final long MIN_COMPACTION_LENGTH = 1024 * 1024;
+
+    /**
+     * Type of a record storing a note.
+     */
+    private static final byte TYPE_PUT = 1;
+
+    /**
+     * Type of a record deleting a note.
+     */
+    private static final byte TYPE_DELETE = 2;
+
+    /**
+     * Class representing the location of the latest record of a note.
+     */
+    private static final class Entry {
+
+        /**
+         * Offset of the record in the vault file.
+         */
+        private final long offset;
+
+        /**
+         * Length of the id in the record in bytes.
+         */
+        private final int idLength;
+
+        /**
+         * Length of the data of the record in bytes.
+         */
+        private final int dataLength;
+
+        /**
+         * Constructor of the entry.
+         * @param offset offset of the record in the vault file.
+         * @param idLength length of the id in the record in bytes.
+         * @param dataLength length of the data of the record in bytes.
+         */
+        private Entry(long offset, int idLength, int dataLength) {
+            this.offset = offset;
+            this.idLength = idLength;
+            this.dataLength = dataLength;
+        }
+
+        /**
+         * This method is used to get the offset of the data of the record.
+         * @return offset in the vault file.
+         */
+        private long getDataOffset() {
+            return offset + RECORD_HEADER_LENGTH + idLength;
+        }
+
+        /**
+         * This method is used to get the length of the whole record.
+         * @return length in bytes.
+         */
+        private long getLength() {
+            return RECORD_HEADER_LENGTH + idLength + dataLength;
+        }
+    }
+
+    /**
+     * Interface of the receivers of the records found by a scan of the vault file.
+     */
+    private interface RecordHandler {
+
+        /**
+         * This method is called for every valid record in order.
+         * @param type type of the record.
+         * @param id id of the note.
+         * @param offset offset of the record.
+         * @param idLength length of the id in bytes.
+         * @param dataLength length of the data in bytes.
+         * @throws IOException Signals that the record could not be processed.
+         */
+        void record(byte type, String id, long offset, int idLength, int dataLength) throws IOException;
+    }
+
+    /**
+     * Path of the vault file.
+     */
+    private final Path path;
+
+    /**
+     * Path of the index file.
+     */
+    private final Path indexPath;
+
+    /**
+     * Lock of the state of the vault. Reads share it, appends and the switch to a compacted file take it exclusively.
+     */
+    private final ReentrantReadWriteLock lock;
+
+    /**
+     * Lock held for the whole time of a compaction, so only one compaction runs at once.
+     */
+    private final ReentrantLock compactionLock;
+
+    /**
+     * Channel of the vault file.
+     */
+    private FileChannel channel;
+
+    /**
+     * Generation of the vault file.
+     */
+    private byte[] generation;
+
+    /**
+     * Latest records of the notes by their ids.
+     */
+    private Map<String, Entry> index;
+
+    /**
+     * Offset of the end of the last valid record.
+     */
+    private long end;
+
+    /**
+     * Total length of the latest records of the notes.
+     */
+    private long liveLength;
+
+    /**
+     * True if the vault is compacted automatically when enough space is taken by replaced records.
+     */
+    private boolean autoCompaction;
+
+    /**
+     * The last background compaction or null.
+     */
+    private CompletableFuture<Void> compaction;
+
+    /**
+     * Constructor of the NoteVault class opening a vault file. A missing file is created.
+     * The index is loaded from the index file if it matches the vault, and the records appended after it was written
+     * are scanned. An incomplete last record left by an interrupted save is removed.
+     * @param file vault file.
+     * @throws IOException Signals that the file could not be opened or is not a vault.
+     */
+    public NoteVault(File file) throws IOException {
+        path = file.toPath();
+        indexPath = getIndexFile(file).toPath();
+        lock = new ReentrantReadWriteLock();
+        compactionLock = new ReentrantLock();
+        index = new HashMap<>();
+        liveLength = 0;
+        autoCompaction = true;
+        compaction = null;
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                generation = newGeneration();
+                writeHeader(channel, generation);
+                channel.force(false);
+                end = HEADER_LENGTH;
+            } else {
+                generation = readHeader(channel);
+                long size = channel.size();
+                long covered = readIndex(size);
+                end = scan(channel, covered, size, this::apply);
+                if (end < size) {
+                    channel.truncate(end);
+                }
+            }
+        }
+        catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * This method is used to get the index file of a vault file.
+     * @param vaultFile vault file.
+     * @return the index file next to the vault file.
+     */
+    public static File getIndexFile(File vaultFile) {
+        return new File(vaultFile.getPath() + INDEX_SUFFIX);
+    }
+
+    /**
+     * This method is used to get the ids of all notes in the vault. No I/O is performed.
+     * @return sorted list of the ids.
+     */
+    public List<String> list() {
+        lock.readLock().lock();
+        try {
+            List<String> ids = new ArrayList<>(index.keySet());
+            ids.sort(Comparator.naturalOrder());
+            return ids;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method is used to check if the vault has a note.
+     * @param id id of the note.
+     * @return true if the note is in the vault.
+     */
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return index.containsKey(id);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method is used to get the number of notes in the vault.
+     * @return number of notes.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method is used to read a note of the vault and decrypt it with the given password.
+     * @param id id of the note.
+     * @param password password used to encrypt the note.
+     * @return the note or null if the password is incorrect.
+     * @throws IOException Signals that the vault has no such note or it could not be read.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is encrypted with a master key.
+     */
+    public Note read(String id, String password) throws IOException, InvalidCryptModeException, CryptException {
+        Note note = new Note();
+        return note.read(null, load(id), password) ? note : null;
+    }
+
+    /**
+     * This method is used to read a note of the vault and decrypt it with the master key of a key vault.
+     * @param id id of the note.
+     * @param masterKey unlocked master key used to encrypt the note.
+     * @return the note or null if the key could not be unwrapped.
+     * @throws IOException Signals that the vault has no such note or it could not be read.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs or the note is encrypted with a password.
+     */
+    public Note read(String id, MasterKey masterKey) throws IOException, InvalidCryptModeException, CryptException {
+        Note note = new Note();
+        return note.read(null, load(id), masterKey) ? note : null;
+    }
+
+    /**
+     * This method is used to encrypt a note with the given password and store it in the vault under the given id,
+     * replacing the previous version of the note.
+     * @param id id of the note.
+     * @param note saved note.
+     * @param password password to use as a base in encryption.
+     * @throws IOException Signals that the record could not be written.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     * @throws IllegalArgumentException Thrown when the id is empty or too long.
+     */
+    public void save(String id, Note note, String password) throws IOException, InvalidCryptModeException, CryptException {
+        byte[] idBytes = toBytes(id);
+        append(TYPE_PUT, id, idBytes, note.encrypt(password));
+    }
+
+    /**
+     * This method is used to encrypt a note with a new data key wrapped with a master key and store it in the vault.
+     * @param id id of the note.
+     * @param note saved note.
+     * @param masterKey unlocked master key.
+     * @throws IOException Signals that the record could not be written.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     * @throws IllegalArgumentException Thrown when the id is empty or too long.
+     */
+    public void save(String id, Note note, MasterKey masterKey) throws IOException, InvalidCryptModeException, CryptException {
+        byte[] idBytes = toBytes(id);
+        append(TYPE_PUT, id, idBytes, note.encrypt(masterKey));
+    }
+
+    /**
+     * This method is used to delete a note from the vault.
+     * @param id id of the note.
+     * @return true if the note was in the vault.
+     * @throws IOException Signals that the record could not be written.
+     */
+    public boolean delete(String id) throws IOException {
+        if (!contains(id)) {
+            return false;
+        }
+        append(TYPE_DELETE, id, toBytes(id));
+        return true;
+    }
+
+    /**
+     * This method is used to copy a note file into the vault. The encrypted file is copied as it is, so no password
+     * is needed. The id of the note is the name of the file without the note file extension.
+     * @param noteFile note file.
+     * @return id of the imported note.
+     * @throws IOException Signals that the file could not be read, is not a note, has edits in its journal,
+     * gives no id or the vault already has a note with its id.
+     */
+    public String importNote(File noteFile) throws IOException {
+        String id = checkImport(noteFile);
+
+        byte[] data = Files.readAllBytes(noteFile.toPath());
+        NoteHeader.read(ByteBuffer.wrap(data));
+
+        append(TYPE_PUT, id, toBytes(id), ByteBuffer.wrap(data));
+        return id;
+    }
+
+    /**
+     * This method is used to copy all note files of a directory into the vault. The ids and journals of all the notes
+     * are checked before the first one is copied, so a note that cannot be imported for these reasons
+     * leaves the vault unchanged.
+     * @param directory directory with the notes.
+     * @return number of imported notes.
+     * @throws IOException Signals that a note could not be imported.
+     * @see NoteVault#importNote(File)
+     */
+    public int importDirectory(File directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath(), "*" + Note.FILE_EXTENSION)) {
+            for (Path notePath : stream) {
+                if (Files.isRegularFile(notePath)) {
+                    paths.add(notePath);
+                }
+            }
+        }
+        paths.sort(Comparator.naturalOrder());
+
+        for (Path notePath : paths) {
+            checkImport(notePath.toFile());
+        }
+        for (Path notePath : paths) {
+            importNote(notePath.toFile());
+        }
+        return paths.size();
+    }
+
+    /**
+     * This method is used to rewrite the vault file with only the latest records of the notes.
+     * The live records are copied without blocking reads and saves. Only the records appended during the copy
+     * are copied while saves wait, and then the compacted file replaces the vault file atomically.
+     * The state of the vault is switched to the compacted file only after it was renamed over the vault file,
+     * so a failed rename leaves the vault using the old file.
+     * @throws IOException Signals that the compacted file could not be written or renamed.
+     */
+    public void compact() throws IOException {
+        compactionLock.lock();
+        try {
+            List<Map.Entry<String, Entry>> live;
+            long copiedEnd;
+            FileChannel source;
+            lock.readLock().lock();
+            try {
+                live = new ArrayList<>(index.entrySet());
+                copiedEnd = end;
+                source = channel;
+            }
+            finally {
+                lock.readLock().unlock();
+            }
+            live.sort(Comparator.comparingLong(entry -> entry.getValue().offset));
+
+            byte[] newGeneration = newGeneration();
+            Map<String, Entry> newIndex = new HashMap<>();
+            long[] position = {HEADER_LENGTH};
+            Path temp = DurableFiles.createTempFile(path);
+            boolean locked = false;
+            boolean replaced = false;
+            try {
+                try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    writeHeader(target, newGeneration);
+                    for (Map.Entry<String, Entry> entry : live) {
+                        Entry record = entry.getValue();
+                        copy(source, record.offset, record.getLength(), target);
+                        newIndex.put(entry.getKey(), new Entry(position[0], record.idLength, record.dataLength));
+                        position[0] += record.getLength();
+                    }
+
+                    lock.writeLock().lock();
+                    locked = true;
+                    scan(source, copiedEnd, end, (type, id, offset, idLength, dataLength) -> {
+                        long length = (long) RECORD_HEADER_LENGTH + idLength + dataLength;
+                        copy(source, offset, length, target);
+                        if (type == TYPE_PUT) {
+                            newIndex.put(id, new Entry(position[0], idLength, dataLength));
+                        } else {
+                            newIndex.remove(id);
+                        }
+                        position[0] += length;
+                    });
+                    target.force(false);
+                }
+
+                DurableFiles.move(temp, path);
+                replaced = true;
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                generation = newGeneration;
+                index = newIndex;
+                end = position[0];
+                liveLength = 0;
+                for (Entry entry : newIndex.values()) {
+                    liveLength += entry.getLength();
+                }
+                source.close();
+                DurableFiles.syncDirectory(path.toAbsolutePath().getParent());
+                writeIndex();
+            }
+            finally {
+                if (locked) {
+                    lock.writeLock().unlock();
+                }
+                if (!replaced) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+        finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * This method is used to compact the vault on the I/O executor. A compaction that is already running is returned
+     * instead of starting another one.
+     * @return future completed when the vault is compacted.
+     * @see NoteVault#compact()
+     * @see AsyncIO#getIoExecutor()
+     */
+    public synchronized CompletableFuture<Void> compactAsync() {
+        if (compaction == null || compaction.isDone()) {
+            compaction = CompletableFuture.runAsync(() -> {
+                try {
+                    compact();
+                }
+                catch (IOException ex) {
+                    throw new CompletionException(ex);
+                }
+            }, AsyncIO.getIoExecutor());
+        }
+        return compaction;
+    }
+
+    /**
+     * This method is used to check if the vault is compacted automatically.
+     * @return true if automatic compaction is enabled.
+     */
+    public synchronized boolean isAutoCompaction() {
+        return autoCompaction;
+    }
+
+    /**
+     * This method is used to enable or disable automatic compaction. It is enabled by default. The vault is then
+     * compacted in the background after a save when the replaced records take more than MIN_COMPACTION_LENGTH bytes
+     * and more space than the live records.
+     * @param autoCompaction true to compact the vault automatically.
+     */
+    public synchronized void setAutoCompaction(boolean autoCompaction) {
+        this.autoCompaction = autoCompaction;
+    }
+
+    /**
+     * This method is used to get the length of the vault file.
+     * @return length in bytes.
+     */
+    public long getLength() {
+        lock.readLock().lock();
+        try {
+            return end;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method is used to get the total length of the latest records of the notes.
+     * @return length in bytes.
+     */
+    public long getLiveLength() {
+        lock.readLock().lock();
+        try {
+            return liveLength;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method is used to get the vault file.
+     * @return the vault file.
+     */
+    public File getFile() {
+        return path.toFile();
+    }
+
+    /**
+     * This method is used to close the vault. A running compaction is finished and the index is written to the index file.
+     * @throws IOException Signals that the index could not be written or the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        CompletableFuture<Void> running;
+        synchronized (this) {
+            autoCompaction = false;
+            running = compaction;
+        }
+        if (running != null) {
+            running.exceptionally(ex -> null).join();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (channel.isOpen()) {
+                try {
+                    writeIndex();
+                }
+                finally {
+                    channel.close();
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method is used to check if a note file can be imported and get its id.
+     * @param noteFile note file.
+     * @return id of the note, which is the name of the file without the note file extension.
+     * @throws IOException Signals that the note has edits in its journal, gives no id or the vault already
+     * has a note with its id.
+     */
+    private String checkImport(File noteFile) throws IOException {
+        String name = noteFile.getName();
+        if (Files.exists(NoteJournal.getPath(noteFile))) {
+            throw new IOException(String.format("The note %s has edits in its journal and must be compacted first.",
+                    name));
+        }
+
+        String id = name.endsWith(Note.FILE_EXTENSION)
+                ? name.substring(0, name.length() - Note.FILE_EXTENSION.length())
+                : name;
+        if (id.isEmpty()) {
+            throw new IOException(String.format("The file name %s gives no note id.", name));
+        }
+        if (contains(id)) {
+            throw new IOException(String.format("The vault already has a note %s.", id));
+        }
+        return id;
+    }
+
+    /**
+     * This method is used to read the data of the latest record of a note.
+     * @param id id of the note.
+     * @return heap buffer with the image of the note file.
+     * @throws IOException Signals that the vault has no such note or it could not be read.
+     */
+    private ByteBuffer load(String id) throws IOException {
+        lock.readLock().lock();
+        try {
+            Entry entry = index.get(id);
+            if (entry == null) {
+                throw new IOException(String.format("The vault has no note %s.", id));
+            }
+
+            ByteBuffer data = ByteBuffer.allocate(entry.dataLength);
+            readFully(channel, data, entry.getDataOffset());
+            data.flip();
+            return data;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method is used to append a record to the vault file and synchronise it with the disk.
+     * An incomplete record is truncated if the write fails.
+     * @param type type of the record.
+     * @param id id of the note.
+     * @param idBytes id of the note in UTF-8.
+     * @param data data of the record.
+     * @throws IOException Signals that the record could not be written.
+     */
+    private void append(byte type, String id, byte[] idBytes, ByteBuffer... data) throws IOException {
+        long dataLength = 0;
+        for (ByteBuffer buffer : data) {
+            dataLength += buffer.remaining();
+        }
+        if (dataLength > Integer.MAX_VALUE - RECORD_HEADER_LENGTH - MAX_ID_LENGTH) {
+            throw new IOException("The note is too large to be stored in a vault.");
+        }
+
+        ByteBuffer head = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        head.put(type).putShort((short) idBytes.length).putInt((int) dataLength);
+        CRC32 checksum = new CRC32();
+        checksum.update(head.array(), 0, head.position());
+        checksum.update(idBytes);
+        for (ByteBuffer buffer : data) {
+            checksum.update(buffer.duplicate());
+        }
+        head.putInt((int) checksum.getValue());
+        head.flip();
+
+        ByteBuffer[] buffers = new ByteBuffer[data.length + 2];
+        buffers[0] = head;
+        buffers[1] = ByteBuffer.wrap(idBytes);
+        System.arraycopy(data, 0, buffers, 2, data.length);
+        long remaining = RECORD_HEADER_LENGTH + idBytes.length + dataLength;
+
+        boolean compact;
+        lock.writeLock().lock();
+        try {
+            long offset = end;
+            try {
+                channel.position(offset);
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+                channel.force(false);
+            }
+            catch (IOException ex) {
+                try {
+                    channel.truncate(offset);
+                }
+                catch (IOException suppressed) {
+                    ex.addSuppressed(suppressed);
+                }
+                throw ex;
+            }
+
+            end = offset + RECORD_HEADER_LENGTH + idBytes.length + dataLength;
+            apply(type, id, offset, idBytes.length, (int) dataLength);
+            long garbage = end - HEADER_LENGTH - liveLength;
+            compact = garbage > Math.max(MIN_COMPACTION_LENGTH, liveLength);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+
+        if (compact && isAutoCompaction()) {
+            compactAsync();
+        }
+    }
+
+    /**
+     * This method is used to apply a record to the index.
+     * @param type type of the record.
+     * @param id id of the note.
+     * @param offset offset of the record.
+     * @param idLength length of the id in bytes.
+     * @param dataLength length of the data in bytes.
+     */
+    private void apply(byte type, String id, long offset, int idLength, int dataLength) {
+        Entry previous;
+        if (type == TYPE_PUT) {
+            Entry entry = new Entry(offset, idLength, dataLength);
+            previous = index.put(id, entry);
+            liveLength += entry.getLength();
+        } else {
+            previous = index.remove(id);
+        }
+        if (previous != null) {
+            liveLength -= previous.getLength();
+        }
+    }
+
+    /**
+     * This method is used to load the index from the index file. The index is used only if it belongs to the current
+     * generation of the vault file and is not corrupted.
+     * @param size size of the vault file.
+     * @return offset up to which the vault file is covered by the loaded index or the offset of the first record
+     * if the index file could not be used.
+     */
+    private long readIndex(long size) {
+        if (!Files.isRegularFile(indexPath)) {
+            return HEADER_LENGTH;
+        }
+
+        try {
+            byte[] bytes = Files.readAllBytes(indexPath);
+            if (bytes.length < Integer.BYTES) {
+                return HEADER_LENGTH;
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes, 0, bytes.length - Integer.BYTES);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if ((int) checksum.getValue() != buffer.getInt(bytes.length - Integer.BYTES)) {
+                return HEADER_LENGTH;
+            }
+            buffer.limit(bytes.length - Integer.BYTES);
+
+            byte[] magic = new byte[INDEX_MAGIC.length];
+            buffer.get(magic);
+            byte[] indexGeneration = new byte[GENERATION_LENGTH];
+            if (!Arrays.equals(magic, INDEX_MAGIC) || buffer.get() != VERSION) {
+                return HEADER_LENGTH;
+            }
+            buffer.get(indexGeneration);
+            long covered = buffer.getLong();
+            if (!Arrays.equals(indexGeneration, generation) || covered < HEADER_LENGTH || covered > size) {
+                return HEADER_LENGTH;
+            }
+
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] id = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(id);
+                Entry entry = new Entry(buffer.getLong(), id.length, buffer.getInt());
+                if (entry.offset < HEADER_LENGTH || entry.dataLength < 0 || entry.offset + entry.getLength() > covered) {
+                    index.clear();
+                    liveLength = 0;
+                    return HEADER_LENGTH;
+                }
+                index.put(new String(id, StandardCharsets.UTF_8), entry);
+                liveLength += entry.getLength();
+            }
+            return covered;
+        }
+        catch (IOException | BufferUnderflowException ex) {
+            index.clear();
+            liveLength = 0;
+            return HEADER_LENGTH;
+        }
+    }
+
+    /**
+     * This method is used to write the index to the index file, which is replaced atomically.
+     * It has to be called with the lock held.
+     * @throws IOException Signals that the index file could not be written.
+     */
+    private void writeIndex() throws IOException {
+        List<byte[]> ids = new ArrayList<>(index.size());
+        int length = INDEX_MAGIC.length + 1 + GENERATION_LENGTH + Long.BYTES + Integer.BYTES + Integer.BYTES;
+        for (String id : index.keySet()) {
+            byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+            ids.add(idBytes);
+            length += Short.BYTES + idBytes.length + Long.BYTES + Integer.BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(INDEX_MAGIC).put((byte) VERSION).put(generation).putLong(end).putInt(index.size());
+        int i = 0;
+        for (Entry entry : index.values()) {
+            byte[] idBytes = ids.get(i++);
+            buffer.putShort((short) idBytes.length).put(idBytes).putLong(entry.offset).putInt(entry.dataLength);
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) checksum.getValue());
+
+        Path temp = DurableFiles.createTempFile(indexPath);
+        try {
+            Files.write(temp, buffer.array());
+            DurableFiles.move(temp, indexPath);
+        }
+        catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+    }
+
+    /**
+     * This method is used to scan the records of a part of a vault file. The scan stops at the first incomplete
+     * or corrupted record.
+     * @param source channel of the vault file.
+     * @param from offset of the first record.
+     * @param to offset of the end of the scanned part.
+     * @param handler receiver of the valid records.
+     * @return offset of the end of the last valid record.
+     * @throws IOException Signals that the file could not be read or a record could not be processed.
+     */
+    private static long scan(FileChannel source, long from, long to, RecordHandler handler) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        CRC32 checksum = new CRC32();
+        long position = from;
+        while (position + RECORD_HEADER_LENGTH <= to) {
+            head.clear();
+            readFully(source, head, position);
+            head.flip();
+            byte type = head.get();
+            int idLength = Short.toUnsignedInt(head.getShort());
+            int dataLength = head.getInt();
+            int crc = head.getInt();
+            if ((type != TYPE_PUT && type != TYPE_DELETE) || idLength == 0 || dataLength < 0
+                    || position + RECORD_HEADER_LENGTH + idLength + dataLength > to) {
+                break;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(idLength + dataLength);
+            readFully(source, body, position + RECORD_HEADER_LENGTH);
+            checksum.reset();
+            checksum.update(head.array(), 0, RECORD_HEADER_LENGTH - Integer.BYTES);
+            checksum.update(body.array());
+            if ((int) checksum.getValue() != crc) {
+                break;
+            }
+
+            String id = new String(body.array(), 0, idLength, StandardCharsets.UTF_8);
+            handler.record(type, id, position, idLength, dataLength);
+            position += RECORD_HEADER_LENGTH + idLength + dataLength;
+        }
+        return position;
+    }
+
+    /**
+     * This method is used to fill a buffer with bytes of a file starting at the given offset.
+     * @param source channel of the file.
+     * @param buffer filled buffer.
+     * @param offset offset of the first byte.
+     * @throws IOException Signals that the file ended or could not be read.
+     */
+    private static void readFully(FileChannel source, ByteBuffer buffer, long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            int count = source.read(buffer, position);
+            if (count < 0) {
+                throw new EOFException("The vault file ended unexpectedly.");
+            }
+            position += count;
+        }
+    }
+
+    /**
+     * This method is used to copy a part of a file to the current position of another channel.
+     * @param source channel of the copied file.
+     * @param offset offset of the copied part.
+     * @param length length of the copied part.
+     * @param target channel to which the part is appended.
+     * @throws IOException Signals that the part could not be copied.
+     */
+    private static void copy(FileChannel source, long offset, long length, FileChannel target) throws IOException {
+        long copied = 0;
+        while (copied < length) {
+            long count = source.transferTo(offset + copied, length - copied, target);
+            if (count <= 0) {
+                throw new EOFException("The vault file ended unexpectedly.");
+            }
+            copied += count;
+        }
+    }
+
+    /**
+     * This method is used to write the header of a vault file at its beginning.
+     * @param target channel of the vault file.
+     * @param fileGeneration generation of the vault file.
+     * @throws IOException Signals that the header could not be written.
+     */
+    private static void writeHeader(FileChannel target, byte[] fileGeneration) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(MAGIC).put((byte) VERSION).put(fileGeneration);
+        header.flip();
+        target.position(0);
+        while (header.hasRemaining()) {
+            target.write(header);
+        }
+    }
+
+    /**
+     * This method is used to read and check the header of a vault file.
+     * @param source channel of the vault file.
+     * @return generation of the vault file.
+     * @throws IOException Signals that the file is not a vault or its version is not supported.
+     */
+    private static byte[] readHeader(FileChannel source) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        try {
+            readFully(source, header, 0);
+        }
+        catch (EOFException ex) {
+            throw new IOException("The file is not a note vault.");
+        }
+        header.flip();
+
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("The file is not a note vault.");
+        }
+        int version = header.get();
+        if (version != VERSION) {
+            throw new IOException(String.format("Vault version %d is not supported.", version));
+        }
+
+        byte[] fileGeneration = new byte[GENERATION_LENGTH];
+        header.get(fileGeneration);
+        return fileGeneration;
+    }
+
+    /**
+     * This method is used to generate a random generation of a vault file.
+     * @return the generation.
+     */
+    private static byte[] newGeneration() {
+        byte[] newGeneration = new byte[GENERATION_LENGTH];
+        new SecureRandom().nextBytes(newGeneration);
+        return newGeneration;
+    }
+
+    /**
+     * This method is used to encode and check a note id.
+     * @param id id of a note.
+     * @return the id in UTF-8.
+     * @throws IllegalArgumentException Thrown when the id is empty or longer than MAX_ID_LENGTH bytes.
+     */
+    private static byte[] toBytes(String id) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length == 0 || idBytes.length > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException(String.format("Note id of %d bytes is invalid.", idBytes.length));
+        }
+        return idBytes;
+    }
+}
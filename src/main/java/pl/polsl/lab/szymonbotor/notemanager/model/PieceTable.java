@@ -0,0 +1,370 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class representing an editable text as a piece table. The text is a sequence of pieces, each referring to a range
+ * of either the original text or an append-only buffer of inserted text. Inserting and deleting only adds, splits
+ * or removes pieces, so an edit costs time proportional to the number of pieces instead of the length of the text.
+ * Consecutive insertions at the same place extend a single piece. When the number of pieces exceeds MAX_PIECES,
+ * the text is rebuilt into a single piece. Taking a snapshot freezes the inserted text into an immutable string,
+ * so a snapshot can be read by another thread while the table is edited.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+public class PieceTable {
+
+    /**
+     * Number of pieces above which the text is rebuilt into a single piece.
+     */
+    public static final int MAX_PIECES = 4096;
+
+    /**
+     * Class representing a range of a source text. Pieces are immutable, so snapshots can share them.
+     */
+    private static final class Piece {
+
+        /**
+         * Source text of the piece. Only ranges that are never modified are referenced.
+         */
+        private final CharSequence source;
+
+        /**
+         * Index of the first character of the piece in its source.
+         */
+        private final int start;
+
+        /**
+         * Number of characters of the piece.
+         */
+        private final int length;
+
+        /**
+         * Constructor of the piece.
+         * @param source source text of the piece.
+         * @param start index of the first character of the piece in its source.
+         * @param length number of characters of the piece.
+         */
+        private Piece(CharSequence source, int start, int length) {
+            this.source = source;
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Class representing an immutable view of the text at the moment it was created. Later edits of the table
+     * do not change the snapshot. Reading the characters in order takes constant time per character.
+     * A snapshot must not be read by several threads at once.
+     */
+    public static final class Snapshot implements CharSequence {
+
+        /**
+         * Pieces of the text.
+         */
+        private final Piece[] pieces;
+
+        /**
+         * Number of characters of the text.
+         */
+        private final int length;
+
+        /**
+         * Index of the piece containing the most recently read character.
+         */
+        private int cursor;
+
+        /**
+         * Index of the first character of the piece at the cursor.
+         */
+        private int cursorStart;
+
+        /**
+         * Constructor of the snapshot.
+         * @param pieces pieces of the text.
+         * @param length number of characters of the text.
+         */
+        private Snapshot(Piece[] pieces, int length) {
+            this.pieces = pieces;
+            this.length = length;
+            cursor = 0;
+            cursorStart = 0;
+        }
+
+        /**
+         * This method is used to get the length of the text.
+         * @return number of characters.
+         */
+        @Override
+        public int length() {
+            return length;
+        }
+
+        /**
+         * This method is used to get a character of the text.
+         * @param index index of the character.
+         * @return the character.
+         * @throws IndexOutOfBoundsException Thrown when the index is outside of the text.
+         */
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(String.format("Index %d is outside of the text of length %d.", index, length));
+            }
+
+            if (index < cursorStart) {
+                cursor = 0;
+                cursorStart = 0;
+            }
+            while (index >= cursorStart + pieces[cursor].length) {
+                cursorStart += pieces[cursor].length;
+                cursor++;
+            }
+
+            Piece piece = pieces[cursor];
+            return piece.source.charAt(piece.start + index - cursorStart);
+        }
+
+        /**
+         * This method is used to get a part of the text.
+         * @param start index of the first character. Inclusive.
+         * @param end index of the last character. Exclusive.
+         * @return the part of the text.
+         * @throws IndexOutOfBoundsException Thrown when the range is outside of the text.
+         */
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException(String.format("Range %d-%d is outside of the text of length %d.",
+                        start, end, length));
+            }
+
+            StringBuilder builder = new StringBuilder(end - start);
+            int pieceStart = 0;
+            for (Piece piece : pieces) {
+                int from = Math.max(start, pieceStart);
+                int to = Math.min(end, pieceStart + piece.length);
+                if (from < to) {
+                    builder.append(piece.source, piece.start + from - pieceStart, piece.start + to - pieceStart);
+                }
+                pieceStart += piece.length;
+            }
+            return builder.toString();
+        }
+
+        /**
+         * This method is used to get the whole text.
+         * @return the text.
+         */
+        @Override
+        public String toString() {
+            return subSequence(0, length).toString();
+        }
+    }
+
+    /**
+     * Buffer of the text inserted since the last snapshot. Characters are only appended to it. Snapshots never
+     * reference it, so it can be modified while they are read by another thread.
+     */
+    private StringBuilder added;
+
+    /**
+     * Pieces of the text in order.
+     */
+    private final List<Piece> pieces;
+
+    /**
+     * Number of characters of the text.
+     */
+    private int length;
+
+    /**
+     * The whole text, if it was built since the last edit, otherwise null.
+     */
+    private String text;
+
+    /**
+     * Default constructor of the PieceTable class creating an empty text.
+     */
+    public PieceTable() {
+        this("");
+    }
+
+    /**
+     * Constructor of the PieceTable class.
+     * @param original initial text.
+     */
+    public PieceTable(String original) {
+        added = new StringBuilder();
+        pieces = new ArrayList<>();
+        reset(original);
+    }
+
+    /**
+     * This method is used to get the length of the text.
+     * @return number of characters.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * This method is used to get the number of pieces of the text.
+     * @return number of pieces.
+     */
+    public int getPieceCount() {
+        return pieces.size();
+    }
+
+    /**
+     * This method is used to insert text.
+     * @param offset index at which the text is inserted.
+     * @param str inserted text.
+     * @throws IndexOutOfBoundsException Thrown when the offset is outside of the text.
+     */
+    public void insert(int offset, CharSequence str) {
+        if (offset < 0 || offset > length) {
+            throw new IndexOutOfBoundsException(String.format("Offset %d is outside of the text of length %d.", offset, length));
+        }
+        if (str.length() == 0) {
+            return;
+        }
+
+        int addedStart = added.length();
+        added.append(str);
+        Piece inserted = new Piece(added, addedStart, str.length());
+
+        int index = 0;
+        int pieceStart = 0;
+        while (index < pieces.size() && pieceStart + pieces.get(index).length <= offset) {
+            pieceStart += pieces.get(index).length;
+            index++;
+        }
+
+        if (pieceStart == offset || index == pieces.size()) {
+            Piece previous = index > 0 ? pieces.get(index - 1) : null;
+            if (previous != null && previous.source == added && previous.start + previous.length == addedStart) {
+                pieces.set(index - 1, new Piece(added, previous.start, previous.length + inserted.length));
+            } else {
+                pieces.add(index, inserted);
+            }
+        } else {
+            Piece split = pieces.get(index);
+            int leftLength = offset - pieceStart;
+            pieces.set(index, new Piece(split.source, split.start, leftLength));
+            pieces.add(index + 1, inserted);
+            pieces.add(index + 2, new Piece(split.source, split.start + leftLength, split.length - leftLength));
+        }
+
+        length += str.length();
+        modified();
+    }
+
+    /**
+     * This method is used to delete a part of the text.
+     * @param offset index of the first deleted character.
+     * @param count number of deleted characters.
+     * @throws IndexOutOfBoundsException Thrown when the range is outside of the text.
+     */
+    public void delete(int offset, int count) {
+        if (offset < 0 || count < 0 || offset + count > length) {
+            throw new IndexOutOfBoundsException(String.format("Range of %d characters at %d is outside of the text of length %d.",
+                    count, offset, length));
+        }
+        if (count == 0) {
+            return;
+        }
+
+        int end = offset + count;
+        int index = 0;
+        int pieceStart = 0;
+        while (index < pieces.size() && pieceStart < end) {
+            Piece piece = pieces.get(index);
+            int pieceEnd = pieceStart + piece.length;
+            if (pieceEnd <= offset) {
+                pieceStart = pieceEnd;
+                index++;
+                continue;
+            }
+
+            int cutFrom = Math.max(offset, pieceStart) - pieceStart;
+            int cutTo = Math.min(end, pieceEnd) - pieceStart;
+            if (cutFrom == 0 && cutTo == piece.length) {
+                pieces.remove(index);
+            } else if (cutFrom == 0) {
+                pieces.set(index, new Piece(piece.source, piece.start + cutTo, piece.length - cutTo));
+                index++;
+            } else if (cutTo == piece.length) {
+                pieces.set(index, new Piece(piece.source, piece.start, cutFrom));
+                index++;
+            } else {
+                pieces.set(index, new Piece(piece.source, piece.start, cutFrom));
+                pieces.add(index + 1, new Piece(piece.source, piece.start + cutTo, piece.length - cutTo));
+                index += 2;
+            }
+            pieceStart = pieceEnd;
+        }
+
+        length -= count;
+        modified();
+    }
+
+    /**
+     * This method is used to create an immutable view of the current text. The text inserted since the last snapshot
+     * is copied into a string, which the pieces refer to from now on, and a new buffer is started, so later edits
+     * do not touch any character the snapshot reads. It costs time proportional to the number of pieces and
+     * the length of the text inserted since the last snapshot, not the length of the whole text.
+     * @return snapshot of the text.
+     */
+    public Snapshot snapshot() {
+        if (added.length() > 0) {
+            String frozen = added.toString();
+            for (int i = 0; i < pieces.size(); i++) {
+                Piece piece = pieces.get(i);
+                if (piece.source == added) {
+                    pieces.set(i, new Piece(frozen, piece.start, piece.length));
+                }
+            }
+            added = new StringBuilder();
+        }
+        return new Snapshot(pieces.toArray(new Piece[0]), length);
+    }
+
+    /**
+     * This method is used to get the whole text. The text is built once after every edit.
+     * @return the text.
+     */
+    @Override
+    public String toString() {
+        if (text == null) {
+            text = new Snapshot(pieces.toArray(new Piece[0]), length).toString();
+        }
+        return text;
+    }
+
+    /**
+     * This method is used to update the state after an edit and rebuild the text if there are too many pieces.
+     */
+    private void modified() {
+        text = null;
+        if (pieces.size() > MAX_PIECES) {
+            reset(toString());
+        }
+    }
+
+    /**
+     * This method is used to replace the text with a single piece. A new buffer of inserted text is started,
+     * so existing snapshots stay valid.
+     * @param original new text.
+     */
+    private void reset(String original) {
+        added = new StringBuilder();
+        pieces.clear();
+        if (!original.isEmpty()) {
+            pieces.add(new Piece(original, 0, original.length()));
+        }
+        length = original.length();
+        text = original;
+    }
+}
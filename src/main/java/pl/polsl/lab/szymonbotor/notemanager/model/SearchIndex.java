@@ -0,0 +1,760 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import pl.polsl.lab.szymonbotor.notemanager.enums.BlockMode;
+import pl.polsl.lab.szymonbotor.notemanager.enums.CryptMode;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.AuthenticationException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.zip.ZipException;
+
+/**
+ * Class representing an inverted index of the words of the notes in a directory, used to find notes without
+ * decrypting them. For every word the index keeps the sorted ids of the notes containing it, so a query is answered
+ * by intersecting a few arrays. For snippets the index also keeps the beginning of every note, compressed.
+ * The index is stored in a single file encrypted with a key derived from the password, in the same format as a note
+ * file, so it is decrypted once when it is opened. Notes are not indexed on their own: callers opt in by watching
+ * the notes they save, which updates the index on every save and overwrite, and by refreshing the index with the notes
+ * of a directory that were changed since they were indexed, for example by another process. A note counts as changed
+ * when its file or its journal was modified.
+ * @author Szymon Botor
+ * @version 1.2
+ */
+public class SearchIndex {
+
+    /**
+     * Name of the index file in a directory of notes.
+     */
+    public static final String FILE_NAME = "search.index";
+
+    /**
+     * Version of the format of the decrypted index.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Number of characters at the beginning of every note kept for snippets.
+     */
+    public static final int MAX_STORED_LENGTH = 16 * 1024;
+
+    /**
+     * Number of characters shown before and after a matched word in a snippet.
+     */
+    public static final int SNIPPET_CONTEXT = 40;
+
+    /**
+     * Maximum length of an indexed word. Longer words are not indexed.
+     */
+    public static final int MAX_TERM_LENGTH = 64;
+
+    /**
+     * Class representing a note found by a query.
+     */
+    public static class Result {
+
+        /**
+         * The note file.
+         */
+        private final File file;
+
+        /**
+         * Part of the note around the first matched word.
+         */
+        private final String snippet;
+
+        /**
+         * Constructor of the result.
+         * @param file the note file.
+         * @param snippet part of the note around the first matched word.
+         */
+        private Result(File file, String snippet) {
+            this.file = file;
+            this.snippet = snippet;
+        }
+
+        /**
+         * This method is used to get the note file.
+         * @return the note file.
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * This method is used to get the part of the note around the first matched word.
+         * @return the snippet.
+         */
+        public String getSnippet() {
+            return snippet;
+        }
+    }
+
+    /**
+     * Class representing an indexed note.
+     */
+    private static class Document {
+
+        /**
+         * Id of the note in the postings.
+         */
+        private final int id;
+
+        /**
+         * Path of the note file.
+         */
+        private final String path;
+
+        /**
+         * Modification stamp of the note file and its journal when the note was indexed.
+         */
+        private final long stamp;
+
+        /**
+         * Beginning of the note in UTF-8, compressed.
+         */
+        private final byte[] stored;
+
+        /**
+         * Distinct words of the note.
+         */
+        private final String[] terms;
+
+        /**
+         * Constructor of the document.
+         * @param id id of the note in the postings.
+         * @param path path of the note file.
+         * @param stamp modification stamp of the note file and its journal.
+         * @param stored beginning of the note in UTF-8, compressed.
+         * @param terms distinct words of the note.
+         */
+        private Document(int id, String path, long stamp, byte[] stored, String[] terms) {
+            this.id = id;
+            this.path = path;
+            this.stamp = stamp;
+            this.stored = stored;
+            this.terms = terms;
+        }
+    }
+
+    /**
+     * Class representing a sorted set of note ids stored in an array.
+     */
+    private static class Postings {
+
+        /**
+         * The word. Notes containing it refer to this instance, so the word is stored once.
+         */
+        private final String term;
+
+        /**
+         * Sorted ids. Only the first size elements are used.
+         */
+        private int[] ids = new int[2];
+
+        /**
+         * Number of ids.
+         */
+        private int size = 0;
+
+        /**
+         * Constructor of the postings.
+         * @param term the word.
+         */
+        private Postings(String term) {
+            this.term = term;
+        }
+
+        /**
+         * This method is used to add an id.
+         * @param id added id.
+         */
+        private void add(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        /**
+         * This method is used to remove an id.
+         * @param id removed id.
+         */
+        private void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Indexed notes by the paths of their files.
+     */
+    private final Map<String, Document> documents;
+
+    /**
+     * Indexed notes by their ids. Removed notes leave null elements until their ids are reused.
+     */
+    private final List<Document> documentsById;
+
+    /**
+     * Ids of removed notes, given to the next added notes, so the ids stay below the largest number of indexed notes.
+     */
+    private final Deque<Integer> freeIds;
+
+    /**
+     * Ids of the notes containing every word.
+     */
+    private final Map<String, Postings> postings;
+
+    /**
+     * Listener registered in the watched notes.
+     */
+    private final Consumer<Note> listener;
+
+    /**
+     * AES object used to encrypt the index file or null if the index was not opened or saved.
+     */
+    private AES aes;
+
+    /**
+     * True if the index was changed since it was opened or saved.
+     */
+    private boolean modified;
+
+    /**
+     * Default constructor of the SearchIndex class creating an empty index.
+     */
+    public SearchIndex() {
+        documents = new HashMap<>();
+        documentsById = new ArrayList<>();
+        freeIds = new ArrayDeque<>();
+        postings = new HashMap<>();
+        listener = note -> {
+            String saved = note.getSavedContent();
+            if (note.hasFile() && saved != null) {
+                update(note.getFile(), saved);
+            }
+        };
+        aes = null;
+        modified = false;
+    }
+
+    /**
+     * This method is used to get the index file of a directory of notes.
+     * @param directory directory of the notes.
+     * @return index file with the default name in the directory.
+     */
+    public static File getIndexFile(File directory) {
+        return new File(directory, FILE_NAME);
+    }
+
+    /**
+     * This method is used to open an index file and decrypt it with the given password. A missing file gives an empty index.
+     * @param indexFile index file.
+     * @param password password used to encrypt the index.
+     * @return the index or null if the password is incorrect.
+     * @throws IOException Signals that the file could not be read or is malformed.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    public static SearchIndex open(File indexFile, String password)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        SearchIndex index = new SearchIndex();
+        if (!indexFile.exists()) {
+            return index;
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+        NoteHeader header = NoteHeader.read(data);
+        if (header.isLegacy() || header.isKeyWrapped()) {
+            throw new IOException("The file is not a search index.");
+        }
+
+        AES newAes = new AES(password, header.getSalt(), header.getIV(), header.getKdfParams(), BlockMode.GCM, CryptMode.BOTH);
+        newAes.setAssociatedData(header.toBytes());
+        ByteBuffer plainText = ByteBuffer.allocate(data.remaining());
+        try {
+            newAes.decrypt(data, plainText);
+        }
+        catch (AuthenticationException ex) {
+            return null;
+        }
+        plainText.flip();
+
+        ByteBuffer serialized = header.isCompressed() ? Compression.inflate(plainText) : plainText;
+        index.readFrom(new DataInputStream(new ByteArrayInputStream(
+                serialized.array(), serialized.arrayOffset() + serialized.position(), serialized.remaining())));
+        index.aes = newAes;
+        return index;
+    }
+
+    /**
+     * This method is used to encrypt the index with the given password and save it to a file, which is replaced atomically.
+     * If the index was opened or saved before, its salt is kept, so the key of an unchanged password is taken from the cache.
+     * @param indexFile index file.
+     * @param password password to use as a base in encryption.
+     * @throws IOException Signals that the file could not be written.
+     * @throws InvalidCryptModeException This exception is thrown when a decryption method on an encryption AES object is used or vice versa.
+     * @throws CryptException This exception is thrown when a cryptographic exception occurs.
+     */
+    public synchronized void save(File indexFile, String password)
+            throws IOException, InvalidCryptModeException, CryptException {
+
+        if (aes != null) {
+            aes = new AES(password, aes.getSalt(), AES.generateIV(BlockMode.GCM), aes.getKdfParams(), BlockMode.GCM, CryptMode.BOTH);
+        } else {
+            aes = new AES(password, KdfParams.DEFAULT, BlockMode.GCM, CryptMode.BOTH);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeTo(new DataOutputStream(bytes));
+        ByteBuffer body = Compression.deflate(ByteBuffer.wrap(bytes.toByteArray()), Compression.DEFAULT_LEVEL);
+
+        NoteHeader header = new NoteHeader(aes.getSalt(), aes.getIV(), aes.getKdfParams());
+        header.setCompressed(true);
+        aes.setAssociatedData(header.toBytes());
+        ByteBuffer cipherText = ByteBuffer.allocate(aes.getEncryptedLength(body.remaining()));
+        aes.encrypt(body, cipherText);
+        cipherText.flip();
+
+        Path target = indexFile.toPath();
+        Path temp = DurableFiles.createTempFile(target);
+        ByteBuffer[] buffers = {ByteBuffer.wrap(header.toBytes()), cipherText};
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffers[1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+                channel.force(false);
+            }
+            DurableFiles.replace(temp, target);
+        }
+        catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        modified = false;
+    }
+
+    /**
+     * This method is used to index the content of a note, replacing the previous version of the note.
+     * @param noteFile the note file.
+     * @param content content of the note as stored in the note file and its journal.
+     */
+    public void update(File noteFile, String content) {
+        update(noteFile, content, getStamp(noteFile));
+    }
+
+    /**
+     * This method is used to index the content of a note with the modification stamp taken before it was read.
+     * @param noteFile the note file.
+     * @param content content of the note.
+     * @param stamp modification stamp of the note file and its journal.
+     */
+    private void update(File noteFile, String content, long stamp) {
+        List<String> terms = tokenize(content);
+        byte[] stored = compress(content.substring(0, Math.min(content.length(), MAX_STORED_LENGTH)));
+        synchronized (this) {
+            add(noteFile.getPath(), stamp, stored, terms.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * This method is used to get a value that changes whenever a note is saved, either by rewriting the note file
+     * or by appending edits to its journal, which leaves the note file untouched.
+     * @param noteFile the note file.
+     * @return stamp made of the modification times of the note file and its journal and the length of the journal.
+     * @see NoteJournal
+     */
+    static long getStamp(File noteFile) {
+        File journal = NoteJournal.getPath(noteFile).toFile();
+        return (noteFile.lastModified() * 31 + journal.lastModified()) * 31 + journal.length();
+    }
+
+    /**
+     * This method is used to remove a note from the index.
+     * @param noteFile the note file.
+     * @return true if the note was indexed.
+     */
+    public synchronized boolean remove(File noteFile) {
+        Document document = documents.remove(noteFile.getPath());
+        if (document == null) {
+            return false;
+        }
+
+        for (String term : document.terms) {
+            Postings termPostings = postings.get(term);
+            termPostings.remove(document.id);
+            if (termPostings.size == 0) {
+                postings.remove(term);
+            }
+        }
+        documentsById.set(document.id, null);
+        freeIds.push(document.id);
+        modified = true;
+        return true;
+    }
+
+    /**
+     * This method is used to find the notes containing all words of a query. Words are matched whole and without
+     * regard to case. No note is decrypted.
+     * @param query words to find.
+     * @param limit maximum number of results.
+     * @return results sorted by the paths of the note files.
+     */
+    public synchronized List<Result> search(String query, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        List<Postings> matched = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            Postings termPostings = postings.get(term);
+            if (termPostings == null) {
+                return new ArrayList<>();
+            }
+            matched.add(termPostings);
+        }
+        matched.sort(Comparator.comparingInt(termPostings -> termPostings.size));
+
+        int[] ids = Arrays.copyOf(matched.get(0).ids, matched.get(0).size);
+        int count = ids.length;
+        for (int i = 1; i < matched.size() && count > 0; i++) {
+            count = intersect(ids, count, matched.get(i));
+        }
+
+        List<Document> found = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            found.add(documentsById.get(ids[i]));
+        }
+        found.sort(Comparator.comparing(document -> document.path));
+
+        List<Result> results = new ArrayList<>(Math.min(limit, found.size()));
+        for (Document document : found.subList(0, Math.min(limit, found.size()))) {
+            results.add(new Result(new File(document.path), snippet(document, terms)));
+        }
+        return results;
+    }
+
+    /**
+     * This method is used to index the notes of a directory that were added or changed since they were indexed
+     * and remove the notes that no longer exist. A note is changed if its file or its journal was modified. Changed notes are decrypted in parallel on the CPU executor.
+     * Notes that cannot be decrypted with the password are not indexed.
+     * @param directory directory of the notes.
+     * @param password password of the notes.
+     * @return number of notes that were indexed again.
+     * @throws IOException Signals that the directory could not be listed.
+     * @see AsyncIO#getCryptoExecutor()
+     */
+    public int refresh(File directory, String password) throws IOException {
+        List<File> changed = new ArrayList<>();
+        Set<String> existing = new LinkedHashSet<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory.toPath(), "*" + Note.FILE_EXTENSION)) {
+            for (Path notePath : paths) {
+                File noteFile = notePath.toFile();
+                if (!noteFile.isFile()) {
+                    continue;
+                }
+                existing.add(noteFile.getPath());
+                synchronized (this) {
+                    Document document = documents.get(noteFile.getPath());
+                    if (document == null || document.stamp != getStamp(noteFile)) {
+                        changed.add(noteFile);
+                    }
+                }
+            }
+        }
+
+        synchronized (this) {
+            for (String path : new ArrayList<>(documents.keySet())) {
+                File noteFile = new File(path);
+                if (directory.equals(noteFile.getParentFile()) && !existing.contains(path)) {
+                    remove(noteFile);
+                }
+            }
+        }
+
+        List<CompletableFuture<Boolean>> tasks = new ArrayList<>(changed.size());
+        for (File noteFile : changed) {
+            tasks.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    long stamp = getStamp(noteFile);
+                    Note note = new Note();
+                    if (!note.read(noteFile.getPath(), password)) {
+                        return false;
+                    }
+                    update(noteFile, note.getContent(), stamp);
+                    return true;
+                }
+                catch (IOException | InvalidCryptModeException | CryptException ex) {
+                    return false;
+                }
+            }, AsyncIO.getCryptoExecutor()));
+        }
+
+        int count = 0;
+        for (CompletableFuture<Boolean> task : tasks) {
+            if (task.join()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * This method is used to keep a note indexed. The note is indexed again every time it is saved or overwritten,
+     * also when the edits are only appended to its journal. Notes are not watched unless this method is called.
+     * @param note watched note.
+     */
+    public void watch(Note note) {
+        note.addSaveListener(listener);
+    }
+
+    /**
+     * This method is used to stop updating the index when a note is saved.
+     * @param note note that is no longer watched.
+     */
+    public void unwatch(Note note) {
+        note.removeSaveListener(listener);
+    }
+
+    /**
+     * This method is used to get the number of indexed notes.
+     * @return number of notes.
+     */
+    public synchronized int size() {
+        return documents.size();
+    }
+
+    /**
+     * This method is used to get the number of note ids, including the ids of removed notes that were not reused yet.
+     * @return number of ids.
+     */
+    synchronized int getIdCount() {
+        return documentsById.size();
+    }
+
+    /**
+     * This method is used to check if the index was changed since it was opened or saved.
+     * @return true if the index should be saved.
+     */
+    public synchronized boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * This method is used to split a text into distinct lowercase words made of letters and digits.
+     * @param text split text.
+     * @return distinct words in the order of their first occurrence.
+     */
+    static List<String> tokenize(CharSequence text) {
+        Set<String> terms = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) {
+                    terms.add(text.subSequence(start, i).toString().toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * This method is used to add a note to the index, replacing its previous version. The note gets the id of
+     * the last removed note, which is the id of its previous version if there is one, or a new id.
+     * @param path path of the note file.
+     * @param stamp modification stamp of the note file and its journal.
+     * @param stored beginning of the note in UTF-8, compressed.
+     * @param terms distinct words of the note.
+     */
+    private void add(String path, long stamp, byte[] stored, String[] terms) {
+        remove(new File(path));
+
+        int id = freeIds.isEmpty() ? documentsById.size() : freeIds.pop();
+        Document document = new Document(id, path, stamp, stored, terms);
+        for (int i = 0; i < terms.length; i++) {
+            Postings termPostings = postings.computeIfAbsent(terms[i], Postings::new);
+            terms[i] = termPostings.term;
+            termPostings.add(document.id);
+        }
+        if (id == documentsById.size()) {
+            documentsById.add(document);
+        } else {
+            documentsById.set(id, document);
+        }
+        documents.put(path, document);
+        modified = true;
+    }
+
+    /**
+     * This method is used to keep only the ids that are also in the given postings.
+     * @param ids sorted ids.
+     * @param count number of used ids.
+     * @param other postings to intersect with.
+     * @return number of ids left at the beginning of the array.
+     */
+    private static int intersect(int[] ids, int count, Postings other) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < other.size; i++) {
+            int index = Arrays.binarySearch(other.ids, j, other.size, ids[i]);
+            if (index >= 0) {
+                ids[kept++] = ids[i];
+                j = index + 1;
+            } else {
+                j = -index - 1;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * This method is used to build the snippet of a found note around the first occurrence of a query word
+     * in its stored beginning. If no word occurs there, the snippet is the beginning of the note.
+     * @param document found note.
+     * @param terms query words.
+     * @return the snippet.
+     */
+    private static String snippet(Document document, List<String> terms) {
+        String text = decompress(document.stored);
+
+        int matchStart = 0;
+        int matchEnd = 0;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (terms.contains(text.substring(start, i).toLowerCase(Locale.ROOT))) {
+                    matchStart = start;
+                    matchEnd = i;
+                    break;
+                }
+                start = -1;
+            }
+        }
+
+        int from = Math.max(0, matchStart - SNIPPET_CONTEXT);
+        int to = Math.min(text.length(), matchEnd + SNIPPET_CONTEXT);
+        String snippet = text.substring(from, to).replaceAll("\\s+", " ").strip();
+        return (from > 0 ? "..." : "") + snippet + (to < text.length() ? "..." : "");
+    }
+
+    /**
+     * This method is used to compress a text.
+     * @param text compressed text.
+     * @return the text in UTF-8, compressed.
+     */
+    private static byte[] compress(String text) {
+        ByteBuffer compressed = Compression.deflate(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)),
+                Compression.DEFAULT_LEVEL);
+        byte[] bytes = new byte[compressed.remaining()];
+        compressed.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * This method is used to decompress a text compressed with compress().
+     * @param bytes compressed text.
+     * @return the text or an empty string if the data is corrupted.
+     */
+    private static String decompress(byte[] bytes) {
+        try {
+            ByteBuffer text = Compression.inflate(ByteBuffer.wrap(bytes));
+            return StandardCharsets.UTF_8.decode(text).toString();
+        }
+        catch (ZipException ex) {
+            return "";
+        }
+    }
+
+    /**
+     * This method is used to serialise the indexed notes. The postings are not stored, as they are rebuilt from the words of the notes.
+     * @param out output stream.
+     * @throws IOException Signals that the stream could not be written.
+     */
+    private void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeInt(documents.size());
+        for (Document document : documents.values()) {
+            out.writeUTF(document.path);
+            out.writeLong(document.stamp);
+            out.writeInt(document.stored.length);
+            out.write(document.stored);
+            out.writeInt(document.terms.length);
+            for (String term : document.terms) {
+                out.writeUTF(term);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * This method is used to read serialised notes into the index.
+     * @param in input stream.
+     * @throws IOException Signals that the stream could not be read or is malformed.
+     */
+    private void readFrom(DataInputStream in) throws IOException {
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException(String.format("Search index version %d is not supported.", version));
+        }
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String path = in.readUTF();
+            long stamp = in.readLong();
+            byte[] stored = new byte[in.readInt()];
+            in.readFully(stored);
+            String[] terms = new String[in.readInt()];
+            for (int j = 0; j < terms.length; j++) {
+                terms[j] = in.readUTF();
+            }
+            add(path, stamp, stored, terms);
+        }
+        modified = false;
+    }
+}
@@ -3,14 +3,20 @@ package pl.polsl.lab.szymonbotor.notemanager.view;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.NoteTooLongException;
+import pl.polsl.lab.szymonbotor.notemanager.model.KdfParams;
+import pl.polsl.lab.szymonbotor.notemanager.model.LazyNote;
 import pl.polsl.lab.szymonbotor.notemanager.model.Note;
+import pl.polsl.lab.szymonbotor.notemanager.model.NoteGrep;
 import pl.polsl.lab.szymonbotor.notemanager.model.NoteHistory;
+import pl.polsl.lab.szymonbotor.notemanager.model.NoteRekeyer;
 import pl.polsl.lab.szymonbotor.notemanager.model.PasswordGen;
 
 import java.io.Console;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.stream.Collectors;
@@ -19,7 +25,7 @@ import java.util.stream.IntStream;
 /**
  * Console view class of the whole program. It is used as the main user interface during runtime.
  * @author Szymon Botor
- * @version 1.1
+ * @version 1.3
  */
 public class ConsoleView {
     
@@ -72,6 +78,16 @@ public class ConsoleView {
         }
     }
     
+    /**
+     * Method used to display the result of the key derivation calibration.
+     * @param params calibrated key derivation parameters.
+     * @param measuredMillis measured time of a key derivation with the calibrated parameters.
+     */
+    public void display(KdfParams params, long measuredMillis) {
+        display(String.format("Calibrated key derivation: %s (%d ms).", params, measuredMillis));
+        display(String.format("Use \"-c %d\" to create a note with these parameters.", params.getIterations()));
+    }
+
     /**
      * Method used to display contents of a note passed as a parameter. The method asks the user if they
      * want to save the note or not.
@@ -156,6 +172,111 @@ public class ConsoleView {
         return scanner.nextLine().strip();
     }
     
+    /**
+     * Method used to get a directory of notes from the user using standard i/o.
+     * @return provided directory.
+     */
+    public String fetchDirectory() {
+        display("Choose directory:");
+        return scanner.nextLine().strip();
+    }
+
+    /**
+     * Method used to get a regular expression to search for from the user using standard i/o.
+     * @return provided pattern.
+     */
+    public String fetchPattern() {
+        display("Pattern to search for:");
+        return scanner.nextLine();
+    }
+
+    /**
+     * Method used to get the password of notes from the user.
+     * @return provided password.
+     */
+    public String fetchPassword() {
+        display("Password:");
+        return new String(readPassword());
+    }
+
+    /**
+     * Method used to get the current and the new password from the user. The new password has to be repeated.
+     * @return array with the current password and the new password.
+     */
+    public String[] fetchPasswordChange() {
+        display("Current password:");
+        String oldPassword = new String(readPassword());
+
+        while (true) {
+            display("New password:");
+            char[] password = readPassword();
+            display("Repeat password:");
+            char[] rPassword = readPassword();
+
+            if (Arrays.equals(password, rPassword)) {
+                return new String[] {oldPassword, new String(password)};
+            }
+
+            display("Passwords do not match. Try again.\n");
+        }
+    }
+
+    /**
+     * Method used to display the progress of a password change. It can be called from many threads.
+     * @param file processed note file.
+     * @param error description of the error or null if the password of the note was changed.
+     * @param done number of processed notes so far.
+     * @param total number of notes in the directory.
+     */
+    public void displayRekeyProgress(File file, String error, int done, int total) {
+        String status = error == null ? "changed" : "skipped: " + error;
+        display(String.format("[%d/%d] %s - %s", done, total, file.getName(), status));
+    }
+
+    /**
+     * Method used to display the summary of a password change.
+     * @param result result of the password change.
+     */
+    public void display(NoteRekeyer.Result result) {
+        display(String.format("Password changed for %d notes, %d left unchanged.",
+                result.getRekeyedCount(), result.getFailures().size()));
+    }
+
+    /**
+     * Method used to display a line of a note matching a search. It can be called from many threads.
+     * @param match the matching line.
+     */
+    public void displayMatch(NoteGrep.Match match) {
+        display(String.format("%s:%d: %s", match.getFile().getName(), match.getLineNumber(), match.getLine()));
+    }
+
+    /**
+     * Method used to display the summary of a search.
+     * @param result result of the search.
+     */
+    public void display(NoteGrep.Result result) {
+        display(String.format("%d matches in %d searched notes, %d notes skipped%s.", result.getMatchCount(),
+                result.getSearchedCount(), result.getSkippedCount(),
+                result.isLimitReached() ? ", stopped at the match limit" : ""));
+    }
+
+    /**
+     * Method used to display the notes of a directory with their metadata.
+     * @param notes notes opened without decryption.
+     */
+    public void displayNoteList(List<LazyNote> notes) {
+        if (notes.isEmpty()) {
+            display("No notes found.");
+            return;
+        }
+
+        for (LazyNote note : notes) {
+            display(String.format("%-30s %10d B  %tF %<tR  version %d%s", note.getName(), note.getSize(),
+                    new Date(note.getLastModified()), note.getHeader().getVersion(),
+                    note.isInVault() ? ", vault" : ""));
+        }
+    }
+
     /**
      * Method used to get the length of a password to generate using standard i/o from the user.
      * @return provided length in string format.
@@ -188,7 +309,7 @@ public class ConsoleView {
         String choice = "";
         
         while(true) {
-            display("\"-o\" - Open note\n\"-c\" - Create note\n\"-g\" - Generate password");
+            display("\"-o\" - Open note\n\"-c\" - Create note\n\"-g\" - Generate password\n\"-k\" - Calibrate key derivation\n\"-r\" - Change password of a directory\n\"-l\" - List notes in a directory\n\"-s\" - Search notes in a directory");
             choice = scanner.nextLine().strip().toLowerCase();
 
             String[] args;
@@ -204,6 +325,30 @@ public class ConsoleView {
                     args[0] = "-o";
                     args[1] = fetchFileDir(history);
                     return args;
+                case "-r":
+                case "r":
+                    args = new String[2];
+                    args[0] = "-r";
+                    args[1] = fetchDirectory();
+                    return args;
+                case "-l":
+                case "l":
+                    args = new String[2];
+                    args[0] = "-l";
+                    args[1] = fetchDirectory();
+                    return args;
+                case "-s":
+                case "s":
+                    args = new String[3];
+                    args[0] = "-s";
+                    args[1] = fetchDirectory();
+                    args[2] = fetchPattern();
+                    return args;
+                case "-k":
+                case "k":
+                    args = new String[1];
+                    args[0] = "-k";
+                    return args;
                 case "-g":
                 case "g":
                     args = new String[3];
@@ -2,10 +2,23 @@ package pl.polsl.lab.szymonbotor.notemanager.model;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import pl.polsl.lab.szymonbotor.notemanager.enums.BlockMode;
 import pl.polsl.lab.szymonbotor.notemanager.enums.CryptMode;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.AuthenticationException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -198,4 +211,237 @@ class AESTest {
         // Then
         assertEquals(plainText, decryptedText, "Original and decrypted texts are different.");
     }
-}
\ No newline at end of file
+
+    /**
+     * This method is used to test streaming encryption and decryption of data spanning many chunks.
+     * @param size number of bytes of the encrypted data.
+     * @throws IOException Thrown when an error occurs during stream IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, AES.STREAM_CHUNK_SIZE - 1, AES.STREAM_CHUNK_SIZE, 3 * AES.STREAM_CHUNK_SIZE + 7})
+    void testStreamEncryptionAndDecryption(int size) throws IOException, CryptException, InvalidCryptModeException {
+        // Given
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        AES aes = new AES(rawPassword, CryptMode.BOTH);
+
+        // When
+        ByteArrayOutputStream cipherText = new ByteArrayOutputStream();
+        aes.encrypt(new ByteArrayInputStream(data), cipherText);
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        long written = aes.decrypt(new ByteArrayInputStream(cipherText.toByteArray()), decrypted);
+
+        // Then
+        assertEquals(size, written, "Unexpected number of decrypted bytes.");
+        assertArrayEquals(data, decrypted.toByteArray(), "Original and decrypted data are different.");
+    }
+
+    /**
+     * This method is used to test if the channel methods produce the same ciphertext as the array methods.
+     * @throws IOException Thrown when an error occurs during channel IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     */
+    @Test
+    void testChannelEncryptionAndDecryption() throws IOException, CryptException, InvalidCryptModeException {
+        // Given
+        String text = plainText.repeat(2000);
+        AES aes = new AES(rawPassword, CryptMode.BOTH);
+
+        // When
+        ByteArrayOutputStream cipherText = new ByteArrayOutputStream();
+        aes.encrypt(Channels.newChannel(new ByteArrayInputStream(text.getBytes())), Channels.newChannel(cipherText));
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        aes.decrypt(Channels.newChannel(new ByteArrayInputStream(cipherText.toByteArray())), Channels.newChannel(decrypted));
+
+        // Then
+        assertArrayEquals(aes.encrypt(text), cipherText.toByteArray(), "Channel and array ciphertexts are different.");
+        assertEquals(text, decrypted.toString(), "Original and decrypted texts are different.");
+    }
+
+    /**
+     * This method is used to test encryption and decryption in the GCM mode with associated data.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     */
+    @Test
+    void testEncryptionAndDecryptionWhenGCMMode() throws CryptException, InvalidCryptModeException {
+        // Given
+        byte[] associatedData = {1, 2, 3};
+        AES aes = new AES(rawPassword, BlockMode.GCM, CryptMode.ENCRYPTION);
+        aes.setAssociatedData(associatedData);
+
+        // When
+        byte[] cipherText = aes.encrypt(plainText);
+
+        AES decryptAes = new AES(rawPassword, aes.getSalt(), aes.getIV(), BlockMode.GCM, CryptMode.DECRYPTION);
+        decryptAes.setAssociatedData(associatedData);
+        String decryptedText = decryptAes.decrypt(cipherText);
+
+        // Then
+        assertEquals(plainText, decryptedText, "Original and decrypted texts are different.");
+    }
+
+    /**
+     * This method is used to test decryption in the GCM mode with an incorrect password.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     */
+    @Test
+    void testDecryptionWhenGCMModeAndPasswordIncorrect() throws CryptException, InvalidCryptModeException {
+        // Given
+        AES aes = new AES(rawPassword, BlockMode.GCM, CryptMode.ENCRYPTION);
+        byte[] cipherText = aes.encrypt(plainText);
+
+        // When
+        AES decryptAes = new AES("@incorrect_password#890", aes.getSalt(), aes.getIV(), BlockMode.GCM, CryptMode.DECRYPTION);
+
+        // Then
+        assertThrows(AuthenticationException.class, () -> decryptAes.decrypt(cipherText),
+                "AuthenticationException was not thrown.");
+    }
+
+    /**
+     * This method is used to test if an initialisation vector cannot be reused for encryption in the GCM mode.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     */
+    @Test
+    void testEncryptionWhenGCMModeAndIVReused() throws CryptException, InvalidCryptModeException {
+        // Given
+        AES aes = new AES(rawPassword, BlockMode.GCM, CryptMode.ENCRYPTION);
+
+        // When
+        aes.encrypt(plainText);
+
+        // Then
+        assertThrows(CryptException.class, () -> aes.encrypt(plainText), "The initialisation vector was reused.");
+    }
+
+    /**
+     * This method is used to test segmented encryption and decryption for data of various lengths.
+     * @param size number of bytes of the encrypted data.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 1023, 1024, 1025, 64 * 1024 + 3})
+    void testSegmentedEncryptionAndDecryption(int size) throws CryptException, InvalidCryptModeException {
+        // Given
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        AES aes = new AES(rawPassword, BlockMode.GCM, CryptMode.BOTH);
+        aes.setAssociatedData(new byte[] {4, 5, 6});
+
+        // When
+        byte[] cipherText = aes.encryptSegmented(data, 1024);
+        byte[] decrypted = aes.decryptSegmented(cipherText, 1024);
+
+        // Then
+        assertArrayEquals(data, decrypted, "Original and decrypted data are different.");
+    }
+
+    /**
+     * This method is used to test if reordered or removed segments are detected.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     */
+    @Test
+    void testSegmentedDecryptionWhenSegmentsModified() throws CryptException, InvalidCryptModeException {
+        // Given
+        int segmentSize = 1024;
+        int encryptedSize = segmentSize + AES.TAG_LENGTH / 8;
+        AES aes = new AES(rawPassword, BlockMode.GCM, CryptMode.BOTH);
+        byte[] cipherText = aes.encryptSegmented(new byte[3 * segmentSize], segmentSize);
+
+        // When
+        byte[] swapped = cipherText.clone();
+        System.arraycopy(cipherText, 0, swapped, encryptedSize, encryptedSize);
+        System.arraycopy(cipherText, encryptedSize, swapped, 0, encryptedSize);
+        byte[] truncated = Arrays.copyOf(cipherText, 2 * encryptedSize);
+
+        // Then
+        assertThrows(AuthenticationException.class, () -> aes.decryptSegmented(swapped, segmentSize),
+                "Reordered segments were not detected.");
+        assertThrows(AuthenticationException.class, () -> aes.decryptSegmented(truncated, segmentSize),
+                "Removed segment was not detected.");
+    }
+
+    /**
+     * This method is used to test encryption and decryption between direct buffers in both block modes.
+     * @param blockMode tested block mode.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     */
+    @ParameterizedTest
+    @EnumSource(BlockMode.class)
+    void testBufferEncryptionAndDecryption(BlockMode blockMode) throws CryptException, InvalidCryptModeException {
+        // Given
+        byte[] data = plainText.getBytes();
+        AES aes = new AES(rawPassword, blockMode, CryptMode.BOTH);
+        ByteBuffer input = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        ByteBuffer cipherText = ByteBuffer.allocateDirect(aes.getEncryptedLength(data.length));
+        ByteBuffer decrypted = ByteBuffer.allocateDirect(cipherText.capacity());
+
+        // When
+        int encryptedLength = aes.encrypt(input, cipherText);
+        cipherText.flip();
+        aes.decrypt(cipherText, decrypted);
+        decrypted.flip();
+        byte[] result = new byte[decrypted.remaining()];
+        decrypted.get(result);
+
+        // Then
+        assertEquals(aes.getEncryptedLength(data.length), encryptedLength, "Ciphertext length is incorrect.");
+        assertArrayEquals(data, result, "Original and decrypted data are different.");
+    }
+
+    /**
+     * This method is used to test if segmented encryption into a direct buffer gives the same result as into an array.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     */
+    @Test
+    void testSegmentedBufferEncryption() throws CryptException, InvalidCryptModeException {
+        // Given
+        byte[] data = new byte[5000];
+        new Random(5000).nextBytes(data);
+        AES aes = new AES(rawPassword, BlockMode.GCM, CryptMode.BOTH);
+        byte[] iv = aes.getIV();
+        ByteBuffer input = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        ByteBuffer cipherText = ByteBuffer.allocateDirect(AES.getSegmentedLength(data.length, 1024));
+
+        // When
+        aes.encryptSegmented(input, cipherText, 1024);
+        cipherText.flip();
+        byte[] result = new byte[cipherText.remaining()];
+        cipherText.get(result);
+        aes.setIV(iv);
+
+        // Then
+        assertArrayEquals(aes.encryptSegmented(data, 1024), result, "Buffer and array ciphertexts are different.");
+        assertArrayEquals(data, aes.decryptSegmented(result, 1024), "Original and decrypted data are different.");
+    }
+
+    /**
+     * This method is used to test if encryption into a too small buffer is rejected.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testBufferEncryptionWhenOutputTooSmall() throws CryptException {
+        // Given
+        AES aes = new AES(rawPassword, BlockMode.GCM, CryptMode.ENCRYPTION);
+        ByteBuffer input = ByteBuffer.wrap(plainText.getBytes());
+
+        // When
+        ByteBuffer output = ByteBuffer.allocate(plainText.length());
+
+        // Then
+        assertThrows(CryptException.class, () -> aes.encryptSegmented(input, output, 1024),
+                "A too small output buffer was accepted.");
+    }
+}
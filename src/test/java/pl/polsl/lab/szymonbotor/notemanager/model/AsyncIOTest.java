@@ -0,0 +1,99 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the AsyncIO class.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+class AsyncIOTest {
+
+    /**
+     * This method is used to test if buffers written asynchronously are read back.
+     * @param directory temporary directory of the file.
+     */
+    @Test
+    void testWriteAllAndReadAll(@TempDir Path directory) {
+        // Given
+        Path path = directory.resolve("file.bin");
+        byte[] first = "first part ".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "second part".repeat(10000).getBytes(StandardCharsets.UTF_8);
+
+        // When
+        AsyncIO.writeAll(path, true, new CompletableFuture<>(), ByteBuffer.wrap(first), ByteBuffer.wrap(second)).join();
+        ByteBuffer read = AsyncIO.readAll(path, new CompletableFuture<>()).join();
+
+        // Then
+        assertEquals(first.length + second.length, read.remaining());
+        byte[] bytes = new byte[read.remaining()];
+        read.get(bytes);
+        assertEquals("first part " + "second part".repeat(10000), new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This method is used to test if reading a missing file completes the future exceptionally.
+     * @param directory temporary directory of the file.
+     */
+    @Test
+    void testReadAllWhenFileDoesNotExist(@TempDir Path directory) {
+        // Given
+        Path path = directory.resolve("missing.bin");
+
+        // When
+        CompletableFuture<ByteBuffer> read = AsyncIO.readAll(path, new CompletableFuture<>());
+
+        // Then
+        CompletionException ex = assertThrows(CompletionException.class, read::join);
+        assertTrue(ex.getCause() instanceof NoSuchFileException);
+    }
+
+    /**
+     * This method is used to test if a write of a cancelled operation stops before writing the data.
+     * @param directory temporary directory of the file.
+     * @throws IOException Thrown when the file cannot be checked.
+     */
+    @Test
+    void testWriteAllWhenCancelled(@TempDir Path directory) throws IOException {
+        // Given
+        Path path = directory.resolve("file.bin");
+        CompletableFuture<Void> operation = new CompletableFuture<>();
+        operation.cancel(false);
+
+        // When
+        CompletableFuture<Void> write = AsyncIO.writeAll(path, false, operation, ByteBuffer.wrap(new byte[100]));
+
+        // Then
+        assertThrows(CancellationException.class, write::join);
+        assertEquals(0, Files.size(path));
+    }
+
+    /**
+     * This method is used to test if checked exceptions of a step are wrapped and unwrapped.
+     */
+    @Test
+    void testCallWhenStepThrows() {
+        // Given
+        IOException thrown = new IOException("test");
+
+        // When
+        CompletionException ex = assertThrows(CompletionException.class,
+                () -> AsyncIO.call(new CompletableFuture<>(), () -> { throw thrown; }));
+
+        // Then
+        assertSame(thrown, AsyncIO.unwrap(ex));
+    }
+}
@@ -0,0 +1,142 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.NoteTooLongException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the Autosave class.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+class AutosaveTest {
+
+    /**
+     * The password used in note encryption and decryption.
+     */
+    private static final String password = "!paSswOrd_123";
+
+    /**
+     * Maximum time of waiting for a save in milliseconds.
+     */
+    private static final long TIMEOUT = 10000;
+
+    /**
+     * This method is used to create a saved note.
+     * @param directory directory of the note file.
+     * @return the note.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    private static Note createNote(Path directory) throws InvalidCryptModeException, IOException, CryptException {
+        Note note = new Note();
+        note.save(directory.resolve("note.note").toString(), password);
+        return note;
+    }
+
+    /**
+     * This method is used to wait until the autosave completes the given number of writes.
+     * @param autosave the autosave.
+     * @param count expected number of writes.
+     * @throws InterruptedException Thrown when the test is interrupted.
+     */
+    private static void awaitSaves(Autosave autosave, long count) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (autosave.getSaveCount() < count && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * This method is used to test if a burst of changes is saved with a single write after the delay.
+     * @param directory temporary directory of the note.
+     * @throws Exception Thrown when the note cannot be saved or read.
+     */
+    @Test
+    void testChangesAreCoalesced(@TempDir Path directory) throws Exception {
+        // Given
+        Note note = createNote(directory);
+        try (Autosave autosave = new Autosave(300, 1)) {
+            autosave.watch(note);
+
+            // When
+            for (int i = 0; i < 100; i++) {
+                note.insert(note.getLength(), "a");
+            }
+            awaitSaves(autosave, 1);
+            Thread.sleep(400);
+
+            // Then
+            assertEquals(1, autosave.getSaveCount(), "The changes were not saved with a single write.");
+            assertTrue(note.isSaved(), "The note was not marked as saved.");
+            assertEquals("a".repeat(100), new Note(note.getFile().getPath(), password).getContent(),
+                    "Note content is incorrect.");
+        }
+    }
+
+    /**
+     * This method is used to test if notes waiting for a save are saved when the autosave is closed.
+     * @param directory temporary directory of the note.
+     * @throws Exception Thrown when the note cannot be saved or read.
+     */
+    @Test
+    void testCloseSavesPendingNotes(@TempDir Path directory) throws Exception {
+        // Given
+        Note note = createNote(directory);
+        Autosave autosave = new Autosave(60000, 1);
+        autosave.watch(note);
+        note.change("Changed.");
+
+        // When
+        autosave.close();
+
+        // Then
+        assertTrue(note.isSaved(), "The note was not saved.");
+        assertEquals(0, autosave.getPendingCount(), "Notes are still waiting for a save.");
+        assertEquals("Changed.", new Note(note.getFile().getPath(), password).getContent(), "Note content is incorrect.");
+    }
+
+    /**
+     * This method is used to test if an unwatched note is not saved.
+     * @param directory temporary directory of the note.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the new content is too long.
+     */
+    @Test
+    void testUnwatch(@TempDir Path directory)
+            throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        Note note = createNote(directory);
+        Autosave autosave = new Autosave(60000, 1);
+        autosave.watch(note);
+        note.change("Changed.");
+
+        // When
+        autosave.unwatch(note);
+        note.change("Changed again.");
+        autosave.close();
+
+        // Then
+        assertFalse(note.isSaved(), "The note was saved.");
+        assertEquals(0, autosave.getSaveCount(), "A write was made.");
+    }
+
+    /**
+     * This method is used to test if invalid parameters are rejected.
+     */
+    @Test
+    void testConstructorWhenParamsInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> new Autosave(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Autosave(100, 0));
+    }
+}
@@ -0,0 +1,104 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the Compression class.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+class CompressionTest {
+
+    /**
+     * Redundant text used in the tests.
+     */
+    private static final String text = "Test string. This string is used for testing. ".repeat(5000);
+
+    /**
+     * This method is used to test if data compressed at every level is decompressed unchanged and redundant
+     * text gets smaller.
+     * @param level tested compression level.
+     * @throws ZipException Thrown when the compressed data is malformed.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 6, 9})
+    void testDeflateAndInflate(int level) throws ZipException {
+        // Given
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+
+        // When
+        ByteBuffer compressed = Compression.deflate(ByteBuffer.wrap(data), level);
+        int compressedLength = compressed.remaining();
+        ByteBuffer decompressed = Compression.inflate(compressed);
+
+        // Then
+        byte[] result = new byte[decompressed.remaining()];
+        decompressed.get(result);
+        assertArrayEquals(data, result, "Decompressed data is different.");
+        if (level > 0) {
+            assertTrue(compressedLength < data.length / 10, "Redundant text was not compressed.");
+        }
+    }
+
+    /**
+     * This method is used to test compressing empty and random data, which cannot be made smaller.
+     * @param length length of the data.
+     * @throws ZipException Thrown when the compressed data is malformed.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 100, 200_000})
+    void testDeflateAndInflateWhenRandom(int length) throws ZipException {
+        // Given
+        byte[] data = new byte[length];
+        new SecureRandom().nextBytes(data);
+
+        // When
+        ByteBuffer decompressed = Compression.inflate(Compression.deflate(ByteBuffer.wrap(data), Compression.DEFAULT_LEVEL));
+
+        // Then
+        byte[] result = new byte[decompressed.remaining()];
+        decompressed.get(result);
+        assertArrayEquals(data, result, "Decompressed data is different.");
+    }
+
+    /**
+     * This method is used to test decompressing truncated data.
+     */
+    @Test
+    void testInflateWhenTruncated() {
+        // Given
+        ByteBuffer compressed = Compression.deflate(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), 6);
+        compressed.limit(compressed.limit() / 2);
+
+        // When
+        Executable inflate = () -> Compression.inflate(compressed);
+
+        // Then
+        assertThrows(ZipException.class, inflate, "Truncated data was decompressed.");
+    }
+
+    /**
+     * This method is used to test if compression levels outside of the supported range are rejected.
+     */
+    @Test
+    void testDeflateWhenLevelInvalid() {
+        // Given
+        ByteBuffer data = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+
+        // When
+        Executable deflate = () -> Compression.deflate(data, Compression.MAX_LEVEL + 1);
+
+        // Then
+        assertThrows(IllegalArgumentException.class, deflate, "An invalid level was accepted.");
+    }
+}
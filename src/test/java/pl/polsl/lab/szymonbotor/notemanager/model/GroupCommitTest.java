@@ -0,0 +1,145 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the GroupCommit class.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+class GroupCommitTest {
+
+    /**
+     * This method is used to test if concurrently committed files replace their targets.
+     * @param directory temporary directory of the files.
+     * @throws Exception Thrown when the files cannot be written or committed.
+     */
+    @Test
+    void testCommitWhenConcurrent(@TempDir Path directory) throws Exception {
+        // Given
+        int count = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        try (GroupCommit groupCommit = new GroupCommit()) {
+            for (int i = 0; i < count; i++) {
+                Path target = directory.resolve("file" + i);
+                Files.writeString(target, "old");
+                String content = "new" + i;
+                futures.add(pool.submit(() -> {
+                    Path temp = DurableFiles.createTempFile(target);
+                    Files.writeString(temp, content);
+                    groupCommit.commit(temp, target);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            // Then
+            assertTrue(groupCommit.getBatchCount() >= 1 && groupCommit.getBatchCount() <= count,
+                    "Incorrect number of batches.");
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals("new" + i, Files.readString(directory.resolve("file" + i)), "A file was not replaced.");
+        }
+        try (var files = Files.list(directory)) {
+            assertEquals(count, files.count(), "Temporary files were left behind.");
+        }
+    }
+
+    /**
+     * This method is used to test if a commit after closing is rejected and the target is left unchanged.
+     * @param directory temporary directory of the files.
+     * @throws IOException Thrown when the files cannot be written.
+     */
+    @Test
+    void testCommitWhenClosed(@TempDir Path directory) throws IOException {
+        // Given
+        Path target = directory.resolve("file");
+        Files.writeString(target, "old");
+        Path temp = DurableFiles.createTempFile(target);
+        Files.writeString(temp, "new");
+        GroupCommit groupCommit = new GroupCommit();
+
+        // When
+        groupCommit.close();
+
+        // Then
+        assertThrows(IOException.class, () -> groupCommit.commit(temp, target), "A closed group commit was used.");
+        assertEquals("old", Files.readString(target), "The target was replaced.");
+    }
+
+    /**
+     * This method is used to test if closing while saves are committed neither blocks them nor fails accepted ones.
+     * Every save either replaces its target or is rejected with the target left unchanged.
+     * The scenario is repeated, because the closing has to meet a batch being committed.
+     * @param directory temporary directory of the files.
+     * @throws Exception Thrown when the files cannot be written or the saves do not finish.
+     */
+    @Test
+    void testCloseWhenCommitsInFlight(@TempDir Path directory) throws Exception {
+        // Given
+        int rounds = 20;
+        int count = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                for (int round = 0; round < rounds; round++) {
+                    // When
+                    GroupCommit groupCommit = new GroupCommit(4);
+                    List<Future<Boolean>> futures = new ArrayList<>();
+                    for (int i = 0; i < count; i++) {
+                        Path target = directory.resolve("file" + round + "_" + i);
+                        Files.writeString(target, "old");
+                        String content = "new" + i;
+                        futures.add(pool.submit(() -> {
+                            Path temp = DurableFiles.createTempFile(target);
+                            Files.writeString(temp, content);
+                            try {
+                                groupCommit.commit(temp, target);
+                                return true;
+                            } catch (IOException ex) {
+                                Files.deleteIfExists(temp);
+                                return false;
+                            }
+                        }));
+                        if (i == count / 2) {
+                            groupCommit.close();
+                        }
+                    }
+
+                    // Then
+                    for (int i = 0; i < count; i++) {
+                        boolean committed = futures.get(i).get();
+                        assertEquals(committed ? "new" + i : "old",
+                                Files.readString(directory.resolve("file" + round + "_" + i)),
+                                "A save was reported incorrectly.");
+                    }
+                }
+            }, "Closing blocked the saves.");
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+
+import javax.crypto.SecretKey;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the KeyCache class.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+class KeyCacheTest {
+
+    /**
+     * This is the password used in testing.
+     */
+    private static final String password = "!paSswOrd_123";
+
+    /**
+     * This test is used to check if a repeated lookup returns the same key without deriving it again.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testGetKeyWhenCached() throws CryptException {
+        // Given
+        KeyCache cache = new KeyCache(4, KeyCache.DEFAULT_TTL_MILLIS);
+        byte[] salt = AES.generateSalt();
+
+        // When
+        SecretKey first = cache.getKey(password, salt);
+        SecretKey second = cache.getKey(password, salt);
+
+        // Then
+        assertArrayEquals(first.getEncoded(), second.getEncoded(), "Cached key is different from the derived one.");
+        assertEquals(1, cache.getMissCount(), "The key was derived more than once.");
+        assertEquals(1, cache.getHitCount(), "The cached key was not used.");
+    }
+
+    /**
+     * This test is used to check if a different password or salt results in a different key.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testGetKeyWhenPasswordOrSaltDifferent() throws CryptException {
+        // Given
+        KeyCache cache = new KeyCache(4, KeyCache.DEFAULT_TTL_MILLIS);
+        byte[] salt = AES.generateSalt();
+
+        // When
+        SecretKey original = cache.getKey(password, salt);
+        SecretKey otherPassword = cache.getKey("@incorrect_password#890", salt);
+        SecretKey otherSalt = cache.getKey(password, AES.generateSalt());
+
+        // Then
+        assertFalse(Arrays.equals(original.getEncoded(), otherPassword.getEncoded()), "Keys of different passwords are equal.");
+        assertFalse(Arrays.equals(original.getEncoded(), otherSalt.getEncoded()), "Keys of different salts are equal.");
+        assertEquals(3, cache.getMissCount(), "Different keys were found in the cache.");
+    }
+
+    /**
+     * This test is used to check if the least recently used key is evicted when the capacity is exceeded.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testGetKeyWhenCapacityExceeded() throws CryptException {
+        // Given
+        KeyCache cache = new KeyCache(2, KeyCache.DEFAULT_TTL_MILLIS);
+        byte[] firstSalt = AES.generateSalt();
+        byte[] secondSalt = AES.generateSalt();
+        byte[] thirdSalt = AES.generateSalt();
+
+        // When
+        cache.getKey(password, firstSalt);
+        cache.getKey(password, secondSalt);
+        cache.getKey(password, firstSalt);
+        cache.getKey(password, thirdSalt);
+        cache.getKey(password, secondSalt);
+
+        // Then
+        assertEquals(2, cache.size(), "The cache holds more keys than its capacity.");
+        assertEquals(1, cache.getHitCount(), "Unexpected number of cache hits.");
+        assertEquals(4, cache.getMissCount(), "The least recently used key was not evicted.");
+    }
+
+    /**
+     * This test is used to check if an expired key is derived again.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testGetKeyWhenExpired() throws CryptException {
+        // Given
+        KeyCache cache = new KeyCache(4, 0);
+        byte[] salt = AES.generateSalt();
+
+        // When
+        cache.getKey(password, salt);
+        cache.getKey(password, salt);
+
+        // Then
+        assertEquals(0, cache.getHitCount(), "An expired key was used.");
+        assertEquals(0, cache.size(), "The expired key was not removed.");
+    }
+}
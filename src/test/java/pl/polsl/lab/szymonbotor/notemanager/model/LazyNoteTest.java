@@ -0,0 +1,116 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.NoteTooLongException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the LazyNote class.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+class LazyNoteTest {
+
+    /**
+     * The password of the notes.
+     */
+    private static final String password = "!paSswOrd_123";
+
+    /**
+     * Cheap key derivation parameters, so the tests run quickly.
+     */
+    private static final KdfParams kdfParams = new KdfParams(KdfParams.DEFAULT.getAlgorithm(), KdfParams.MIN_ITERATIONS);
+
+    /**
+     * This method is used to create a note file.
+     * @param path path of the note.
+     * @param content content of the note.
+     * @throws NoteTooLongException Thrown when the content is too long.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    private static void createNote(Path path, String content)
+            throws NoteTooLongException, InvalidCryptModeException, IOException, CryptException {
+        Note note = new Note();
+        note.setKdfParams(kdfParams);
+        note.change(content);
+        note.save(path.toString(), password);
+    }
+
+    /**
+     * This method is used to test if listing a directory reads the headers and metadata of the notes
+     * and skips files that are not notes.
+     * @param directory temporary directory of the notes.
+     * @throws Exception Thrown when the notes cannot be created or read.
+     */
+    @Test
+    void testList(@TempDir Path directory) throws Exception {
+        // Given
+        createNote(directory.resolve("b" + Note.FILE_EXTENSION), "Second note");
+        createNote(directory.resolve("a" + Note.FILE_EXTENSION), "First note");
+        Files.write(directory.resolve("broken" + Note.FILE_EXTENSION), new byte[] {'N', 'O', 'T', 'E', 9});
+        Files.writeString(directory.resolve("other.txt"), "Not a note");
+
+        // When
+        List<LazyNote> notes = LazyNote.list(directory.toFile());
+
+        // Then
+        assertEquals(2, notes.size(), "Number of listed notes is incorrect.");
+        assertEquals("a", notes.get(0).getName(), "Notes are not sorted.");
+        assertEquals(Files.size(directory.resolve("a" + Note.FILE_EXTENSION)), notes.get(0).getSize(), "File size is incorrect.");
+        assertEquals(kdfParams, notes.get(0).getHeader().getKdfParams(), "Header is incorrect.");
+        assertFalse(notes.get(0).isLoaded(), "The note was decrypted when listed.");
+    }
+
+    /**
+     * This method is used to test if the note is decrypted on the first call to getContent() and kept afterwards.
+     * @param directory temporary directory of the notes.
+     * @throws Exception Thrown when the notes cannot be created or read.
+     */
+    @Test
+    void testGetContentWhenPasswordCorrect(@TempDir Path directory) throws Exception {
+        // Given
+        Path path = directory.resolve("note" + Note.FILE_EXTENSION);
+        createNote(path, "Lazy content");
+        LazyNote lazyNote = new LazyNote(path.toFile());
+
+        // When
+        String content = lazyNote.getContent(password);
+        Files.delete(path);
+
+        // Then
+        assertEquals("Lazy content", content, "Note content is incorrect.");
+        assertTrue(lazyNote.isLoaded(), "The note was not kept.");
+        assertEquals("Lazy content", lazyNote.getContent(password), "The kept note content is incorrect.");
+    }
+
+    /**
+     * This method is used to test getting the content with an incorrect password.
+     * @param directory temporary directory of the notes.
+     * @throws Exception Thrown when the notes cannot be created or read.
+     */
+    @Test
+    void testGetContentWhenPasswordIncorrect(@TempDir Path directory) throws Exception {
+        // Given
+        Path path = directory.resolve("note" + Note.FILE_EXTENSION);
+        createNote(path, "Lazy content");
+        LazyNote lazyNote = new LazyNote(path.toFile());
+
+        // When
+        String content = lazyNote.getContent(password + "1");
+
+        // Then
+        assertNull(content, "Content was decrypted with an incorrect password.");
+        assertFalse(lazyNote.isLoaded(), "A note that was not decrypted was kept.");
+    }
+}
@@ -0,0 +1,148 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.AuthenticationException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+
+import javax.crypto.SecretKey;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the MasterKey class.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+class MasterKeyTest {
+
+    /**
+     * The password of the tested vault.
+     */
+    private static final String password = "!paSswOrd_123";
+
+    /**
+     * Keyfile used in the tests.
+     */
+    private static final File keyFile = new File("testVault.key");
+
+    /**
+     * This method is used to test if a data key wrapped before saving the master key is unwrapped after unlocking it.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testUnlockWhenPasswordCorrect() throws IOException, CryptException {
+        // Given
+        MasterKey masterKey = MasterKey.generate();
+        masterKey.save(keyFile, password, KdfParams.DEFAULT);
+        SecretKey dataKey = AES.generateKey();
+        byte[] wrapped = masterKey.wrap(dataKey);
+
+        // When
+        MasterKey unlocked = MasterKey.unlock(keyFile, password);
+
+        // Then
+        assertEquals(MasterKey.WRAPPED_KEY_LENGTH, wrapped.length, "Wrapped key length is incorrect.");
+        assertArrayEquals(dataKey.getEncoded(), unlocked.unwrap(wrapped).getEncoded(), "Unwrapped key is different.");
+    }
+
+    /**
+     * This method is used to test unlocking a keyfile with an incorrect password.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testUnlockWhenPasswordIncorrect() throws IOException, CryptException {
+        // Given
+        MasterKey.generate().save(keyFile, password, KdfParams.DEFAULT);
+
+        // When
+        String incorrect = "@incorrect_password#890";
+
+        // Then
+        assertThrows(AuthenticationException.class, () -> MasterKey.unlock(keyFile, incorrect),
+                "The keyfile was unlocked with an incorrect password.");
+    }
+
+    /**
+     * This method is used to test if a key wrapped with another master key is rejected.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testUnwrapWhenMasterKeyDifferent() throws CryptException {
+        // Given
+        byte[] wrapped = MasterKey.generate().wrap(AES.generateKey());
+
+        // When
+        MasterKey other = MasterKey.generate();
+
+        // Then
+        assertThrows(AuthenticationException.class, () -> other.unwrap(wrapped),
+                "A key wrapped with another master key was unwrapped.");
+    }
+
+    /**
+     * This method is used to test if changing the password keeps the master key.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testSaveWhenPasswordChanged() throws IOException, CryptException {
+        // Given
+        MasterKey masterKey = MasterKey.generate();
+        masterKey.save(keyFile, password, KdfParams.DEFAULT);
+        byte[] wrapped = masterKey.wrap(AES.generateKey());
+
+        // When
+        MasterKey.unlock(keyFile, password).save(keyFile, "new_Password-456", KdfParams.DEFAULT);
+        MasterKey unlocked = MasterKey.unlock(keyFile, "new_Password-456");
+
+        // Then
+        assertDoesNotThrow(() -> unlocked.unwrap(wrapped), "The master key changed with the password.");
+    }
+
+    /**
+     * This method is used to test if a save that fails while writing leaves the existing keyfile intact.
+     * The write is failed by interrupting the saving thread, which closes the channel synchronising the new keyfile.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testSaveWhenWriteFails() throws IOException, CryptException {
+        // Given
+        MasterKey masterKey = MasterKey.generate();
+        masterKey.save(keyFile, password, KdfParams.DEFAULT);
+        byte[] saved = Files.readAllBytes(keyFile.toPath());
+
+        // When
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IOException.class, () -> masterKey.save(keyFile, "new_Password-456", KdfParams.DEFAULT),
+                    "The save did not fail.");
+        }
+        finally {
+            Thread.interrupted();
+        }
+
+        // Then
+        assertArrayEquals(saved, Files.readAllBytes(keyFile.toPath()), "The keyfile was changed.");
+        assertDoesNotThrow(() -> MasterKey.unlock(keyFile, password), "The keyfile cannot be unlocked.");
+        try (var files = Files.list(keyFile.getAbsoluteFile().getParentFile().toPath())) {
+            assertEquals(0, files.filter(file -> file.getFileName().toString().endsWith(DurableFiles.TEMP_SUFFIX))
+                    .count(), "The temporary file was left behind.");
+        }
+    }
+
+    /**
+     * This method is used to clean up after all the tests.
+     * @throws IOException Thrown when an error occurs during file IO.
+     */
+    @AfterEach
+    void cleanup() throws IOException {
+        Files.deleteIfExists(keyFile.toPath());
+    }
+}
@@ -0,0 +1,123 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the NoteGrep class.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+class NoteGrepTest {
+
+    /**
+     * The password of the notes.
+     */
+    private static final String password = "!paSswOrd_123";
+
+    /**
+     * Cheap key derivation parameters, so the tests run quickly.
+     */
+    private static final KdfParams kdfParams = new KdfParams(KdfParams.DEFAULT.getAlgorithm(), KdfParams.MIN_ITERATIONS);
+
+    /**
+     * This method is used to create a note file.
+     * @param path path of the note.
+     * @param content content of the note.
+     * @param password password of the note.
+     * @throws Exception Thrown when the note cannot be saved.
+     */
+    private static void createNote(Path path, String content, String password) throws Exception {
+        Note note = new Note();
+        note.setKdfParams(kdfParams);
+        note.change(content);
+        note.save(path.toString(), password);
+    }
+
+    /**
+     * This method is used to test if every matching line of the notes is reported and notes with another password are skipped.
+     * @param directory temporary directory of the notes.
+     * @throws Exception Thrown when the notes cannot be created or searched.
+     */
+    @Test
+    void testSearch(@TempDir Path directory) throws Exception {
+        // Given
+        createNote(directory.resolve("first"), "Call Alice\nBuy milk\ncall Bob", password);
+        createNote(directory.resolve("second"), "Nothing here", password);
+        createNote(directory.resolve("other"), "Call Carol", "another");
+        List<NoteGrep.Match> matches = new CopyOnWriteArrayList<>();
+
+        // When
+        NoteGrep.Result result = new NoteGrep(2, 100).search(directory.toFile(), password,
+                Pattern.compile("call", Pattern.CASE_INSENSITIVE), matches::add);
+
+        // Then
+        assertEquals(2, result.getMatchCount(), "The number of matches is incorrect.");
+        assertEquals(2, result.getSearchedCount(), "The number of searched notes is incorrect.");
+        assertEquals(1, result.getSkippedCount(), "The note with another password was not skipped.");
+        assertFalse(result.isLimitReached(), "The limit was reached.");
+        assertEquals(2, matches.size(), "The listener was not notified about every match.");
+        assertEquals("Call Alice", matches.get(0).getLine(), "The first line is incorrect.");
+        assertEquals(3, matches.get(1).getLineNumber(), "The line number is incorrect.");
+        assertEquals("first.note", matches.get(1).getFile().getName(), "The file is incorrect.");
+    }
+
+    /**
+     * This method is used to test if a line separator at the end of a note does not start another line
+     * and an empty note has no lines.
+     * @param directory temporary directory of the notes.
+     * @throws Exception Thrown when the notes cannot be created or searched.
+     */
+    @Test
+    void testSearchWhenLineSeparatorAtEnd(@TempDir Path directory) throws Exception {
+        // Given
+        createNote(directory.resolve("lines"), "first\n\nthird\n", password);
+        createNote(directory.resolve("empty"), "", password);
+        List<NoteGrep.Match> matches = new CopyOnWriteArrayList<>();
+
+        // When
+        NoteGrep.Result result = new NoteGrep(2, 100).search(directory.toFile(), password,
+                Pattern.compile("^$"), matches::add);
+
+        // Then
+        assertEquals(2, result.getSearchedCount(), "The number of searched notes is incorrect.");
+        assertEquals(1, result.getMatchCount(), "The number of matches is incorrect.");
+        assertEquals(2, matches.get(0).getLineNumber(), "The line number is incorrect.");
+        assertEquals("lines.note", matches.get(0).getFile().getName(), "The file is incorrect.");
+    }
+
+    /**
+     * This method is used to test if the search stops after the limit of matches.
+     * @param directory temporary directory of the notes.
+     * @throws Exception Thrown when the notes cannot be created or searched.
+     */
+    @Test
+    void testSearchWhenLimitReached(@TempDir Path directory) throws Exception {
+        // Given
+        for (int i = 0; i < 6; i++) {
+            createNote(directory.resolve("note" + i), "match\nmatch", password);
+        }
+        List<NoteGrep.Match> matches = new CopyOnWriteArrayList<>();
+
+        // When
+        NoteGrep.Result result = new NoteGrep(3, 3).search(directory.toFile(), password,
+                Pattern.compile("match"), matches::add);
+
+        // Then
+        assertEquals(3, result.getMatchCount(), "The number of matches is incorrect.");
+        assertEquals(3, matches.size(), "More matches than the limit were reported.");
+        assertTrue(result.isLimitReached(), "The limit was not reached.");
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(6, files.count(), "Files were written to the directory.");
+        }
+    }
+}
@@ -3,6 +3,7 @@ package pl.polsl.lab.szymonbotor.notemanager.model;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
@@ -11,6 +12,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -18,7 +25,7 @@ import static org.junit.jupiter.api.Assertions.*;
 /**
  * This is the testing class for the NoteHistory class.
  * @author Szymon Botor
- * @version 1.0
+ * @version 1.4
  */
 class NoteHistoryTest {
 
@@ -76,7 +83,7 @@ class NoteHistoryTest {
         Files.deleteIfExists(newPath);
 
         // Prepare file
-        noteFilesArray = prepareFiles(0, NoteHistory.MAX_ITEMS);
+        noteFilesArray = prepareFiles(0, NoteHistory.DEFAULT_ITEMS);
 
         Files.createFile(existingPath);
         for (File file : noteFilesArray) {
@@ -129,7 +136,7 @@ class NoteHistoryTest {
     @Test
     void testInputWhenFileExistsAndTooLong() throws IOException {
         // Given
-        File[] additionalArray = prepareFiles(NoteHistory.MAX_ITEMS, 2 * NoteHistory.MAX_ITEMS);
+        File[] additionalArray = prepareFiles(NoteHistory.DEFAULT_ITEMS, 2 * NoteHistory.DEFAULT_ITEMS);
 
         for (File file : additionalArray) {
             Files.writeString(existingPath, file.getAbsolutePath() + "\n", StandardOpenOption.APPEND);
@@ -266,13 +273,333 @@ class NoteHistoryTest {
         assertArrayEquals(history.getNotes().toArray(), newHistory.getNotes().toArray(), "Original and saved histories are not equal.");
     }
 
+    /**
+     * This method is used to test if a large history keeps the order of recently added notes and evicts the oldest ones.
+     */
+    @Test
+    void testAddWhenHistoryLarge() {
+        // Given
+        int count = 200_000;
+        NoteHistory history = new NoteHistory();
+        history.setItemLimit(count);
+        for (int i = 0; i < count + 10; i++) {
+            history.add(new File("note" + i));
+        }
+
+        // When
+        history.add(new File("note100"));
+
+        // Then
+        assertEquals(count, history.size(), "The history was not trimmed to the limit.");
+        assertEquals(new File("note100"), history.get(0), "The re-added note is not the most recent one.");
+        assertEquals(new File("note" + (count + 9)), history.get(1), "The order of notes is incorrect.");
+        assertEquals(new File("note10"), history.get(count - 1), "The oldest note is incorrect.");
+        assertFalse(history.contains(new File("note9")), "The oldest note was not evicted.");
+        assertEquals(history.get(count - 2), history.getNotes().get(count - 2), "The view is different than the history.");
+    }
+
+    /**
+     * This method is used to test if the item limit is clamped and lowering it removes the oldest notes.
+     */
+    @Test
+    void testSetItemLimit() {
+        // Given
+        NoteHistory history = new NoteHistory();
+        for (File file : noteFilesArray) {
+            history.add(file);
+        }
+
+        // When
+        history.setItemLimit(3);
+
+        // Then
+        assertArrayEquals(new File[] {noteFilesArray[noteFilesArray.length - 1], noteFilesArray[noteFilesArray.length - 2],
+                noteFilesArray[noteFilesArray.length - 3]}, history.getNotes().toArray(), "The newest notes were not kept.");
+        history.setItemLimit(Integer.MAX_VALUE);
+        assertEquals(NoteHistory.MAX_ITEMS, history.getItemLimit(), "The limit is higher than the maximum.");
+        history.setItemLimit(-1);
+        assertEquals(0, history.size(), "The history is not empty.");
+    }
+
+    /**
+     * This method is used to test if saving a read history only appends the changes to the log.
+     * @param directory temporary directory of the history.
+     * @throws IOException When an error occurs during file IO.
+     */
+    @Test
+    void testSaveWhenHistoryRead(@TempDir Path directory) throws IOException {
+        // Given
+        Path path = directory.resolve("history.txt");
+        NoteHistory history = new NoteHistory(path.toString());
+        for (int i = 0; i < 10; i++) {
+            history.add(directory.resolve("note" + i).toFile());
+        }
+        history.compact().join();
+        String snapshot = Files.readString(path);
+
+        // When
+        history.add(directory.resolve("note3").toFile());
+        history.remove(directory.resolve("note5").toFile());
+        history.save();
+
+        // Then
+        List<String> log = Files.readAllLines(NoteHistory.getLogPath(path));
+        assertEquals(snapshot, Files.readString(path), "The snapshot was rewritten.");
+        assertTrue(log.get(0).startsWith("#"), "The log has no id.");
+        assertEquals(List.of("+" + directory.resolve("note3"), "-" + directory.resolve("note5")),
+                log.subList(1, log.size()), "The log is incorrect.");
+        assertArrayEquals(history.getNotes().toArray(), new NoteHistory(path.toString()).getNotes().toArray(),
+                "The read history is different than the saved one.");
+    }
+
+    /**
+     * This method is used to test if an incomplete last line of the log is ignored.
+     * @param directory temporary directory of the history.
+     * @throws IOException When an error occurs during file IO.
+     */
+    @Test
+    void testReadWhenLogTorn(@TempDir Path directory) throws IOException {
+        // Given
+        Path path = directory.resolve("history.txt");
+        NoteHistory history = new NoteHistory(path.toString());
+        history.add(directory.resolve("first").toFile());
+        history.save();
+        history.add(directory.resolve("second").toFile());
+        history.save();
+        Files.writeString(NoteHistory.getLogPath(path), "+" + directory.resolve("third"), StandardOpenOption.APPEND);
+
+        // When
+        NoteHistory newHistory = new NoteHistory(path.toString());
+
+        // Then
+        assertArrayEquals(history.getNotes().toArray(), newHistory.getNotes().toArray(), "The torn line was replayed.");
+    }
+
+    /**
+     * This method is used to test if notes removed by the log make room for older notes of the snapshot
+     * when the snapshot is longer than the item limit.
+     * @param directory temporary directory of the history.
+     * @throws IOException When an error occurs during file IO.
+     */
+    @Test
+    void testReadWhenSnapshotLongerThanLimit(@TempDir Path directory) throws IOException {
+        // Given
+        Path path = directory.resolve("history.txt");
+        NoteHistory history = new NoteHistory(path.toString());
+        for (int i = 4; i >= 0; i--) {
+            history.add(directory.resolve("note" + i).toFile());
+        }
+        history.compact().join();
+        history.remove(directory.resolve("note0").toFile());
+        history.remove(directory.resolve("note1").toFile());
+        history.save();
+
+        // When
+        NoteHistory newHistory = new NoteHistory();
+        newHistory.setItemLimit(3);
+        newHistory.read(path.toString());
+
+        // Then
+        assertArrayEquals(new File[] {directory.resolve("note2").toFile(), directory.resolve("note3").toFile(),
+                        directory.resolve("note4").toFile()}, newHistory.getNotes().toArray(),
+                "The history is incorrect.");
+    }
+
+    /**
+     * This method is used to test if a history notices a log replaced by another process with a log of the same length.
+     * @param directory temporary directory of the history.
+     * @throws IOException When an error occurs during file IO.
+     */
+    @Test
+    void testSaveWhenLogReplacedWithSameLength(@TempDir Path directory) throws IOException {
+        // Given
+        Path path = directory.resolve("history.txt");
+        NoteHistory first = new NoteHistory(path.toString());
+        NoteHistory second = new NoteHistory(path.toString());
+        File firstNote = directory.resolve("note1").toFile();
+        File secondNote = directory.resolve("note2").toFile();
+        File thirdNote = directory.resolve("note3").toFile();
+        first.add(firstNote);
+        first.save();
+        second.add(secondNote);
+        second.save();
+        second.compact().join();
+
+        // When
+        second.add(thirdNote);
+        second.save();
+        first.add(firstNote);
+        first.save();
+
+        // Then
+        assertArrayEquals(new File[] {firstNote, thirdNote, secondNote}, first.getNotes().toArray(),
+                "The replaced log was not read again.");
+    }
+
+    /**
+     * This method is used to test if compaction writes the log into the snapshot and removes it.
+     * @param directory temporary directory of the history.
+     * @throws IOException When an error occurs during file IO.
+     */
+    @Test
+    void testCompact(@TempDir Path directory) throws IOException {
+        // Given
+        Path path = directory.resolve("history.txt");
+        NoteHistory history = new NoteHistory(path.toString());
+        history.save();
+        for (int i = 0; i < 20; i++) {
+            history.add(directory.resolve("note" + i % 7).toFile());
+            history.save();
+        }
+        history.add(directory.resolve("unsaved").toFile());
+
+        // When
+        history.compact().join();
+
+        // Then
+        assertFalse(Files.exists(NoteHistory.getLogPath(path)), "The log was not removed.");
+        assertEquals(history.size(), Files.readAllLines(path).size(), "The snapshot is incorrect.");
+        assertArrayEquals(history.getNotes().toArray(), new NoteHistory(path.toString()).getNotes().toArray(),
+                "The read history is different than the compacted one.");
+    }
+
+    /**
+     * This method is used to test if the log is compacted in the background after it grows too long.
+     * @param directory temporary directory of the history.
+     * @throws IOException When an error occurs during file IO.
+     */
+    @Test
+    void testSaveWhenLogTooLong(@TempDir Path directory) throws IOException {
+        // Given
+        Path path = directory.resolve("history.txt");
+        NoteHistory history = new NoteHistory(path.toString());
+        history.save();
+        String name = "x".repeat(1000);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            history.add(directory.resolve(name + i % 2).toFile());
+            history.save();
+        }
+
+        // Then
+        assertTrue(Files.size(NoteHistory.getLogPath(path)) < NoteHistory.MIN_COMPACTION_LENGTH, "The log was not compacted.");
+        assertArrayEquals(history.getNotes().toArray(), new NoteHistory(path.toString()).getNotes().toArray(),
+                "The read history is different than the saved one.");
+    }
+
+    /**
+     * This method is used to test if histories saved one after another keep the notes of each other.
+     * @param directory temporary directory of the history.
+     * @throws IOException When an error occurs during file IO.
+     */
+    @Test
+    void testSaveWhenConcurrentWriters(@TempDir Path directory) throws IOException {
+        // Given
+        Path path = directory.resolve("history.txt");
+        NoteHistory first = new NoteHistory(path.toString());
+        NoteHistory second = new NoteHistory(path.toString());
+        File firstNote = directory.resolve("first").toFile();
+        File secondNote = directory.resolve("second").toFile();
+
+        // When
+        first.add(firstNote);
+        first.save();
+        second.add(secondNote);
+        second.save();
+
+        // Then
+        assertArrayEquals(new File[] {secondNote, firstNote}, second.getNotes().toArray(), "The histories were not merged.");
+        assertArrayEquals(new File[] {secondNote, firstNote}, new NoteHistory(path.toString()).getNotes().toArray(),
+                "The saved history is incorrect.");
+    }
+
+    /**
+     * This method is used to test if a history saved after another one compacted the log keeps the notes of both.
+     * @param directory temporary directory of the history.
+     * @throws IOException When an error occurs during file IO.
+     */
+    @Test
+    void testSaveWhenCompactedByOtherWriter(@TempDir Path directory) throws IOException {
+        // Given
+        Path path = directory.resolve("history.txt");
+        NoteHistory first = new NoteHistory(path.toString());
+        NoteHistory second = new NoteHistory(path.toString());
+        File firstNote = directory.resolve("first").toFile();
+        File secondNote = directory.resolve("second").toFile();
+        File thirdNote = directory.resolve("third").toFile();
+        second.add(thirdNote);
+        second.save();
+
+        // When
+        first.add(firstNote);
+        first.compact().join();
+        second.add(secondNote);
+        second.save();
+
+        // Then
+        assertArrayEquals(new File[] {secondNote, firstNote, thirdNote}, new NoteHistory(path.toString()).getNotes().toArray(),
+                "The saved history is incorrect.");
+    }
+
+    /**
+     * This method is used to test if no notes are lost when many histories are saved at the same time.
+     * @param directory temporary directory of the history.
+     * @throws Exception When an error occurs during file IO.
+     */
+    @Test
+    void testSaveWhenWritersParallel(@TempDir Path directory) throws Exception {
+        // Given
+        Path path = directory.resolve("history.txt");
+        new NoteHistory(path.toString());
+        int writers = 4;
+        int notes = 50;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            tasks.add(() -> {
+                NoteHistory history = new NoteHistory();
+                history.setItemLimit(writers * notes);
+                history.read(path.toString());
+                for (int i = 0; i < notes; i++) {
+                    history.add(directory.resolve("note" + writer + "_" + i).toFile());
+                    history.save();
+                    if (i % 20 == 19) {
+                        history.compact().join();
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+
+        // When
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        // Then
+        NoteHistory history = new NoteHistory();
+        history.setItemLimit(writers * notes);
+        history.read(path.toString());
+        assertEquals(writers * notes, history.size(), "Notes were lost.");
+    }
+
     /**
      * This method is used to clean up after all tests are done.
      * @throws IOException When an error occurs during file IO.
      */
     @AfterAll
     static void cleanup() throws IOException{
-        Files.deleteIfExists(existingPath);
-        Files.deleteIfExists(newPath);
+        for (Path path : List.of(existingPath, newPath)) {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(NoteHistory.getLogPath(path));
+            Files.deleteIfExists(NoteHistory.getLockPath(path));
+        }
     }
 }
\ No newline at end of file
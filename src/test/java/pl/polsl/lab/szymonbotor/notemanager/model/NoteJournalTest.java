@@ -0,0 +1,124 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the NoteJournal class.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+class NoteJournalTest {
+
+    /**
+     * This method is used to test if the edit created from two texts changes the first text into the second one.
+     * @param oldText text before the edit.
+     * @param newText text after the edit.
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "'', ''",
+            "'', abc",
+            "abc, ''",
+            "abc, abc",
+            "abcdef, abXYef",
+            "abcdef, abef",
+            "abef, abcdef",
+            "aaaa, aaaaaa",
+            "abc, xabc",
+            "abc, abcx"
+    })
+    void testDiffAndApply(String oldText, String newText) {
+        // Given
+        NoteJournal.Edit edit = NoteJournal.Edit.diff(oldText, newText);
+
+        // When
+        PieceTable result = new PieceTable(oldText);
+        edit.apply(result);
+
+        // Then
+        assertEquals(newText, result.toString(), "The edit does not produce the new text.");
+        assertEquals(oldText.equals(newText), edit.isEmpty(), "The edit of equal texts is not empty.");
+    }
+
+    /**
+     * This method is used to test if an edit outside of the text is rejected.
+     */
+    @Test
+    void testApplyWhenEditDoesNotFit() {
+        // Given
+        NoteJournal.Edit edit = new NoteJournal.Edit(2, 5, "x");
+
+        // When
+        Executable apply = () -> edit.apply(new PieceTable("abc"));
+
+        // Then
+        assertThrows(IllegalArgumentException.class, apply, "An edit outside of the text was applied.");
+    }
+
+    /**
+     * This method is used to test if the recorded random edits change the original text into the edited one.
+     */
+    @Test
+    void testEditListWhenRandom() {
+        // Given
+        String original = "Original text of the note.\nSecond line.";
+        PieceTable text = new PieceTable(original);
+        NoteJournal.EditList edits = new NoteJournal.EditList();
+        Random random = new Random(13);
+
+        // When
+        for (int i = 0; i < 2000; i++) {
+            if (random.nextInt(3) > 0 || text.length() == 0) {
+                int offset = random.nextInt(text.length() + 1);
+                String inserted = "i" + i;
+                text.insert(offset, inserted);
+                edits.insert(offset, inserted);
+            } else {
+                int offset = random.nextInt(text.length());
+                int count = random.nextInt(Math.min(5, text.length() - offset) + 1);
+                text.delete(offset, count);
+                edits.delete(offset, count);
+            }
+        }
+        PieceTable replayed = new PieceTable(original);
+        for (NoteJournal.Edit edit : edits.take()) {
+            edit.apply(replayed);
+        }
+
+        // Then
+        assertEquals(text.toString(), replayed.toString(), "The recorded edits do not produce the edited text.");
+        assertTrue(edits.take().isEmpty(), "The taken edits were not removed.");
+    }
+
+    /**
+     * This method is used to test if typing and deleting at one place is recorded as a single edit.
+     */
+    @Test
+    void testEditListWhenTyping() {
+        // Given
+        String original = "abcdef";
+        NoteJournal.EditList edits = new NoteJournal.EditList();
+
+        // When
+        edits.insert(3, "x");
+        edits.insert(4, "yz");
+        edits.delete(5, 1);
+        edits.delete(5, 2);
+        edits.delete(4, 1);
+        List<NoteJournal.Edit> taken = edits.take();
+        PieceTable replayed = new PieceTable(original);
+        taken.get(0).apply(replayed);
+
+        // Then
+        assertEquals(1, taken.size(), "Edits at one place were not merged.");
+        assertEquals("abcxf", replayed.toString(), "The merged edit does not produce the edited text.");
+    }
+}
@@ -0,0 +1,190 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import pl.polsl.lab.szymonbotor.notemanager.enums.BlockMode;
+import pl.polsl.lab.szymonbotor.notemanager.enums.CryptMode;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.AuthenticationException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.NoteTooLongException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the NotePager class.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+class NotePagerTest {
+
+    /**
+     * The password used in note encryption and decryption.
+     */
+    private static final String password = "!paSswOrd_123";
+
+    /**
+     * Note file used in the tests.
+     */
+    private static final File noteFile = new File("pagedNote.note");
+
+    /**
+     * Number of plaintext bytes in a page of the tested note.
+     */
+    private static final int PAGE_SIZE = 16;
+
+    /**
+     * ASCII content of the tested note, spanning several pages.
+     */
+    private static final String plainText = "Test string. This string is used for testing the paged notes. 0123456789.";
+
+    /**
+     * This method is used to write the tested note in pages of PAGE_SIZE bytes.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    private static void writePagedNote() throws InvalidCryptModeException, IOException, CryptException {
+        AES aes = new AES(password, KdfParams.DEFAULT, BlockMode.GCM, CryptMode.BOTH);
+        NoteHeader header = new NoteHeader(aes.getSalt(), aes.getIV(), aes.getKdfParams());
+        header.setSegmentSize(PAGE_SIZE);
+        aes.setAssociatedData(header.toBytes());
+
+        try (OutputStream outStream = Files.newOutputStream(noteFile.toPath())) {
+            outStream.write(header.toBytes());
+            outStream.write(aes.encryptSegmented(plainText.getBytes(StandardCharsets.UTF_8), PAGE_SIZE));
+        }
+    }
+
+    /**
+     * This method is used to test reading ranges within one page, across pages and past the end of the note.
+     * @param offset offset of the range.
+     * @param length length of the range.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @ParameterizedTest
+    @CsvSource({"0, 5", "3, 10", "10, 40", "64, 100", "0, 0", "200, 5"})
+    void testReadRange(long offset, int length) throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        writePagedNote();
+
+        // When
+        String range;
+        try (NotePager pager = NotePager.open(noteFile, password)) {
+            range = pager.readRange(offset, length);
+        }
+
+        // Then
+        int start = (int) Math.min(offset, plainText.length());
+        int end = (int) Math.min(offset + length, plainText.length());
+        assertEquals(plainText.substring(start, end), range, "Range content is incorrect.");
+    }
+
+    /**
+     * This method is used to test if the pages of the note are found from their indices.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testOpenWhenPaged() throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        writePagedNote();
+
+        // When
+        try (NotePager pager = NotePager.open(noteFile, password)) {
+
+            // Then
+            assertEquals(plainText.length(), pager.getLength(), "Content length is incorrect.");
+            assertEquals(PAGE_SIZE, pager.getPageSize(), "Page size is incorrect.");
+            assertEquals((plainText.length() + PAGE_SIZE - 1) / PAGE_SIZE, pager.getPageCount(), "Page count is incorrect.");
+        }
+    }
+
+    /**
+     * This method is used to test opening a paged note with an incorrect password.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testOpenWhenPasswordIncorrect() throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        writePagedNote();
+
+        // When
+        NotePager pager = NotePager.open(noteFile, password + "1");
+
+        // Then
+        assertNull(pager, "A note was opened with an incorrect password.");
+    }
+
+    /**
+     * This method is used to test if a modified page is detected when it is read.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testReadPageWhenModified() throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        writePagedNote();
+        byte[] bytes = Files.readAllBytes(noteFile.toPath());
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(noteFile.toPath(), bytes);
+
+        // When
+        try (NotePager pager = NotePager.open(noteFile, password)) {
+            Executable read = () -> pager.readPage(pager.getPageCount() - 1);
+
+            // Then
+            assertNotNull(pager, "The unmodified first page was not authenticated.");
+            assertThrows(AuthenticationException.class, read, "A modified page was accepted.");
+        }
+    }
+
+    /**
+     * This method is used to test reading a range of a note stored in a single piece.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the content is too long.
+     */
+    @Test
+    void testReadRangeWhenNotPaged()
+            throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        Note note = new Note();
+        note.change(plainText);
+        note.save(noteFile.getPath(), password);
+
+        // When
+        String range;
+        try (NotePager pager = NotePager.open(noteFile, password)) {
+            range = pager.readRange(5, 10);
+        }
+
+        // Then
+        assertEquals(plainText.substring(5, 15), range, "Range content is incorrect.");
+    }
+
+    /**
+     * This method is used to clean up after all the tests.
+     * @throws IOException Thrown when an error occurs during file IO.
+     */
+    @AfterEach
+    void cleanup() throws IOException {
+        Files.deleteIfExists(noteFile.toPath());
+    }
+}
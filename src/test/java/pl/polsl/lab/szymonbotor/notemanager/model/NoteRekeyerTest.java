@@ -0,0 +1,107 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
+import pl.polsl.lab.szymonbotor.notemanager.exceptions.NoteTooLongException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the NoteRekeyer class.
+ * @author Szymon Botor
+ * @version 1.0
+ */
+class NoteRekeyerTest {
+
+    /**
+     * The current password of the notes.
+     */
+    private static final String oldPassword = "!paSswOrd_123";
+
+    /**
+     * The new password of the notes.
+     */
+    private static final String newPassword = "new_Password-456";
+
+    /**
+     * Cheap key derivation parameters, so the tests run quickly.
+     */
+    private static final KdfParams kdfParams = new KdfParams(KdfParams.DEFAULT.getAlgorithm(), KdfParams.MIN_ITERATIONS);
+
+    /**
+     * This method is used to create a note file.
+     * @param path path of the note.
+     * @param content content of the note.
+     * @param password password of the note.
+     * @throws NoteTooLongException Thrown when the content is too long.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    private static void createNote(Path path, String content, String password)
+            throws NoteTooLongException, InvalidCryptModeException, IOException, CryptException {
+        Note note = new Note();
+        note.setKdfParams(kdfParams);
+        note.change(content);
+        note.save(path.toString(), password);
+    }
+
+    /**
+     * This method is used to test changing the password of a directory of notes.
+     * @param directory temporary directory of the notes.
+     * @throws Exception Thrown when the notes cannot be created or read.
+     */
+    @Test
+    void testRekeyWhenPasswordCorrect(@TempDir Path directory) throws Exception {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            createNote(directory.resolve("note" + i + Note.FILE_EXTENSION), "Content " + i, oldPassword);
+        }
+        AtomicInteger notifications = new AtomicInteger();
+
+        // When
+        NoteRekeyer.Result result = new NoteRekeyer(3, null).rekey(directory.toFile(), oldPassword, newPassword,
+                (file, error, done, total) -> notifications.incrementAndGet());
+
+        // Then
+        assertEquals(5, result.getRekeyedCount(), "Not all notes were changed.");
+        assertEquals(5, notifications.get(), "The listener was not notified about every note.");
+        for (int i = 0; i < 5; i++) {
+            Note note = new Note(directory.resolve("note" + i).toString(), newPassword);
+            assertEquals("Content " + i, note.getContent(), "Note content is incorrect.");
+            assertEquals(kdfParams, note.getKdfParams(), "Key derivation parameters were not kept.");
+        }
+    }
+
+    /**
+     * This method is used to test if notes with another password are left unchanged and no temporary files remain.
+     * @param directory temporary directory of the notes.
+     * @throws Exception Thrown when the notes cannot be created or read.
+     */
+    @Test
+    void testRekeyWhenPasswordDifferent(@TempDir Path directory) throws Exception {
+        // Given
+        Path other = directory.resolve("other" + Note.FILE_EXTENSION);
+        createNote(directory.resolve("note" + Note.FILE_EXTENSION), "Content", oldPassword);
+        createNote(other, "Other", "@incorrect_password#890");
+        byte[] otherBytes = Files.readAllBytes(other);
+
+        // When
+        NoteRekeyer.Result result = new NoteRekeyer(2, null).rekey(directory.toFile(), oldPassword, newPassword, null);
+
+        // Then
+        assertEquals(1, result.getRekeyedCount(), "Incorrect number of notes was changed.");
+        assertTrue(result.getFailures().containsKey(other.toFile()), "The failure was not reported.");
+        assertArrayEquals(otherBytes, Files.readAllBytes(other), "A note with another password was modified.");
+        File[] leftovers = directory.toFile().listFiles((dir, name) -> name.endsWith(DurableFiles.TEMP_SUFFIX));
+        assertEquals(0, leftovers.length, "Temporary files were left behind.");
+    }
+}
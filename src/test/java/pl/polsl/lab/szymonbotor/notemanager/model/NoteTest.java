@@ -1,23 +1,36 @@
 package pl.polsl.lab.szymonbotor.notemanager.model;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.Executable;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
+import pl.polsl.lab.szymonbotor.notemanager.enums.KdfAlgorithm;
+import pl.polsl.lab.szymonbotor.notemanager.enums.ReadMode;
+import pl.polsl.lab.szymonbotor.notemanager.enums.SaveMode;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.CryptException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.InvalidCryptModeException;
 import pl.polsl.lab.szymonbotor.notemanager.exceptions.NoteTooLongException;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * This is the testing class for the Note class.
  * @author Szymon Botor
- * @version 2.0
+ * @version 2.5
  */
 class NoteTest {
 
@@ -258,6 +271,620 @@ class NoteTest {
         assertEquals(plainText + additionalText, newNote.getContent(), "Expected and reread note content are different.");
     }
 
+    /**
+     * This method is used to test if a saved note is written in the versioned format and can be read again.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testSaveWritesCurrentVersion() throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        Note note = new Note(existingPath.toString(), password);
+
+        // When
+        note.save(newPath.toString(), password);
+
+        // Then
+        byte[] magic = Arrays.copyOf(Files.readAllBytes(newPath), NoteHeader.MAGIC.length);
+        Note newNote = new Note(newPath.toString(), password);
+
+        assertArrayEquals(NoteHeader.MAGIC, magic, "The note was not saved in the versioned format.");
+        assertEquals(plainText, newNote.getContent(), "Expected and reread note content are different.");
+    }
+
+    /**
+     * This method is used to test reading a note in the versioned format with an incorrect password.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testReadCurrentVersionWhenPasswordIncorrect() throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        new Note(existingPath.toString(), password).save(newPath.toString(), password);
+
+        // When
+        Note note = new Note(newPath.toString(), "@incorrect_password#890");
+
+        // Then
+        assertNull(note.getContent(), "Note content is not null.");
+    }
+
+    /**
+     * This method is used to test if a modified header of a note in the versioned format is detected.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testReadCurrentVersionWhenHeaderModified() throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        new Note(existingPath.toString(), password).save(newPath.toString(), password);
+        byte[] bytes = Files.readAllBytes(newPath);
+        bytes[NoteHeader.MAGIC.length + 9] ^= 1;
+        Files.write(newPath, bytes);
+
+        // When
+        Note note = new Note(newPath.toString(), password);
+
+        // Then
+        assertNull(note.getContent(), "A modified note was read.");
+    }
+
+    /**
+     * This method is used to test if the key derivation parameters of a note are stored in the file
+     * and used when the note is read.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testSaveWithCustomKdfParams() throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        KdfParams params = new KdfParams(KdfAlgorithm.PBKDF2_SHA512, 12_000);
+        Note note = new Note(existingPath.toString(), password);
+        note.setKdfParams(params);
+
+        // When
+        note.save(newPath.toString(), password);
+        Note result = new Note(newPath.toString(), password);
+
+        // Then
+        assertEquals(plainText, result.getContent(), "Note content is incorrect.");
+        assertEquals(params, result.getKdfParams(), "Key derivation parameters were not read from the file.");
+    }
+
+    /**
+     * This method is used to test if a note with unsupported key derivation parameters is rejected.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testReadWhenKdfAlgorithmUnknown() throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        new Note(existingPath.toString(), password).save(newPath.toString(), password);
+        byte[] bytes = Files.readAllBytes(newPath);
+        bytes[NoteHeader.MAGIC.length + 4] = (byte) 0x7F;
+        Files.write(newPath, bytes);
+
+        // When
+        Executable reading = () -> new Note(newPath.toString(), password);
+
+        // Then
+        assertThrows(IOException.class, reading, "An unknown algorithm was accepted.");
+    }
+
+    /**
+     * This method is used to test saving a note with a vault master key and reading it with the unlocked key.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testSaveAndReadWithMasterKey() throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        MasterKey masterKey = MasterKey.generate();
+        Note note = new Note(existingPath.toString(), password);
+
+        // When
+        note.save(newPath.toString(), masterKey);
+        Note result = new Note(newPath.toString(), masterKey);
+
+        // Then
+        assertEquals(plainText, result.getContent(), "Note content is incorrect.");
+        assertTrue(result.isInVault(), "The note is not in a vault.");
+    }
+
+    /**
+     * This method is used to test reading a vault note with another master key or with a password.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testReadWithMasterKeyWhenKeyIncorrect() throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        new Note(existingPath.toString(), password).save(newPath.toString(), MasterKey.generate());
+
+        // When
+        Note note = new Note(newPath.toString(), MasterKey.generate());
+
+        // Then
+        assertNull(note.getContent(), "Note content is not null.");
+        assertThrows(CryptException.class, () -> new Note(newPath.toString(), password),
+                "A vault note was read with a password.");
+    }
+
+    /**
+     * This method is used to test reading legacy and current notes from a memory-mapped file.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @Test
+    void testReadWhenMapped() throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        new Note(existingPath.toString(), password).save(newPath.toString(), password);
+        Note legacy = new Note();
+        legacy.setReadMode(ReadMode.MAPPED);
+        Note current = new Note();
+        current.setReadMode(ReadMode.MAPPED);
+
+        // When
+        boolean legacyRead = legacy.read(existingPath.toString(), password);
+        boolean currentRead = current.read(newPath.toString(), password);
+
+        // Then
+        assertTrue(legacyRead && currentRead, "A mapped note was not read.");
+        assertEquals(plainText, legacy.getContent(), "Legacy note content is incorrect.");
+        assertEquals(plainText, current.getContent(), "Current note content is incorrect.");
+    }
+
+    /**
+     * This method is used to test if both save modes produce a readable note and no temporary files are left.
+     * @param saveMode tested save mode.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     */
+    @ParameterizedTest
+    @EnumSource(SaveMode.class)
+    void testSaveWhenSaveModeSet(SaveMode saveMode) throws InvalidCryptModeException, IOException, CryptException {
+        // Given
+        Note note = new Note(existingPath.toString(), password);
+        note.setSaveMode(saveMode);
+
+        // When
+        note.save(newPath.toString(), password);
+        note.overwrite();
+
+        // Then
+        assertEquals(plainText, new Note(newPath.toString(), password).getContent(), "Note content is incorrect.");
+        try (var files = Files.list(newPath.toAbsolutePath().getParent())) {
+            assertFalse(files.anyMatch(path -> path.toString().endsWith(DurableFiles.TEMP_SUFFIX)),
+                    "Temporary files were left behind.");
+        }
+    }
+
+    /**
+     * This method is used to test if an overwrite with the journal enabled appends the change to the journal
+     * and leaves the note file unchanged.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the new content is too long.
+     */
+    @Test
+    void testOverwriteWhenJournalEnabled()
+            throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        Note note = new Note(existingPath.toString(), password);
+        note.save(newPath.toString(), password);
+        byte[] base = Files.readAllBytes(newPath);
+        note.setJournalEnabled(true);
+
+        // When
+        note.change("Prefix. " + plainText);
+        note.overwrite();
+        note.change("Prefix. " + plainText + " Suffix.");
+        note.overwrite();
+
+        // Then
+        assertArrayEquals(base, Files.readAllBytes(newPath), "The note file was rewritten.");
+        assertTrue(Files.exists(NoteJournal.getPath(newPath.toFile())), "The journal was not written.");
+        assertEquals("Prefix. " + plainText + " Suffix.", new Note(newPath.toString(), password).getContent(),
+                "Note content is incorrect.");
+    }
+
+    /**
+     * This method is used to test if the insertions and deletions made since the last save are appended to the journal
+     * and replayed when the note is read.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the new content is too long.
+     */
+    @Test
+    void testOverwriteWhenJournalEnabledAndEdited()
+            throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        Note note = new Note(existingPath.toString(), password);
+        note.save(newPath.toString(), password);
+        note.setJournalEnabled(true);
+        String typed = "Typed text. ";
+
+        // When
+        for (int i = 0; i < typed.length(); i++) {
+            note.insert(5 + i, typed.substring(i, i + 1));
+        }
+        note.delete(5 + typed.length() - 1, 1);
+        note.delete(0, 5);
+        note.overwrite();
+        note.insert(note.getContent().length(), " Suffix.");
+        note.overwrite();
+        Note reread = new Note();
+        reread.read(newPath.toString(), password);
+
+        // Then
+        assertEquals("Typed text." + plainText.substring(5) + " Suffix.", reread.getContent(),
+                "Note content is incorrect.");
+        assertEquals(note.getContent(), reread.getContent(), "Reread content is different.");
+    }
+
+    /**
+     * This method is used to test if compaction writes the edits into the note file and removes the journal.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the new content is too long.
+     */
+    @Test
+    void testCompact() throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        Note note = new Note(existingPath.toString(), password);
+        note.save(newPath.toString(), password);
+        note.setJournalEnabled(true);
+        note.change(plainText.toUpperCase());
+        note.overwrite();
+
+        // When
+        note.compact();
+
+        // Then
+        assertFalse(Files.exists(NoteJournal.getPath(newPath.toFile())), "The journal was not removed.");
+        assertEquals(plainText.toUpperCase(), new Note(newPath.toString(), password).getContent(),
+                "Note content is incorrect.");
+    }
+
+    /**
+     * This method is used to test if an incomplete last record of the journal is ignored and overwritten by the next edit.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the new content is too long.
+     */
+    @Test
+    void testReadWhenJournalTruncated()
+            throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        Note note = new Note(existingPath.toString(), password);
+        note.save(newPath.toString(), password);
+        note.setJournalEnabled(true);
+        note.change("First. " + plainText);
+        note.overwrite();
+        Path journal = NoteJournal.getPath(newPath.toFile());
+        long firstLength = Files.size(journal);
+        note.change("Second. " + plainText);
+        note.overwrite();
+        try (var channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(journal) - 1);
+        }
+
+        // When
+        Note recovered = new Note(newPath.toString(), password);
+        recovered.setJournalEnabled(true);
+        recovered.change("Third. " + plainText);
+        recovered.overwrite();
+
+        // Then
+        assertTrue(Files.size(journal) > firstLength, "The next edit was not appended.");
+        assertEquals("Third. " + plainText, new Note(newPath.toString(), password).getContent(),
+                "Note content is incorrect.");
+    }
+
+    /**
+     * This method is used to test if reading a note fails when a record of its journal was modified.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the new content is too long.
+     */
+    @Test
+    void testReadWhenJournalModified()
+            throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        Note note = new Note(existingPath.toString(), password);
+        note.save(newPath.toString(), password);
+        note.setJournalEnabled(true);
+        note.change("Changed. " + plainText);
+        note.overwrite();
+        Path journal = NoteJournal.getPath(newPath.toFile());
+        byte[] bytes = Files.readAllBytes(journal);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(journal, bytes);
+
+        // When
+        Note modified = new Note(newPath.toString(), password);
+
+        // Then
+        assertNull(modified.getContent(), "A modified journal was accepted.");
+    }
+
+    /**
+     * This method is used to test if a compressed note is flagged, smaller than an uncompressed one and read correctly.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the new content is too long.
+     */
+    @Test
+    void testSaveWhenCompressed() throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        String redundant = "abcabcabc ".repeat(100);
+        Note note = new Note();
+        note.change(redundant);
+        note.save(existingPath.toString(), password);
+        note.setCompressed(true);
+        note.setCompressionLevel(9);
+
+        // When
+        note.save(newPath.toString(), password);
+        Note read = new Note(newPath.toString(), password);
+
+        // Then
+        assertTrue(Files.size(newPath) < Files.size(existingPath) / 4, "The note was not compressed.");
+        try (var inpStream = Files.newInputStream(newPath)) {
+            assertTrue(NoteHeader.read(inpStream).isCompressed(), "The compression flag is not set.");
+        }
+        assertEquals(redundant, read.getContent(), "Note content is incorrect.");
+        assertTrue(read.isCompressed(), "Compression was not kept after reading.");
+    }
+
+    /**
+     * This method is used to test inserting and deleting text at arbitrary offsets of a saved note.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the new content is too long.
+     */
+    @Test
+    void testInsertAndDelete() throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        Note note = new Note(existingPath.toString(), password);
+
+        // When
+        note.insert(0, "Start. ");
+        note.insert(note.getLength(), " End.");
+        note.delete(7, 5);
+        note.insert(7, "TEST");
+        note.save(newPath.toString(), password);
+
+        // Then
+        String expected = "Start. TEST" + plainText.substring(5) + " End.";
+        assertEquals(expected, note.getContent(), "Note content is incorrect.");
+        assertEquals(expected, new Note(newPath.toString(), password).getContent(), "Saved note content is incorrect.");
+    }
+
+    /**
+     * This method is used to test if the configured maximum size is enforced by insertions.
+     */
+    @Test
+    void testInsertWhenMaxSizeExceeded() {
+        // Given
+        Note note = new Note();
+        note.setMaxSize(10);
+
+        // When
+        Executable insert = () -> {
+            note.insert(0, "0123456789");
+            note.insert(5, "x");
+        };
+
+        // Then
+        assertThrows(NoteTooLongException.class, insert, "NoteTooLongException was not thrown.");
+        assertEquals("0123456789", note.getContent(), "Note content is incorrect.");
+    }
+
+    /**
+     * This method is used to test if a note saved asynchronously is read back asynchronously, including a segmented note.
+     * @param length length of the content of the note.
+     * @throws NoteTooLongException Thrown when the content is too long.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {100, 3 * Note.SEGMENT_SIZE})
+    void testSaveAsyncAndReadAsync(int length) throws NoteTooLongException {
+        // Given
+        String content = "x".repeat(length);
+        Note note = new Note();
+        note.change(content);
+
+        // When
+        note.saveAsync(newPath.toString(), password).join();
+        Note read = new Note();
+        boolean successful = read.readAsync(newPath.toString(), password).join();
+
+        // Then
+        assertTrue(note.isSaved(), "The note was not marked as saved.");
+        assertEquals(newPath.toFile(), note.getFile(), "The note file was not set.");
+        assertTrue(successful, "The note was not read.");
+        assertEquals(content, read.getContent(), "Note content is incorrect.");
+        assertFalse(new Note().readAsync(newPath.toString(), "wrong").join(), "The note was read with a wrong password.");
+    }
+
+    /**
+     * This method is used to test if an asynchronous overwrite stores the content taken when it was called,
+     * with and without the journal.
+     * @param journalEnabled true if the journal is enabled.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the new content is too long.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testOverwriteAsync(boolean journalEnabled)
+            throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        Note note = new Note(existingPath.toString(), password);
+        note.save(newPath.toString(), password);
+        note.setJournalEnabled(journalEnabled);
+        note.insert(0, "Prefix. ");
+
+        // When
+        CompletableFuture<Void> overwrite = note.overwriteAsync();
+        note.insert(0, "Unsaved. ");
+        overwrite.join();
+
+        // Then
+        assertFalse(note.isSaved(), "The note was marked as saved after a later change.");
+        assertEquals("Prefix. " + plainText, new Note(newPath.toString(), password).getContent(),
+                "Note content is incorrect.");
+    }
+
+    /**
+     * This method is used to test if edits made while an asynchronous overwrite waits for the crypto executor
+     * do not change the stored content, with and without the journal.
+     * @param journalEnabled true if the journal is enabled.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the new content is too long.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testOverwriteAsyncWhenEditedInFlight(boolean journalEnabled)
+            throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        Note note = new Note(existingPath.toString(), password);
+        note.save(newPath.toString(), password);
+        note.setJournalEnabled(journalEnabled);
+        note.insert(0, "Prefix. ");
+        note.insert(plainText.length() + 8, " Suffix.");
+        String expected = note.getContent();
+        ExecutorService previous = AsyncIO.getCryptoExecutor();
+        ExecutorService blocked = Executors.newSingleThreadExecutor();
+        CountDownLatch latch = new CountDownLatch(1);
+        blocked.execute(() -> {
+            try {
+                latch.await();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AsyncIO.setCryptoExecutor(blocked);
+
+        // When
+        CompletableFuture<Void> overwrite;
+        try {
+            overwrite = note.overwriteAsync();
+            for (int i = 0; i < 1000; i++) {
+                note.insert(8, "Unsaved " + i + ". ");
+                note.delete(0, 2);
+            }
+        }
+        finally {
+            latch.countDown();
+        }
+        overwrite.join();
+        AsyncIO.setCryptoExecutor(previous);
+        blocked.shutdown();
+
+        // Then
+        assertFalse(note.isSaved(), "The note was marked as saved after later changes.");
+        assertEquals(expected, new Note(newPath.toString(), password).getContent(), "Note content is incorrect.");
+    }
+
+    /**
+     * This method is used to test if asynchronous and synchronous overwrites started one after another are written
+     * in order, so the note file and the saved version end at the last started save, with and without the journal.
+     * @param journalEnabled true if the journal is enabled.
+     * @throws InvalidCryptModeException Thrown when an AES object created to encrypt is used to decrypt or vice versa.
+     * @throws IOException Thrown when an error occurs during file IO.
+     * @throws CryptException Thrown when a cryptographic error occurs.
+     * @throws NoteTooLongException Thrown when the new content is too long.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testOverwriteAsyncWhenOverwrittenAgain(boolean journalEnabled)
+            throws InvalidCryptModeException, IOException, CryptException, NoteTooLongException {
+        // Given
+        Note note = new Note(existingPath.toString(), password);
+        note.save(newPath.toString(), password);
+        note.setJournalEnabled(journalEnabled);
+        CompletableFuture<?>[] overwrites = new CompletableFuture<?>[20];
+
+        // When
+        for (int i = 0; i < overwrites.length; i++) {
+            note.insert(note.getContent().length(), " Edit " + i + ".");
+            overwrites[i] = note.overwriteAsync();
+            if (i % 5 == 4) {
+                note.insert(0, i + ". ");
+                note.overwrite();
+            }
+        }
+        note.insert(0, "Last. ");
+        note.overwrite();
+        CompletableFuture.allOf(overwrites).join();
+
+        // Then
+        assertTrue(note.isSaved(), "The note was not marked as saved.");
+        assertEquals(note.getContent(), new Note(newPath.toString(), password).getContent(),
+                "Note content is incorrect.");
+    }
+
+    /**
+     * This method is used to test if a save cancelled before it starts does not write the note file.
+     * @throws InterruptedException Thrown when the test is interrupted.
+     */
+    @Test
+    void testSaveAsyncWhenCancelled() throws InterruptedException {
+        // Given
+        ExecutorService previous = AsyncIO.getCryptoExecutor();
+        ExecutorService blocked = Executors.newSingleThreadExecutor();
+        CountDownLatch latch = new CountDownLatch(1);
+        blocked.execute(() -> {
+            try {
+                latch.await();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AsyncIO.setCryptoExecutor(blocked);
+        Note note = new Note();
+
+        // When
+        CompletableFuture<Void> save;
+        try {
+            save = note.saveAsync(newPath.toString(), password);
+            save.cancel(false);
+        }
+        finally {
+            AsyncIO.setCryptoExecutor(previous);
+            latch.countDown();
+            blocked.shutdown();
+        }
+        blocked.awaitTermination(10, TimeUnit.SECONDS);
+
+        // Then
+        assertThrows(CancellationException.class, save::join);
+        assertFalse(Files.exists(newPath), "The note file was written.");
+        assertFalse(note.hasFile(), "The note file was set.");
+    }
+
     /**
      * This method is used to clean up after all the tests.
      * @throws IOException Thrown when an error occurs during file IO.
@@ -266,5 +893,6 @@ class NoteTest {
     void cleanup() throws IOException {
         Files.deleteIfExists(existingPath);
         Files.deleteIfExists(newPath);
+        Files.deleteIfExists(NoteJournal.getPath(newPath.toFile()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,298 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the NoteVault class.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+class NoteVaultTest {
+
+    /**
+     * The password used in note encryption and decryption.
+     */
+    private static final String password = "!paSswOrd_123";
+
+    /**
+     * This method is used to create a note with the given content.
+     * @param content content of the note.
+     * @return the note.
+     * @throws Exception Thrown when the content is too long.
+     */
+    private static Note createNote(String content) throws Exception {
+        Note note = new Note();
+        note.change(content);
+        return note;
+    }
+
+    /**
+     * This method is used to test if saved notes are listed and read back.
+     * @param directory temporary directory of the vault.
+     * @throws Exception Thrown when the vault cannot be used.
+     */
+    @Test
+    void testSaveAndRead(@TempDir Path directory) throws Exception {
+        // Given
+        File file = directory.resolve("notes.vault").toFile();
+
+        try (NoteVault vault = new NoteVault(file)) {
+            // When
+            vault.save("second", createNote("Second note."), password);
+            vault.save("first", createNote("First note."), password);
+
+            // Then
+            assertEquals(List.of("first", "second"), vault.list(), "The notes are listed incorrectly.");
+            assertTrue(vault.contains("first"), "The note is missing.");
+            assertEquals("First note.", vault.read("first", password).getContent(), "Note content is incorrect.");
+            assertEquals("Second note.", vault.read("second", password).getContent(), "Note content is incorrect.");
+            assertNull(vault.read("first", "wrong"), "The note was read with a wrong password.");
+            assertThrows(IOException.class, () -> vault.read("third", password));
+        }
+    }
+
+    /**
+     * This method is used to test if replaced and deleted notes are restored correctly when the vault is opened again,
+     * both with the index file and by scanning the records.
+     * @param directory temporary directory of the vault.
+     * @throws Exception Thrown when the vault cannot be used.
+     */
+    @Test
+    void testReopen(@TempDir Path directory) throws Exception {
+        // Given
+        File file = directory.resolve("notes.vault").toFile();
+        try (NoteVault vault = new NoteVault(file)) {
+            vault.save("a", createNote("Old."), password);
+            vault.save("b", createNote("Deleted."), password);
+            vault.save("a", createNote("New."), password);
+            assertTrue(vault.delete("b"), "The note was not deleted.");
+            assertFalse(vault.delete("b"), "A missing note was deleted.");
+        }
+
+        // When
+        List<String> withIndex;
+        try (NoteVault vault = new NoteVault(file)) {
+            withIndex = vault.list();
+        }
+        Files.delete(NoteVault.getIndexFile(file).toPath());
+
+        // Then
+        assertEquals(List.of("a"), withIndex, "The index file was not loaded correctly.");
+        try (NoteVault vault = new NoteVault(file)) {
+            assertEquals(List.of("a"), vault.list(), "The records were not scanned correctly.");
+            assertEquals("New.", vault.read("a", password).getContent(), "Note content is incorrect.");
+        }
+    }
+
+    /**
+     * This method is used to test if records appended after the index file was written are found when the vault is opened.
+     * @param directory temporary directory of the vault.
+     * @throws Exception Thrown when the vault cannot be used.
+     */
+    @Test
+    void testReopenWhenIndexOutdated(@TempDir Path directory) throws Exception {
+        // Given
+        File file = directory.resolve("notes.vault").toFile();
+        Path indexPath = NoteVault.getIndexFile(file).toPath();
+        Path oldIndex = directory.resolve("old.index");
+        try (NoteVault vault = new NoteVault(file)) {
+            vault.save("a", createNote("First."), password);
+        }
+        Files.copy(indexPath, oldIndex);
+        try (NoteVault vault = new NoteVault(file)) {
+            vault.save("b", createNote("Second."), password);
+        }
+
+        // When
+        Files.copy(oldIndex, indexPath, StandardCopyOption.REPLACE_EXISTING);
+
+        // Then
+        try (NoteVault vault = new NoteVault(file)) {
+            assertEquals(List.of("a", "b"), vault.list(), "The appended record was not found.");
+            assertEquals("Second.", vault.read("b", password).getContent(), "Note content is incorrect.");
+        }
+    }
+
+    /**
+     * This method is used to test if an incomplete last record is removed when the vault is opened.
+     * @param directory temporary directory of the vault.
+     * @throws Exception Thrown when the vault cannot be used.
+     */
+    @Test
+    void testReopenWhenLastRecordIncomplete(@TempDir Path directory) throws Exception {
+        // Given
+        File file = directory.resolve("notes.vault").toFile();
+        long length;
+        try (NoteVault vault = new NoteVault(file)) {
+            vault.save("a", createNote("Saved."), password);
+            length = vault.getLength();
+        }
+
+        // When
+        Files.write(file.toPath(), new byte[] {1, 0, 1, 0, 0}, StandardOpenOption.APPEND);
+
+        // Then
+        try (NoteVault vault = new NoteVault(file)) {
+            assertEquals(length, vault.getLength(), "The incomplete record was not removed.");
+            assertEquals(length, Files.size(file.toPath()), "The vault file was not truncated.");
+            vault.save("b", createNote("After."), password);
+            assertEquals("After.", vault.read("b", password).getContent(), "Note content is incorrect.");
+        }
+    }
+
+    /**
+     * This method is used to test if compaction removes the replaced records and keeps the latest ones.
+     * @param directory temporary directory of the vault.
+     * @throws Exception Thrown when the vault cannot be used.
+     */
+    @Test
+    void testCompact(@TempDir Path directory) throws Exception {
+        // Given
+        File file = directory.resolve("notes.vault").toFile();
+        try (NoteVault vault = new NoteVault(file)) {
+            vault.setAutoCompaction(false);
+            for (int i = 0; i < 10; i++) {
+                vault.save("a", createNote("Version " + i), password);
+                vault.save("b", createNote("Other " + i), password);
+            }
+            vault.delete("b");
+            long length = vault.getLength();
+
+            // When
+            vault.compactAsync().join();
+
+            // Then
+            assertTrue(vault.getLength() < length, "The vault was not compacted.");
+            assertEquals(NoteVault.HEADER_LENGTH + vault.getLiveLength(), vault.getLength(), "Replaced records were kept.");
+            assertEquals(Files.size(file.toPath()), vault.getLength(), "The vault file length is incorrect.");
+            assertEquals("Version 9", vault.read("a", password).getContent(), "Note content is incorrect.");
+        }
+        try (NoteVault vault = new NoteVault(file)) {
+            assertEquals(List.of("a"), vault.list(), "The compacted vault was not reopened correctly.");
+        }
+    }
+
+    /**
+     * This method is used to test if note files and notes of a key vault are imported and read.
+     * @param directory temporary directory of the notes and the vault.
+     * @throws Exception Thrown when the vault cannot be used.
+     */
+    @Test
+    void testImportDirectory(@TempDir Path directory) throws Exception {
+        // Given
+        createNote("Password note.").save(directory.resolve("plain").toString(), password);
+        MasterKey masterKey = MasterKey.generate();
+        createNote("Vault note.").save(directory.resolve("wrapped").toString(), masterKey);
+        File file = directory.resolve("notes.vault").toFile();
+
+        try (NoteVault vault = new NoteVault(file)) {
+            // When
+            int count = vault.importDirectory(directory.toFile());
+
+            // Then
+            assertEquals(2, count, "The number of imported notes is incorrect.");
+            assertEquals("Password note.", vault.read("plain", password).getContent(), "Note content is incorrect.");
+            assertEquals("Vault note.", vault.read("wrapped", masterKey).getContent(), "Note content is incorrect.");
+        }
+    }
+
+    /**
+     * This method is used to test if only the note file extension is stripped from the ids of imported notes.
+     * @param directory temporary directory of the notes and the vault.
+     * @throws Exception Thrown when the notes or the vault cannot be used.
+     */
+    @Test
+    void testImportDirectoryWhenNamesHaveDots(@TempDir Path directory) throws Exception {
+        // Given
+        createNote("First note.").save(directory.resolve("a.b").toString(), password);
+        createNote("Second note.").save(directory.resolve("a.c").toString(), password);
+        File file = directory.resolve("notes.vault").toFile();
+
+        try (NoteVault vault = new NoteVault(file)) {
+            // When
+            int count = vault.importDirectory(directory.toFile());
+
+            // Then
+            assertEquals(2, count, "The number of imported notes is incorrect.");
+            assertEquals(List.of("a.b", "a.c"), vault.list(), "The note ids are incorrect.");
+            assertEquals("First note.", vault.read("a.b", password).getContent(), "Note content is incorrect.");
+            assertEquals("Second note.", vault.read("a.c", password).getContent(), "Note content is incorrect.");
+        }
+    }
+
+    /**
+     * This method is used to test if a directory with a note whose id is already in the vault is not imported.
+     * @param directory temporary directory of the notes and the vault.
+     * @throws Exception Thrown when the notes or the vault cannot be used.
+     */
+    @Test
+    void testImportDirectoryWhenIdTaken(@TempDir Path directory) throws Exception {
+        // Given
+        createNote("Imported note.").save(directory.resolve("first").toString(), password);
+        createNote("Taken note.").save(directory.resolve("second").toString(), password);
+        File file = directory.resolve("notes.vault").toFile();
+
+        try (NoteVault vault = new NoteVault(file)) {
+            vault.save("second", createNote("Vault note."), password);
+
+            // When
+            Executable importDirectory = () -> vault.importDirectory(directory.toFile());
+
+            // Then
+            assertThrows(IOException.class, importDirectory, "A note was imported over another one.");
+            assertEquals(List.of("second"), vault.list(), "The vault was changed.");
+            assertEquals("Vault note.", vault.read("second", password).getContent(), "Note content is incorrect.");
+        }
+    }
+
+    /**
+     * This method is used to test if a note file without a name before the extension is rejected.
+     * @param directory temporary directory of the note and the vault.
+     * @throws Exception Thrown when the note or the vault cannot be used.
+     */
+    @Test
+    void testImportNoteWhenNameEmpty(@TempDir Path directory) throws Exception {
+        // Given
+        createNote("Hidden note.").save(directory.resolve(Note.FILE_EXTENSION).toString(), password);
+        File file = directory.resolve("notes.vault").toFile();
+
+        try (NoteVault vault = new NoteVault(file)) {
+            // When
+            Executable importNote = () -> vault.importNote(directory.resolve(Note.FILE_EXTENSION).toFile());
+
+            // Then
+            assertThrows(IOException.class, importNote, "A note without an id was imported.");
+            assertEquals(0, vault.size(), "The vault was changed.");
+        }
+    }
+
+    /**
+     * This method is used to test if a file that is not a vault is rejected.
+     * @param directory temporary directory of the file.
+     * @throws IOException Thrown when the file cannot be written.
+     */
+    @Test
+    void testOpenWhenNotVault(@TempDir Path directory) throws IOException {
+        // Given
+        Path path = directory.resolve("other.vault");
+        Files.writeString(path, "This is not a vault.");
+
+        // When
+        Executable open = () -> new NoteVault(path.toFile()).close();
+
+        // Then
+        assertThrows(IOException.class, open);
+    }
+}
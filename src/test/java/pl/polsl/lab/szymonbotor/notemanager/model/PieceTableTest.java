@@ -0,0 +1,146 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the PieceTable class.
+ * @author Szymon Botor
+ * @version 1.1
+ */
+class PieceTableTest {
+
+    /**
+     * Initial text used in the tests.
+     */
+    private static final String original = "Test string. This string is used for testing.";
+
+    /**
+     * This method is used to test if random insertions and deletions give the same text as a StringBuilder,
+     * including when the table is rebuilt after exceeding the maximum number of pieces.
+     */
+    @Test
+    void testInsertAndDeleteWhenRandom() {
+        // Given
+        PieceTable table = new PieceTable(original);
+        StringBuilder expected = new StringBuilder(original);
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 3 * PieceTable.MAX_PIECES; i++) {
+            if (random.nextInt(3) > 0 || expected.length() == 0) {
+                int offset = random.nextInt(expected.length() + 1);
+                String str = Integer.toString(i);
+                table.insert(offset, str);
+                expected.insert(offset, str);
+            } else {
+                int offset = random.nextInt(expected.length());
+                int count = random.nextInt(Math.min(10, expected.length() - offset) + 1);
+                table.delete(offset, count);
+                expected.delete(offset, offset + count);
+            }
+        }
+
+        // Then
+        assertEquals(expected.toString(), table.toString(), "The text is incorrect.");
+        assertEquals(expected.length(), table.length(), "The length is incorrect.");
+        assertTrue(table.getPieceCount() <= PieceTable.MAX_PIECES, "The table was not rebuilt.");
+    }
+
+    /**
+     * This method is used to test if typing at one place extends a single piece.
+     */
+    @Test
+    void testInsertWhenTyping() {
+        // Given
+        PieceTable table = new PieceTable(original);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            table.insert(5 + i, "x");
+        }
+
+        // Then
+        assertEquals(3, table.getPieceCount(), "Consecutive insertions were not merged.");
+        assertEquals(original.substring(0, 5) + "x".repeat(100) + original.substring(5), table.toString(),
+                "The text is incorrect.");
+    }
+
+    /**
+     * This method is used to test if a snapshot is not changed by later edits and can be read in any order.
+     */
+    @Test
+    void testSnapshotWhenEditedLater() {
+        // Given
+        PieceTable table = new PieceTable(original);
+        table.insert(4, " inserted");
+        String expected = table.toString();
+        PieceTable.Snapshot snapshot = table.snapshot();
+
+        // When
+        table.delete(0, 10);
+        table.insert(0, "Changed");
+
+        // Then
+        assertEquals(expected, snapshot.toString(), "The snapshot was changed.");
+        assertEquals(expected.charAt(30), snapshot.charAt(30), "Character is incorrect.");
+        assertEquals(expected.charAt(2), snapshot.charAt(2), "Character is incorrect.");
+        assertEquals(expected.substring(3, 20), snapshot.subSequence(3, 20).toString(), "Part of the text is incorrect.");
+    }
+
+    /**
+     * This method is used to test if a snapshot read by another thread is not changed by edits made at the same time.
+     * @throws InterruptedException Thrown when the test is interrupted.
+     */
+    @Test
+    void testSnapshotWhenReadConcurrently() throws InterruptedException {
+        // Given
+        PieceTable table = new PieceTable(original);
+        for (int i = 0; i < 100; i++) {
+            table.insert(i, "Inserted " + i + ". ");
+        }
+        String expected = table.toString();
+        PieceTable.Snapshot snapshot = table.snapshot();
+        String[] read = new String[1];
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                read[0] = snapshot.toString();
+                if (!expected.equals(read[0])) {
+                    return;
+                }
+            }
+        });
+
+        // When
+        reader.start();
+        for (int i = 0; i < 10000; i++) {
+            table.insert(table.length() / 2, "Edited " + i + ". ");
+            table.delete(0, 3);
+        }
+        reader.join();
+
+        // Then
+        assertEquals(expected, read[0], "The snapshot was changed by a concurrent edit.");
+        assertEquals(expected, snapshot.toString(), "The snapshot was changed.");
+    }
+
+    /**
+     * This method is used to test if edits outside of the text are rejected.
+     */
+    @Test
+    void testDeleteWhenOutOfBounds() {
+        // Given
+        PieceTable table = new PieceTable(original);
+
+        // When
+        Executable delete = () -> table.delete(original.length() - 2, 3);
+
+        // Then
+        assertThrows(IndexOutOfBoundsException.class, delete, "A range outside of the text was deleted.");
+        assertEquals(original, table.toString(), "The text was changed.");
+    }
+}
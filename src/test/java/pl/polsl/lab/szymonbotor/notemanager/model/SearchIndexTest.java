@@ -0,0 +1,202 @@
+package pl.polsl.lab.szymonbotor.notemanager.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is the testing class for the SearchIndex class.
+ * @author Szymon Botor
+ * @version 1.2
+ */
+class SearchIndexTest {
+
+    /**
+     * The password used in note encryption and decryption.
+     */
+    private static final String password = "!paSswOrd_123";
+
+    /**
+     * This method is used to test if only the notes containing all words of a query are found, regardless of case.
+     */
+    @Test
+    void testSearch() {
+        // Given
+        SearchIndex index = new SearchIndex();
+        index.update(new File("a.note"), "The quick brown fox jumps over the lazy dog.");
+        index.update(new File("b.note"), "A quick summary of the meeting.");
+        index.update(new File("c.note"), "Nothing to see here.");
+
+        // When
+        List<SearchIndex.Result> quick = index.search("QUICK", 10);
+        List<SearchIndex.Result> quickFox = index.search("quick fox", 10);
+        List<SearchIndex.Result> limited = index.search("quick", 1);
+
+        // Then
+        assertEquals(2, quick.size(), "The number of results is incorrect.");
+        assertEquals(new File("a.note"), quick.get(0).getFile(), "The results are not sorted.");
+        assertEquals(1, quickFox.size(), "The words were not matched together.");
+        assertTrue(quickFox.get(0).getSnippet().contains("quick brown fox"), "The snippet does not show the match.");
+        assertEquals(1, limited.size(), "The limit was not applied.");
+        assertTrue(index.search("qui", 10).isEmpty(), "A part of a word was matched.");
+        assertTrue(index.search("quick cat", 10).isEmpty(), "A missing word was matched.");
+    }
+
+    /**
+     * This method is used to test if replaced and removed notes are not found.
+     */
+    @Test
+    void testUpdateAndRemove() {
+        // Given
+        SearchIndex index = new SearchIndex();
+        File file = new File("a.note");
+        index.update(file, "Old content.");
+
+        // When
+        index.update(file, "New content.");
+
+        // Then
+        assertTrue(index.search("old", 10).isEmpty(), "The old version was found.");
+        assertEquals(1, index.search("new", 10).size(), "The new version was not found.");
+        assertTrue(index.remove(file), "The note was not removed.");
+        assertTrue(index.search("content", 10).isEmpty(), "A removed note was found.");
+        assertEquals(0, index.size(), "The number of notes is incorrect.");
+    }
+
+    /**
+     * This method is used to test if updating notes many times reuses the ids of their previous versions.
+     */
+    @Test
+    void testUpdateWhenRepeated() {
+        // Given
+        SearchIndex index = new SearchIndex();
+        File first = new File("a.note");
+        File second = new File("b.note");
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            index.update(first, "First version " + i + ".");
+            index.update(second, "Second version " + i + ".");
+        }
+
+        // Then
+        assertEquals(2, index.getIdCount(), "The ids of updated notes were not reused.");
+        assertEquals(2, index.search("version", 10).size(), "The notes were not found.");
+        assertEquals(second, index.search("second 999", 10).get(0).getFile(), "The latest version was not found.");
+        assertTrue(index.search("first 998", 10).isEmpty(), "An old version was found.");
+    }
+
+    /**
+     * This method is used to test if a saved index is opened with the correct password only.
+     * @param directory temporary directory of the index.
+     * @throws Exception Thrown when the index cannot be saved or opened.
+     */
+    @Test
+    void testSaveAndOpen(@TempDir Path directory) throws Exception {
+        // Given
+        File indexFile = SearchIndex.getIndexFile(directory.toFile());
+        SearchIndex index = new SearchIndex();
+        index.update(new File("a.note"), "Encrypted search index.");
+
+        // When
+        index.save(indexFile, password);
+        SearchIndex opened = SearchIndex.open(indexFile, password);
+
+        // Then
+        assertFalse(index.isModified(), "The index is marked as modified.");
+        assertFalse(new String(Files.readAllBytes(indexFile.toPath())).contains("search"), "The index is not encrypted.");
+        assertEquals(1, opened.search("encrypted index", 10).size(), "The opened index is incorrect.");
+        assertNull(SearchIndex.open(indexFile, "wrong"), "The index was opened with a wrong password.");
+    }
+
+    /**
+     * This method is used to test if a watched note is indexed again when it is saved.
+     * @param directory temporary directory of the note.
+     * @throws Exception Thrown when the note cannot be saved.
+     */
+    @Test
+    void testWatch(@TempDir Path directory) throws Exception {
+        // Given
+        SearchIndex index = new SearchIndex();
+        Note note = new Note();
+        index.watch(note);
+        note.change("First version.");
+
+        // When
+        note.save(directory.resolve("a").toString(), password);
+        note.change("Second version.");
+        note.overwriteAsync().join();
+
+        // Then
+        assertTrue(index.search("first", 10).isEmpty(), "The first version was found.");
+        assertEquals(note.getFile(), index.search("second", 10).get(0).getFile(), "The saved note was not indexed.");
+    }
+
+    /**
+     * This method is used to test if refreshing indexes the new and changed notes and removes the deleted ones.
+     * @param directory temporary directory of the notes.
+     * @throws Exception Thrown when the notes cannot be saved.
+     */
+    @Test
+    void testRefresh(@TempDir Path directory) throws Exception {
+        // Given
+        Note first = new Note();
+        first.change("Apple and banana.");
+        first.save(directory.resolve("first").toString(), password);
+        Note second = new Note();
+        second.change("Banana and cherry.");
+        second.save(directory.resolve("second").toString(), password);
+        Note other = new Note();
+        other.change("Banana with another password.");
+        other.save(directory.resolve("other").toString(), "another");
+        SearchIndex index = new SearchIndex();
+
+        // When
+        int indexed = index.refresh(directory.toFile(), password);
+        Files.delete(second.getFile().toPath());
+        int reindexed = index.refresh(directory.toFile(), password);
+
+        // Then
+        assertEquals(2, indexed, "The number of indexed notes is incorrect.");
+        assertEquals(0, reindexed, "Unchanged notes were indexed again.");
+        assertEquals(List.of(first.getFile()), index.search("banana", 10).stream().map(SearchIndex.Result::getFile)
+                .collect(Collectors.toList()), "The deleted note was found.");
+    }
+
+    /**
+     * This method is used to test if refreshing indexes a note again after its edits were only appended to its journal
+     * by a note that is not watched.
+     * @param directory temporary directory of the notes.
+     * @throws Exception Thrown when the note cannot be saved.
+     */
+    @Test
+    void testRefreshWhenEditedThroughJournal(@TempDir Path directory) throws Exception {
+        // Given
+        Note note = new Note();
+        note.change("Apple and banana.");
+        note.save(directory.resolve("first").toString(), password);
+        byte[] noteFile = Files.readAllBytes(note.getFile().toPath());
+        SearchIndex index = new SearchIndex();
+        index.refresh(directory.toFile(), password);
+        note.setJournalEnabled(true);
+        note.delete(0, "Apple".length());
+        note.insert(0, "Cherry");
+
+        // When
+        note.overwrite();
+        int reindexed = index.refresh(directory.toFile(), password);
+
+        // Then
+        assertArrayEquals(noteFile, Files.readAllBytes(note.getFile().toPath()), "The note file was rewritten.");
+        assertEquals(1, reindexed, "The note edited through the journal was not indexed again.");
+        assertTrue(index.search("apple", 10).isEmpty(), "The old version was found.");
+        assertEquals(note.getFile(), index.search("cherry", 10).get(0).getFile(), "The new version was not found.");
+    }
+}